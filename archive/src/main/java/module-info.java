@@ -0,0 +1,16 @@
+/**
+ * Class loading, file system and resource access for the archives which are embedded within
+ * extension containers.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+module org.basinmc.chloramine.archive {
+  requires static com.github.spotbugs.annotations;
+  requires org.basinmc.chloramine.manifest;
+
+  exports org.basinmc.chloramine.archive;
+  exports org.basinmc.chloramine.archive.fs;
+
+  provides java.nio.file.spi.FileSystemProvider
+      with org.basinmc.chloramine.archive.fs.ContainerFileSystemProvider;
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * <p>Represents a single entry within the central directory of an archive.</p>
+ *
+ * <p>Entries only describe the location and encoding of their data. The data itself is read
+ * through the {@link ZipArchive} from which the entry originates.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ArchiveEntry {
+
+  /**
+   * Identifies entries which are stored as is.
+   */
+  public static final int METHOD_STORED = 0;
+
+  /**
+   * Identifies entries which are compressed using the deflate algorithm.
+   */
+  public static final int METHOD_DEFLATED = 8;
+
+  private final String name;
+  private final int flags;
+  private final int method;
+  private final int lastModifiedTime;
+  private final long checksum;
+  private final long compressedSize;
+  private final long size;
+  private final long localHeaderOffset;
+  private volatile long dataOffset = -1;
+
+  ArchiveEntry(@NonNull String name, int flags, int method, int lastModifiedTime, long checksum,
+      long compressedSize, long size, long localHeaderOffset) {
+    this.name = name;
+    this.flags = flags;
+    this.method = method;
+    this.lastModifiedTime = lastModifiedTime;
+    this.checksum = checksum;
+    this.compressedSize = compressedSize;
+    this.size = size;
+    this.localHeaderOffset = localHeaderOffset;
+  }
+
+  /**
+   * Retrieves the name of this entry (e.g. its path relative to the archive root).
+   *
+   * @return a name.
+   */
+  @NonNull
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Evaluates whether this entry represents a directory.
+   *
+   * @return true if directory, false otherwise.
+   */
+  public boolean isDirectory() {
+    return this.name.endsWith("/");
+  }
+
+  /**
+   * Retrieves the general purpose flags of this entry.
+   *
+   * @return a bitmask of flags.
+   */
+  public int getFlags() {
+    return this.flags;
+  }
+
+  /**
+   * Retrieves the compression method of this entry.
+   *
+   * @return a method identifier.
+   * @see #METHOD_STORED
+   * @see #METHOD_DEFLATED
+   */
+  public int getMethod() {
+    return this.method;
+  }
+
+  /**
+   * Retrieves the time at which this entry has been modified last.
+   *
+   * @return a timestamp (in milliseconds since the epoch) or -1 if the recorded time is invalid.
+   */
+  public long getLastModifiedTime() {
+    var date = this.lastModifiedTime >>> 16;
+    var time = this.lastModifiedTime & 0xFFFF;
+
+    try {
+      return LocalDateTime.of(
+          ((date >> 9) & 0x7F) + 1980, (date >> 5) & 0x0F, date & 0x1F,
+          (time >> 11) & 0x1F, (time >> 5) & 0x3F, (time & 0x1F) * 2)
+          .atZone(ZoneId.systemDefault())
+          .toInstant()
+          .toEpochMilli();
+    } catch (DateTimeException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Retrieves the CRC-32 checksum of the uncompressed entry data.
+   *
+   * @return a checksum.
+   */
+  public long getChecksum() {
+    return this.checksum;
+  }
+
+  /**
+   * Retrieves the length of the encoded entry data.
+   *
+   * @return a length (in bytes).
+   */
+  public long getCompressedSize() {
+    return this.compressedSize;
+  }
+
+  /**
+   * Retrieves the length of the uncompressed entry data.
+   *
+   * @return a length (in bytes).
+   */
+  public long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Retrieves the position of the local header of this entry within the archive.
+   *
+   * @return an offset.
+   */
+  long getLocalHeaderOffset() {
+    return this.localHeaderOffset;
+  }
+
+  /**
+   * Retrieves the previously resolved position of the entry data within the archive.
+   *
+   * @return an offset or -1 if the offset has yet to be resolved.
+   */
+  long getDataOffset() {
+    return this.dataOffset;
+  }
+
+  /**
+   * Caches the resolved position of the entry data within the archive.
+   *
+   * @param dataOffset an offset.
+   */
+  void setDataOffset(long dataOffset) {
+    this.dataOffset = dataOffset;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
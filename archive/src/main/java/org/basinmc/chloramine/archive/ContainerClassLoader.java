@@ -0,0 +1,271 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.jar.Attributes;
+import java.util.jar.Attributes.Name;
+import java.util.jar.JarFile;
+import org.basinmc.chloramine.archive.fs.ContainerFileSystemProvider;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.MappedContainer;
+
+/**
+ * <p>Loads classes and resources directly from the archive which is embedded within a
+ * container.</p>
+ *
+ * <p>Classes are defined from the entry data as it is read from the content section (or, in case
+ * of mapped containers, from the mapping itself) and thus do not require the archive to be
+ * extracted beforehand. Resources are exposed via URLs which read through to their respective
+ * archive entry when opened.</p>
+ *
+ * <p>Resource URLs use a dedicated protocol (see {@link #URL_PROTOCOL}) since the loader is not
+ * necessarily aware of the file from which its archive has been read. As such, they cannot be
+ * converted into paths. Containers which are to be accessed via paths should be opened through
+ * the container file system instead (see {@link ContainerFileSystemProvider}).</p>
+ *
+ * <p>This loader is parallel capable. The underlying archive must remain readable (e.g. its
+ * container must not be closed) for as long as classes or resources may be loaded.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ContainerClassLoader extends ClassLoader {
+
+  /**
+   * Defines the protocol of the resource URLs which are created by this loader. This protocol
+   * differs from the scheme of the container file system (see {@link
+   * ContainerFileSystemProvider#SCHEME}) as the URLs do not identify their container.
+   */
+  public static final String URL_PROTOCOL = "bec-resource";
+
+  static {
+    registerAsParallelCapable();
+  }
+
+  private final ZipArchive archive;
+  private final ProtectionDomain protectionDomain;
+  private final Attributes attributes;
+  private final URLStreamHandler handler = new ResourceHandler();
+
+  /**
+   * @param name a loader name or null if unnamed.
+   * @param archive an archive.
+   * @param parent a parent loader or null to delegate to the bootstrap loader.
+   * @throws IOException when reading the archive manifest fails.
+   */
+  public ContainerClassLoader(@Nullable String name, @NonNull ZipArchive archive,
+      @Nullable ClassLoader parent) throws IOException {
+    super(name, parent);
+    this.archive = archive;
+    this.protectionDomain = new ProtectionDomain(
+        new CodeSource(this.createURL(""), (CodeSigner[]) null), null, this, null);
+
+    var manifestEntry = archive.getEntry(JarFile.MANIFEST_NAME).orElse(null);
+    if (manifestEntry != null) {
+      try (var inputStream = archive.newInputStream(manifestEntry)) {
+        this.attributes = new java.util.jar.Manifest(inputStream).getMainAttributes();
+      }
+    } else {
+      this.attributes = new Attributes();
+    }
+  }
+
+  /**
+   * Creates a loader for the archive within the specified container. The loader is named after
+   * the container identifier.
+   *
+   * @param container a container.
+   * @param parent a parent loader or null to delegate to the bootstrap loader.
+   * @return a class loader.
+   * @throws IOException when reading the archive fails or the archive is malformed.
+   */
+  @NonNull
+  public static ContainerClassLoader of(@NonNull Container container,
+      @Nullable ClassLoader parent) throws IOException {
+    return new ContainerClassLoader(container.getManifest().getMetadata().getIdentifier(),
+        ZipArchive.open(container), parent);
+  }
+
+  /**
+   * Creates a loader for the archive within the specified mapped container. The loader is named
+   * after the container identifier.
+   *
+   * @param container a mapped container.
+   * @param parent a parent loader or null to delegate to the bootstrap loader.
+   * @return a class loader.
+   * @throws IOException when reading the archive fails or the archive is malformed.
+   */
+  @NonNull
+  public static ContainerClassLoader of(@NonNull MappedContainer container,
+      @Nullable ClassLoader parent) throws IOException {
+    return new ContainerClassLoader(container.getManifest().getMetadata().getIdentifier(),
+        ZipArchive.open(container), parent);
+  }
+
+  /**
+   * Retrieves the archive from which this loader reads its classes and resources.
+   *
+   * @return an archive.
+   */
+  @NonNull
+  public ZipArchive getArchive() {
+    return this.archive;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Class<?> findClass(@NonNull String name) throws ClassNotFoundException {
+    var entry = this.archive.getEntry(name.replace('.', '/') + ".class").orElse(null);
+    if (entry == null) {
+      throw new ClassNotFoundException(name);
+    }
+
+    var separator = name.lastIndexOf('.');
+    if (separator != -1) {
+      this.definePackage(name.substring(0, separator));
+    }
+
+    try {
+      return this.defineClass(name, this.archive.getBuffer(entry), this.protectionDomain);
+    } catch (IOException ex) {
+      throw new ClassNotFoundException(name, ex);
+    }
+  }
+
+  /**
+   * Defines the specified package (unless it has been defined already) using the attributes of
+   * the archive manifest.
+   *
+   * @param name a package name.
+   */
+  private void definePackage(@NonNull String name) {
+    if (this.getDefinedPackage(name) != null) {
+      return;
+    }
+
+    try {
+      this.definePackage(name,
+          this.attributes.getValue(Name.SPECIFICATION_TITLE),
+          this.attributes.getValue(Name.SPECIFICATION_VERSION),
+          this.attributes.getValue(Name.SPECIFICATION_VENDOR),
+          this.attributes.getValue(Name.IMPLEMENTATION_TITLE),
+          this.attributes.getValue(Name.IMPLEMENTATION_VERSION),
+          this.attributes.getValue(Name.IMPLEMENTATION_VENDOR),
+          null);
+    } catch (IllegalArgumentException ignore) {
+      // another thread has defined the package in the meantime
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected URL findResource(@NonNull String name) {
+    if (!this.archive.getEntry(name).isPresent()) {
+      return null;
+    }
+
+    return this.createURL(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Enumeration<URL> findResources(@NonNull String name) {
+    var url = this.findResource(name);
+    if (url == null) {
+      return Collections.emptyEnumeration();
+    }
+
+    return Collections.enumeration(Collections.singletonList(url));
+  }
+
+  /**
+   * Creates a URL which refers to the specified entry within the archive of this loader.
+   *
+   * @param name an entry name.
+   * @return a URL.
+   */
+  @NonNull
+  private URL createURL(@NonNull String name) {
+    try {
+      return new URL(URL_PROTOCOL, null, -1, "/" + name, this.handler);
+    } catch (MalformedURLException ex) {
+      throw new IllegalStateException("Illegal resource name: " + name, ex);
+    }
+  }
+
+  /**
+   * Resolves resource URLs against the archive of this loader.
+   */
+  private final class ResourceHandler extends URLStreamHandler {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected URLConnection openConnection(@NonNull URL u) throws IOException {
+      var name = u.getPath().substring(1);
+      var entry = ContainerClassLoader.this.archive.getEntry(name)
+          .orElseThrow(() -> new IOException("No such resource: " + name));
+
+      return new URLConnection(u) {
+        private InputStream inputStream;
+
+        @Override
+        public void connect() throws IOException {
+          if (!this.connected) {
+            this.inputStream = ContainerClassLoader.this.archive.newInputStream(entry);
+            this.connected = true;
+          }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+          this.connect();
+          return this.inputStream;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+          return entry.getSize();
+        }
+
+        @Override
+        public long getLastModified() {
+          return Math.max(0, entry.getLastModifiedTime());
+        }
+      };
+    }
+  }
+}
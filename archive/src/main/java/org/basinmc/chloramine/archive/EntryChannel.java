@@ -0,0 +1,222 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * <p>Exposes the uncompressed data of a single archive entry as a read-only channel.</p>
+ *
+ * <p>Stored entries are read through bounded positional reads against the archive source and
+ * thus support arbitrary seeking at no additional cost. Compressed entries are inflated
+ * sequentially. Seeking backwards within a compressed entry restarts the inflation at the
+ * beginning of the entry.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class EntryChannel implements SeekableByteChannel {
+
+  private final ZipArchive archive;
+  private final ArchiveEntry entry;
+  private final long dataOffset;
+  private boolean open = true;
+  private long position;
+
+  private InputStream inputStream;
+  private long streamPosition;
+
+  /**
+   * @param archive the archive which contains the entry.
+   * @param entry an entry.
+   * @param dataOffset the resolved position of the entry data within the archive.
+   */
+  EntryChannel(@NonNull ZipArchive archive, @NonNull ArchiveEntry entry, long dataOffset) {
+    this.archive = archive;
+    this.entry = entry;
+    this.dataOffset = dataOffset;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int read(@NonNull ByteBuffer dst) throws IOException {
+    this.ensureOpen();
+
+    var remaining = this.entry.getSize() - this.position;
+    if (remaining <= 0) {
+      return -1;
+    }
+
+    var length = (int) Math.min(dst.remaining(), remaining);
+    if (length == 0) {
+      return 0;
+    }
+
+    if (this.entry.getMethod() == ArchiveEntry.METHOD_STORED) {
+      var target = dst.duplicate();
+      target.limit(target.position() + length);
+      this.archive.getSource().readFully(target, this.dataOffset + this.position);
+      dst.position(target.position());
+    } else {
+      length = this.readInflated(dst, length);
+    }
+
+    this.position += length;
+    return length;
+  }
+
+  /**
+   * Reads inflated data at the current channel position into the passed buffer.
+   *
+   * @param dst a target buffer.
+   * @param length the maximum amount of bytes to read.
+   * @return the amount of bytes read.
+   * @throws IOException when reading or inflating fails.
+   */
+  private int readInflated(@NonNull ByteBuffer dst, int length) throws IOException {
+    if (this.inputStream == null || this.streamPosition > this.position) {
+      this.closeStream();
+      this.inputStream = this.archive.newInputStream(this.entry);
+      this.streamPosition = 0;
+    }
+
+    var skip = this.position - this.streamPosition;
+    while (skip > 0) {
+      var n = this.inputStream.skip(skip);
+      if (n <= 0) {
+        throw new IOException("Illegal archive entry: Truncated entry data: "
+            + this.entry.getName());
+      }
+      skip -= n;
+      this.streamPosition += n;
+    }
+
+    byte[] data;
+    int offset;
+    if (dst.hasArray()) {
+      data = dst.array();
+      offset = dst.arrayOffset() + dst.position();
+    } else {
+      data = new byte[length];
+      offset = 0;
+    }
+
+    var n = this.inputStream.read(data, offset, length);
+    if (n <= 0) {
+      throw new IOException("Illegal archive entry: Truncated entry data: "
+          + this.entry.getName());
+    }
+
+    if (dst.hasArray()) {
+      dst.position(dst.position() + n);
+    } else {
+      dst.put(data, 0, n);
+    }
+
+    this.streamPosition += n;
+    return n;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long position() throws IOException {
+    this.ensureOpen();
+    return this.position;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position cannot be negative: " + newPosition);
+    }
+
+    this.ensureOpen();
+    this.position = newPosition;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized long size() throws IOException {
+    this.ensureOpen();
+    return this.entry.getSize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized boolean isOpen() {
+    return this.open;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    this.open = false;
+    this.closeStream();
+  }
+
+  private void closeStream() throws IOException {
+    var inputStream = this.inputStream;
+    this.inputStream = null;
+
+    if (inputStream != null) {
+      inputStream.close();
+    }
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
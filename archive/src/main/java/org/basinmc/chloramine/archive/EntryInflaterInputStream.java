@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>Inflates the raw deflate stream of an archive entry.</p>
+ *
+ * <p>Raw inflaters may require an additional dummy byte beyond the end of their input in order
+ * to complete. This stream supplies said byte once the entry data has been exhausted and releases
+ * its inflater when closed.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class EntryInflaterInputStream extends InflaterInputStream {
+
+  private boolean eof;
+  private boolean closed;
+
+  /**
+   * @param in a stream which provides the compressed entry data.
+   * @param size the size of the input buffer.
+   */
+  EntryInflaterInputStream(@NonNull InputStream in, int size) {
+    super(in, new Inflater(true), size);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void fill() throws IOException {
+    if (this.eof) {
+      throw new EOFException("Unexpected end of entry data");
+    }
+
+    this.len = this.in.read(this.buf, 0, this.buf.length);
+    if (this.len == -1) {
+      this.buf[0] = 0;
+      this.len = 1;
+      this.eof = true;
+    }
+
+    this.inf.setInput(this.buf, 0, this.len);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    try {
+      super.close();
+    } finally {
+      this.inf.end();
+    }
+  }
+}
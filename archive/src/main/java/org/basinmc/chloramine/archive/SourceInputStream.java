@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import org.basinmc.chloramine.manifest.content.ContentSource;
+
+/**
+ * Exposes a bounded section of a content source as an input stream.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class SourceInputStream extends InputStream {
+
+  private final ContentSource source;
+  private final long offset;
+  private final long length;
+  private long position;
+
+  /**
+   * @param source a source.
+   * @param offset the position of the section within the source.
+   * @param length the length of the section.
+   */
+  SourceInputStream(@NonNull ContentSource source, long offset, long length) {
+    this.source = source;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read() throws IOException {
+    var data = new byte[1];
+    if (this.read(data, 0, 1) == -1) {
+      return -1;
+    }
+
+    return data[0] & 0xFF;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read(@NonNull byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+
+    var remaining = this.length - this.position;
+    if (remaining == 0) {
+      return len == 0 ? 0 : -1;
+    }
+
+    var n = (int) Math.min(len, remaining);
+    this.source.readFully(ByteBuffer.wrap(b, off, n), this.offset + this.position);
+    this.position += n;
+    return n;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long skip(long n) {
+    var skipped = Math.max(0, Math.min(n, this.length - this.position));
+    this.position += skipped;
+    return skipped;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, this.length - this.position);
+  }
+}
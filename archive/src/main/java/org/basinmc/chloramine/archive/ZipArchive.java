@@ -0,0 +1,600 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.MappedContainer;
+import org.basinmc.chloramine.manifest.content.CompressedContent;
+import org.basinmc.chloramine.manifest.content.ContentSource;
+
+/**
+ * <p>Provides read-only access to a zip archive (such as a jar) which is embedded within the
+ * content section of a container.</p>
+ *
+ * <p>The central directory is read directly from the content source when the archive is opened
+ * and retained as an index of entry names. Entry data is read on demand through positional reads
+ * which are limited to the respective entry. As such, the archive never needs to be extracted
+ * and may be shared between any amount of threads.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ZipArchive {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034B50;
+  private static final int LOCAL_HEADER_LENGTH = 30;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014B50;
+  private static final int CENTRAL_HEADER_LENGTH = 46;
+  private static final int END_SIGNATURE = 0x06054B50;
+  private static final int END_LENGTH = 22;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064B50;
+  private static final int ZIP64_LOCATOR_LENGTH = 20;
+  private static final int ZIP64_END_SIGNATURE = 0x06064B50;
+  private static final int ZIP64_END_LENGTH = 56;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+  private static final int MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+  private static final int FLAG_ENCRYPTED = 0x0001;
+  private static final int STREAM_BUFFER_SIZE = 8192;
+
+  private final ContentSource source;
+  private final ByteBuffer buffer;
+  private final long length;
+  private final List<ArchiveEntry> entries;
+  private final Map<String, ArchiveEntry> index;
+
+  private ZipArchive(@NonNull ContentSource source, @Nullable ByteBuffer buffer, long length,
+      @NonNull List<ArchiveEntry> entries) {
+    this.source = source;
+    this.buffer = buffer;
+    this.length = length;
+    this.entries = Collections.unmodifiableList(entries);
+
+    var index = new HashMap<String, ArchiveEntry>((int) (entries.size() / 0.75f) + 1);
+    for (var entry : entries) {
+      // the first occurrence of duplicate names takes precedence (as is the case with jar files)
+      index.putIfAbsent(entry.getName(), entry);
+    }
+    this.index = index;
+  }
+
+  /**
+   * Reads the central directory of an archive within the specified source.
+   *
+   * @param source a source which provides the archive.
+   * @param length the length of the archive.
+   * @return an archive.
+   * @throws IOException when reading the central directory fails or the archive is malformed.
+   */
+  @NonNull
+  public static ZipArchive open(@NonNull ContentSource source, long length) throws IOException {
+    return new ZipArchive(source, null, length, readCentralDirectory(source, length));
+  }
+
+  /**
+   * <p>Reads the central directory of an archive within the specified buffer.</p>
+   *
+   * <p>Entries which are stored as is are exposed as slices of the passed buffer (see
+   * {@link #getBuffer(ArchiveEntry)}) and are thus never copied.</p>
+   *
+   * @param buffer a buffer containing the archive (starting at its current position).
+   * @return an archive.
+   * @throws IOException when the archive is malformed.
+   */
+  @NonNull
+  public static ZipArchive open(@NonNull ByteBuffer buffer) throws IOException {
+    var view = buffer.slice().asReadOnlyBuffer();
+    var source = ContentSource.of(view);
+
+    return new ZipArchive(source, view, view.capacity(),
+        readCentralDirectory(source, view.capacity()));
+  }
+
+  /**
+   * Reads the central directory of the archive which is embedded within the specified container.
+   *
+   * @param container a container.
+   * @return an archive.
+   * @throws IOException when reading the central directory fails or the archive is malformed.
+   */
+  @NonNull
+  public static ZipArchive open(@NonNull Container container) throws IOException {
+    return open(container.getContentSource(), container.getUncompressedContentLength());
+  }
+
+  /**
+   * <p>Reads the central directory of the archive which is embedded within the specified mapped
+   * container.</p>
+   *
+   * <p>When the container contents are compressed, blocks are inflated on demand through the
+   * common pool. Otherwise, the archive is read from the mapping directly.</p>
+   *
+   * @param container a mapped container.
+   * @return an archive.
+   * @throws IOException when reading the central directory fails or the archive is malformed.
+   */
+  @NonNull
+  public static ZipArchive open(@NonNull MappedContainer container) throws IOException {
+    var content = container.getContent();
+    if ((container.getManifest().getFlags() & Manifest.FLAG_COMPRESSED) == 0) {
+      return open(content);
+    }
+
+    var compressedContent = CompressedContent
+        .open(ContentSource.of(content), content.remaining(), ForkJoinPool.commonPool());
+    return open(compressedContent.asSource(), compressedContent.getLength());
+  }
+
+  /**
+   * Locates the end of central directory record and decodes all entries within the central
+   * directory it references.
+   *
+   * @param source an archive source.
+   * @param length the length of the archive.
+   * @return a list of entries (in order of appearance).
+   * @throws IOException when reading fails or the archive is malformed.
+   */
+  @NonNull
+  private static List<ArchiveEntry> readCentralDirectory(@NonNull ContentSource source,
+      long length) throws IOException {
+    if (length < END_LENGTH) {
+      throw new ZipException(String.format(
+          "Illegal archive: Archive is too short to contain a central directory (%d bytes < %d)",
+          length, END_LENGTH));
+    }
+
+    var tailLength = (int) Math.min(length, END_LENGTH + MAX_COMMENT_LENGTH);
+    var tailOffset = length - tailLength;
+    var tail = read(source, tailOffset, tailLength);
+
+    var end = -1;
+    for (var i = tailLength - END_LENGTH; i >= 0; --i) {
+      if (tail.getInt(i) == END_SIGNATURE
+          && i + END_LENGTH + Short.toUnsignedInt(tail.getShort(i + 20)) <= tailLength) {
+        end = i;
+        break;
+      }
+    }
+    if (end == -1) {
+      throw new ZipException("Illegal archive: Missing end of central directory record");
+    }
+
+    long count = Short.toUnsignedInt(tail.getShort(end + 10));
+    long directoryLength = Integer.toUnsignedLong(tail.getInt(end + 12));
+    long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+    var directoryEnd = tailOffset + end;
+
+    if (end >= ZIP64_LOCATOR_LENGTH
+        && tail.getInt(end - ZIP64_LOCATOR_LENGTH) == ZIP64_LOCATOR_SIGNATURE) {
+      var recordOffset = tail.getLong(end - ZIP64_LOCATOR_LENGTH + 8);
+      if (recordOffset < 0 || recordOffset > length - ZIP64_END_LENGTH) {
+        throw new ZipException(
+            "Illegal archive: ZIP64 end of central directory record exceeds archive bounds");
+      }
+
+      var record = read(source, recordOffset, ZIP64_END_LENGTH);
+      if (record.getInt(0) != ZIP64_END_SIGNATURE) {
+        throw new ZipException("Illegal archive: Missing ZIP64 end of central directory record");
+      }
+
+      count = record.getLong(32);
+      directoryLength = record.getLong(40);
+      directoryOffset = record.getLong(48);
+      directoryEnd = recordOffset;
+    }
+
+    if (directoryLength > Integer.MAX_VALUE || directoryLength > directoryEnd) {
+      throw new ZipException(String.format(
+          "Illegal archive: Illegal central directory length: %d bytes", directoryLength));
+    }
+
+    // archives may be preceded by arbitrary data in which case all offsets are shifted
+    var base = directoryEnd - directoryLength - directoryOffset;
+    if (base < 0) {
+      throw new ZipException(String.format(
+          "Illegal archive: Illegal central directory offset: %d", directoryOffset));
+    }
+    if (count > directoryLength / CENTRAL_HEADER_LENGTH) {
+      throw new ZipException(String.format(
+          "Illegal archive: Illegal entry count: %d", count));
+    }
+
+    var directory = read(source, directoryEnd - directoryLength, (int) directoryLength);
+    var entries = new ArrayList<ArchiveEntry>((int) count);
+    for (var i = 0; i < count; ++i) {
+      entries.add(readEntry(directory, base, directoryEnd - directoryLength));
+    }
+    return entries;
+  }
+
+  /**
+   * Decodes a single central directory header at the current position of the buffer.
+   *
+   * @param directory a central directory buffer.
+   * @param base the offset at which the archive begins.
+   * @param limit the offset at which the central directory begins.
+   * @return an entry.
+   * @throws ZipException when the header is malformed.
+   */
+  @NonNull
+  private static ArchiveEntry readEntry(@NonNull ByteBuffer directory, long base, long limit)
+      throws ZipException {
+    var position = directory.position();
+    if (directory.remaining() < CENTRAL_HEADER_LENGTH
+        || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+      throw new ZipException(String.format(
+          "Illegal archive: Malformed central directory header at offset %d", position));
+    }
+
+    var flags = Short.toUnsignedInt(directory.getShort(position + 8));
+    var method = Short.toUnsignedInt(directory.getShort(position + 10));
+    var lastModifiedTime = directory.getInt(position + 12);
+    var checksum = Integer.toUnsignedLong(directory.getInt(position + 16));
+    long compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+    long size = Integer.toUnsignedLong(directory.getInt(position + 24));
+    var nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+    var extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+    var commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+    long localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+    var headerLength = CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+    if (directory.remaining() < headerLength) {
+      throw new ZipException(String.format(
+          "Illegal archive: Truncated central directory header at offset %d", position));
+    }
+
+    var name = new byte[nameLength];
+    directory.position(position + CENTRAL_HEADER_LENGTH);
+    directory.get(name);
+
+    // ZIP64 values are only present for the fields which overflow their regular representation
+    var extra = position + CENTRAL_HEADER_LENGTH + nameLength;
+    var extraEnd = extra + extraLength;
+    while (extra + 4 <= extraEnd) {
+      var id = Short.toUnsignedInt(directory.getShort(extra));
+      var dataLength = Short.toUnsignedInt(directory.getShort(extra + 2));
+      var data = extra + 4;
+      var dataEnd = Math.min(data + dataLength, extraEnd);
+
+      if (id == ZIP64_EXTRA_ID) {
+        if (size == 0xFFFFFFFFL && data + 8 <= dataEnd) {
+          size = directory.getLong(data);
+          data += 8;
+        }
+        if (compressedSize == 0xFFFFFFFFL && data + 8 <= dataEnd) {
+          compressedSize = directory.getLong(data);
+          data += 8;
+        }
+        if (localHeaderOffset == 0xFFFFFFFFL && data + 8 <= dataEnd) {
+          localHeaderOffset = directory.getLong(data);
+        }
+      }
+
+      extra = dataEnd;
+    }
+
+    directory.position(position + headerLength);
+
+    localHeaderOffset += base;
+    if (size < 0 || compressedSize < 0 || localHeaderOffset < base
+        || localHeaderOffset > limit - LOCAL_HEADER_LENGTH) {
+      throw new ZipException(String.format(
+          "Illegal archive: Malformed central directory header at offset %d", position));
+    }
+
+    return new ArchiveEntry(new String(name, StandardCharsets.UTF_8), flags, method,
+        lastModifiedTime, checksum, compressedSize, size, localHeaderOffset);
+  }
+
+  /**
+   * Reads a little endian section of the specified source into a heap buffer.
+   *
+   * @param source a source.
+   * @param position the position of the section.
+   * @param length the length of the section.
+   * @return a buffer.
+   * @throws IOException when reading fails.
+   */
+  @NonNull
+  private static ByteBuffer read(@NonNull ContentSource source, long position, int length)
+      throws IOException {
+    var buffer = ByteBuffer.allocate(length);
+    source.readFully(buffer, position);
+    buffer.flip();
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Retrieves the entry with the specified name.
+   *
+   * @param name an entry name.
+   * @return an entry or, if no such entry exists, an empty optional.
+   */
+  @NonNull
+  public Optional<ArchiveEntry> getEntry(@NonNull String name) {
+    return Optional.ofNullable(this.index.get(name));
+  }
+
+  /**
+   * Retrieves all entries within this archive (in order of appearance within the central
+   * directory).
+   *
+   * @return a collection of entries.
+   */
+  @NonNull
+  public Collection<ArchiveEntry> getEntries() {
+    return this.entries;
+  }
+
+  /**
+   * Retrieves the length of this archive.
+   *
+   * @return a length (in bytes).
+   */
+  public long getLength() {
+    return this.length;
+  }
+
+  /**
+   * Retrieves the source from which the archive is read.
+   *
+   * @return a content source.
+   */
+  @NonNull
+  ContentSource getSource() {
+    return this.source;
+  }
+
+  /**
+   * Evaluates whether the underlying source remains readable.
+   *
+   * @return true if open, false otherwise.
+   */
+  public boolean isOpen() {
+    return this.source.isOpen();
+  }
+
+  /**
+   * Retrieves the amount of entries within this archive.
+   *
+   * @return an amount of entries.
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Resolves the position of the data of the specified entry by reading its local header.
+   *
+   * @param entry an entry.
+   * @return an offset.
+   * @throws IOException when reading fails or the local header is malformed.
+   */
+  long getDataOffset(@NonNull ArchiveEntry entry) throws IOException {
+    var offset = entry.getDataOffset();
+    if (offset != -1) {
+      return offset;
+    }
+
+    if ((entry.getFlags() & FLAG_ENCRYPTED) != 0) {
+      throw new ZipException("Illegal archive entry: Encrypted entries are not supported: "
+          + entry.getName());
+    }
+
+    var header = read(this.source, entry.getLocalHeaderOffset(), LOCAL_HEADER_LENGTH);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Illegal archive entry: Malformed local header: " + entry.getName());
+    }
+
+    offset = entry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH
+        + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+    if (offset > this.length - entry.getCompressedSize()) {
+      throw new ZipException("Illegal archive entry: Data exceeds archive bounds: "
+          + entry.getName());
+    }
+
+    entry.setDataOffset(offset);
+    return offset;
+  }
+
+  /**
+   * Reads and decodes the data of the specified entry.
+   *
+   * @param entry an entry.
+   * @return the uncompressed entry data.
+   * @throws IOException when reading fails or the entry is malformed.
+   */
+  @NonNull
+  public byte[] read(@NonNull ArchiveEntry entry) throws IOException {
+    if (entry.getSize() > MAX_ENTRY_SIZE || entry.getCompressedSize() > MAX_ENTRY_SIZE) {
+      throw new ZipException(String.format(
+          "Illegal archive entry: Entry exceeds maximum length (%d bytes > %d): %s",
+          entry.getSize(), MAX_ENTRY_SIZE, entry.getName()));
+    }
+
+    var offset = this.getDataOffset(entry);
+    var data = new byte[(int) entry.getSize()];
+
+    switch (entry.getMethod()) {
+      case ArchiveEntry.METHOD_STORED:
+        if (entry.getCompressedSize() != entry.getSize()) {
+          throw new ZipException("Illegal archive entry: Size mismatch: " + entry.getName());
+        }
+
+        this.source.readFully(ByteBuffer.wrap(data), offset);
+        break;
+      case ArchiveEntry.METHOD_DEFLATED:
+        // raw inflaters may require an additional dummy byte beyond the end of their input
+        var compressed = new byte[(int) entry.getCompressedSize() + 1];
+        this.source.readFully(ByteBuffer.wrap(compressed, 0, compressed.length - 1), offset);
+
+        var inflater = new Inflater(true);
+        try {
+          inflater.setInput(compressed);
+
+          var inflated = 0;
+          while (inflated < data.length && !inflater.finished()) {
+            var n = inflater.inflate(data, inflated, data.length - inflated);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+              break;
+            }
+            inflated += n;
+          }
+
+          if (inflated != data.length) {
+            throw new ZipException("Illegal archive entry: Size mismatch: " + entry.getName());
+          }
+        } catch (DataFormatException ex) {
+          throw new ZipException(String.format("Illegal archive entry: %s: %s", entry.getName(),
+              ex.getMessage()));
+        } finally {
+          inflater.end();
+        }
+        break;
+      default:
+        throw unsupportedMethod(entry);
+    }
+
+    var crc = new CRC32();
+    crc.update(data);
+    verifyChecksum(entry, crc);
+
+    return data;
+  }
+
+  /**
+   * <p>Retrieves the uncompressed data of the specified entry.</p>
+   *
+   * <p>When the archive has been opened from a buffer and the entry is stored as is, the returned
+   * buffer is a read-only slice of the archive. Otherwise, the entry is read into a new heap
+   * buffer.</p>
+   *
+   * @param entry an entry.
+   * @return a buffer.
+   * @throws IOException when reading fails or the entry is malformed.
+   */
+  @NonNull
+  public ByteBuffer getBuffer(@NonNull ArchiveEntry entry) throws IOException {
+    if (this.buffer == null || entry.getMethod() != ArchiveEntry.METHOD_STORED) {
+      return ByteBuffer.wrap(this.read(entry));
+    }
+    if (entry.getCompressedSize() != entry.getSize()) {
+      throw new ZipException("Illegal archive entry: Size mismatch: " + entry.getName());
+    }
+
+    var offset = (int) this.getDataOffset(entry);
+    var view = this.buffer.duplicate();
+    view.limit(offset + (int) entry.getSize());
+    view.position(offset);
+    var slice = view.slice();
+
+    var crc = new CRC32();
+    crc.update(slice.duplicate());
+    verifyChecksum(entry, crc);
+
+    return slice;
+  }
+
+  /**
+   * <p>Creates a new input stream which decodes the data of the specified entry.</p>
+   *
+   * <p>Data is read from the archive in small batches as it is consumed.</p>
+   *
+   * @param entry an entry.
+   * @return an input stream.
+   * @throws IOException when resolving the entry data fails or the entry is malformed.
+   */
+  @NonNull
+  public InputStream newInputStream(@NonNull ArchiveEntry entry) throws IOException {
+    var offset = this.getDataOffset(entry);
+    var data = new SourceInputStream(this.source, offset, entry.getCompressedSize());
+
+    switch (entry.getMethod()) {
+      case ArchiveEntry.METHOD_STORED:
+        return data;
+      case ArchiveEntry.METHOD_DEFLATED:
+        return new EntryInflaterInputStream(data, STREAM_BUFFER_SIZE);
+      default:
+        throw unsupportedMethod(entry);
+    }
+  }
+
+  /**
+   * <p>Creates a new read-only channel which exposes the uncompressed data of the specified
+   * entry.</p>
+   *
+   * <p>Stored entries are read through bounded positional reads and may thus be accessed at
+   * arbitrary positions at no additional cost. Compressed entries are inflated sequentially
+   * instead.</p>
+   *
+   * @param entry an entry.
+   * @return an entry channel.
+   * @throws IOException when resolving the entry data fails or the entry is malformed.
+   */
+  @NonNull
+  public SeekableByteChannel newChannel(@NonNull ArchiveEntry entry) throws IOException {
+    var offset = this.getDataOffset(entry);
+
+    switch (entry.getMethod()) {
+      case ArchiveEntry.METHOD_STORED:
+        if (entry.getCompressedSize() != entry.getSize()) {
+          throw new ZipException("Illegal archive entry: Size mismatch: " + entry.getName());
+        }
+        // fall through
+      case ArchiveEntry.METHOD_DEFLATED:
+        return new EntryChannel(this, entry, offset);
+      default:
+        throw unsupportedMethod(entry);
+    }
+  }
+
+  @NonNull
+  private static ZipException unsupportedMethod(@NonNull ArchiveEntry entry) {
+    return new ZipException(String.format(
+        "Illegal archive entry: Unsupported compression method: %d: %s", entry.getMethod(),
+        entry.getName()));
+  }
+
+  private static void verifyChecksum(@NonNull ArchiveEntry entry, @NonNull CRC32 crc)
+      throws ZipException {
+    if (crc.getValue() != entry.getChecksum()) {
+      throw new ZipException(String.format(
+          "Illegal archive entry: Checksum mismatch (expected 0x%08X but got 0x%08X): %s",
+          entry.getChecksum(), crc.getValue(), entry.getName()));
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.basinmc.chloramine.archive.fs.ContainerFileSystem.Node;
+
+/**
+ * Exposes the basic attributes of a file or directory within a container file system.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class ContainerFileAttributes implements BasicFileAttributes {
+
+  private final Node node;
+  private final FileTime lastModifiedTime;
+
+  /**
+   * @param node a node.
+   * @param defaultTime a time which is reported when the node does not record a valid
+   * modification time.
+   */
+  ContainerFileAttributes(@NonNull Node node, @NonNull FileTime defaultTime) {
+    this.node = node;
+
+    var time = node.entry != null ? node.entry.getLastModifiedTime() : -1;
+    this.lastModifiedTime = time != -1 ? FileTime.fromMillis(time) : defaultTime;
+  }
+
+  /**
+   * Converts the requested attributes into a map as required by
+   * {@link java.nio.file.Files#readAttributes(java.nio.file.Path, String,
+   * java.nio.file.LinkOption...)}.
+   *
+   * @param attributes a comma separated list of attribute names or "*" to select all
+   * attributes.
+   * @return a map of attribute names and their respective values.
+   * @throws IllegalArgumentException when an unknown attribute is requested.
+   */
+  @NonNull
+  Map<String, Object> toMap(@NonNull String attributes) {
+    var map = new LinkedHashMap<String, Object>();
+
+    for (var name : attributes.split(",")) {
+      if ("*".equals(name)) {
+        for (var attribute : new String[]{"size", "creationTime", "lastAccessTime",
+            "lastModifiedTime", "isRegularFile", "isDirectory", "isSymbolicLink", "isOther",
+            "fileKey"}) {
+          map.put(attribute, this.getAttribute(attribute));
+        }
+        continue;
+      }
+
+      map.put(name, this.getAttribute(name));
+    }
+
+    return map;
+  }
+
+  @Nullable
+  private Object getAttribute(@NonNull String name) {
+    switch (name) {
+      case "size":
+        return this.size();
+      case "creationTime":
+        return this.creationTime();
+      case "lastAccessTime":
+        return this.lastAccessTime();
+      case "lastModifiedTime":
+        return this.lastModifiedTime();
+      case "isRegularFile":
+        return this.isRegularFile();
+      case "isDirectory":
+        return this.isDirectory();
+      case "isSymbolicLink":
+        return this.isSymbolicLink();
+      case "isOther":
+        return this.isOther();
+      case "fileKey":
+        return this.fileKey();
+      default:
+        throw new IllegalArgumentException("Illegal attribute: " + name);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public FileTime lastModifiedTime() {
+    return this.lastModifiedTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public FileTime lastAccessTime() {
+    return this.lastModifiedTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public FileTime creationTime() {
+    return this.lastModifiedTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isRegularFile() {
+    return !this.node.isDirectory();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isDirectory() {
+    return this.node.isDirectory();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isSymbolicLink() {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOther() {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long size() {
+    return this.node.isDirectory() || this.node.entry == null ? 0 : this.node.entry.getSize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object fileKey() {
+    return null;
+  }
+}
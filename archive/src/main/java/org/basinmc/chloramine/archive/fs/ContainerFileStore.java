@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.file.FileStore;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * Represents the (read-only) storage of a container file system.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class ContainerFileStore extends FileStore {
+
+  /**
+   * Defines the name of the only attribute view which is supported by container file systems.
+   */
+  static final String BASIC_VIEW = "basic";
+
+  private final ContainerFileSystem fileSystem;
+
+  /**
+   * @param fileSystem the file system which is represented by this store.
+   */
+  ContainerFileStore(@NonNull ContainerFileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String name() {
+    return this.fileSystem.getContainerPath().toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String type() {
+    return ContainerFileSystemProvider.SCHEME;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTotalSpace() {
+    return this.fileSystem.getArchive().getLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getUsableSpace() {
+    return 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getUnallocatedSpace() {
+    return 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean supportsFileAttributeView(@NonNull Class<? extends FileAttributeView> type) {
+    return type == BasicFileAttributeView.class;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean supportsFileAttributeView(@NonNull String name) {
+    return BASIC_VIEW.equals(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <V extends FileStoreAttributeView> V getFileStoreAttributeView(@NonNull Class<V> type) {
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object getAttribute(@NonNull String attribute) {
+    switch (attribute) {
+      case "totalSpace":
+        return this.getTotalSpace();
+      case "usableSpace":
+        return this.getUsableSpace();
+      case "unallocatedSpace":
+        return this.getUnallocatedSpace();
+      default:
+        throw new UnsupportedOperationException("Unsupported attribute: " + attribute);
+    }
+  }
+}
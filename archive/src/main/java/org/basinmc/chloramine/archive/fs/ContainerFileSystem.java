@@ -0,0 +1,558 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedDirectoryStreamException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.basinmc.chloramine.archive.ArchiveEntry;
+import org.basinmc.chloramine.archive.ZipArchive;
+import org.basinmc.chloramine.manifest.Container;
+
+/**
+ * <p>Exposes the archive which is embedded within a container as a read-only file system.</p>
+ *
+ * <p>The directory tree is derived from the central directory of the archive when the file
+ * system is opened. Directories which are not explicitly recorded within the archive are implied
+ * by the names of their children. File contents are read through to the content section of the
+ * container on demand.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ContainerFileSystem extends FileSystem {
+
+  private static final String GLOB_SYNTAX = "glob";
+  private static final String REGEX_SYNTAX = "regex";
+
+  private final ContainerFileSystemProvider provider;
+  private final Path containerPath;
+  private final Container container;
+  private final ZipArchive archive;
+  private final FileTime containerTime;
+  private final Map<String, Node> nodes = new HashMap<>();
+  private final ContainerFileStore fileStore = new ContainerFileStore(this);
+  private volatile boolean open = true;
+
+  /**
+   * @param provider the provider which opened the file system.
+   * @param containerPath the real path of the container file.
+   * @param container an open container (will be closed along with the file system).
+   * @throws IOException when reading the archive fails or the archive is malformed.
+   */
+  ContainerFileSystem(@NonNull ContainerFileSystemProvider provider, @NonNull Path containerPath,
+      @NonNull Container container) throws IOException {
+    this.provider = provider;
+    this.containerPath = containerPath;
+    this.container = container;
+    this.archive = ZipArchive.open(container);
+    this.containerTime = Files.getLastModifiedTime(containerPath);
+
+    this.nodes.put("", new Node("", null));
+    for (var entry : this.archive.getEntries()) {
+      this.register(entry);
+    }
+  }
+
+  /**
+   * Registers the specified entry along with all of its implied parent directories.
+   *
+   * @param entry an entry.
+   */
+  private void register(@NonNull ArchiveEntry entry) {
+    var name = new ContainerPath(this, entry.getName()).getEntryName();
+    if (name.isEmpty()) {
+      return;
+    }
+
+    var existing = this.nodes.get(name);
+    if (existing != null) {
+      // explicit directory entries replace their implied counterparts
+      if (existing.entry == null && entry.isDirectory()) {
+        this.nodes.put(name, new Node(name, entry, existing.children));
+      }
+      return;
+    }
+
+    this.nodes.put(name, new Node(name, entry));
+
+    var child = name;
+    while (true) {
+      var separator = child.lastIndexOf('/');
+      var parentName = separator == -1 ? "" : child.substring(0, separator);
+
+      var parent = this.nodes.get(parentName);
+      var implied = parent == null;
+      if (implied) {
+        parent = new Node(parentName, null);
+        this.nodes.put(parentName, parent);
+      } else if (!parent.isDirectory()) {
+        // malformed archives may record files which share their name with a directory
+        break;
+      }
+      parent.children.add(child.substring(separator + 1));
+
+      if (!implied || parentName.isEmpty()) {
+        break;
+      }
+      child = parentName;
+    }
+  }
+
+  /**
+   * Retrieves the real path of the container file which backs this file system.
+   *
+   * @return a path.
+   */
+  @NonNull
+  public Path getContainerPath() {
+    return this.containerPath;
+  }
+
+  /**
+   * Retrieves the container which backs this file system.
+   *
+   * @return a container.
+   */
+  @NonNull
+  public Container getContainer() {
+    return this.container;
+  }
+
+  /**
+   * Retrieves the archive which is exposed by this file system.
+   *
+   * @return an archive.
+   */
+  @NonNull
+  public ZipArchive getArchive() {
+    return this.archive;
+  }
+
+  /**
+   * Retrieves the time at which the container file has been modified last. This time is reported
+   * for directories which are not explicitly recorded within the archive.
+   *
+   * @return a file time.
+   */
+  @NonNull
+  FileTime getContainerTime() {
+    return this.containerTime;
+  }
+
+  /**
+   * Retrieves the node which corresponds to the specified path.
+   *
+   * @param path a path.
+   * @return a node.
+   * @throws NoSuchFileException when no such file or directory exists.
+   */
+  @NonNull
+  Node getNode(@NonNull ContainerPath path) throws NoSuchFileException {
+    this.ensureOpen();
+
+    var node = this.nodes.get(path.getEntryName());
+    if (node == null) {
+      throw new NoSuchFileException(path.toString());
+    }
+    return node;
+  }
+
+  /**
+   * Evaluates whether the specified path refers to an existing file or directory.
+   *
+   * @param path a path.
+   * @return true if exists, false otherwise.
+   */
+  boolean exists(@NonNull ContainerPath path) {
+    this.ensureOpen();
+    return this.nodes.containsKey(path.getEntryName());
+  }
+
+  /**
+   * Creates a new channel which reads the contents of the specified file.
+   *
+   * @param path a path.
+   * @return a read-only channel.
+   * @throws IOException when no such file exists, the path refers to a directory or reading the
+   * entry fails.
+   */
+  @NonNull
+  SeekableByteChannel newByteChannel(@NonNull ContainerPath path) throws IOException {
+    return this.archive.newChannel(this.getFile(path));
+  }
+
+  /**
+   * Creates a new input stream which reads the contents of the specified file.
+   *
+   * @param path a path.
+   * @return an input stream.
+   * @throws IOException when no such file exists, the path refers to a directory or reading the
+   * entry fails.
+   */
+  @NonNull
+  InputStream newInputStream(@NonNull ContainerPath path) throws IOException {
+    return this.archive.newInputStream(this.getFile(path));
+  }
+
+  @NonNull
+  private ArchiveEntry getFile(@NonNull ContainerPath path) throws IOException {
+    var node = this.getNode(path);
+    if (node.isDirectory()) {
+      throw new FileSystemException(path.toString(), null, "Is a directory");
+    }
+    return node.entry;
+  }
+
+  /**
+   * Creates a new stream which iterates over the children of the specified directory.
+   *
+   * @param path a directory path.
+   * @param filter a filter which selects the returned children.
+   * @return a directory stream.
+   * @throws IOException when no such directory exists.
+   */
+  @NonNull
+  DirectoryStream<Path> newDirectoryStream(@NonNull ContainerPath path,
+      @NonNull Filter<? super Path> filter) throws IOException {
+    var node = this.getNode(path);
+    if (!node.isDirectory()) {
+      throw new NotDirectoryException(path.toString());
+    }
+
+    var children = new ArrayList<Path>(node.children.size());
+    for (var name : node.children) {
+      var child = path.resolve(name);
+      if (filter.accept(child)) {
+        children.add(child);
+      }
+    }
+
+    return new DirectoryStream<>() {
+      private boolean closed;
+      private boolean iterated;
+
+      @Override
+      public Iterator<Path> iterator() {
+        if (this.closed) {
+          throw new ClosedDirectoryStreamException();
+        }
+        if (this.iterated) {
+          throw new IllegalStateException("Directory stream has already been iterated");
+        }
+
+        this.iterated = true;
+        return Collections.unmodifiableList(children).iterator();
+      }
+
+      @Override
+      public void close() {
+        this.closed = true;
+      }
+    };
+  }
+
+  private void ensureOpen() {
+    if (!this.open) {
+      throw new ClosedFileSystemException();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public ContainerFileSystemProvider provider() {
+    return this.provider;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    if (!this.open) {
+      return;
+    }
+
+    this.open = false;
+    try {
+      this.container.close();
+    } finally {
+      this.provider.remove(this);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.open;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getSeparator() {
+    return "/";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Iterable<Path> getRootDirectories() {
+    this.ensureOpen();
+    return Collections.singletonList(new ContainerPath(this, "/"));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Iterable<FileStore> getFileStores() {
+    this.ensureOpen();
+    return Collections.singletonList(this.fileStore);
+  }
+
+  /**
+   * Retrieves the file store which represents the container.
+   *
+   * @return a file store.
+   */
+  @NonNull
+  ContainerFileStore getFileStore() {
+    this.ensureOpen();
+    return this.fileStore;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Set<String> supportedFileAttributeViews() {
+    return Collections.singleton(ContainerFileStore.BASIC_VIEW);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public ContainerPath getPath(@NonNull String first, @NonNull String... more) {
+    if (more.length == 0) {
+      return new ContainerPath(this, first);
+    }
+
+    var path = new StringBuilder(first);
+    for (var segment : more) {
+      if (!segment.isEmpty()) {
+        path.append('/').append(segment);
+      }
+    }
+    return new ContainerPath(this, path.toString());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public PathMatcher getPathMatcher(@NonNull String syntaxAndPattern) {
+    var separator = syntaxAndPattern.indexOf(':');
+    if (separator == -1) {
+      throw new IllegalArgumentException(
+          "Illegal pattern: Expected syntax:pattern but got " + syntaxAndPattern);
+    }
+
+    var syntax = syntaxAndPattern.substring(0, separator);
+    var expression = syntaxAndPattern.substring(separator + 1);
+
+    Pattern pattern;
+    if (GLOB_SYNTAX.equalsIgnoreCase(syntax)) {
+      pattern = Pattern.compile(toRegex(expression));
+    } else if (REGEX_SYNTAX.equalsIgnoreCase(syntax)) {
+      pattern = Pattern.compile(expression);
+    } else {
+      throw new UnsupportedOperationException("Unsupported pattern syntax: " + syntax);
+    }
+
+    return (path) -> pattern.matcher(path.toString()).matches();
+  }
+
+  /**
+   * Converts a glob into an equivalent regular expression.
+   *
+   * @param glob a glob.
+   * @return a regular expression.
+   */
+  @NonNull
+  static String toRegex(@NonNull String glob) {
+    var regex = new StringBuilder("^");
+    var group = false;
+
+    for (var i = 0; i < glob.length(); ++i) {
+      var c = glob.charAt(i);
+
+      switch (c) {
+        case '\\':
+          if (++i == glob.length()) {
+            throw new IllegalArgumentException("Illegal glob: Trailing escape character");
+          }
+          regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+          break;
+        case '*':
+          if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+            regex.append(".*");
+            ++i;
+          } else {
+            regex.append("[^/]*");
+          }
+          break;
+        case '?':
+          regex.append("[^/]");
+          break;
+        case '[':
+          var end = glob.indexOf(']', i + 1);
+          if (end == -1) {
+            throw new IllegalArgumentException("Illegal glob: Unterminated character class");
+          }
+
+          var characters = glob.substring(i + 1, end);
+          regex.append('[');
+          if (characters.startsWith("!")) {
+            regex.append('^');
+            characters = characters.substring(1);
+          }
+          regex.append(characters.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+          i = end;
+          break;
+        case '{':
+          if (group) {
+            throw new IllegalArgumentException("Illegal glob: Nested groups are not supported");
+          }
+          regex.append("(?:");
+          group = true;
+          break;
+        case '}':
+          if (!group) {
+            throw new IllegalArgumentException("Illegal glob: Unexpected end of group");
+          }
+          regex.append(')');
+          group = false;
+          break;
+        case ',':
+          regex.append(group ? "|" : ",");
+          break;
+        default:
+          if (".^$+()|".indexOf(c) != -1) {
+            regex.append('\\');
+          }
+          regex.append(c);
+      }
+    }
+
+    if (group) {
+      throw new IllegalArgumentException("Illegal glob: Unterminated group");
+    }
+    return regex.append('$').toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public UserPrincipalLookupService getUserPrincipalLookupService() {
+    throw new UnsupportedOperationException("Container file systems do not support principals");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WatchService newWatchService() {
+    throw new UnsupportedOperationException("Container file systems cannot be watched");
+  }
+
+  /**
+   * Represents a single file or directory within the file system.
+   */
+  static final class Node {
+
+    final String name;
+    final ArchiveEntry entry;
+    final Set<String> children;
+
+    Node(@NonNull String name, @Nullable ArchiveEntry entry) {
+      this(name, entry, entry == null || entry.isDirectory() ? new TreeSet<>() : null);
+    }
+
+    Node(@NonNull String name, @Nullable ArchiveEntry entry, @Nullable Set<String> children) {
+      this.name = name;
+      this.entry = entry;
+      this.children = children;
+    }
+
+    /**
+     * Evaluates whether this node represents a directory.
+     *
+     * @return true if directory, false otherwise.
+     */
+    boolean isDirectory() {
+      return this.children != null;
+    }
+  }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+
+/**
+ * <p>Provides read-only file systems which expose the archive that is embedded within a
+ * container.</p>
+ *
+ * <p>File systems are identified by URIs of the form {@code bec:<container uri>!/<path>} (for
+ * instance {@code bec:file:///extensions/example.bec!/META-INF/MANIFEST.MF}) and must be opened
+ * explicitly via {@link java.nio.file.FileSystems#newFileSystem(URI, Map)} or
+ * {@link java.nio.file.FileSystems#newFileSystem(Path, ClassLoader)}. When a public key is
+ * passed via the {@link #KEY_ATTRIBUTE} environment attribute, the container signature is
+ * verified when the file system is opened and all contents are verified against the container
+ * hash tree as they are read.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ContainerFileSystemProvider extends FileSystemProvider {
+
+  /**
+   * Defines the URI scheme which identifies container file systems.
+   */
+  public static final String SCHEME = "bec";
+
+  /**
+   * Defines the environment attribute which carries the {@link PublicKey} against which opened
+   * containers are authenticated.
+   */
+  public static final String KEY_ATTRIBUTE = "key";
+
+  private static final String ENTRY_SEPARATOR = "!/";
+
+  private final Map<Path, ContainerFileSystem> fileSystems = new HashMap<>();
+
+  /**
+   * Extracts the path of the container file from a file system URI.
+   *
+   * @param uri a file system URI.
+   * @return a container path.
+   * @throws IllegalArgumentException when the URI is malformed.
+   */
+  @NonNull
+  private static Path getContainerPath(@NonNull URI uri) {
+    if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+      throw new IllegalArgumentException("Illegal URI: Expected scheme " + SCHEME + ": " + uri);
+    }
+
+    var part = uri.getRawSchemeSpecificPart();
+    var separator = part.indexOf(ENTRY_SEPARATOR);
+    if (separator != -1) {
+      part = part.substring(0, separator);
+    }
+
+    try {
+      return Paths.get(URI.create(part)).toAbsolutePath().normalize();
+    } catch (FileSystemNotFoundException ex) {
+      throw new IllegalArgumentException("Illegal URI: Unsupported container location: " + uri,
+          ex);
+    }
+  }
+
+  /**
+   * Extracts the path of a file within the container from a file system URI.
+   *
+   * @param uri a file system URI.
+   * @return an absolute path string.
+   */
+  @NonNull
+  private static String getEntryPath(@NonNull URI uri) {
+    var part = uri.getRawSchemeSpecificPart();
+    var separator = part.indexOf(ENTRY_SEPARATOR);
+    if (separator == -1) {
+      return "/";
+    }
+
+    return URI.create(part.substring(separator + 1)).getPath();
+  }
+
+  @NonNull
+  private static ContainerPath check(@NonNull Path path) {
+    if (!(path instanceof ContainerPath)) {
+      throw new ProviderMismatchException();
+    }
+
+    return (ContainerPath) path;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getScheme() {
+    return SCHEME;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public FileSystem newFileSystem(@NonNull URI uri, @NonNull Map<String, ?> env)
+      throws IOException {
+    return this.open(getContainerPath(uri), env);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public FileSystem newFileSystem(@NonNull Path path, @NonNull Map<String, ?> env)
+      throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var magicNumber = ByteBuffer.allocate(4);
+      if (channel.read(magicNumber, 0) != 4 || magicNumber.getInt(0) != Manifest.MAGIC_NUMBER) {
+        throw new UnsupportedOperationException("Not a container: " + path);
+      }
+    }
+
+    return this.open(path.toAbsolutePath().normalize(), env);
+  }
+
+  /**
+   * Opens a file system for the specified container file.
+   *
+   * @param path a container path.
+   * @param env a map of provider specific attributes.
+   * @return a file system.
+   * @throws IOException when opening the container or reading its archive fails.
+   * @throws FileSystemAlreadyExistsException when a file system for the container is already
+   * open.
+   */
+  @NonNull
+  private ContainerFileSystem open(@NonNull Path path, @NonNull Map<String, ?> env)
+      throws IOException {
+    var key = env.get(KEY_ATTRIBUTE);
+    if (key != null && !(key instanceof PublicKey)) {
+      throw new IllegalArgumentException(String.format(
+          "Illegal environment: Expected %s to be a public key but got %s", KEY_ATTRIBUTE,
+          key.getClass().getName()));
+    }
+
+    var realPath = path.toRealPath();
+    synchronized (this.fileSystems) {
+      if (this.fileSystems.containsKey(realPath)) {
+        throw new FileSystemAlreadyExistsException(realPath.toString());
+      }
+
+      Container container;
+      try {
+        container = Container.open(realPath, (PublicKey) key);
+      } catch (ManifestException ex) {
+        throw new IOException("Illegal container: " + ex.getMessage(), ex);
+      }
+
+      ContainerFileSystem fileSystem;
+      try {
+        fileSystem = new ContainerFileSystem(this, realPath, container);
+      } catch (IOException | RuntimeException ex) {
+        container.close();
+        throw ex;
+      }
+
+      this.fileSystems.put(realPath, fileSystem);
+      return fileSystem;
+    }
+  }
+
+  /**
+   * Removes a closed file system from the set of open file systems.
+   *
+   * @param fileSystem a file system.
+   */
+  void remove(@NonNull ContainerFileSystem fileSystem) {
+    synchronized (this.fileSystems) {
+      this.fileSystems.remove(fileSystem.getContainerPath(), fileSystem);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public FileSystem getFileSystem(@NonNull URI uri) {
+    var path = getContainerPath(uri);
+
+    ContainerFileSystem fileSystem;
+    synchronized (this.fileSystems) {
+      fileSystem = this.fileSystems.get(path);
+      if (fileSystem == null) {
+        try {
+          fileSystem = this.fileSystems.get(path.toRealPath());
+        } catch (IOException ignore) {
+          // files which cannot be resolved cannot have an open file system either
+        }
+      }
+    }
+
+    if (fileSystem == null) {
+      throw new FileSystemNotFoundException(path.toString());
+    }
+    return fileSystem;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path getPath(@NonNull URI uri) {
+    return this.getFileSystem(uri).getPath(getEntryPath(uri));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public SeekableByteChannel newByteChannel(@NonNull Path path,
+      @NonNull Set<? extends OpenOption> options, @NonNull FileAttribute<?>... attrs)
+      throws IOException {
+    checkOptions(options);
+    var containerPath = check(path);
+    return containerPath.getFileSystem().newByteChannel(containerPath);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public InputStream newInputStream(@NonNull Path path, @NonNull OpenOption... options)
+      throws IOException {
+    checkOptions(Set.of(options));
+    var containerPath = check(path);
+    return containerPath.getFileSystem().newInputStream(containerPath);
+  }
+
+  /**
+   * Ensures that none of the passed options require write access.
+   *
+   * @param options a set of options.
+   * @throws ReadOnlyFileSystemException when write access is requested.
+   */
+  private static void checkOptions(@NonNull Set<? extends OpenOption> options) {
+    for (var option : options) {
+      if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+        throw new ReadOnlyFileSystemException();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public DirectoryStream<Path> newDirectoryStream(@NonNull Path dir,
+      @NonNull Filter<? super Path> filter) throws IOException {
+    var path = check(dir);
+    return path.getFileSystem().newDirectoryStream(path, filter);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void createDirectory(@NonNull Path dir, @NonNull FileAttribute<?>... attrs) {
+    throw new ReadOnlyFileSystemException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void delete(@NonNull Path path) {
+    throw new ReadOnlyFileSystemException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void copy(@NonNull Path source, @NonNull Path target, @NonNull CopyOption... options) {
+    throw new ReadOnlyFileSystemException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void move(@NonNull Path source, @NonNull Path target, @NonNull CopyOption... options) {
+    throw new ReadOnlyFileSystemException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isSameFile(@NonNull Path path, @NonNull Path path2) throws IOException {
+    if (path.equals(path2)) {
+      return true;
+    }
+    if (!(path2 instanceof ContainerPath)
+        || check(path).getFileSystem() != ((ContainerPath) path2).getFileSystem()) {
+      return false;
+    }
+
+    return path.toRealPath().equals(path2.toRealPath());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isHidden(@NonNull Path path) {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public FileStore getFileStore(@NonNull Path path) throws IOException {
+    var containerPath = check(path);
+    containerPath.getFileSystem().getNode(containerPath);
+    return containerPath.getFileSystem().getFileStore();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void checkAccess(@NonNull Path path, @NonNull AccessMode... modes) throws IOException {
+    var containerPath = check(path);
+    containerPath.getFileSystem().getNode(containerPath);
+
+    for (var mode : modes) {
+      if (mode == AccessMode.WRITE) {
+        throw new AccessDeniedException(path.toString(), null, "Read-only file system");
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <V extends FileAttributeView> V getFileAttributeView(@NonNull Path path,
+      @NonNull Class<V> type, @NonNull LinkOption... options) {
+    var containerPath = check(path);
+    if (type != BasicFileAttributeView.class) {
+      return null;
+    }
+
+    return (V) new BasicFileAttributeView() {
+      @Override
+      public String name() {
+        return ContainerFileStore.BASIC_VIEW;
+      }
+
+      @Override
+      public BasicFileAttributes readAttributes() throws IOException {
+        return ContainerFileSystemProvider.this
+            .readAttributes(containerPath, BasicFileAttributes.class);
+      }
+
+      @Override
+      public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime,
+          FileTime createTime) {
+        throw new ReadOnlyFileSystemException();
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  @SuppressWarnings("unchecked")
+  public <A extends BasicFileAttributes> A readAttributes(@NonNull Path path,
+      @NonNull Class<A> type, @NonNull LinkOption... options) throws IOException {
+    if (type != BasicFileAttributes.class) {
+      throw new UnsupportedOperationException("Unsupported attribute type: " + type.getName());
+    }
+
+    return (A) this.readAttributes(check(path));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Map<String, Object> readAttributes(@NonNull Path path, @NonNull String attributes,
+      @NonNull LinkOption... options) throws IOException {
+    var separator = attributes.indexOf(':');
+    if (separator != -1) {
+      var view = attributes.substring(0, separator);
+      if (!ContainerFileStore.BASIC_VIEW.equals(view)) {
+        throw new UnsupportedOperationException("Unsupported attribute view: " + view);
+      }
+
+      attributes = attributes.substring(separator + 1);
+    }
+
+    return this.readAttributes(check(path)).toMap(attributes);
+  }
+
+  @NonNull
+  private ContainerFileAttributes readAttributes(@NonNull ContainerPath path)
+      throws IOException {
+    var fileSystem = path.getFileSystem();
+    return new ContainerFileAttributes(fileSystem.getNode(path), fileSystem.getContainerTime());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setAttribute(@NonNull Path path, @NonNull String attribute, Object value,
+      @NonNull LinkOption... options) {
+    throw new ReadOnlyFileSystemException();
+  }
+}
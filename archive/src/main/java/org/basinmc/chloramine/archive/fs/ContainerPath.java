@@ -0,0 +1,498 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchEvent.Modifier;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Represents a path within a container file system.</p>
+ *
+ * <p>Paths use forward slashes as their separator and are stored without redundant separators.
+ * Absolute paths are resolved relative to the root of the embedded archive.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class ContainerPath implements Path {
+
+  private static final String[] EMPTY = new String[0];
+
+  private final ContainerFileSystem fileSystem;
+  private final String path;
+  private final String[] names;
+
+  /**
+   * @param fileSystem the file system to which this path belongs.
+   * @param path a path string.
+   */
+  ContainerPath(@NonNull ContainerFileSystem fileSystem, @NonNull String path) {
+    this.fileSystem = fileSystem;
+
+    var absolute = path.startsWith("/");
+    this.names = Arrays.stream(path.split("/"))
+        .filter((n) -> !n.isEmpty())
+        .toArray(String[]::new);
+    this.path = (absolute ? "/" : "") + String.join("/", this.names);
+  }
+
+  private ContainerPath(@NonNull ContainerFileSystem fileSystem, boolean absolute,
+      @NonNull String[] names) {
+    this.fileSystem = fileSystem;
+    this.names = names;
+    this.path = (absolute ? "/" : "") + String.join("/", names);
+  }
+
+  /**
+   * Converts an arbitrary path into a path of this file system.
+   *
+   * @param path a path.
+   * @return a container path.
+   * @throws ProviderMismatchException when the path belongs to a different provider.
+   */
+  @NonNull
+  private ContainerPath check(@NonNull Path path) {
+    if (!(path instanceof ContainerPath)) {
+      throw new ProviderMismatchException();
+    }
+
+    return (ContainerPath) path;
+  }
+
+  /**
+   * Retrieves the name of the archive entry to which this path refers.
+   *
+   * @return an entry name (without leading or trailing separators).
+   */
+  @NonNull
+  String getEntryName() {
+    return String.join("/", ((ContainerPath) this.toAbsolutePath().normalize()).names);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public ContainerFileSystem getFileSystem() {
+    return this.fileSystem;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAbsolute() {
+    return this.path.startsWith("/");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public Path getRoot() {
+    return this.isAbsolute() ? new ContainerPath(this.fileSystem, true, EMPTY) : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public Path getFileName() {
+    if (this.names.length == 0) {
+      return this.isAbsolute() ? null : this;
+    }
+
+    return new ContainerPath(this.fileSystem, false,
+        new String[]{this.names[this.names.length - 1]});
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public Path getParent() {
+    if (this.names.length == 0 || (this.names.length == 1 && !this.isAbsolute())) {
+      return null;
+    }
+
+    return new ContainerPath(this.fileSystem, this.isAbsolute(),
+        Arrays.copyOf(this.names, this.names.length - 1));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getNameCount() {
+    return this.path.isEmpty() ? 1 : this.names.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path getName(int index) {
+    return this.subpath(index, index + 1);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path subpath(int beginIndex, int endIndex) {
+    if (this.path.isEmpty() && beginIndex == 0 && endIndex == 1) {
+      return this;
+    }
+    if (beginIndex < 0 || endIndex > this.names.length || beginIndex >= endIndex) {
+      throw new IllegalArgumentException(String.format(
+          "Illegal subpath: [%d, %d) exceeds name count %d", beginIndex, endIndex,
+          this.names.length));
+    }
+
+    return new ContainerPath(this.fileSystem, false,
+        Arrays.copyOfRange(this.names, beginIndex, endIndex));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean startsWith(@NonNull Path other) {
+    if (!(other instanceof ContainerPath)) {
+      return false;
+    }
+
+    var path = (ContainerPath) other;
+    if (path.fileSystem != this.fileSystem || path.isAbsolute() != this.isAbsolute()
+        || path.names.length > this.names.length) {
+      return false;
+    }
+    if (path.path.isEmpty()) {
+      return this.path.isEmpty();
+    }
+
+    for (var i = 0; i < path.names.length; ++i) {
+      if (!path.names[i].equals(this.names[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean startsWith(@NonNull String other) {
+    return this.startsWith(this.fileSystem.getPath(other));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean endsWith(@NonNull Path other) {
+    if (!(other instanceof ContainerPath)) {
+      return false;
+    }
+
+    var path = (ContainerPath) other;
+    if (path.fileSystem != this.fileSystem || path.names.length > this.names.length) {
+      return false;
+    }
+    if (path.isAbsolute()) {
+      return this.equals(path);
+    }
+    if (path.path.isEmpty()) {
+      return this.path.isEmpty();
+    }
+
+    var offset = this.names.length - path.names.length;
+    for (var i = 0; i < path.names.length; ++i) {
+      if (!path.names[i].equals(this.names[offset + i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean endsWith(@NonNull String other) {
+    return this.endsWith(this.fileSystem.getPath(other));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path normalize() {
+    var names = new ArrayList<String>(this.names.length);
+
+    for (var name : this.names) {
+      if (".".equals(name)) {
+        continue;
+      }
+
+      if ("..".equals(name)) {
+        if (!names.isEmpty() && !"..".equals(names.get(names.size() - 1))) {
+          names.remove(names.size() - 1);
+          continue;
+        }
+        if (this.isAbsolute()) {
+          // the root does not have a parent
+          continue;
+        }
+      }
+
+      names.add(name);
+    }
+
+    return new ContainerPath(this.fileSystem, this.isAbsolute(), names.toArray(EMPTY));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path resolve(@NonNull Path other) {
+    var path = this.check(other);
+    if (path.isAbsolute()) {
+      return path;
+    }
+    if (path.path.isEmpty()) {
+      return this;
+    }
+
+    var names = Arrays.copyOf(this.names, this.names.length + path.names.length);
+    System.arraycopy(path.names, 0, names, this.names.length, path.names.length);
+    return new ContainerPath(this.fileSystem, this.isAbsolute(), names);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path resolve(@NonNull String other) {
+    return this.resolve(this.fileSystem.getPath(other));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path resolveSibling(@NonNull Path other) {
+    var parent = this.getParent();
+    return parent == null ? this.check(other) : parent.resolve(other);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path resolveSibling(@NonNull String other) {
+    return this.resolveSibling(this.fileSystem.getPath(other));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path relativize(@NonNull Path other) {
+    var path = this.check(other);
+    if (path.isAbsolute() != this.isAbsolute()) {
+      throw new IllegalArgumentException("Illegal path: Cannot relativize " + other
+          + " against " + this);
+    }
+
+    var common = 0;
+    while (common < this.names.length && common < path.names.length
+        && this.names[common].equals(path.names[common])) {
+      ++common;
+    }
+
+    var names = new ArrayList<String>();
+    for (var i = common; i < this.names.length; ++i) {
+      names.add("..");
+    }
+    names.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+
+    return new ContainerPath(this.fileSystem, false, names.toArray(EMPTY));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public URI toUri() {
+    try {
+      var path = new URI(null, null, this.toAbsolutePath().toString(), null).getRawPath();
+      return URI.create(ContainerFileSystemProvider.SCHEME + ":"
+          + this.fileSystem.getContainerPath().toUri() + "!" + path);
+    } catch (URISyntaxException ex) {
+      throw new IllegalStateException("Illegal path: " + this, ex);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path toAbsolutePath() {
+    if (this.isAbsolute()) {
+      return this;
+    }
+
+    return new ContainerPath(this.fileSystem, true, this.names);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Path toRealPath(@NonNull LinkOption... options) throws IOException {
+    var path = this.toAbsolutePath().normalize();
+    if (!this.fileSystem.exists((ContainerPath) path)) {
+      throw new NoSuchFileException(this.toString());
+    }
+
+    return path;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public File toFile() {
+    throw new UnsupportedOperationException("Container paths cannot be converted to files");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WatchKey register(@NonNull WatchService watcher, @NonNull Kind<?>[] events,
+      Modifier... modifiers) {
+    throw new UnsupportedOperationException("Container file systems cannot be watched");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WatchKey register(@NonNull WatchService watcher, @NonNull Kind<?>... events) {
+    return this.register(watcher, events, new Modifier[0]);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Iterator<Path> iterator() {
+    return new Iterator<>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return this.index < ContainerPath.this.getNameCount();
+      }
+
+      @Override
+      public Path next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        return ContainerPath.this.getName(this.index++);
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int compareTo(@NonNull Path other) {
+    return this.path.compareTo(this.check(other).path);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ContainerPath)) {
+      return false;
+    }
+    ContainerPath that = (ContainerPath) o;
+    return this.fileSystem == that.fileSystem &&
+        this.path.equals(that.path);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return this.path.hashCode();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return this.path;
+  }
+}
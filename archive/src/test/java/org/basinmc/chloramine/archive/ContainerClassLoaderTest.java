@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.function.Supplier;
+import java.util.jar.Attributes.Name;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import org.basinmc.chloramine.archive.fixture.Greeter;
+import org.basinmc.chloramine.archive.fs.ContainerFileSystemProvider;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.MappedContainer;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ContainerClassLoaderTest {
+
+  private static final String CLASS_NAME = Greeter.class.getName();
+  private static final String RESOURCE_NAME = "data/hello.txt";
+  private static final byte[] RESOURCE = "Hello World\n".getBytes(StandardCharsets.UTF_8);
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static byte[] createArchive() throws IOException {
+    var manifest = new java.util.jar.Manifest();
+    manifest.getMainAttributes().put(Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(Name.IMPLEMENTATION_VERSION, "1.2.3");
+
+    byte[] classData;
+    try (var inputStream = Greeter.class.getResourceAsStream("Greeter.class")) {
+      classData = inputStream.readAllBytes();
+    }
+
+    var outputStream = new ByteArrayOutputStream();
+    // archives may be preceded by arbitrary data (e.g. a launcher script)
+    outputStream.write("#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+
+    try (var jarOutputStream = new JarOutputStream(outputStream, manifest)) {
+      jarOutputStream.putNextEntry(new ZipEntry(CLASS_NAME.replace('.', '/') + ".class"));
+      jarOutputStream.write(classData);
+      jarOutputStream.closeEntry();
+
+      var crc = new CRC32();
+      crc.update(RESOURCE);
+
+      var entry = new ZipEntry(RESOURCE_NAME);
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(RESOURCE.length);
+      entry.setCrc(crc.getValue());
+      jarOutputStream.putNextEntry(entry);
+      jarOutputStream.write(RESOURCE);
+      jarOutputStream.closeEntry();
+    }
+
+    return outputStream.toByteArray();
+  }
+
+  private static void write(Path file, ContainerWriter writer)
+      throws IOException, ManifestException {
+    writer.write(createManifest(), new ByteArrayInputStream(createArchive()), file);
+  }
+
+  private static void assertLoader(ContainerClassLoader loader) throws Exception {
+    var type = loader.loadClass(CLASS_NAME);
+    assertSame(loader, type.getClassLoader());
+    assertSame(type, loader.loadClass(CLASS_NAME));
+    assertEquals("1.2.3", type.getPackage().getImplementationVersion());
+
+    @SuppressWarnings("unchecked")
+    var instance = (Supplier<String>) type.getConstructor().newInstance();
+    assertEquals("Hello from org.basinmc.test", instance.get());
+
+    var url = loader.getResource(RESOURCE_NAME);
+    assertNotNull(url);
+    assertEquals(ContainerClassLoader.URL_PROTOCOL, url.getProtocol());
+    assertNotEquals(ContainerFileSystemProvider.SCHEME, url.toURI().getScheme());
+    try (var inputStream = url.openStream()) {
+      assertArrayEquals(RESOURCE, inputStream.readAllBytes());
+    }
+    try (var inputStream = loader.getResourceAsStream(CLASS_NAME.replace('.', '/') + ".class")) {
+      assertNotNull(inputStream);
+      assertTrue(inputStream.readAllBytes().length > 0);
+    }
+    assertEquals(Collections.list(loader.getResources(RESOURCE_NAME)),
+        Collections.singletonList(url));
+
+    assertNull(loader.getResource("data/missing.txt"));
+    assertFalse(loader.getResources("data/missing.txt").hasMoreElements());
+    assertThrows(ClassNotFoundException.class,
+        () -> loader.loadClass("org.basinmc.chloramine.archive.fixture.Missing"));
+  }
+
+  /**
+   * Evaluates whether classes and resources are loaded from stored containers.
+   */
+  @Test
+  public void testContainer() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, new ContainerWriter());
+
+      try (var container = Container.open(file)) {
+        var loader = ContainerClassLoader.of(container, null);
+        assertEquals("org.basinmc.test", loader.getName());
+        assertEquals(3, loader.getArchive().size());
+
+        assertLoader(loader);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether classes and resources are loaded from compressed containers.
+   */
+  @Test
+  public void testCompressedContainer() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, new ContainerWriter(BufferPool.getDefault(), new BlockCompressor()));
+
+      try (var container = Container.open(file)) {
+        assertNotNull(container.getCompressedContent());
+        assertLoader(ContainerClassLoader.of(container, null));
+      }
+
+      assertLoader(ContainerClassLoader.of(MappedContainer.open(file), null));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether stored entries of mapped containers are exposed without copying.
+   */
+  @Test
+  public void testMappedContainer() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, new ContainerWriter());
+
+      var container = MappedContainer.open(file);
+      var loader = ContainerClassLoader.of(container, null);
+      assertLoader(loader);
+
+      var archive = loader.getArchive();
+      var buffer = archive.getBuffer(archive.getEntry(RESOURCE_NAME).orElseThrow());
+      assertTrue(buffer.isReadOnly());
+      assertTrue(buffer.isDirect());
+      assertEquals(RESOURCE.length, buffer.remaining());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether corrupted entries are rejected.
+   */
+  @Test
+  public void testCorrupted() throws IOException {
+    var data = createArchive();
+    var archive = ZipArchive.open(ByteBuffer.wrap(data));
+    var entry = archive.getEntry(RESOURCE_NAME).orElseThrow();
+    assertArrayEquals(RESOURCE, archive.read(entry));
+
+    var index = new String(data, StandardCharsets.ISO_8859_1).indexOf("Hello World");
+    data[index] ^= 0xFF;
+    assertThrows(ZipException.class, () -> archive.read(entry));
+
+    assertThrows(ZipException.class,
+        () -> ZipArchive.open(ByteBuffer.wrap(data, 0, data.length - 1)));
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.archive.fs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ContainerFileSystemTest {
+
+  private static final byte[] TEXT = "Hello World\n".getBytes();
+  private static final byte[] DATA = createData(200_000);
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static byte[] createData(int length) {
+    var data = new byte[length];
+    for (var i = 0; i < data.length; ++i) {
+      data[i] = (byte) ((i / 7) * 31);
+    }
+    return data;
+  }
+
+  private static byte[] createArchive() throws IOException {
+    var outputStream = new ByteArrayOutputStream();
+
+    try (var zipOutputStream = new ZipOutputStream(outputStream)) {
+      zipOutputStream.putNextEntry(new ZipEntry("data/"));
+      zipOutputStream.closeEntry();
+
+      var crc = new CRC32();
+      crc.update(TEXT);
+
+      var entry = new ZipEntry("data/hello.txt");
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(TEXT.length);
+      entry.setCrc(crc.getValue());
+      zipOutputStream.putNextEntry(entry);
+      zipOutputStream.write(TEXT);
+      zipOutputStream.closeEntry();
+
+      // the parent directory of this entry is implied
+      zipOutputStream.putNextEntry(new ZipEntry("data/nested/data.bin"));
+      zipOutputStream.write(DATA);
+      zipOutputStream.closeEntry();
+    }
+
+    return outputStream.toByteArray();
+  }
+
+  private static Path createContainer(ContainerWriter writer)
+      throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+    writer.write(createManifest(), new ByteArrayInputStream(createArchive()), file);
+    return file;
+  }
+
+  private static void assertFileSystem(Path file) throws IOException {
+    var uri = URI.create(ContainerFileSystemProvider.SCHEME + ":" + file.toUri());
+
+    try (var fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+      assertTrue(fileSystem.isReadOnly());
+      assertSame(fileSystem, FileSystems.getFileSystem(uri));
+      assertThrows(FileSystemAlreadyExistsException.class,
+          () -> FileSystems.newFileSystem(uri, Collections.emptyMap()));
+
+      var root = fileSystem.getPath("/");
+      List<String> paths;
+      try (var stream = Files.walk(root)) {
+        paths = stream.map(Path::toString).sorted().collect(Collectors.toList());
+      }
+      assertEquals(Arrays.asList("/", "/data", "/data/hello.txt", "/data/nested",
+          "/data/nested/data.bin"), paths);
+
+      var text = fileSystem.getPath("/data/hello.txt");
+      assertTrue(Files.isRegularFile(text));
+      assertEquals(TEXT.length, Files.size(text));
+      assertArrayEquals(TEXT, Files.readAllBytes(text));
+      assertTrue(Files.isDirectory(fileSystem.getPath("/data/nested")));
+      assertFalse(Files.exists(fileSystem.getPath("/data/missing.txt")));
+      assertThrows(NoSuchFileException.class,
+          () -> Files.readAllBytes(fileSystem.getPath("/data/missing.txt")));
+
+      var data = fileSystem.getPath("data", "nested", "data.bin");
+      assertArrayEquals(DATA, Files.readAllBytes(data));
+      try (var channel = Files.newByteChannel(data)) {
+        assertEquals(DATA.length, channel.size());
+
+        for (var position : new int[]{150_000, 1_000, 199_990}) {
+          var buffer = ByteBuffer.allocate(10);
+          channel.position(position);
+          while (buffer.hasRemaining()) {
+            channel.read(buffer);
+          }
+          assertArrayEquals(Arrays.copyOfRange(DATA, position, position + 10), buffer.array());
+        }
+      }
+
+      assertThrows(ReadOnlyFileSystemException.class, () -> Files.newOutputStream(text));
+      assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(text));
+
+      assertEquals(text, Paths.get(text.toUri()));
+      assertEquals(fileSystem.getPath("/data/hello.txt"),
+          fileSystem.getPath("/data/nested/../hello.txt").normalize());
+      assertEquals(fileSystem.getPath("../hello.txt"),
+          fileSystem.getPath("/data/nested").relativize(text));
+      assertEquals("hello.txt", text.getFileName().toString());
+      assertNull(root.getFileName());
+      var absolute = data.toAbsolutePath();
+      assertTrue(fileSystem.getPathMatcher("glob:/**/*.{txt,bin}").matches(absolute));
+      assertFalse(fileSystem.getPathMatcher("glob:/*/*.txt").matches(absolute));
+    }
+
+    assertThrows(FileSystemNotFoundException.class, () -> FileSystems.getFileSystem(uri));
+  }
+
+  /**
+   * Evaluates whether stored containers are exposed as file systems.
+   */
+  @Test
+  public void testFileSystem() throws IOException, ManifestException {
+    var file = createContainer(new ContainerWriter());
+
+    try {
+      assertFileSystem(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether compressed containers are exposed as file systems.
+   */
+  @Test
+  public void testCompressedFileSystem() throws IOException, ManifestException {
+    var file = createContainer(
+        new ContainerWriter(BufferPool.getDefault(), new BlockCompressor()));
+
+    try {
+      assertFileSystem(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether files which are not containers are ignored when opening file systems
+   * based on their path.
+   */
+  @Test
+  public void testNotContainer() throws IOException {
+    var file = Files.createTempFile("chloramine", ".txt");
+
+    try {
+      Files.write(file, TEXT);
+      assertThrows(UnsupportedOperationException.class,
+          () -> new ContainerFileSystemProvider().newFileSystem(file, Collections.emptyMap()));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -19,8 +19,10 @@ package org.basinmc.chloramine.cli;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.util.List;
 import org.basinmc.chloramine.cli.commands.CommandHandler;
+import org.basinmc.chloramine.cli.commands.EditCommand;
 import org.basinmc.chloramine.cli.commands.HelpCommand;
 import org.basinmc.chloramine.cli.commands.InfoCommand;
+import org.basinmc.chloramine.cli.commands.VerifyCommand;
 import org.basinmc.chloramine.cli.commands.VersionCommand;
 import org.basinmc.chloramine.cli.commands.WrapCommand;
 import org.fusesource.jansi.AnsiConsole;
@@ -35,8 +37,10 @@ import picocli.CommandLine.UnmatchedArgumentException;
     name = "chloramine",
     description = "Inspects, creates and modifies Basin Extension Containers (BECs)",
     subcommands = {
+        EditCommand.class,
         HelpCommand.class,
         InfoCommand.class,
+        VerifyCommand.class,
         VersionCommand.class,
         WrapCommand.class
     }
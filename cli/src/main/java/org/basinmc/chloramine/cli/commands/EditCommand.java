@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.cli.commands;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.basinmc.chloramine.cli.Chloramine;
+import org.basinmc.chloramine.manifest.ManifestEditor;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Modifies the metadata of an existing extension container file without rewriting its contents
+ * (where possible).
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@Command(
+    name = "edit",
+    aliases = "e",
+    description = "Modifies the metadata of an existing extension container"
+)
+public class EditCommand extends AbstractContainerCommand {
+
+  @Option(names = "target", description = "A target product")
+  private String productId;
+  @Option(names = "environment", description = "An extension environment")
+  private String environment;
+
+  @Option(names = "id", description = "A globally unique extension identifier")
+  private String extensionId;
+  @Option(names = "version", description = "An extension specific revision")
+  private String version;
+  @Option(names = "distribution-url", description = "URI for a distribution website")
+  private URI distributionUrl;
+  @Option(names = "documentation-url", description = "URI for a documentation website")
+  private URI documentationUrl;
+  @Option(names = "issue-reporting-url", description = "URI for an issue reporting tool")
+  private URI issueReportingUrl;
+  @Option(names = "author", description = "Appends one or more consistent authors")
+  private List<String> authors = new ArrayList<>();
+  @Option(names = "contributor", description = "Appends one or more previous contributors")
+  private List<String> contributors = new ArrayList<>();
+
+  @Option(names = "padding", description = "Bytes to reserve for future edits when the container needs to be relocated")
+  private long padding = ManifestEditor.DEFAULT_PADDING;
+  @Option(names = "align", description = "Aligns the content offset to a power of two when the container needs to be relocated")
+  private long alignment = 1;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(@NonNull Chloramine ctx) {
+    try {
+      var editor = new ManifestEditor(BufferPool.getDefault(), this.padding, this.alignment);
+      var result = editor.edit(this.containerPath, (b) -> {
+        if (this.productId != null) {
+          b.setProductIdentifier(this.productId);
+        }
+        if (this.environment != null) {
+          b.setEnvironmentType(this.environment);
+        }
+        if (this.extensionId != null) {
+          b.setIdentifier(this.extensionId);
+        }
+        if (this.version != null) {
+          b.setVersion(this.version);
+        }
+        if (this.distributionUrl != null) {
+          b.setDistributionUrl(this.distributionUrl);
+        }
+        if (this.documentationUrl != null) {
+          b.setDocumentationUrl(this.documentationUrl);
+        }
+        if (this.issueReportingUrl != null) {
+          b.setIssueReportingUrl(this.issueReportingUrl);
+        }
+
+        this.authors.forEach((name) -> b.addAuthor(name, null)); // TODO: Alias support
+        this.contributors.forEach((name) -> b.addContributor(name, null));
+      });
+
+      var manifest = result.getManifest();
+      if (result.isInPlace()) {
+        System.out.println(String.format("Updated manifest in place (%,d byte(s) of padding left)",
+            manifest.getPadding()));
+      } else {
+        System.out.println(String.format(
+            "Relocated container contents to make room for metadata (%,d byte(s) of padding)",
+            manifest.getPadding()));
+      }
+    } catch (IOException ex) {
+      System.err.println("Failed to modify container file: " + ex.getMessage());
+      System.exit(1);
+    } catch (ManifestException ex) {
+      System.err.println("Malformed container manifest: " + ex.getMessage());
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.cli.commands;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Provides utility methods for reading keys in their DER or PEM encoded form.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class KeyFiles {
+
+  /**
+   * Defines the prefix which identifies PEM encoded key files.
+   */
+  private static final String PEM_PREFIX = "-----BEGIN ";
+
+  private KeyFiles() {
+  }
+
+  /**
+   * Reads a PKCS#8 encoded private key.
+   *
+   * @param path a key file.
+   * @param algorithm the key algorithm (e.g. EC or RSA).
+   * @return a private key.
+   * @throws IOException when reading the file fails.
+   * @throws GeneralSecurityException when the key is malformed or the algorithm is not supported.
+   */
+  @NonNull
+  static PrivateKey readPrivateKey(@NonNull Path path, @NonNull String algorithm)
+      throws IOException, GeneralSecurityException {
+    return KeyFactory.getInstance(algorithm)
+        .generatePrivate(new PKCS8EncodedKeySpec(readEncoded(path)));
+  }
+
+  /**
+   * Reads an X.509 encoded public key.
+   *
+   * @param path a key file.
+   * @param algorithm the key algorithm (e.g. EC or RSA).
+   * @return a public key.
+   * @throws IOException when reading the file fails.
+   * @throws GeneralSecurityException when the key is malformed or the algorithm is not supported.
+   */
+  @NonNull
+  static PublicKey readPublicKey(@NonNull Path path, @NonNull String algorithm)
+      throws IOException, GeneralSecurityException {
+    return KeyFactory.getInstance(algorithm)
+        .generatePublic(new X509EncodedKeySpec(readEncoded(path)));
+  }
+
+  /**
+   * Reads the DER encoded form of a key from either a DER or PEM file.
+   */
+  @NonNull
+  private static byte[] readEncoded(@NonNull Path path) throws IOException {
+    var data = Files.readAllBytes(path);
+    var text = new String(data, StandardCharsets.US_ASCII);
+    if (!text.startsWith(PEM_PREFIX)) {
+      return data;
+    }
+
+    var encoded = new StringBuilder();
+    for (var line : text.split("\\r?\\n")) {
+      if (!line.startsWith("-----")) {
+        encoded.append(line.trim());
+      }
+    }
+    return Base64.getDecoder().decode(encoded.toString());
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.cli.commands;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.basinmc.chloramine.cli.Chloramine;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ManifestBatchReader;
+import org.basinmc.chloramine.manifest.auth.VerificationCache;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
+import org.basinmc.chloramine.manifest.error.MetadataException;
+import org.basinmc.chloramine.manifest.metadata.Dependency;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * <p>Verifies the integrity (and optionally the authenticity) of any amount of extension
+ * container files in parallel.</p>
+ *
+ * <p>Each container is checked for a valid header, section bounds which fit the actual file
+ * size, fully decodable metadata (including all of its strings, URLs and collections) as well as
+ * matching checksums, digests and signatures (where
+ * present). A summary is written to the standard error stream while failures are written to the
+ * standard output stream as tab separated lines (path, failure type and message) in order to
+ * permit further processing.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@Command(
+    name = "verify",
+    aliases = "v",
+    description = "Verifies the integrity of extension containers"
+)
+public class VerifyCommand implements CommandHandler {
+
+  /**
+   * Defines the characters which identify an input as a glob pattern.
+   */
+  private static final String GLOB_CHARACTERS = "*?[{";
+
+  @Parameters(paramLabel = "input", description = "Container files, directories (searched recursively) or glob patterns", arity = "1..*")
+  private List<String> inputs = new ArrayList<>();
+
+  @Option(names = "threads", description = "Amount of containers verified at the same time")
+  private int threads = Runtime.getRuntime().availableProcessors();
+  @Option(names = "key", description = "Requires all containers to be signed by the owner of an X.509 public key (DER or PEM)")
+  private Path keyPath;
+  @Option(names = "key-algorithm", description = "Algorithm of the public key (e.g. EC or RSA)")
+  private String keyAlgorithm = "EC";
+  @Option(names = "cache", description = "Skips containers which have been authenticated previously and remain unchanged")
+  private Path cachePath;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(@NonNull Chloramine ctx) throws Exception {
+    var exitCode = this.execute(System.out, System.err);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  /**
+   * Verifies all containers which match the passed inputs.
+   *
+   * @param out a stream which receives failure descriptions.
+   * @param err a stream which receives status messages and the summary.
+   * @return an exit code (zero when all containers pass verification).
+   * @throws Exception when reading the key, resolving the inputs or saving the cache fails.
+   */
+  int execute(@NonNull PrintStream out, @NonNull PrintStream err) throws Exception {
+    if (this.threads < 1) {
+      err.println("Illegal thread count: " + this.threads);
+      return 1;
+    }
+
+    PublicKey key = null;
+    if (this.keyPath != null) {
+      key = KeyFiles.readPublicKey(this.keyPath, this.keyAlgorithm);
+    }
+
+    VerificationCache cache = null;
+    if (this.cachePath != null) {
+      if (key == null) {
+        err.println("Verification caches require a public key");
+        return 1;
+      }
+
+      try {
+        cache = VerificationCache.load(this.cachePath);
+      } catch (IOException ex) {
+        err.println("Ignoring malformed verification cache: " + ex.getMessage());
+        cache = VerificationCache.empty();
+      }
+    }
+
+    var paths = this.resolveInputs();
+    var start = System.nanoTime();
+    var verifiedBytes = new LongAdder();
+    var failureCount = new LongAdder();
+
+    var pool = new ForkJoinPool(this.threads);
+    try {
+      var tasks = new ArrayList<ForkJoinTask<?>>(paths.size());
+      for (var path : paths) {
+        var k = key;
+        var c = cache;
+        tasks.add(pool.submit(() -> {
+          try {
+            verifiedBytes.add(verify(path, k, c, pool));
+          } catch (Exception ex) {
+            failureCount.increment();
+            reportFailure(out, path, ex);
+          }
+        }));
+      }
+      tasks.forEach(ForkJoinTask::join);
+    } finally {
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    if (cache != null) {
+      cache.save(this.cachePath);
+    }
+
+    var elapsed = (System.nanoTime() - start) / 1_000_000;
+    var failures = failureCount.sum();
+    err.println(String.format("Verified %,d container(s) (%,d byte(s)) in %,d ms",
+        paths.size() - failures, verifiedBytes.sum(), elapsed));
+    if (cache != null) {
+      err.println(String.format("Skipped %,d unchanged container(s)", cache.getHitCount()));
+    }
+    if (failures != 0) {
+      err.println(String.format("Failed %,d container(s)", failures));
+      return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Expands the passed inputs into a (de-duplicated) set of container files.
+   */
+  @NonNull
+  private Set<Path> resolveInputs() throws IOException {
+    var paths = new LinkedHashSet<Path>();
+
+    for (var input : this.inputs) {
+      var globIndex = indexOfGlob(input);
+      if (globIndex != -1) {
+        // the search is rooted in the deepest directory which precedes the first glob character
+        var separatorIndex = Math.max(input.lastIndexOf('/', globIndex),
+            input.lastIndexOf(FileSystems.getDefault().getSeparator(), globIndex));
+        var base = Paths.get(separatorIndex == -1 ? "." : input.substring(0, separatorIndex + 1));
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+
+        try (var stream = Files.walk(base)) {
+          paths.addAll(stream
+              .filter(Files::isRegularFile)
+              .filter((p) -> matcher.matches(separatorIndex == -1 ? base.relativize(p) : p))
+              .collect(Collectors.toList()));
+        }
+        continue;
+      }
+
+      var path = Paths.get(input);
+      if (Files.isDirectory(path)) {
+        var matcher = path.getFileSystem()
+            .getPathMatcher("glob:" + ManifestBatchReader.CONTAINER_GLOB);
+
+        try (var stream = Files.walk(path)) {
+          paths.addAll(stream
+              .filter(Files::isRegularFile)
+              .filter((p) -> matcher.matches(p.getFileName()))
+              .sorted()
+              .collect(Collectors.toList()));
+        }
+      } else {
+        paths.add(path);
+      }
+    }
+
+    return paths;
+  }
+
+  private static int indexOfGlob(@NonNull String input) {
+    for (var i = 0; i < input.length(); ++i) {
+      if (GLOB_CHARACTERS.indexOf(input.charAt(i)) != -1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Verifies a single container.
+   *
+   * @return the size of the verified container (in bytes).
+   */
+  private static long verify(@NonNull Path path, @Nullable PublicKey key,
+      @Nullable VerificationCache cache, @NonNull ForkJoinPool pool)
+      throws IOException, ManifestException, GeneralSecurityException {
+    // opening a container validates its header, section bounds and metadata structure as well as
+    // the block index of compressed contents and the chunk table
+    try (var container = cache != null ? cache.open(path, key) : Container.open(path)) {
+      var manifest = container.getManifest();
+      decodeMetadata(manifest.getMetadata());
+
+      var authentication = manifest.getAuthentication().orElse(null);
+
+      if (cache == null) {
+        if (key != null) {
+          if (authentication == null) {
+            throw new ManifestAuthenticationException(
+                "Illegal container: Container is not signed");
+          }
+          if (!container.verifyAuthentication(key)) {
+            throw new ManifestAuthenticationException(
+                "Illegal container: Content or signature mismatch");
+          }
+        } else if (authentication != null) {
+          // the raw content channel verifies the chunk table (if any) while it is being hashed
+          try (var channel = container.newRawContentChannel()) {
+            if (!authentication.verifyDigest(channel)) {
+              throw new ContentIntegrityException("Illegal content: Digest mismatch");
+            }
+          }
+        } else if (container.getChunkTable() != null) {
+          var corrupted = container.verify(pool);
+          if (!corrupted.isEmpty()) {
+            throw new ContentIntegrityException(String.format(
+                "Illegal content: Checksum mismatch in %d chunk(s) (first: #%d)",
+                corrupted.cardinality(), corrupted.nextSetBit(0)));
+          }
+        }
+      }
+
+      return manifest.getContentOffset() + manifest.getContentLength();
+    }
+  }
+
+  /**
+   * <p>Decodes all fields of the specified metadata.</p>
+   *
+   * <p>Metadata views only validate the structure of the section when they are constructed while
+   * the values of individual fields are decoded once they are first accessed. As such, each field
+   * (including the elements of all collections) is accessed in order to surface malformed
+   * values.</p>
+   *
+   * @throws MetadataDecoderException when any of the fields is malformed.
+   */
+  private static void decodeMetadata(@NonNull Metadata metadata)
+      throws MetadataDecoderException {
+    try {
+      metadata.getProductIdentifier();
+      metadata.getEnvironmentType();
+      metadata.getIdentifier();
+      metadata.getVersion();
+      metadata.getDistributionUrl();
+      metadata.getDocumentationUrl();
+      metadata.getIssueReportingUrl();
+
+      for (var author : metadata.getAuthors()) {
+        author.getName();
+        author.getAlias();
+      }
+      for (var contributor : metadata.getContributors()) {
+        contributor.getName();
+        contributor.getAlias();
+      }
+      for (var service : metadata.getProvidedServices()) {
+        service.getIdentifier();
+        service.getVersion();
+      }
+      decodeDependencies(metadata.getExtensionDependencies());
+      decodeDependencies(metadata.getServiceDependencies());
+    } catch (RuntimeException ex) {
+      var message = ex.getMessage();
+      if (ex.getCause() != null) {
+        message += ": " + ex.getCause().getMessage();
+      }
+      throw new MetadataDecoderException(message, ex);
+    }
+  }
+
+  private static void decodeDependencies(@NonNull List<Dependency> dependencies) {
+    for (var dependency : dependencies) {
+      dependency.getIdentifier();
+      dependency.getVersionRange();
+    }
+  }
+
+  /**
+   * Writes a machine-readable description of a failure to the specified stream.
+   */
+  private static void reportFailure(@NonNull PrintStream out, @NonNull Path path,
+      @NonNull Exception ex) {
+    String type;
+    if (ex instanceof ManifestHeaderException) {
+      type = "header";
+    } else if (ex instanceof MetadataException) {
+      type = "metadata";
+    } else if (ex instanceof ManifestAuthenticationException
+        || ex instanceof GeneralSecurityException) {
+      type = "authentication";
+    } else if (ex instanceof ContentIntegrityException) {
+      type = "integrity";
+    } else if (ex instanceof IOException) {
+      type = "io";
+    } else {
+      type = "error";
+    }
+
+    var message = String.valueOf(ex.getMessage()).replace('\t', ' ').replace('\n', ' ');
+    synchronized (out) {
+      out.println(path + "\t" + type + "\t" + message);
+    }
+  }
+}
@@ -19,16 +19,26 @@ package org.basinmc.chloramine.cli.commands;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.FileNotFoundException;
 import java.net.URI;
-import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
+import java.util.zip.Deflater;
 import org.basinmc.chloramine.cli.Chloramine;
+import org.basinmc.chloramine.manifest.ContainerWriter;
 import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.auth.ContainerSigner;
+import org.basinmc.chloramine.manifest.auth.HashTree;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.io.BufferPool;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
@@ -43,7 +53,12 @@ import picocli.CommandLine.Parameters;
 )
 public class WrapCommand implements CommandHandler {
 
-  @Parameters(index = "0", paramLabel = "input-file", description = "Specifies the input file to wrap", arity = "1..*")
+  /**
+   * Defines the input path which causes the content to be read from the standard input.
+   */
+  private static final String STDIN_PATH = "-";
+
+  @Parameters(index = "0", paramLabel = "input-file", description = "Specifies the input file to wrap (or - to read from stdin)", arity = "1..*")
   private Path inputPath;
   @Parameters(index = "1", paramLabel = "container-file", description = "Specifies the output file", arity = "1..*")
   private Path containerPath;
@@ -55,6 +70,25 @@ public class WrapCommand implements CommandHandler {
   @Option(names = "environment", description = "An extension environment")
   private String environment = "java";
 
+  @Option(names = "padding", description = "Bytes to reserve for future metadata edits")
+  private long padding;
+  @Option(names = "align", description = "Aligns the content offset to a power of two (e.g. 4096) in order to permit direct mapping")
+  private long alignment = 1;
+  @Option(names = "compress", description = "Compresses the content in independent blocks")
+  private boolean compress;
+  @Option(names = "block-size", description = "Uncompressed block size (in bytes) when compressing the content")
+  private int blockSize = BlockCompressor.DEFAULT_BLOCK_SIZE;
+  @Option(names = "checksums", description = "Appends a table of CRC32C checksums for the content")
+  private boolean checksums;
+  @Option(names = "chunk-size", description = "Chunk size (in bytes) covered by each checksum")
+  private int chunkSize = ChunkTable.DEFAULT_CHUNK_SIZE;
+  @Option(names = "sign-key", description = "Signs the container using a PKCS#8 private key (DER or PEM)")
+  private Path signingKeyPath;
+  @Option(names = "key-algorithm", description = "Algorithm of the signing key (e.g. EC or RSA)")
+  private String keyAlgorithm = "EC";
+  @Option(names = "hash-block-size", description = "Block size (in bytes) covered by each leaf of the signed hash tree (or 0 to sign a flat digest)")
+  private int hashBlockSize = HashTree.DEFAULT_BLOCK_SIZE;
+
   @Option(names = "id", description = "A globally unique extension identifier", required = true)
   private String extensionId;
   @Option(names = "version", description = "An extension specific revision", required = true)
@@ -84,11 +118,37 @@ public class WrapCommand implements CommandHandler {
    */
   @Override
   public void execute(@NonNull Chloramine chloramine) throws Exception {
-    try (var inputChannel = FileChannel.open(this.inputPath, StandardOpenOption.READ)) {
+    ReadableByteChannel inputChannel;
+    if (STDIN_PATH.equals(this.inputPath.toString())) {
+      inputChannel = Channels.newChannel(System.in);
+    } else {
+      inputChannel = FileChannel.open(this.inputPath, StandardOpenOption.READ);
+    }
+
+    try (inputChannel) {
       System.out.println("==> Generating Manifest");
 
+      // the content length is only a hint as it is replaced with the actual amount of written
+      // bytes once the content has been streamed into the container
+      var contentLength = 0L;
+      if (inputChannel instanceof FileChannel) {
+        contentLength = ((FileChannel) inputChannel).size();
+      }
+
+      ContainerSigner signer = null;
+      if (this.signingKeyPath != null) {
+        var key = KeyFiles.readPrivateKey(this.signingKeyPath, this.keyAlgorithm);
+        signer = new ContainerSigner(key, ContainerSigner.getDefaultSignatureAlgorithm(key),
+            ContainerSigner.DEFAULT_DIGEST_ALGORITHM, this.hashBlockSize);
+      }
+
+      // the authentication section is reserved upfront so that the content alignment accounts
+      // for it while the actual signature is computed as the content is written
       var manifest = Manifest.builder()
-          .setContentLength(inputChannel.size())
+          .setAuthentication(signer != null ? signer.createPlaceholder() : null)
+          .setContentLength(contentLength)
+          .setPadding(this.padding)
+          .setAlignment(this.alignment)
           .createMetadata(this.formatVersion, (b) -> {
             b.setProductIdentifier(this.productId)
                 .setEnvironmentType(this.environment)
@@ -107,28 +167,21 @@ public class WrapCommand implements CommandHandler {
             splitReference("service dependency", this.serviceDependencies, b::addService);
           })
           .build();
-      System.out
-          .println(String.format("Estimated Size: %,d byte(s)", manifest.getSerializedLength()));
       System.out.println();
 
       System.out.println("==> Writing Data");
-      try (var outputChannel = FileChannel
-          .open(this.containerPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-              StandardOpenOption.TRUNCATE_EXISTING)) {
-        if (manifest.getSerializedLength() > Integer.MAX_VALUE) {
-          throw new IllegalStateException(
-              "Manifest exceeds maximum permitted size of " + manifest.getSerializedLength()
-                  + " bytes");
-        }
-
-        var buffer = ByteBuffer.allocate((int) manifest.getSerializedLength());
-        manifest.serialize(buffer);
-        buffer.flip();
-        outputChannel.write(buffer);
-
-        inputChannel.transferTo(0, Long.MAX_VALUE, outputChannel);
-        System.out.println(String.format("Written %,d byte(s)", outputChannel.size()));
+      BlockCompressor compressor = null;
+      if (this.compress) {
+        compressor = new BlockCompressor(this.blockSize, Deflater.DEFAULT_COMPRESSION,
+            ForkJoinPool.commonPool());
       }
+
+      var written = new ContainerWriter(BufferPool.getDefault(), compressor,
+          this.checksums ? this.chunkSize : 0, signer)
+          .write(manifest, inputChannel, this.containerPath);
+      System.out.println(String.format("Manifest: %,d byte(s)", written.getContentOffset()));
+      System.out.println(String.format("Content: %,d byte(s)", written.getContentLength()));
+      System.out.println(String.format("Written %,d byte(s)", Files.size(this.containerPath)));
     } catch (FileNotFoundException ex) {
       System.err.println("No such file or directory: " + this.containerPath);
       System.exit(1);
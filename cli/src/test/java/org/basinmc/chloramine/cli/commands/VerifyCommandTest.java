@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.cli.commands;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class VerifyCommandTest {
+
+  private static final String DISTRIBUTION_URL = "https://example.org/extension";
+
+  private static Manifest write(Path file) throws Exception {
+    var manifest = Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3")
+            .setDistributionUrl(URI.create(DISTRIBUTION_URL))
+            .addAuthor("Johannes Donath", "Akkarin"))
+        .build();
+
+    var content = new byte[100_000];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) (i * 31);
+    }
+
+    return new ContainerWriter(BufferPool.getDefault(), null, ChunkTable.DEFAULT_CHUNK_SIZE)
+        .write(manifest, Channels.newChannel(new ByteArrayInputStream(content)), file);
+  }
+
+  private static void replace(Path file, long position, int value) throws IOException {
+    try (var output = new RandomAccessFile(file.toFile(), "rw")) {
+      output.seek(position);
+      output.write(value);
+    }
+  }
+
+  private static long indexOf(Path file, String value) throws IOException {
+    var data = Files.readAllBytes(file);
+    var pattern = value.getBytes(StandardCharsets.UTF_8);
+
+    outer:
+    for (var i = 0; i <= data.length - pattern.length; ++i) {
+      for (var j = 0; j < pattern.length; ++j) {
+        if (data[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    throw new IllegalArgumentException("No such value: " + value);
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (var stream = Files.walk(directory)) {
+      for (var path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Executes the verify command with the specified arguments.
+   */
+  private static Result verify(String... arguments) throws Exception {
+    var command = CommandLine.populateCommand(new VerifyCommand(), arguments);
+    var out = new ByteArrayOutputStream();
+    var err = new ByteArrayOutputStream();
+
+    var exitCode = command.execute(new PrintStream(out, true, "UTF-8"),
+        new PrintStream(err, true, "UTF-8"));
+    return new Result(exitCode, new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Evaluates whether intact containers pass verification.
+   */
+  @Test
+  public void testIntact() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file);
+
+      var result = verify(file.toString());
+      assertEquals(0, result.exitCode);
+      assertEquals("", result.output);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether malformed metadata values (which are only decoded on demand) are reported.
+   */
+  @Test
+  public void testMalformedMetadata() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file);
+      replace(file, indexOf(file, DISTRIBUTION_URL) + 8, ' ');
+
+      var result = verify(file.toString());
+      assertEquals(1, result.exitCode);
+
+      var fields = result.getLines().iterator().next().split("\t");
+      assertEquals(3, fields.length);
+      assertEquals(file.toString(), fields[0]);
+      assertEquals("metadata", fields[1]);
+      assertTrue(fields[2].contains("distributionUrl"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether modified contents are reported.
+   */
+  @Test
+  public void testCorruptedContent() throws Exception {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file);
+      replace(file, manifest.getContentOffset() + 42, 0xFF);
+
+      var result = verify(file.toString());
+      assertEquals(1, result.exitCode);
+
+      var fields = result.getLines().iterator().next().split("\t");
+      assertEquals(file.toString(), fields[0]);
+      assertEquals("integrity", fields[1]);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether directories and glob patterns are expanded into the containers they
+   * contain and whether only the failing containers are reported.
+   */
+  @Test
+  public void testInputExpansion() throws Exception {
+    var directory = Files.createTempDirectory("chloramine");
+
+    try {
+      var nested = Files.createDirectories(directory.resolve("nested"));
+      var intact = directory.resolve("intact.bec");
+      var malformed = nested.resolve("malformed.bec");
+      write(intact);
+      write(malformed);
+      write(directory.resolve("ignored.txt"));
+      replace(malformed, 0, 0);
+
+      var result = verify(directory.toString());
+      assertEquals(1, result.exitCode);
+      assertEquals(Set.of(malformed + "\theader"), result.getFailures());
+
+      result = verify(directory + "/**.bec");
+      assertEquals(1, result.exitCode);
+      assertEquals(Set.of(malformed + "\theader"), result.getFailures());
+
+      result = verify(directory + "/*.bec");
+      assertEquals(0, result.exitCode);
+      assertEquals("", result.output);
+    } finally {
+      delete(directory);
+    }
+  }
+
+  private static final class Result {
+
+    private final int exitCode;
+    private final String output;
+
+    private Result(int exitCode, String output) {
+      this.exitCode = exitCode;
+      this.output = output;
+    }
+
+    private Set<String> getLines() {
+      return Arrays.stream(this.output.split("\\R"))
+          .filter((l) -> !l.isEmpty())
+          .collect(Collectors.toSet());
+    }
+
+    /**
+     * Retrieves the paths and failure types (excluding the messages) which have been reported.
+     */
+    private Set<String> getFailures() {
+      var failures = new HashSet<String>();
+      for (var line : this.getLines()) {
+        failures.add(line.substring(0, line.lastIndexOf('\t')));
+      }
+      return failures;
+    }
+  }
+}
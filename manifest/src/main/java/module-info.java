@@ -7,7 +7,21 @@ module org.basinmc.chloramine.manifest {
   requires static com.github.spotbugs.annotations;
 
   exports org.basinmc.chloramine.manifest;
+  exports org.basinmc.chloramine.manifest.auth;
+  exports org.basinmc.chloramine.manifest.content;
   exports org.basinmc.chloramine.manifest.error;
+  exports org.basinmc.chloramine.manifest.index;
+  exports org.basinmc.chloramine.manifest.io;
   exports org.basinmc.chloramine.manifest.metadata;
   exports org.basinmc.chloramine.manifest.metadata.v0;
+
+  uses org.basinmc.chloramine.manifest.io.BufferPool;
+  uses org.basinmc.chloramine.manifest.metadata.MetadataBuilderFactory;
+  uses org.basinmc.chloramine.manifest.metadata.MetadataDecoder;
+  uses org.basinmc.chloramine.manifest.metadata.StringTable;
+
+  provides org.basinmc.chloramine.manifest.metadata.MetadataBuilderFactory
+      with org.basinmc.chloramine.manifest.metadata.v0.MetadataBuilderFactoryV0;
+  provides org.basinmc.chloramine.manifest.metadata.MetadataDecoder
+      with org.basinmc.chloramine.manifest.metadata.v0.MetadataDecoderV0;
 }
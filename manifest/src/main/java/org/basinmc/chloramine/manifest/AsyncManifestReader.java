@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+
+/**
+ * Reads a single manifest from an asynchronous file channel.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class AsyncManifestReader {
+
+  private final AsynchronousFileChannel channel;
+  private final Executor executor;
+  private final BufferPool pool = BufferPool.getDefault();
+
+  private ByteBuffer buffer;
+
+  private AsyncManifestReader(@NonNull AsynchronousFileChannel channel,
+      @NonNull Executor executor) {
+    this.channel = channel;
+    this.executor = executor;
+  }
+
+  /**
+   * @see Manifest#readAsync(Path, Executor)
+   */
+  @NonNull
+  static CompletableFuture<Manifest> read(@NonNull Path path, @NonNull Executor executor) {
+    AsynchronousFileChannel channel;
+    try {
+      channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+    } catch (IOException | RuntimeException ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+
+    return new AsyncManifestReader(channel, executor).read();
+  }
+
+  @NonNull
+  private CompletableFuture<Manifest> read() {
+    this.buffer = this.pool.acquire(Manifest.HEADER_LENGTH);
+
+    return ChannelUtil.readFully(this.channel, this.buffer, 0)
+        .thenCompose((b) -> this.readSections())
+        .thenApplyAsync((b) -> this.decode(), this.executor)
+        .handle((manifest, ex) -> {
+          try {
+            this.close();
+          } catch (IOException closeEx) {
+            if (ex == null) {
+              throw new CompletionException(closeEx);
+            }
+            ex.addSuppressed(closeEx);
+          }
+
+          if (ex != null) {
+            throw ex instanceof CompletionException ? (CompletionException) ex
+                : new CompletionException(ex);
+          }
+          return manifest;
+        });
+  }
+
+  @NonNull
+  private CompletableFuture<ByteBuffer> readSections() {
+    this.buffer.flip();
+
+    int length;
+    try {
+      var header = new ManifestHeader(this.buffer.duplicate());
+      length = Manifest.HEADER_LENGTH
+          + (int) (header.getAuthenticationLength() + header.getMetadataLength());
+    } catch (ManifestException ex) {
+      throw new CompletionException(ex);
+    }
+
+    if (length > this.buffer.capacity()) {
+      var expanded = this.pool.acquire(length);
+      expanded.put(this.buffer);
+      this.pool.release(this.buffer);
+      this.buffer = expanded;
+    } else {
+      this.buffer.limit(length);
+      this.buffer.position(Manifest.HEADER_LENGTH);
+    }
+
+    return ChannelUtil.readFully(this.channel, this.buffer, Manifest.HEADER_LENGTH);
+  }
+
+  @NonNull
+  private Manifest decode() {
+    this.buffer.flip();
+
+    try {
+      return new Manifest(this.buffer);
+    } catch (ManifestException ex) {
+      throw new CompletionException(ex);
+    }
+  }
+
+  private void close() throws IOException {
+    if (this.buffer != null) {
+      this.pool.release(this.buffer);
+      this.buffer = null;
+    }
+
+    this.channel.close();
+  }
+}
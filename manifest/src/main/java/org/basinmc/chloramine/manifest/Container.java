@@ -0,0 +1,448 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import org.basinmc.chloramine.manifest.auth.AuthenticationSection;
+import org.basinmc.chloramine.manifest.auth.HashTree;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.content.CompressedContent;
+import org.basinmc.chloramine.manifest.content.ContentSource;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.basinmc.chloramine.manifest.io.SectionChannel;
+
+/**
+ * <p>Represents an open extension container file.</p>
+ *
+ * <p>Containers keep a single file channel open for their entire lifetime. All views of the
+ * container contents share this channel and read from it using absolute positions. As such, any
+ * amount of threads may read from the container at the same time.</p>
+ *
+ * <p>Compressed contents (as indicated by {@link Manifest#FLAG_COMPRESSED}) are transparently
+ * inflated by the content views of this container. The encoded form remains accessible via
+ * {@link #newRawContentChannel()}.</p>
+ *
+ * <p>When the container includes a chunk table (as indicated by {@link Manifest#FLAG_CHECKSUMS}),
+ * each chunk is verified when it is first read through any of the content views. Entire
+ * containers may be verified in parallel via {@link #verify(ForkJoinPool)}.</p>
+ *
+ * <p>Signed containers may be authenticated as a whole via {@link
+ * #verifyAuthentication(PublicKey)}. Alternatively, containers which are opened with a key (see
+ * {@link #open(Path, PublicKey)}) verify each block of their contents against the signed hash
+ * tree when it is first read. As such, the cost of authentication is proportional to the amount
+ * of contents which are actually accessed.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class Container implements Closeable {
+
+  private final FileChannel channel;
+  private final Manifest manifest;
+  private final ChunkTable chunkTable;
+  private final CompressedContent compressedContent;
+  private final HashTree hashTree;
+  private final ContentSource source;
+
+  /**
+   * Reads a container from the specified channel.
+   *
+   * @param channel a file channel (will be closed along with the container).
+   * @throws IOException when reading the manifest or the block index of compressed contents
+   * fails.
+   * @throws ManifestException when the manifest is malformed or the content section exceeds the
+   * bounds of the file.
+   */
+  public Container(@NonNull FileChannel channel) throws IOException, ManifestException {
+    this(channel, null);
+  }
+
+  /**
+   * <p>Reads a container from the specified channel and authenticates it using the specified
+   * key.</p>
+   *
+   * <p>The signature is verified before any contents are read. When the contents are covered by
+   * a hash tree, each block is verified once it is read through any of the content views of the
+   * container. Otherwise, the digest of the entire contents is verified upfront.</p>
+   *
+   * @param channel a file channel (will be closed along with the container).
+   * @param key a public key or null to skip authentication.
+   * @throws IOException when reading the manifest or the block index of compressed contents
+   * fails or the contents do not match their digest.
+   * @throws ManifestException when the manifest is malformed, the content section exceeds the
+   * bounds of the file or the container has not been signed by the owner of the key.
+   */
+  public Container(@NonNull FileChannel channel, @Nullable PublicKey key)
+      throws IOException, ManifestException {
+    this.channel = channel;
+    this.manifest = Manifest.read(channel, 0);
+
+    var size = channel.size();
+    var end = this.manifest.getContentOffset() + this.manifest.getContentLength();
+    if (end > size) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal content section: Section exceeds container bounds (%d bytes > %d)", end,
+          size));
+    }
+
+    var source = ContentSource.of(channel, this.manifest.getContentOffset());
+    if ((this.manifest.getFlags() & Manifest.FLAG_CHECKSUMS) != 0) {
+      this.chunkTable = ChunkTable.read(channel, end, this.manifest.getContentLength());
+      source = this.chunkTable.verifying(source);
+    } else {
+      this.chunkTable = null;
+    }
+
+    if (key != null) {
+      this.hashTree = this.authenticate(key);
+      if (this.hashTree != null) {
+        source = this.hashTree.verifying(source);
+      }
+    } else {
+      this.hashTree = null;
+    }
+    this.source = source;
+
+    if ((this.manifest.getFlags() & Manifest.FLAG_COMPRESSED) != 0) {
+      this.compressedContent = CompressedContent
+          .open(source, this.manifest.getContentLength(), ForkJoinPool.commonPool());
+    } else {
+      this.compressedContent = null;
+    }
+  }
+
+  /**
+   * Verifies the signature of this container and opens its hash tree (if any).
+   */
+  @Nullable
+  private HashTree authenticate(@NonNull PublicKey key)
+      throws IOException, ManifestException {
+    var authentication = this.manifest.getAuthentication()
+        .orElseThrow(() -> new ManifestAuthenticationException(
+            "Illegal container: Container is not signed"));
+
+    try {
+      if (!authentication.verifySignature(this.manifest, key)) {
+        throw new ManifestAuthenticationException("Illegal container: Signature mismatch");
+      }
+
+      if (authentication.getBlockSize() != 0) {
+        return HashTree.open(this.channel,
+            this.manifest.getContentOffset() + this.manifest.getContentLength(), authentication,
+            this.manifest.getContentLength());
+      }
+    } catch (GeneralSecurityException ex) {
+      throw new ManifestAuthenticationException(
+          "Illegal authentication section: " + ex.getMessage(), ex);
+    }
+
+    // without a hash tree, the contents cannot be verified on demand (the signature has already
+    // been verified above and thus only the digest remains to be checked)
+    if (!this.verifyDigest()) {
+      throw new ContentIntegrityException("Illegal content: Digest mismatch");
+    }
+    return null;
+  }
+
+  /**
+   * Opens the specified container file.
+   *
+   * @param path a container file.
+   * @return a container.
+   * @throws IOException when opening the file or reading the manifest fails.
+   * @throws ManifestException when the manifest is malformed.
+   */
+  @NonNull
+  public static Container open(@NonNull Path path) throws IOException, ManifestException {
+    return open(path, null);
+  }
+
+  /**
+   * Opens and authenticates the specified container file.
+   *
+   * @param path a container file.
+   * @param key a public key or null to skip authentication.
+   * @return a container.
+   * @throws IOException when opening the file or reading the manifest fails.
+   * @throws ManifestException when the manifest is malformed or the container has not been
+   * signed by the owner of the key.
+   * @see #Container(FileChannel, PublicKey)
+   */
+  @NonNull
+  public static Container open(@NonNull Path path, @Nullable PublicKey key)
+      throws IOException, ManifestException {
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    try {
+      return new Container(channel, key);
+    } catch (IOException | ManifestException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Retrieves the manifest of this container.
+   *
+   * @return a manifest.
+   */
+  @NonNull
+  public Manifest getManifest() {
+    return this.manifest;
+  }
+
+  /**
+   * Retrieves the chunk table of this container.
+   *
+   * @return a chunk table or null if the container does not include checksums.
+   */
+  @Nullable
+  public ChunkTable getChunkTable() {
+    return this.chunkTable;
+  }
+
+  /**
+   * Verifies all chunks of this container in parallel.
+   *
+   * @param pool a pool which performs the verification.
+   * @return a set of chunk indices which do not match their checksums (empty if the contents are
+   * intact).
+   * @throws IOException when reading the contents fails.
+   * @throws IllegalStateException when the container does not include checksums.
+   */
+  @NonNull
+  public BitSet verify(@NonNull ForkJoinPool pool) throws IOException {
+    if (this.chunkTable == null) {
+      throw new IllegalStateException("Container does not include checksums");
+    }
+
+    return this.chunkTable.verify(
+        ContentSource.of(this.channel, this.manifest.getContentOffset()), pool);
+  }
+
+  /**
+   * <p>Verifies the authentication section of this container against the specified key.</p>
+   *
+   * <p>The encoded contents are hashed in a single sequential pass and compared against the
+   * digest within the authentication section. The signature is only evaluated when the digest
+   * matches.</p>
+   *
+   * @param key a public key.
+   * @return true if the contents and manifest have been signed by the owner of the key, false
+   * otherwise.
+   * @throws IOException when reading the contents fails.
+   * @throws ManifestAuthenticationException when the algorithms of the section are not supported
+   * or the key is invalid.
+   * @throws ManifestEncoderException when encoding the metadata fails.
+   * @throws IllegalStateException when the container is not signed.
+   */
+  public boolean verifyAuthentication(@NonNull PublicKey key)
+      throws IOException, ManifestAuthenticationException, ManifestEncoderException {
+    var authentication = this.manifest.getAuthentication()
+        .orElseThrow(() -> new IllegalStateException("Container is not signed"));
+
+    try {
+      return this.verifyDigest() && authentication.verifySignature(this.manifest, key);
+    } catch (GeneralSecurityException ex) {
+      throw new ManifestAuthenticationException(
+          "Illegal authentication section: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * <p>Verifies the encoded contents of this container against the digest within its
+   * authentication section.</p>
+   *
+   * <p>The signature of the section is not evaluated by this method. As such, it is only
+   * meaningful once the signature has been verified separately (see {@link
+   * AuthenticationSection#verifySignature(Manifest, PublicKey)}).</p>
+   *
+   * @return true if the contents match their digest, false otherwise.
+   * @throws IOException when reading the contents fails.
+   * @throws ManifestAuthenticationException when the digest algorithm is not supported.
+   * @throws IllegalStateException when the container is not signed.
+   */
+  public boolean verifyDigest() throws IOException, ManifestAuthenticationException {
+    var authentication = this.manifest.getAuthentication()
+        .orElseThrow(() -> new IllegalStateException("Container is not signed"));
+
+    try (var content = new SectionChannel(this.channel, this.manifest.getContentOffset(),
+        this.manifest.getContentLength())) {
+      return authentication.verifyDigest(content);
+    } catch (GeneralSecurityException ex) {
+      throw new ManifestAuthenticationException(
+          "Illegal authentication section: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Retrieves the hash tree which is used to verify the contents of this container on demand.
+   *
+   * @return a hash tree or null if the container has not been authenticated or does not include
+   * a hash tree.
+   */
+  @Nullable
+  public HashTree getHashTree() {
+    return this.hashTree;
+  }
+
+  /**
+   * Retrieves the block index of the compressed container contents.
+   *
+   * @return a compressed content representation or null if the contents are stored as is.
+   */
+  @Nullable
+  public CompressedContent getCompressedContent() {
+    return this.compressedContent;
+  }
+
+  /**
+   * <p>Retrieves a positional source which exposes the (uncompressed) container contents.</p>
+   *
+   * <p>Contents which are read through the returned source are verified in the same manner as
+   * contents which are read through {@link #newContentChannel()}. Unlike channels, sources do not
+   * retain a position and may thus be shared between threads.</p>
+   *
+   * @return a content source.
+   * @see #getUncompressedContentLength()
+   */
+  @NonNull
+  public ContentSource getContentSource() {
+    if (this.compressedContent != null) {
+      return this.compressedContent.asSource();
+    }
+
+    return this.source;
+  }
+
+  /**
+   * Retrieves the length of the (uncompressed) container contents.
+   *
+   * @return a length (in bytes).
+   */
+  public long getUncompressedContentLength() {
+    if (this.compressedContent != null) {
+      return this.compressedContent.getLength();
+    }
+
+    return this.manifest.getContentLength();
+  }
+
+  /**
+   * <p>Creates a new read-only channel which exposes the (uncompressed) container contents.</p>
+   *
+   * <p>Positions within the returned channel are relative to the beginning of the content
+   * section. Closing the channel does not close the container.</p>
+   *
+   * @return a content channel.
+   */
+  @NonNull
+  public SeekableByteChannel newContentChannel() {
+    if (this.compressedContent != null) {
+      return this.compressedContent.newChannel();
+    }
+
+    return this.newRawContentChannel();
+  }
+
+  /**
+   * Creates a new read-only channel which is limited to the content section of this container
+   * and exposes its encoded form.
+   *
+   * @return a raw content channel.
+   * @see #newContentChannel()
+   */
+  @NonNull
+  public SeekableByteChannel newRawContentChannel() {
+    if (this.hashTree != null) {
+      return ContentSource
+          .newChannel(this.source, this.manifest.getContentLength(), this.hashTree.getBlockSize());
+    }
+    if (this.chunkTable != null) {
+      return this.chunkTable
+          .newChannel(ContentSource.of(this.channel, this.manifest.getContentOffset()));
+    }
+
+    return new SectionChannel(this.channel, this.manifest.getContentOffset(),
+        this.manifest.getContentLength());
+  }
+
+  /**
+   * Creates a new input stream which is limited to the content section of this container.
+   *
+   * @return a content stream.
+   * @see #newContentChannel()
+   */
+  @NonNull
+  public InputStream newContentStream() {
+    return Channels.newInputStream(this.newContentChannel());
+  }
+
+  /**
+   * <p>Maps the (encoded) content section of this container into memory.</p>
+   *
+   * <p>Mappings which start on a page boundary are typically cheaper to establish. Containers
+   * which are intended to be mapped should thus be created with an appropriate content alignment
+   * (see {@link Manifest.Builder#setAlignment(long)}). Mappings remain valid after the container
+   * has been closed.</p>
+   *
+   * <p>Mapped contents are <strong>not</strong> verified against the chunk table or the hash
+   * tree of this container.</p>
+   *
+   * @return a read-only content buffer.
+   * @throws IOException when mapping the content section fails.
+   * @throws ManifestHeaderException when the content section exceeds the maximum mappable
+   * length.
+   */
+  @NonNull
+  public MappedByteBuffer mapContent() throws IOException, ManifestHeaderException {
+    var length = this.manifest.getContentLength();
+    if (length > Integer.MAX_VALUE) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal content section: Section exceeds maximum mappable length (%d bytes > %d)",
+          length, Integer.MAX_VALUE));
+    }
+
+    return this.channel.map(MapMode.READ_ONLY, this.manifest.getContentOffset(), length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import org.basinmc.chloramine.manifest.auth.AuthenticationSection;
+import org.basinmc.chloramine.manifest.auth.ContainerSigner;
+import org.basinmc.chloramine.manifest.auth.DigestChannel;
+import org.basinmc.chloramine.manifest.auth.HashTreeChannel;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.content.ChecksumChannel;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+
+/**
+ * <p>Writes extension containers from content of arbitrary (and possibly unknown) length.</p>
+ *
+ * <p>The manifest is written first with the content length which has been specified in the
+ * manifest. Once the content has been streamed to the output, the writer seeks back and replaces
+ * the content length within the header with the actual amount of bytes written. As such, content
+ * may be piped directly from memory or a process without staging it on disk first.</p>
+ *
+ * <p>When a compressor is specified, the content is block compressed while it is being streamed
+ * and the {@link Manifest#FLAG_COMPRESSED} flag is set within the written header.</p>
+ *
+ * <p>When a chunk size is specified, a {@link ChunkTable} is computed while the (encoded) content
+ * is being written. The table is appended directly after the content section and the {@link
+ * Manifest#FLAG_CHECKSUMS} flag is set within the written header.</p>
+ *
+ * <p>When a signer is specified, the (encoded) content is hashed while it is being written and
+ * signed along with the manifest once the content length is known. Unless the signer has been
+ * configured to sign a flat digest, the resulting hash tree is appended behind all other
+ * trailers. The authentication section
+ * is reserved ahead of time (see {@link ContainerSigner#createPlaceholder()}) and replaced with
+ * the actual section afterwards. As such, the content is only ever processed once.</p>
+ *
+ * <p>Writers are stateless and may be shared between threads.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ContainerWriter {
+
+  /**
+   * Defines the size of the buffer which is used to copy content from non-file channels.
+   */
+  public static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Defines the position of the content length field relative to the start of the header.
+   */
+  private static final int CONTENT_LENGTH_OFFSET = 22;
+
+  private final BufferPool pool;
+  private final BlockCompressor compressor;
+  private final int chunkSize;
+  private final ContainerSigner signer;
+
+  public ContainerWriter() {
+    this(BufferPool.getDefault());
+  }
+
+  /**
+   * @param pool a pool from which transfer buffers are acquired.
+   */
+  public ContainerWriter(@NonNull BufferPool pool) {
+    this(pool, null);
+  }
+
+  /**
+   * @param pool a pool from which transfer buffers are acquired.
+   * @param compressor a compressor which encodes the content or null to store it as is.
+   */
+  public ContainerWriter(@NonNull BufferPool pool, @Nullable BlockCompressor compressor) {
+    this(pool, compressor, 0);
+  }
+
+  /**
+   * @param pool a pool from which transfer buffers are acquired.
+   * @param compressor a compressor which encodes the content or null to store it as is.
+   * @param chunkSize a checksum chunk size or zero to omit the chunk table.
+   * @throws IllegalArgumentException when the chunk size is negative.
+   */
+  public ContainerWriter(@NonNull BufferPool pool, @Nullable BlockCompressor compressor,
+      int chunkSize) {
+    this(pool, compressor, chunkSize, null);
+  }
+
+  /**
+   * @param pool a pool from which transfer buffers are acquired.
+   * @param compressor a compressor which encodes the content or null to store it as is.
+   * @param chunkSize a checksum chunk size or zero to omit the chunk table.
+   * @param signer a signer which authenticates the container or null to omit the signature.
+   * @throws IllegalArgumentException when the chunk size is negative.
+   */
+  public ContainerWriter(@NonNull BufferPool pool, @Nullable BlockCompressor compressor,
+      int chunkSize, @Nullable ContainerSigner signer) {
+    if (chunkSize < 0) {
+      throw new IllegalArgumentException("Chunk size cannot be negative: " + chunkSize);
+    }
+
+    this.pool = pool;
+    this.compressor = compressor;
+    this.chunkSize = chunkSize;
+    this.signer = signer;
+  }
+
+  /**
+   * Writes a container consisting of the specified manifest and all remaining content of the
+   * passed channel to a file.
+   *
+   * @param manifest a manifest.
+   * @param content a content channel (will not be closed).
+   * @param outputFile an output file (will be created or replaced).
+   * @return the written manifest (including the actual content length).
+   * @throws IOException when reading the content or writing the container fails.
+   * @throws ManifestEncoderException when encoding the manifest fails.
+   */
+  @NonNull
+  public Manifest write(@NonNull Manifest manifest, @NonNull ReadableByteChannel content,
+      @NonNull Path outputFile) throws IOException, ManifestEncoderException {
+    try (var outputChannel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      return this.write(manifest, content, outputChannel);
+    }
+  }
+
+  /**
+   * @see #write(Manifest, ReadableByteChannel, Path)
+   */
+  @NonNull
+  public Manifest write(@NonNull Manifest manifest, @NonNull InputStream content,
+      @NonNull Path outputFile) throws IOException, ManifestEncoderException {
+    // the channel is intentionally not closed as it would close the passed stream
+    return this.write(manifest, Channels.newChannel(content), outputFile);
+  }
+
+  /**
+   * <p>Writes a container consisting of the specified manifest and all remaining content of the
+   * passed channel to an output channel.</p>
+   *
+   * <p>The container is written at the current position of the output channel. Upon return, the
+   * output channel is positioned at the end of the written container.</p>
+   *
+   * <p>When the writer has been configured with a signer and the manifest does not carry an
+   * authentication section yet, a placeholder section is inserted and the content offset is
+   * shifted accordingly. Callers which rely on a specific content alignment should thus pass a
+   * manifest which already carries a placeholder.</p>
+   *
+   * @param manifest a manifest.
+   * @param content a content channel (will not be closed).
+   * @param output an output channel (will not be closed).
+   * @return the written manifest (including the actual content length).
+   * @throws IOException when reading the content or writing the container fails.
+   * @throws ManifestEncoderException when encoding or signing the manifest fails.
+   */
+  @NonNull
+  public Manifest write(@NonNull Manifest manifest, @NonNull ReadableByteChannel content,
+      @NonNull SeekableByteChannel output) throws IOException, ManifestEncoderException {
+    var authentication = manifest.getAuthentication().orElse(null);
+    var contentOffset = manifest.getContentOffset();
+    if (this.signer != null && authentication == null) {
+      try {
+        authentication = this.signer.createPlaceholder();
+      } catch (GeneralSecurityException ex) {
+        throw new ManifestEncoderException("Illegal authentication section: " + ex.getMessage(),
+            ex);
+      }
+      contentOffset += authentication.getSerializedLength();
+    }
+
+    var flags = manifest.getFlags();
+    if (this.compressor != null) {
+      flags |= Manifest.FLAG_COMPRESSED;
+    }
+    if (this.chunkSize != 0) {
+      flags |= Manifest.FLAG_CHECKSUMS;
+    }
+    if (flags != manifest.getFlags() || contentOffset != manifest.getContentOffset()) {
+      manifest = new Manifest(flags, manifest.getMetadata(), authentication, contentOffset,
+          manifest.getContentLength());
+    }
+
+    var start = output.position();
+    new ManifestWriter(this.pool).write(manifest, output);
+
+    WritableByteChannel target = output;
+    ChecksumChannel checksumChannel = null;
+    if (this.chunkSize != 0) {
+      checksumChannel = new ChecksumChannel(output, this.chunkSize);
+      target = checksumChannel;
+    }
+    DigestChannel digestChannel = null;
+    HashTreeChannel treeChannel = null;
+    if (this.signer != null) {
+      try {
+        if (this.signer.getBlockSize() != 0) {
+          treeChannel = new HashTreeChannel(target, this.signer.newDigest(),
+              this.signer.getBlockSize());
+          target = treeChannel;
+        } else {
+          digestChannel = new DigestChannel(target, this.signer.newDigest());
+          target = digestChannel;
+        }
+      } catch (GeneralSecurityException ex) {
+        throw new ManifestEncoderException("Illegal authentication section: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    long contentLength;
+    if (this.compressor != null) {
+      contentLength = this.compressor.compress(content, target);
+    } else if (content instanceof FileChannel) {
+      contentLength = transfer((FileChannel) content, target);
+    } else {
+      contentLength = this.transfer(content, target);
+    }
+
+    var end = output.position();
+    var buffer = this.pool.acquire(8);
+    try {
+      buffer.putLong(contentLength);
+      buffer.flip();
+
+      output.position(start + CONTENT_LENGTH_OFFSET);
+      while (buffer.hasRemaining()) {
+        output.write(buffer);
+      }
+    } finally {
+      this.pool.release(buffer);
+    }
+
+    output.position(end);
+
+    if (checksumChannel != null) {
+      checksumChannel.getChunkTable().write(output);
+    }
+
+    if (this.signer != null) {
+      // the hash tree is appended behind any other trailers while its root is signed in place of
+      // a flat content digest
+      byte[] digest;
+      long treeOffset = 0;
+      if (treeChannel != null) {
+        treeOffset = output.position() - end;
+        treeChannel.writeTree(output);
+        digest = treeChannel.getRoot();
+      } else {
+        digest = digestChannel.digest();
+      }
+
+      authentication = this.sign(manifest, contentLength, digest, treeOffset,
+          authentication.getSerializedLength());
+
+      var trailerEnd = output.position();
+      output.position(start + Manifest.HEADER_LENGTH);
+      this.writeSection(authentication, output);
+      output.position(trailerEnd);
+    }
+
+    return new Manifest(manifest.getFlags(), manifest.getMetadata(), authentication,
+        manifest.getContentOffset(), contentLength);
+  }
+
+  /**
+   * Signs the written container using the configured signer.
+   */
+  @NonNull
+  private AuthenticationSection sign(@NonNull Manifest manifest, long contentLength,
+      @NonNull byte[] digest, long treeOffset, long reservedLength)
+      throws ManifestEncoderException {
+    try {
+      return this.signer.sign(manifest.getFlags(), contentLength, digest, treeOffset,
+          manifest.getMetadata(), reservedLength);
+    } catch (GeneralSecurityException ex) {
+      throw new ManifestEncoderException("Illegal authentication section: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Writes an authentication section at the current position of the passed channel.
+   */
+  private void writeSection(@NonNull AuthenticationSection section,
+      @NonNull WritableByteChannel output) throws IOException, ManifestEncoderException {
+    var buffer = this.pool.acquire((int) section.getSerializedLength());
+    try {
+      section.serialize(buffer);
+      buffer.flip();
+
+      while (buffer.hasRemaining()) {
+        output.write(buffer);
+      }
+    } finally {
+      this.pool.release(buffer);
+    }
+  }
+
+  /**
+   * Transfers the remaining contents of a file channel without copying them through the heap.
+   */
+  private static long transfer(@NonNull FileChannel content, @NonNull WritableByteChannel output)
+      throws IOException {
+    var position = content.position();
+    var size = content.size();
+    var start = position;
+
+    while (position < size) {
+      var transferred = content.transferTo(position, size - position, output);
+      if (transferred <= 0) {
+        // the file has been truncated while it is being transferred
+        break;
+      }
+
+      position += transferred;
+    }
+
+    content.position(position);
+    return position - start;
+  }
+
+  /**
+   * Copies all remaining data of an arbitrary channel through a pooled buffer.
+   */
+  private long transfer(@NonNull ReadableByteChannel content, @NonNull WritableByteChannel output)
+      throws IOException {
+    var buffer = this.pool.acquire(TRANSFER_BUFFER_SIZE);
+    long length = 0;
+
+    try {
+      while (content.read(buffer) != -1) {
+        buffer.flip();
+        length += buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+          output.write(buffer);
+        }
+        buffer.clear();
+      }
+    } finally {
+      this.pool.release(buffer);
+    }
+
+    return length;
+  }
+}
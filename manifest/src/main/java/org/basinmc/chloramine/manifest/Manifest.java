@@ -17,23 +17,29 @@
 package org.basinmc.chloramine.manifest;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-import java.io.EOFException;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import org.basinmc.chloramine.manifest.auth.AuthenticationSection;
 import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
 import org.basinmc.chloramine.manifest.error.ManifestException;
 import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
-import org.basinmc.chloramine.manifest.error.MetadataVersionException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
 import org.basinmc.chloramine.manifest.metadata.BinarySerializable;
 import org.basinmc.chloramine.manifest.metadata.Metadata;
 import org.basinmc.chloramine.manifest.metadata.MetadataBuilderFactory;
-import org.basinmc.chloramine.manifest.metadata.MetadataDecoder;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
 import org.basinmc.chloramine.manifest.util.DataUtil;
 
 /**
@@ -53,50 +59,75 @@ public class Manifest implements BinarySerializable {
    */
   public static final int HEADER_LENGTH = 30;
 
+  /**
+   * Defines the content alignment which is typically used for containers which are intended to
+   * be mapped into memory (e.g. the most common page size).
+   */
+  public static final long PAGE_ALIGNMENT = 4096;
+
+  /**
+   * Indicates that the container contents have been encoded as a sequence of independently
+   * compressed blocks.
+   *
+   * @see org.basinmc.chloramine.manifest.content.CompressedContent
+   */
+  public static final int FLAG_COMPRESSED = 0x0100;
+
+  /**
+   * Indicates that the (encoded) container contents are followed by a table of chunk checksums.
+   *
+   * @see org.basinmc.chloramine.manifest.content.ChunkTable
+   */
+  public static final int FLAG_CHECKSUMS = 0x0200;
+
   private final int flags;
   private final Metadata metadata;
+  private final AuthenticationSection authentication;
 
   private final long contentOffset;
   private final long contentLength;
 
   public Manifest(@NonNull ByteBuffer buffer) throws ManifestException {
-    var magicNumber = buffer.getInt();
-    if (magicNumber != MAGIC_NUMBER) {
-      throw new ManifestHeaderException(String.format("Illegal magic number: 0x%08X", magicNumber));
-    }
-
-    this.flags = buffer.getShort() & 0xFFFF;
-
-    var authenticationLength = buffer.getLong();
-    var metadataLength = buffer.getLong();
-    this.contentLength = buffer.getLong();
-    this.contentOffset = HEADER_LENGTH + authenticationLength + metadataLength;
-
-    if (authenticationLength > Integer.MAX_VALUE) {
+    var header = new ManifestHeader(buffer);
+    this.flags = header.getFlags();
+    this.contentLength = header.getContentLength();
+    this.contentOffset = header.getContentOffset();
+
+    var authenticationLength = header.getAuthenticationLength();
+    var metadataLength = header.getMetadataLength();
+    if (buffer.remaining() < authenticationLength + metadataLength) {
       throw new ManifestHeaderException(String.format(
-          "Illegal authentication section: Section exceeds maximum length (%d bytes > %d)",
-          authenticationLength, Integer.MAX_VALUE));
+          "Illegal header: Sections exceed available data (%d bytes > %d)",
+          authenticationLength + metadataLength, buffer.remaining()));
     }
-    if (metadataLength > Integer.MAX_VALUE) {
-      throw new ManifestHeaderException(String.format(
-          "Illegal metadata section: Section exceeds maximum length (%d bytes > %d)",
-          metadataLength, Integer.MAX_VALUE));
+
+    if (authenticationLength != 0) {
+      var authenticationBuffer = buffer.slice();
+      authenticationBuffer.limit((int) authenticationLength);
+      this.authentication = AuthenticationSection.read(authenticationBuffer);
+    } else {
+      this.authentication = null;
     }
 
-    var metadataBuffer = ByteBuffer.allocate((int) metadataLength);
-    metadataBuffer.put(buffer);
-    metadataBuffer.flip();
+    // the metadata section is decoded directly from a view of the passed buffer so that mapped
+    // containers do not need to be copied onto the heap first
+    buffer.position(buffer.position() + (int) authenticationLength);
+    var metadataBuffer = buffer.slice();
+    metadataBuffer.limit((int) metadataLength);
+    buffer.position(buffer.position() + (int) metadataLength);
 
-    var metadataVersion = metadataBuffer.get();
-    this.metadata = MetadataDecoder.get(metadataVersion)
-        .orElseThrow(() -> new MetadataVersionException(
-            "Unsupported metadata format version: " + metadataVersion))
-        .decode(metadataVersion, metadataBuffer);
+    this.metadata = ManifestHeader.decodeMetadata(metadataBuffer);
   }
 
   public Manifest(int flags, Metadata metadata, long contentOffset, long contentLength) {
+    this(flags, metadata, null, contentOffset, contentLength);
+  }
+
+  public Manifest(int flags, Metadata metadata, AuthenticationSection authentication,
+      long contentOffset, long contentLength) {
     this.flags = flags;
     this.metadata = metadata;
+    this.authentication = authentication;
     this.contentOffset = contentOffset;
     this.contentLength = contentLength;
   }
@@ -106,6 +137,23 @@ public class Manifest implements BinarySerializable {
     return new Builder();
   }
 
+  /**
+   * Creates a new builder which has been pre-populated with the values of the specified manifest
+   * (including its padding).
+   *
+   * @param manifest a manifest.
+   * @return a pre-populated builder.
+   */
+  @NonNull
+  public static Builder builder(@NonNull Manifest manifest) {
+    return new Builder()
+        .setFlags(manifest.flags)
+        .setMetadata(manifest.metadata)
+        .setAuthentication(manifest.authentication)
+        .setPadding(manifest.getPadding())
+        .setContentLength(manifest.contentLength);
+  }
+
   /**
    * Reads a manifest from the specified channel.
    *
@@ -117,36 +165,93 @@ public class Manifest implements BinarySerializable {
   @NonNull
   public static Manifest read(@NonNull ReadableByteChannel channel)
       throws IOException, ManifestException {
-    var headerBuffer = ByteBuffer.allocate(HEADER_LENGTH);
-    if (channel.read(headerBuffer) == -1) {
-      throw new EOFException("Channel contains insufficient data");
-    }
-    headerBuffer.flip();
+    return read((buffer, offset) -> ChannelUtil.readFully(channel, buffer));
+  }
 
-    var magicNumber = headerBuffer.getInt();
-    if (magicNumber != MAGIC_NUMBER) {
-      throw new ManifestHeaderException(String.format("Illegal magic number: 0x%08X", magicNumber));
-    }
+  /**
+   * Reads a manifest from the specified absolute position within a file channel. The position
+   * of the channel itself remains unchanged.
+   *
+   * @param channel an arbitrary file channel.
+   * @param position the absolute position of the manifest header.
+   * @return a manifest.
+   * @throws IOException when an error occurs while reading the manifest data.
+   * @throws ManifestException when the manifest is malformed.
+   */
+  @NonNull
+  public static Manifest read(@NonNull FileChannel channel, long position)
+      throws IOException, ManifestException {
+    return read((buffer, offset) -> ChannelUtil.readFully(channel, buffer, position + offset));
+  }
 
-    headerBuffer.position(headerBuffer.position() + 2);
-    var length = headerBuffer.getLong() + headerBuffer.getLong();
+  /**
+   * @see #readAsync(Path, Executor)
+   */
+  @NonNull
+  public static CompletableFuture<Manifest> readAsync(@NonNull Path path) {
+    return readAsync(path, ForkJoinPool.commonPool());
+  }
 
-    if (length > Integer.MAX_VALUE) {
-      throw new ManifestHeaderException(String.format(
-          "Illegal header: Section exceeds maximum length (%d bytes > %d)",
-          length, Integer.MAX_VALUE));
-    }
+  /**
+   * <p>Asynchronously reads the manifest of the specified container file.</p>
+   *
+   * <p>Each section is read using positional reads which are repeated until the section has been
+   * read completely. The file is not read by the calling thread. Once all sections have been
+   * read, the manifest is decoded using the specified executor.</p>
+   *
+   * @param path a container file.
+   * @param executor an executor which performs the decoding step.
+   * @return a future which completes with the decoded manifest or exceptionally with an {@link
+   * IOException} or {@link ManifestException} (wrapped within a {@link
+   * java.util.concurrent.CompletionException}).
+   */
+  @NonNull
+  public static CompletableFuture<Manifest> readAsync(@NonNull Path path,
+      @NonNull Executor executor) {
+    return AsyncManifestReader.read(path, executor);
+  }
 
-    headerBuffer.rewind();
+  /**
+   * Reads a manifest using a temporary buffer from the default buffer pool.
+   *
+   * @param reader a reader which fills a buffer with the data at a given manifest offset.
+   * @return a manifest.
+   * @throws IOException when an error occurs while reading the manifest data.
+   * @throws ManifestException when the manifest is malformed.
+   */
+  @NonNull
+  private static Manifest read(@NonNull SectionReader reader)
+      throws IOException, ManifestException {
+    var pool = BufferPool.getDefault();
+    var buffer = pool.acquire(HEADER_LENGTH);
+
+    try {
+      reader.read(buffer, 0);
+      buffer.flip();
+
+      var header = new ManifestHeader(buffer.duplicate());
+      var length = HEADER_LENGTH
+          + (int) (header.getAuthenticationLength() + header.getMetadataLength());
+
+      // pooled buffers are typically large enough to fit the entire manifest in which case we'll
+      // simply continue reading into the same buffer
+      if (length > buffer.capacity()) {
+        var expanded = pool.acquire(length);
+        expanded.put(buffer);
+        pool.release(buffer);
+        buffer = expanded;
+      } else {
+        buffer.limit(length);
+        buffer.position(HEADER_LENGTH);
+      }
 
-    var buffer = ByteBuffer.allocate((int) (HEADER_LENGTH + length));
-    buffer.put(headerBuffer);
-    if (channel.read(buffer) == -1) {
-      throw new EOFException("Channel contains insufficient data");
-    }
-    buffer.flip();
+      reader.read(buffer, HEADER_LENGTH);
+      buffer.flip();
 
-    return new Manifest(buffer);
+      return new Manifest(buffer);
+    } finally {
+      pool.release(buffer);
+    }
   }
 
   /**
@@ -182,6 +287,26 @@ public class Manifest implements BinarySerializable {
     return this.metadata;
   }
 
+  /**
+   * Retrieves the authentication section which carries the content digest and signature of this
+   * container.
+   *
+   * @return an authentication section or, if the container is not signed, an empty optional.
+   */
+  @NonNull
+  public Optional<AuthenticationSection> getAuthentication() {
+    return Optional.ofNullable(this.authentication);
+  }
+
+  /**
+   * Retrieves the length of the authentication section.
+   *
+   * @return a length (in bytes).
+   */
+  private long getAuthenticationLength() {
+    return this.authentication != null ? this.authentication.getSerializedLength() : 0;
+  }
+
   /**
    * Retrieves the absolute location of the actual container contents (in bytes).
    *
@@ -201,7 +326,24 @@ public class Manifest implements BinarySerializable {
   }
 
   /**
-   * Decorates a passed file with this manifest header.
+   * <p>Retrieves the amount of unused bytes which are reserved between the end of the encoded
+   * metadata and the start of the container contents.</p>
+   *
+   * <p>Padding is considered part of the metadata section and permits the metadata to grow
+   * without relocating the container contents.</p>
+   *
+   * @return an amount of bytes.
+   */
+  public long getPadding() {
+    return Math.max(0, this.contentOffset - HEADER_LENGTH - this.getAuthenticationLength()
+        - this.metadata.getSerializedLength());
+  }
+
+  /**
+   * <p>Decorates a passed file with this manifest header.</p>
+   *
+   * <p>The content length within the written header reflects the actual size of the input file
+   * regardless of the content length specified within this manifest.</p>
    *
    * @param inputFile an arbitrary input file (typically an archive such as a Jar or executable
    * file).
@@ -211,24 +353,47 @@ public class Manifest implements BinarySerializable {
    */
   public void decorate(@NonNull Path inputFile, @NonNull Path outputFile)
       throws IOException, ManifestEncoderException {
-    var manifestBuffer = ByteBuffer.allocate((int) this.getSerializedLength());
-    this.serialize(manifestBuffer);
-    manifestBuffer.flip();
-
-    try (var outputChannel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
-        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-        var inputChannel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
-      outputChannel.write(manifestBuffer);
-      inputChannel.transferTo(0, Long.MAX_VALUE, outputChannel);
+    try (var inputChannel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+      this.decorate(inputChannel, outputFile);
     }
   }
 
+  /**
+   * <p>Decorates the remaining contents of a passed channel with this manifest header.</p>
+   *
+   * <p>The content is streamed directly into the output file and thus does not need to be of
+   * known length. Once all content has been written, the content length within the header is
+   * updated to reflect the actual amount of bytes.</p>
+   *
+   * @param content an arbitrary content channel (will not be closed).
+   * @param outputFile an output file path.
+   * @return a manifest which reflects the actual content length.
+   * @throws IOException when writing to the target file or reading from the channel fails.
+   * @throws ManifestEncoderException when encoding the manifest fails.
+   * @see ContainerWriter
+   */
+  @NonNull
+  public Manifest decorate(@NonNull ReadableByteChannel content, @NonNull Path outputFile)
+      throws IOException, ManifestEncoderException {
+    return new ContainerWriter().write(this, content, outputFile);
+  }
+
+  /**
+   * @see #decorate(ReadableByteChannel, Path)
+   */
+  @NonNull
+  public Manifest decorate(@NonNull InputStream content, @NonNull Path outputFile)
+      throws IOException, ManifestEncoderException {
+    return new ContainerWriter().write(this, content, outputFile);
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public long getSerializedLength() {
-    return HEADER_LENGTH + this.metadata.getSerializedLength();
+    return HEADER_LENGTH + this.getAuthenticationLength() + this.metadata.getSerializedLength()
+        + this.getPadding();
   }
 
   /**
@@ -236,12 +401,21 @@ public class Manifest implements BinarySerializable {
    */
   @Override
   public void serialize(@NonNull ByteBuffer buffer) throws ManifestEncoderException {
+    var padding = this.getPadding();
+
     buffer.putInt(MAGIC_NUMBER);
     DataUtil.writeUnsignedShort(buffer, this.flags);
-    buffer.putLong(0); // TODO: Authentication
-    buffer.putLong(this.metadata.getSerializedLength());
+    buffer.putLong(this.getAuthenticationLength());
+    buffer.putLong(this.metadata.getSerializedLength() + padding);
     buffer.putLong(this.contentLength);
+    if (this.authentication != null) {
+      this.authentication.serialize(buffer);
+    }
     this.metadata.serialize(buffer);
+
+    for (var i = 0L; i < padding; ++i) {
+      buffer.put((byte) 0);
+    }
   }
 
   /**
@@ -259,7 +433,8 @@ public class Manifest implements BinarySerializable {
     return this.flags == manifest.flags &&
         this.contentOffset == manifest.contentOffset &&
         this.contentLength == manifest.contentLength &&
-        Objects.equals(this.metadata, manifest.metadata);
+        Objects.equals(this.metadata, manifest.metadata) &&
+        Objects.equals(this.authentication, manifest.authentication);
   }
 
   /**
@@ -267,7 +442,17 @@ public class Manifest implements BinarySerializable {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.flags, this.metadata, this.contentOffset, this.contentLength);
+    return Objects.hash(this.flags, this.metadata, this.authentication, this.contentOffset,
+        this.contentLength);
+  }
+
+  /**
+   * Fills a buffer with the manifest data at a given offset.
+   */
+  @FunctionalInterface
+  private interface SectionReader {
+
+    void read(@NonNull ByteBuffer buffer, long offset) throws IOException;
   }
 
   /**
@@ -277,6 +462,9 @@ public class Manifest implements BinarySerializable {
 
     private int flags;
     private Metadata metadata;
+    private AuthenticationSection authentication;
+    private long padding;
+    private long alignment = 1;
     private long contentLength;
 
     @NonNull
@@ -285,10 +473,19 @@ public class Manifest implements BinarySerializable {
         throw new IllegalStateException("Missing manifest section: metadata");
       }
 
+      // the content offset is rounded up to the next multiple of the alignment while the
+      // difference is absorbed by the metadata padding
+      var contentOffset = HEADER_LENGTH + this.metadata.getSerializedLength() + this.padding;
+      if (this.authentication != null) {
+        contentOffset += this.authentication.getSerializedLength();
+      }
+      contentOffset = (contentOffset + this.alignment - 1) & -this.alignment;
+
       return new Manifest(
           this.flags,
           this.metadata,
-          HEADER_LENGTH + this.metadata.getSerializedLength(),
+          this.authentication,
+          contentOffset,
           this.contentLength
       );
     }
@@ -332,6 +529,82 @@ public class Manifest implements BinarySerializable {
       return this.setMetadata(builder.build());
     }
 
+    /**
+     * Creates a new builder which has been pre-populated with the current metadata and passes it
+     * to a custom factory method for modification.
+     *
+     * @param metadataFactory a metadata factory.
+     * @throws IllegalStateException when no metadata has been set yet.
+     * @throws UnsupportedOperationException when the current metadata version is unsupported.
+     * @see MetadataBuilderFactory#newBuilder(Metadata)
+     */
+    @NonNull
+    public Builder editMetadata(@NonNull Consumer<Metadata.Builder> metadataFactory) {
+      if (this.metadata == null) {
+        throw new IllegalStateException("Missing manifest section: metadata");
+      }
+
+      var version = this.metadata.getFormatVersion();
+      var builder = MetadataBuilderFactory.get(version)
+          .orElseThrow(() -> new UnsupportedOperationException(
+              "Unsupported metadata format version: " + version))
+          .newBuilder(this.metadata);
+      metadataFactory.accept(builder);
+      return this.setMetadata(builder.build());
+    }
+
+    /**
+     * Specifies the authentication section of the manifest. Typically, this is a placeholder
+     * which reserves space for the section which is filled in once the container contents have
+     * been written.
+     *
+     * @see Manifest#getAuthentication()
+     * @see org.basinmc.chloramine.manifest.auth.ContainerSigner#createPlaceholder()
+     */
+    @NonNull
+    public Builder setAuthentication(@Nullable AuthenticationSection authentication) {
+      this.authentication = authentication;
+      return this;
+    }
+
+    /**
+     * Specifies the amount of bytes which shall be reserved after the metadata section in order to
+     * permit it to grow without relocating the container contents.
+     *
+     * @throws IllegalArgumentException when the specified value is negative.
+     * @see Manifest#getPadding()
+     */
+    @NonNull
+    public Builder setPadding(long padding) {
+      if (padding < 0) {
+        throw new IllegalArgumentException("Padding cannot be negative: " + padding);
+      }
+
+      this.padding = padding;
+      return this;
+    }
+
+    /**
+     * <p>Specifies the alignment of the content offset.</p>
+     *
+     * <p>When the content would otherwise start at an unaligned offset, additional padding is
+     * inserted after the metadata section. Aligned containers permit their contents to be mapped
+     * into memory starting at a page boundary.</p>
+     *
+     * @param alignment an alignment (in bytes) which must be a power of two.
+     * @throws IllegalArgumentException when the specified value is not a positive power of two.
+     * @see #PAGE_ALIGNMENT
+     */
+    @NonNull
+    public Builder setAlignment(long alignment) {
+      if (alignment < 1 || Long.bitCount(alignment) != 1) {
+        throw new IllegalArgumentException("Alignment must be a power of two: " + alignment);
+      }
+
+      this.alignment = alignment;
+      return this;
+    }
+
     /**
      * @throws IllegalArgumentException when the specified value is invalid.
      * @see Manifest#getContentLength()
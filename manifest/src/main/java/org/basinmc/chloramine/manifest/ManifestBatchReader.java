@@ -0,0 +1,321 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+
+/**
+ * <p>Reads the manifests of a large amount of containers in parallel.</p>
+ *
+ * <p>The amount of manifests which are read at the same time (and thus the amount of open file
+ * descriptors) is limited by the configured concurrency regardless of the executor in use. When
+ * no executor is given, each batch is processed by a dedicated pool of daemon threads. Callers on
+ * runtimes which provide virtual threads may pass a thread-per-task executor instead.</p>
+ *
+ * <p>Failures are collected per file and never abort the remaining batch.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestBatchReader {
+
+  /**
+   * Defines the file name pattern which identifies container files within a directory.
+   */
+  public static final String CONTAINER_GLOB = "*.bec";
+
+  private final int concurrency;
+  private final Executor executor;
+
+  public ManifestBatchReader() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  public ManifestBatchReader(int concurrency) {
+    this(concurrency, null);
+  }
+
+  /**
+   * @param concurrency the maximum amount of manifests read at the same time.
+   * @param executor an executor or null to create a dedicated thread pool for each batch.
+   * @throws IllegalArgumentException when the concurrency is less than one.
+   */
+  public ManifestBatchReader(int concurrency, @Nullable Executor executor) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+    }
+
+    this.concurrency = concurrency;
+    this.executor = executor;
+  }
+
+  /**
+   * Reads the manifests of all specified containers.
+   *
+   * @param paths a collection of container files.
+   * @return a list of results (in the same order as the passed paths).
+   * @throws InterruptedException when interrupted while waiting for the batch to complete.
+   */
+  @NonNull
+  public List<Result> read(@NonNull Collection<Path> paths) throws InterruptedException {
+    var results = new Result[paths.size()];
+    var it = paths.iterator();
+
+    this.read(() -> new IndexedIterator(it), (index, result) -> results[index] = result);
+    return Collections.unmodifiableList(Arrays.asList(results));
+  }
+
+  /**
+   * Reads the manifests of all containers within the specified directory stream.
+   *
+   * @param stream a directory stream.
+   * @return a list of results (in iteration order).
+   * @throws InterruptedException when interrupted while waiting for the batch to complete.
+   */
+  @NonNull
+  public List<Result> read(@NonNull DirectoryStream<Path> stream) throws InterruptedException {
+    var paths = new ArrayList<Path>();
+    stream.forEach(paths::add);
+    return this.read(paths);
+  }
+
+  /**
+   * Reads the manifests of all container files ({@link #CONTAINER_GLOB}) within the specified
+   * directory.
+   *
+   * @param directory a directory.
+   * @return a list of results (in iteration order).
+   * @throws IOException when listing the directory fails.
+   * @throws InterruptedException when interrupted while waiting for the batch to complete.
+   */
+  @NonNull
+  public List<Result> readDirectory(@NonNull Path directory)
+      throws IOException, InterruptedException {
+    try (var stream = Files.newDirectoryStream(directory, CONTAINER_GLOB)) {
+      return this.read(stream);
+    }
+  }
+
+  /**
+   * <p>Reads the manifests of all specified containers and passes each result to a callback as
+   * soon as it becomes available.</p>
+   *
+   * <p>The callback is invoked from the executor threads and may thus be invoked concurrently.
+   * This method returns once all results have been passed to the callback.</p>
+   *
+   * @param paths an arbitrary amount of container files.
+   * @param callback a callback.
+   * @throws InterruptedException when interrupted while waiting for the batch to complete.
+   */
+  public void read(@NonNull Iterable<Path> paths, @NonNull Callback callback)
+      throws InterruptedException {
+    this.read(() -> new IndexedIterator(paths.iterator()),
+        (index, result) -> callback.accept(result));
+  }
+
+  private void read(@NonNull Iterable<IndexedPath> paths, @NonNull IndexedCallback callback)
+      throws InterruptedException {
+    ExecutorService ownedExecutor = null;
+    var executor = this.executor;
+    if (executor == null) {
+      ownedExecutor = Executors.newFixedThreadPool(this.concurrency, (runnable) -> {
+        var thread = new Thread(runnable, "manifest-batch-reader");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor = ownedExecutor;
+    }
+
+    var permits = new Semaphore(this.concurrency);
+    var callbackFailure = new AtomicReference<RuntimeException>();
+
+    try {
+      for (var path : paths) {
+        permits.acquire();
+
+        Runnable task = () -> {
+          try {
+            callback.accept(path.index, readSingle(path.path));
+          } catch (RuntimeException ex) {
+            callbackFailure.compareAndSet(null, ex);
+          } finally {
+            permits.release();
+          }
+        };
+
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+          permits.release();
+          callback.accept(path.index, new Result(path.path, null, ex));
+        }
+      }
+
+      // once all permits have been returned, every submitted task has completed
+      permits.acquire(this.concurrency);
+    } finally {
+      if (ownedExecutor != null) {
+        ownedExecutor.shutdown();
+      }
+    }
+
+    var failure = callbackFailure.get();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @NonNull
+  private static Result readSingle(@NonNull Path path) {
+    try {
+      return new Result(path, Manifest.read(path), null);
+    } catch (IOException | ManifestException | RuntimeException ex) {
+      return new Result(path, null, ex);
+    }
+  }
+
+  /**
+   * Receives the results of a batch as they become available.
+   */
+  @FunctionalInterface
+  public interface Callback {
+
+    void accept(@NonNull Result result);
+  }
+
+  @FunctionalInterface
+  private interface IndexedCallback {
+
+    void accept(int index, @NonNull Result result);
+  }
+
+  /**
+   * Represents the outcome of reading a single manifest.
+   */
+  public static final class Result {
+
+    private final Path path;
+    private final Manifest manifest;
+    private final Exception error;
+
+    private Result(@NonNull Path path, @Nullable Manifest manifest, @Nullable Exception error) {
+      this.path = path;
+      this.manifest = manifest;
+      this.error = error;
+    }
+
+    /**
+     * Retrieves the path of the container file.
+     *
+     * @return a path.
+     */
+    @NonNull
+    public Path getPath() {
+      return this.path;
+    }
+
+    /**
+     * Retrieves the decoded manifest.
+     *
+     * @return a manifest or, if reading failed, an empty optional.
+     */
+    @NonNull
+    public Optional<Manifest> getManifest() {
+      return Optional.ofNullable(this.manifest);
+    }
+
+    /**
+     * Retrieves the error which occurred while reading the manifest.
+     *
+     * @return an error or, if reading succeeded, an empty optional.
+     */
+    @NonNull
+    public Optional<Exception> getError() {
+      return Optional.ofNullable(this.error);
+    }
+
+    /**
+     * Evaluates whether the manifest has been read successfully.
+     *
+     * @return true if successful, false otherwise.
+     */
+    public boolean isSuccess() {
+      return this.manifest != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      if (this.error != null) {
+        return this.path + ": " + this.error;
+      }
+
+      return this.path + ": " + this.manifest.getMetadata().getIdentifier();
+    }
+  }
+
+  private static final class IndexedPath {
+
+    private final int index;
+    private final Path path;
+
+    private IndexedPath(int index, @NonNull Path path) {
+      this.index = index;
+      this.path = path;
+    }
+  }
+
+  private static final class IndexedIterator implements Iterator<IndexedPath> {
+
+    private final Iterator<Path> it;
+    private int index;
+
+    private IndexedIterator(@NonNull Iterator<Path> it) {
+      this.it = it;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.it.hasNext();
+    }
+
+    @Override
+    public IndexedPath next() {
+      return new IndexedPath(this.index++, this.it.next());
+    }
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.FileStamp;
+
+/**
+ * <p>Caches the manifests of frequently accessed container files.</p>
+ *
+ * <p>Each lookup retrieves the current stamp (file key, size and modification time) of the
+ * requested file and compares it against the stamp recorded when the manifest was cached. As
+ * such, a cache hit costs a single stat call while modified files are transparently read
+ * again.</p>
+ *
+ * <p>The cache is bounded either by the amount of entries or by the accumulated serialized length
+ * of all cached manifests. When the bound is exceeded, the least recently used entries are
+ * evicted. Concurrent misses for the same file may cause it to be read more than once.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestCache {
+
+  private final long maximumWeight;
+  private final ToLongFunction<Manifest> weigher;
+
+  private final Object lock = new Object();
+  private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  private ManifestCache(long maximumWeight, @NonNull ToLongFunction<Manifest> weigher) {
+    if (maximumWeight < 1) {
+      throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+    }
+
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Creates a new cache which retains up to the specified amount of manifests.
+   *
+   * @param maximumEntries a maximum amount of entries.
+   * @return a cache.
+   * @throws IllegalArgumentException when the maximum is less than one.
+   */
+  @NonNull
+  public static ManifestCache withMaximumEntries(long maximumEntries) {
+    return new ManifestCache(maximumEntries, (manifest) -> 1);
+  }
+
+  /**
+   * Creates a new cache which retains manifests up to the specified accumulated serialized length.
+   *
+   * @param maximumBytes a maximum amount of bytes.
+   * @return a cache.
+   * @throws IllegalArgumentException when the maximum is less than one.
+   * @see Manifest#getSerializedLength()
+   */
+  @NonNull
+  public static ManifestCache withMaximumBytes(long maximumBytes) {
+    return new ManifestCache(maximumBytes, Manifest::getSerializedLength);
+  }
+
+  /**
+   * <p>Retrieves the manifest of the specified container file.</p>
+   *
+   * <p>When a manifest for the file has been cached and the file remains unchanged, the cached
+   * instance is returned. Otherwise, the manifest is read from the file and cached.</p>
+   *
+   * @param path a container file.
+   * @return a manifest.
+   * @throws IOException when retrieving the file stamp or reading the manifest fails.
+   * @throws ManifestException when the manifest is malformed.
+   */
+  @NonNull
+  public Manifest get(@NonNull Path path) throws IOException, ManifestException {
+    var stamp = FileStamp.of(path);
+
+    synchronized (this.lock) {
+      var entry = this.entries.get(path);
+      if (entry != null && entry.stamp.equals(stamp)) {
+        this.hitCount.increment();
+        return entry.manifest;
+      }
+    }
+
+    this.missCount.increment();
+
+    var manifest = Manifest.read(path);
+    var weight = this.weigher.applyAsLong(manifest);
+    if (weight > this.maximumWeight) {
+      this.invalidate(path);
+      return manifest;
+    }
+
+    synchronized (this.lock) {
+      var previous = this.entries.put(path, new Entry(stamp, manifest, weight));
+      if (previous != null) {
+        this.weight -= previous.weight;
+      }
+      this.weight += weight;
+
+      var it = this.entries.values().iterator();
+      while (this.weight > this.maximumWeight) {
+        var eldest = it.next();
+        it.remove();
+
+        this.weight -= eldest.weight;
+        this.evictionCount.increment();
+      }
+    }
+
+    return manifest;
+  }
+
+  /**
+   * Removes the cached manifest for the specified file (if any).
+   *
+   * @param path a container file.
+   */
+  public void invalidate(@NonNull Path path) {
+    synchronized (this.lock) {
+      var previous = this.entries.remove(path);
+      if (previous != null) {
+        this.weight -= previous.weight;
+      }
+    }
+  }
+
+  /**
+   * Removes all cached manifests.
+   */
+  public void invalidateAll() {
+    synchronized (this.lock) {
+      this.entries.clear();
+      this.weight = 0;
+    }
+  }
+
+  /**
+   * Retrieves the amount of cached manifests.
+   *
+   * @return an amount of entries.
+   */
+  public int size() {
+    synchronized (this.lock) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * Retrieves the accumulated weight of all cached manifests (either in entries or bytes
+   * depending on the configured bound).
+   *
+   * @return a weight.
+   */
+  public long getWeight() {
+    synchronized (this.lock) {
+      return this.weight;
+    }
+  }
+
+  /**
+   * Retrieves a snapshot of the cache statistics.
+   *
+   * @return a statistics snapshot.
+   */
+  @NonNull
+  public Statistics getStatistics() {
+    return new Statistics(this.hitCount.sum(), this.missCount.sum(), this.evictionCount.sum());
+  }
+
+  /**
+   * Represents a cached manifest along with the stamp of its file at the time it was read.
+   */
+  private static final class Entry {
+
+    private final FileStamp stamp;
+    private final Manifest manifest;
+    private final long weight;
+
+    private Entry(@NonNull FileStamp stamp, @NonNull Manifest manifest, long weight) {
+      this.stamp = stamp;
+      this.manifest = manifest;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * Provides a snapshot of the cache statistics.
+   */
+  public static final class Statistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    private Statistics(long hitCount, long missCount, long evictionCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Retrieves the amount of lookups which have been served from the cache.
+     *
+     * @return an amount of hits.
+     */
+    public long getHitCount() {
+      return this.hitCount;
+    }
+
+    /**
+     * Retrieves the amount of lookups which required the manifest to be read.
+     *
+     * @return an amount of misses.
+     */
+    public long getMissCount() {
+      return this.missCount;
+    }
+
+    /**
+     * Retrieves the amount of entries which have been evicted due to the cache bound.
+     *
+     * @return an amount of evictions.
+     */
+    public long getEvictionCount() {
+      return this.evictionCount;
+    }
+
+    /**
+     * Retrieves the ratio of lookups which have been served from the cache.
+     *
+     * @return a hit rate between 0 and 1 (or 1 when no lookups have been performed).
+     */
+    public double getHitRate() {
+      var total = this.hitCount + this.missCount;
+      return total == 0 ? 1.0 : (double) this.hitCount / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return "Statistics{" +
+          "hitCount=" + this.hitCount +
+          ", missCount=" + this.missCount +
+          ", evictionCount=" + this.evictionCount +
+          '}';
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+
+/**
+ * <p>Modifies the metadata of existing container files.</p>
+ *
+ * <p>When the modified metadata fits within the metadata section of the existing container
+ * (including its padding), only the header and metadata section are rewritten in place while the
+ * container contents remain untouched (retaining the alignment of the content offset). Otherwise,
+ * the container is copied into a new file with the configured amount of padding and alignment
+ * which replaces the original container once complete.</p>
+ *
+ * <p>In-place modifications are not atomic. Readers which access a container while it is being
+ * modified may thus observe a partially written metadata section.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestEditor {
+
+  /**
+   * Defines the amount of padding which is reserved when a container is relocated by default.
+   */
+  public static final long DEFAULT_PADDING = 256;
+
+  private final BufferPool pool;
+  private final long padding;
+  private final long alignment;
+
+  public ManifestEditor() {
+    this(DEFAULT_PADDING);
+  }
+
+  /**
+   * @param padding the amount of padding to reserve when a container needs to be relocated.
+   * @throws IllegalArgumentException when the specified padding is negative.
+   */
+  public ManifestEditor(long padding) {
+    this(BufferPool.getDefault(), padding);
+  }
+
+  /**
+   * @param pool a pool from which staging buffers are acquired.
+   * @param padding the amount of padding to reserve when a container needs to be relocated.
+   * @throws IllegalArgumentException when the specified padding is negative.
+   */
+  public ManifestEditor(@NonNull BufferPool pool, long padding) {
+    this(pool, padding, 1);
+  }
+
+  /**
+   * @param pool a pool from which staging buffers are acquired.
+   * @param padding the amount of padding to reserve when a container needs to be relocated.
+   * @param alignment the content alignment to apply when a container needs to be relocated.
+   * @throws IllegalArgumentException when the specified padding is negative or the alignment is
+   * not a power of two.
+   * @see Manifest.Builder#setAlignment(long)
+   */
+  public ManifestEditor(@NonNull BufferPool pool, long padding, long alignment) {
+    if (padding < 0) {
+      throw new IllegalArgumentException("Padding cannot be negative: " + padding);
+    }
+    if (alignment < 1 || Long.bitCount(alignment) != 1) {
+      throw new IllegalArgumentException("Alignment must be a power of two: " + alignment);
+    }
+
+    this.pool = pool;
+    this.padding = padding;
+    this.alignment = alignment;
+  }
+
+  /**
+   * Modifies the metadata of the specified container using a builder which has been
+   * pre-populated with its current metadata.
+   *
+   * @param file a container file.
+   * @param modifier a function which modifies the metadata.
+   * @return the result of the modification.
+   * @throws IOException when reading or writing the container fails.
+   * @throws ManifestException when the existing manifest is malformed, encoding the modified
+   * manifest fails or the container is signed.
+   * @throws UnsupportedOperationException when the metadata version of the container is
+   * unsupported.
+   */
+  @NonNull
+  public Result edit(@NonNull Path file, @NonNull Consumer<Metadata.Builder> modifier)
+      throws IOException, ManifestException {
+    try (var channel = FileChannel
+        .open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      var manifest = Manifest.read(channel, 0);
+      var metadata = Manifest.builder(manifest)
+          .editMetadata(modifier)
+          .build()
+          .getMetadata();
+
+      return this.replace(file, channel, manifest, metadata);
+    }
+  }
+
+  /**
+   * Replaces the metadata of the specified container.
+   *
+   * @param file a container file.
+   * @param metadata the replacement metadata.
+   * @return the result of the modification.
+   * @throws IOException when reading or writing the container fails.
+   * @throws ManifestException when the existing manifest is malformed, encoding the modified
+   * manifest fails or the container is signed.
+   */
+  @NonNull
+  public Result edit(@NonNull Path file, @NonNull Metadata metadata)
+      throws IOException, ManifestException {
+    try (var channel = FileChannel
+        .open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      var manifest = Manifest.read(channel, 0);
+      return this.replace(file, channel, manifest, metadata);
+    }
+  }
+
+  /**
+   * Replaces the metadata within an open container either in place or by relocating its
+   * contents.
+   */
+  @NonNull
+  private Result replace(@NonNull Path file, @NonNull FileChannel channel,
+      @NonNull Manifest manifest, @NonNull Metadata metadata)
+      throws IOException, ManifestException {
+    if (manifest.getAuthentication().isPresent()) {
+      // the signature covers the metadata and would thus be invalidated by any modification
+      throw new ManifestAuthenticationException(
+          "Illegal container: Signed containers cannot be modified");
+    }
+
+    var writer = new ManifestWriter(this.pool);
+
+    if (Manifest.HEADER_LENGTH + metadata.getSerializedLength() <= manifest.getContentOffset()) {
+      // the content offset is retained as is and thus any remaining space is filled with padding
+      var replacement = new Manifest(manifest.getFlags(), metadata, manifest.getContentOffset(),
+          manifest.getContentLength());
+
+      channel.position(0);
+      writer.write(replacement, channel);
+      return new Result(replacement, true);
+    }
+
+    var replacement = Manifest.builder(manifest)
+        .setMetadata(metadata)
+        .setPadding(this.padding)
+        .setAlignment(this.alignment)
+        .build();
+
+    var target = file.toAbsolutePath();
+    var tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (var outputChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        writer.write(replacement, outputChannel);
+
+        // everything past the original manifest is carried over as is so that trailing sections
+        // remain intact
+        var position = manifest.getContentOffset();
+        var size = channel.size();
+        while (position < size) {
+          var transferred = channel.transferTo(position, size - position, outputChannel);
+          if (transferred <= 0) {
+            break;
+          }
+          position += transferred;
+        }
+      }
+
+      try {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+
+    return new Result(replacement, false);
+  }
+
+  /**
+   * Represents the outcome of a metadata modification.
+   */
+  public static final class Result {
+
+    private final Manifest manifest;
+    private final boolean inPlace;
+
+    private Result(@NonNull Manifest manifest, boolean inPlace) {
+      this.manifest = manifest;
+      this.inPlace = inPlace;
+    }
+
+    /**
+     * Retrieves the manifest which has been written to the container.
+     *
+     * @return a manifest.
+     */
+    @NonNull
+    public Manifest getManifest() {
+      return this.manifest;
+    }
+
+    /**
+     * Evaluates whether the modification has been performed in place (e.g. without relocating the
+     * container contents).
+     *
+     * @return true if modified in place, false otherwise.
+     */
+    public boolean isInPlace() {
+      return this.inPlace;
+    }
+  }
+}
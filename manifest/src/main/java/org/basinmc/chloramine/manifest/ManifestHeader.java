@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.basinmc.chloramine.manifest.error.MetadataVersionException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+import org.basinmc.chloramine.manifest.metadata.MetadataDecoder;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+
+/**
+ * <p>Represents the fixed length header of an extension container manifest.</p>
+ *
+ * <p>Headers expose the flags and section lengths of a container without decoding any of its
+ * variable length sections. When read from a file, the metadata section will be decoded lazily
+ * upon first access.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestHeader {
+
+  private final int flags;
+  private final long authenticationLength;
+  private final long metadataLength;
+  private final long contentLength;
+
+  private final Path source;
+  private volatile Metadata metadata;
+
+  /**
+   * Decodes a manifest header from the specified buffer.
+   *
+   * @param buffer a buffer containing at least {@link Manifest#HEADER_LENGTH} bytes.
+   * @throws ManifestHeaderException when the header is malformed.
+   */
+  public ManifestHeader(@NonNull ByteBuffer buffer) throws ManifestHeaderException {
+    this(buffer, null);
+  }
+
+  private ManifestHeader(@NonNull ByteBuffer buffer, @Nullable Path source)
+      throws ManifestHeaderException {
+    if (buffer.remaining() < Manifest.HEADER_LENGTH) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal header: Expected %d bytes but got %d", Manifest.HEADER_LENGTH,
+          buffer.remaining()));
+    }
+
+    var magicNumber = buffer.getInt();
+    if (magicNumber != Manifest.MAGIC_NUMBER) {
+      throw new ManifestHeaderException(String.format("Illegal magic number: 0x%08X", magicNumber));
+    }
+
+    this.flags = buffer.getShort() & 0xFFFF;
+    this.authenticationLength = buffer.getLong();
+    this.metadataLength = buffer.getLong();
+    this.contentLength = buffer.getLong();
+    this.source = source;
+
+    if (this.authenticationLength < 0 || this.authenticationLength > Integer.MAX_VALUE) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal authentication section: Section exceeds maximum length (%d bytes > %d)",
+          this.authenticationLength, Integer.MAX_VALUE));
+    }
+    if (this.metadataLength < 0 || this.metadataLength > Integer.MAX_VALUE) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal metadata section: Section exceeds maximum length (%d bytes > %d)",
+          this.metadataLength, Integer.MAX_VALUE));
+    }
+    if (this.authenticationLength + this.metadataLength
+        > Integer.MAX_VALUE - Manifest.HEADER_LENGTH) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal header: Section exceeds maximum length (%d bytes > %d)",
+          this.authenticationLength + this.metadataLength,
+          Integer.MAX_VALUE - Manifest.HEADER_LENGTH));
+    }
+    if (this.contentLength < 0) {
+      throw new ManifestHeaderException(
+          "Illegal content section: Negative length: " + this.contentLength);
+    }
+  }
+
+  /**
+   * Reads a manifest header from the specified channel.
+   *
+   * @param channel an arbitrary input channel.
+   * @return a manifest header.
+   * @throws IOException when an error occurs while reading the header.
+   * @throws ManifestHeaderException when the header is malformed.
+   */
+  @NonNull
+  public static ManifestHeader read(@NonNull ReadableByteChannel channel)
+      throws IOException, ManifestHeaderException {
+    var pool = BufferPool.getDefault();
+    var buffer = pool.acquire(Manifest.HEADER_LENGTH);
+
+    try {
+      ChannelUtil.readFully(channel, buffer);
+      buffer.flip();
+
+      return new ManifestHeader(buffer);
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * Reads a manifest header from the specified absolute position within a file channel. The
+   * position of the channel itself remains unchanged.
+   *
+   * @param channel an arbitrary file channel.
+   * @param position the absolute position of the header.
+   * @return a manifest header.
+   * @throws IOException when an error occurs while reading the header.
+   * @throws ManifestHeaderException when the header is malformed.
+   */
+  @NonNull
+  public static ManifestHeader read(@NonNull FileChannel channel, long position)
+      throws IOException, ManifestHeaderException {
+    var pool = BufferPool.getDefault();
+    var buffer = pool.acquire(Manifest.HEADER_LENGTH);
+
+    try {
+      ChannelUtil.readFully(channel, buffer, position);
+      buffer.flip();
+
+      return new ManifestHeader(buffer);
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * <p>Reads the manifest header of the specified container file.</p>
+   *
+   * <p>Only the fixed length header is read by this method. The metadata section is read and
+   * decoded upon the first invocation of {@link #getMetadata()}.</p>
+   *
+   * @param path a container file.
+   * @return a manifest header.
+   * @throws IOException when an error occurs while reading the header.
+   * @throws ManifestHeaderException when the header is malformed.
+   */
+  @NonNull
+  public static ManifestHeader read(@NonNull Path path)
+      throws IOException, ManifestHeaderException {
+    var pool = BufferPool.getDefault();
+    var buffer = pool.acquire(Manifest.HEADER_LENGTH);
+
+    try {
+      try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        ChannelUtil.readFully(channel, buffer, 0);
+      }
+      buffer.flip();
+
+      return new ManifestHeader(buffer, path);
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * Decodes a metadata section.
+   *
+   * @param buffer a buffer containing the complete metadata section.
+   * @return the decoded metadata.
+   * @throws ManifestException when the metadata is malformed or of an unsupported version.
+   */
+  @NonNull
+  static Metadata decodeMetadata(@NonNull ByteBuffer buffer) throws ManifestException {
+    var metadataVersion = buffer.get();
+    return MetadataDecoder.get(metadataVersion)
+        .orElseThrow(() -> new MetadataVersionException(
+            "Unsupported metadata format version: " + metadataVersion))
+        .decode(metadataVersion, buffer);
+  }
+
+  /**
+   * @see Manifest#getFlags()
+   */
+  public int getFlags() {
+    return this.flags;
+  }
+
+  /**
+   * Retrieves the total length of the authentication section (in bytes).
+   *
+   * @return a length.
+   */
+  public long getAuthenticationLength() {
+    return this.authenticationLength;
+  }
+
+  /**
+   * Retrieves the total length of the metadata section (in bytes).
+   *
+   * @return a length.
+   */
+  public long getMetadataLength() {
+    return this.metadataLength;
+  }
+
+  /**
+   * Retrieves the absolute location of the metadata section (in bytes).
+   *
+   * @return an offset.
+   */
+  public long getMetadataOffset() {
+    return Manifest.HEADER_LENGTH + this.authenticationLength;
+  }
+
+  /**
+   * @see Manifest#getContentLength()
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * @see Manifest#getContentOffset()
+   */
+  public long getContentOffset() {
+    return this.getMetadataOffset() + this.metadataLength;
+  }
+
+  /**
+   * <p>Retrieves the container metadata.</p>
+   *
+   * <p>The metadata section is read from the originating file and decoded upon the first
+   * invocation of this method. Subsequent invocations return the same instance.</p>
+   *
+   * @return a representation of the metadata section.
+   * @throws IOException when reading the metadata section fails.
+   * @throws ManifestException when the metadata section is malformed.
+   * @throws IllegalStateException when the header has not been read from a file.
+   */
+  @NonNull
+  public Metadata getMetadata() throws IOException, ManifestException {
+    var metadata = this.metadata;
+    if (metadata != null) {
+      return metadata;
+    }
+
+    if (this.source == null) {
+      throw new IllegalStateException(
+          "Cannot decode metadata: Header has not been read from a file");
+    }
+
+    var pool = BufferPool.getDefault();
+    var buffer = pool.acquire((int) this.metadataLength);
+
+    try {
+      try (var channel = FileChannel.open(this.source, StandardOpenOption.READ)) {
+        ChannelUtil.readFully(channel, buffer, this.getMetadataOffset());
+      }
+      buffer.flip();
+
+      metadata = decodeMetadata(buffer);
+    } finally {
+      pool.release(buffer);
+    }
+
+    this.metadata = metadata;
+    return metadata;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ManifestHeader)) {
+      return false;
+    }
+    ManifestHeader that = (ManifestHeader) o;
+    return this.flags == that.flags &&
+        this.authenticationLength == that.authenticationLength &&
+        this.metadataLength == that.metadataLength &&
+        this.contentLength == that.contentLength;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects
+        .hash(this.flags, this.authenticationLength, this.metadataLength, this.contentLength);
+  }
+}
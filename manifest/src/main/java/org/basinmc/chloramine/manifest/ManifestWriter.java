@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Encodes manifests directly into an arbitrary output channel or stream.</p>
+ *
+ * <p>Unlike {@link Manifest#serialize(ByteBuffer)}, the writer does not require the serialized
+ * length of the manifest to be known ahead of time. Instead, the authentication and metadata
+ * sections are encoded in a single pass into a pooled staging buffer behind a placeholder header
+ * while the section lengths within the header are back-patched once encoding has completed. The
+ * staging buffer is only replaced with a larger buffer (and the sections encoded again) when
+ * their encoded form exceeds its capacity. Padding is streamed to the output directly and is
+ * never staged.</p>
+ *
+ * <p>Writers are stateless and may be shared between threads.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestWriter {
+
+  /**
+   * Defines the initial capacity of the staging buffer (in bytes).
+   */
+  public static final int INITIAL_CAPACITY = 8 * 1024;
+
+  /**
+   * Defines the amount of padding which is written at once (in bytes).
+   */
+  private static final int PADDING_CHUNK_SIZE = 4 * 1024;
+
+  private final BufferPool pool;
+
+  public ManifestWriter() {
+    this(BufferPool.getDefault());
+  }
+
+  /**
+   * @param pool a pool from which staging buffers are acquired.
+   */
+  public ManifestWriter(@NonNull BufferPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Writes the specified manifest to a channel.
+   *
+   * @param manifest a manifest.
+   * @param channel an output channel.
+   * @return the amount of bytes written.
+   * @throws IOException when writing to the channel fails.
+   * @throws ManifestEncoderException when encoding the manifest fails.
+   */
+  public long write(@NonNull Manifest manifest, @NonNull WritableByteChannel channel)
+      throws IOException, ManifestEncoderException {
+    var buffer = this.encode(manifest);
+    long length = buffer.remaining();
+
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      this.pool.release(buffer);
+    }
+
+    var padding = Math.max(0, manifest.getContentOffset() - length);
+    if (padding != 0) {
+      var zeros = ByteBuffer.allocate((int) Math.min(padding, PADDING_CHUNK_SIZE));
+      for (var remaining = padding; remaining > 0; ) {
+        zeros.clear();
+        zeros.limit((int) Math.min(remaining, zeros.capacity()));
+        while (zeros.hasRemaining()) {
+          remaining -= channel.write(zeros);
+        }
+      }
+    }
+    return length + padding;
+  }
+
+  /**
+   * Writes the specified manifest to a stream.
+   *
+   * @param manifest a manifest.
+   * @param outputStream an output stream (will not be closed).
+   * @return the amount of bytes written.
+   * @throws IOException when writing to the stream fails.
+   * @throws ManifestEncoderException when encoding the manifest fails.
+   */
+  public long write(@NonNull Manifest manifest, @NonNull OutputStream outputStream)
+      throws IOException, ManifestEncoderException {
+    // the channel is intentionally not closed as it would close the passed stream
+    return this.write(manifest, Channels.newChannel(outputStream));
+  }
+
+  /**
+   * Encodes the header as well as the authentication and metadata sections of the specified
+   * manifest (excluding its padding) into a pooled buffer.
+   *
+   * @param manifest a manifest.
+   * @return a flipped buffer which must be returned to the pool by the caller.
+   * @throws ManifestEncoderException when encoding the manifest fails.
+   */
+  @NonNull
+  private ByteBuffer encode(@NonNull Manifest manifest) throws ManifestEncoderException {
+    var authentication = manifest.getAuthentication().orElse(null);
+    var buffer = this.pool.acquire(INITIAL_CAPACITY);
+
+    try {
+      long authenticationLength;
+      while (true) {
+        try {
+          buffer.limit(buffer.capacity());
+          buffer.position(Manifest.HEADER_LENGTH);
+          if (authentication != null) {
+            authentication.serialize(buffer);
+          }
+          authenticationLength = buffer.position() - Manifest.HEADER_LENGTH;
+          manifest.getMetadata().serialize(buffer);
+          break;
+        } catch (BufferOverflowException ex) {
+          var capacity = buffer.capacity();
+          if (capacity > Integer.MAX_VALUE / 2) {
+            throw new ManifestEncoderException(String.format(
+                "Illegal manifest: Manifest exceeds maximum length (%d bytes)",
+                Integer.MAX_VALUE), ex);
+          }
+
+          var previous = buffer;
+          buffer = null;
+          this.pool.release(previous);
+          buffer = this.pool.acquire(capacity * 2);
+        }
+      }
+
+      // the section lengths are only known once their contents have been encoded and are thus
+      // back-patched into the placeholder header
+      var length = buffer.position();
+      var metadataLength = length - Manifest.HEADER_LENGTH - authenticationLength;
+      var padding = Math.max(0, manifest.getContentOffset() - length);
+
+      buffer.position(0);
+      buffer.putInt(Manifest.MAGIC_NUMBER);
+      DataUtil.writeUnsignedShort(buffer, manifest.getFlags());
+      buffer.putLong(authenticationLength);
+      buffer.putLong(metadataLength + padding);
+      buffer.putLong(manifest.getContentLength());
+
+      buffer.position(0);
+      buffer.limit(length);
+      return buffer;
+    } catch (ManifestEncoderException | RuntimeException ex) {
+      if (buffer != null) {
+        this.pool.release(buffer);
+      }
+      throw ex;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+
+/**
+ * <p>Represents an extension container which resides entirely within memory (typically through a
+ * read-only file mapping).</p>
+ *
+ * <p>The manifest is parsed directly from the backing buffer while the content section is exposed
+ * as a read-only slice of the very same buffer. As such, no data is copied onto the heap when
+ * accessing the container contents.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MappedContainer {
+
+  private final Manifest manifest;
+  private final ByteBuffer content;
+
+  /**
+   * Parses a container from the specified buffer.
+   *
+   * @param buffer a buffer containing a complete container (starting at its current position).
+   * @throws ManifestException when the manifest is malformed or the content section exceeds the
+   * bounds of the buffer.
+   */
+  public MappedContainer(@NonNull ByteBuffer buffer) throws ManifestException {
+    var view = buffer.duplicate();
+    var base = view.position();
+    this.manifest = new Manifest(view);
+
+    var contentOffset = this.manifest.getContentOffset();
+    var contentLength = this.manifest.getContentLength();
+    if (contentOffset + contentLength > buffer.limit() - base) {
+      throw new ManifestHeaderException(String.format(
+          "Illegal content section: Section exceeds container bounds (%d bytes > %d)",
+          contentOffset + contentLength, buffer.limit() - base));
+    }
+
+    view.limit(base + (int) (contentOffset + contentLength));
+    view.position(base + (int) contentOffset);
+    this.content = view.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Maps the specified container file into memory and parses its manifest.
+   *
+   * @param path a container file.
+   * @return a mapped container.
+   * @throws IOException when opening or mapping the file fails.
+   * @throws ManifestException when the manifest is malformed.
+   */
+  @NonNull
+  public static MappedContainer open(@NonNull Path path) throws IOException, ManifestException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new ManifestHeaderException(String.format(
+            "Illegal container: File exceeds maximum mappable length (%d bytes > %d)",
+            size, Integer.MAX_VALUE));
+      }
+
+      // mappings remain valid after their originating channel has been closed
+      return new MappedContainer(channel.map(MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  /**
+   * Retrieves the manifest of this container.
+   *
+   * @return a manifest.
+   */
+  @NonNull
+  public Manifest getManifest() {
+    return this.manifest;
+  }
+
+  /**
+   * <p>Retrieves a read-only view of the container contents.</p>
+   *
+   * <p>Each invocation returns an independent view (e.g. position and limit are not shared
+   * between callers) of the same underlying memory.</p>
+   *
+   * @return a content buffer.
+   */
+  @NonNull
+  public ByteBuffer getContent() {
+    return this.content.duplicate();
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Objects;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.metadata.BinarySerializable;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Represents the authentication section of a container manifest.</p>
+ *
+ * <p>The section carries a digest of the encoded container contents along with a signature which
+ * covers the digest and signature algorithm names, the container flags, the content length, the
+ * block size, the content digest and the encoded metadata. The section is encoded as
+ * follows:</p>
+ *
+ * <ul>
+ * <li>format version (unsigned 8-bit integer)</li>
+ * <li>digest algorithm (string)</li>
+ * <li>content digest (length prefixed bytes)</li>
+ * <li>block size (32-bit integer)</li>
+ * <li>tree offset (64-bit integer)</li>
+ * <li>signature algorithm (string)</li>
+ * <li>signature (length prefixed bytes)</li>
+ * </ul>
+ *
+ * <p>When the block size is zero, the digest covers the contents as a whole. Otherwise, the
+ * digest is the root of a {@link HashTree} which permits the verification of individual blocks
+ * and is stored at the specified offset relative to the end of the content section.</p>
+ *
+ * <p>Any data beyond the signature is considered padding. Writers reserve space for the section
+ * before the content is written and fill in the actual digest and signature afterwards (see
+ * {@link ContainerSigner}).</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class AuthenticationSection implements BinarySerializable {
+
+  /**
+   * Defines the section format version which is written by this implementation.
+   */
+  public static final short FORMAT_VERSION = 0;
+
+  private final String digestAlgorithm;
+  private final byte[] digest;
+  private final int blockSize;
+  private final long treeOffset;
+  private final String signatureAlgorithm;
+  private final byte[] signature;
+  private final long reservedLength;
+
+  public AuthenticationSection(
+      @NonNull String digestAlgorithm,
+      @NonNull byte[] digest,
+      int blockSize,
+      long treeOffset,
+      @NonNull String signatureAlgorithm,
+      @NonNull byte[] signature,
+      long reservedLength) {
+    this.digestAlgorithm = digestAlgorithm;
+    this.digest = digest.clone();
+    this.blockSize = blockSize;
+    this.treeOffset = treeOffset;
+    this.signatureAlgorithm = signatureAlgorithm;
+    this.signature = signature.clone();
+    this.reservedLength = reservedLength;
+  }
+
+  /**
+   * Decodes an authentication section from the specified buffer. All remaining data within the
+   * buffer is considered part of the section.
+   *
+   * @param buffer a buffer.
+   * @return an authentication section.
+   * @throws ManifestAuthenticationException when the section is malformed.
+   */
+  @NonNull
+  public static AuthenticationSection read(@NonNull ByteBuffer buffer)
+      throws ManifestAuthenticationException {
+    var length = buffer.remaining();
+
+    try {
+      var version = DataUtil.readUnsignedByte(buffer);
+      if (version != FORMAT_VERSION) {
+        throw new ManifestAuthenticationException(
+            "Illegal authentication section: Unsupported format version: " + version);
+      }
+
+      var digestAlgorithm = DataUtil.readRequiredString(buffer,
+          () -> new ManifestAuthenticationException(
+              "Illegal authentication section: Missing digest algorithm"));
+      var digest = DataUtil.readBytes(buffer)
+          .orElseThrow(() -> new ManifestAuthenticationException(
+              "Illegal authentication section: Missing digest"));
+      var blockSize = buffer.getInt();
+      var treeOffset = buffer.getLong();
+      if (blockSize < 0 || treeOffset < 0) {
+        throw new ManifestAuthenticationException(String.format(
+            "Illegal authentication section: Illegal hash tree (%d byte blocks at offset %d)",
+            blockSize, treeOffset));
+      }
+      var signatureAlgorithm = DataUtil.readRequiredString(buffer,
+          () -> new ManifestAuthenticationException(
+              "Illegal authentication section: Missing signature algorithm"));
+      var signature = DataUtil.readBytes(buffer)
+          .orElseThrow(() -> new ManifestAuthenticationException(
+              "Illegal authentication section: Missing signature"));
+
+      return new AuthenticationSection(digestAlgorithm, digest, blockSize, treeOffset,
+          signatureAlgorithm, signature, length);
+    } catch (BufferUnderflowException ex) {
+      throw new ManifestAuthenticationException(
+          "Illegal authentication section: Truncated section", ex);
+    }
+  }
+
+  /**
+   * Encodes the data which is covered by the signature of a container.
+   *
+   * @param digestAlgorithm the name of the digest algorithm.
+   * @param signatureAlgorithm the name of the signature algorithm.
+   * @param flags the container flags.
+   * @param contentLength the encoded content length.
+   * @param blockSize the hash tree block size or zero if the digest covers the entire contents.
+   * @param digest the content digest.
+   * @param metadata the container metadata.
+   * @return the signed data.
+   * @throws ManifestEncoderException when encoding the metadata fails.
+   */
+  @NonNull
+  static byte[] encodeSignedData(@NonNull String digestAlgorithm,
+      @NonNull String signatureAlgorithm, int flags, long contentLength, int blockSize,
+      @NonNull byte[] digest, @NonNull Metadata metadata) throws ManifestEncoderException {
+    var buffer = ByteBuffer.allocate((int) (DataUtil.estimateString(digestAlgorithm)
+        + DataUtil.estimateString(signatureAlgorithm) + 14 + digest.length
+        + metadata.getSerializedLength()));
+    DataUtil.writeString(buffer, digestAlgorithm);
+    DataUtil.writeString(buffer, signatureAlgorithm);
+    DataUtil.writeUnsignedShort(buffer, flags);
+    buffer.putLong(contentLength);
+    buffer.putInt(blockSize);
+    buffer.put(digest);
+    metadata.serialize(buffer);
+    return buffer.array();
+  }
+
+  /**
+   * Retrieves the name of the algorithm which has been used to compute the content digest.
+   *
+   * @return a digest algorithm (as understood by {@link MessageDigest#getInstance(String)}).
+   */
+  @NonNull
+  public String getDigestAlgorithm() {
+    return this.digestAlgorithm;
+  }
+
+  /**
+   * Retrieves the digest of the encoded container contents.
+   *
+   * @return a digest or, if the block size is non-zero, the root of the hash tree.
+   */
+  @NonNull
+  public byte[] getDigest() {
+    return this.digest.clone();
+  }
+
+  /**
+   * Retrieves the size of the blocks which are covered by the leaves of the hash tree.
+   *
+   * @return a block size (in bytes) or zero if the digest covers the entire contents.
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Retrieves the location of the hash tree relative to the end of the content section.
+   *
+   * @return an offset (in bytes).
+   * @see HashTree#open(java.nio.channels.FileChannel, long, AuthenticationSection, long)
+   */
+  public long getTreeOffset() {
+    return this.treeOffset;
+  }
+
+  /**
+   * Retrieves the name of the algorithm which has been used to compute the signature.
+   *
+   * @return a signature algorithm (as understood by {@link Signature#getInstance(String)}).
+   */
+  @NonNull
+  public String getSignatureAlgorithm() {
+    return this.signatureAlgorithm;
+  }
+
+  /**
+   * Retrieves the container signature.
+   *
+   * @return a signature.
+   */
+  @NonNull
+  public byte[] getSignature() {
+    return this.signature.clone();
+  }
+
+  /**
+   * Evaluates whether the specified contents match the digest within this section.
+   *
+   * @param content a channel which provides the encoded container contents (will not be
+   * closed).
+   * @return true if the contents match, false otherwise.
+   * @throws IOException when reading the contents fails.
+   * @throws GeneralSecurityException when the digest algorithm is not supported.
+   */
+  public boolean verifyDigest(@NonNull ReadableByteChannel content)
+      throws IOException, GeneralSecurityException {
+    var digest = MessageDigest.getInstance(this.digestAlgorithm);
+    var tree = this.blockSize != 0 ? new HashTreeBuilder(digest, this.blockSize) : null;
+    var buffer = ByteBuffer.allocate(64 * 1024);
+
+    while (content.read(buffer) != -1) {
+      buffer.flip();
+      if (tree != null) {
+        tree.update(buffer);
+      } else {
+        digest.update(buffer);
+      }
+      buffer.clear();
+    }
+
+    var actual = tree != null ? tree.getRoot() : digest.digest();
+    return MessageDigest.isEqual(this.digest, actual);
+  }
+
+  /**
+   * Evaluates whether the signature within this section has been created for the specified
+   * manifest by the owner of the specified key. Note that this method does not verify the
+   * content digest (see {@link #verifyDigest(ReadableByteChannel)}).
+   *
+   * @param manifest the manifest which carries this section.
+   * @param key a public key.
+   * @return true if the signature is valid, false otherwise.
+   * @throws GeneralSecurityException when the signature algorithm is not supported or the key is
+   * invalid.
+   * @throws ManifestEncoderException when encoding the metadata fails.
+   */
+  public boolean verifySignature(@NonNull Manifest manifest, @NonNull PublicKey key)
+      throws GeneralSecurityException, ManifestEncoderException {
+    var signature = Signature.getInstance(this.signatureAlgorithm);
+    signature.initVerify(key);
+    signature.update(encodeSignedData(this.digestAlgorithm, this.signatureAlgorithm,
+        manifest.getFlags(), manifest.getContentLength(), this.blockSize, this.digest,
+        manifest.getMetadata()));
+    return signature.verify(this.signature);
+  }
+
+  /**
+   * Retrieves the encoded length of this section (excluding its padding).
+   *
+   * @return a length (in bytes).
+   */
+  private long getEncodedLength() {
+    return 1
+        + DataUtil.estimateString(this.digestAlgorithm)
+        + DataUtil.estimateBytes(this.digest)
+        + 12
+        + DataUtil.estimateString(this.signatureAlgorithm)
+        + DataUtil.estimateBytes(this.signature);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getSerializedLength() {
+    return Math.max(this.getEncodedLength(), this.reservedLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void serialize(@NonNull ByteBuffer buffer) throws ManifestEncoderException {
+    DataUtil.writeUnsignedByte(buffer, FORMAT_VERSION);
+    DataUtil.writeString(buffer, this.digestAlgorithm);
+    DataUtil.writeBytes(buffer, this.digest);
+    buffer.putInt(this.blockSize);
+    buffer.putLong(this.treeOffset);
+    DataUtil.writeString(buffer, this.signatureAlgorithm);
+    DataUtil.writeBytes(buffer, this.signature);
+
+    for (var i = this.getEncodedLength(); i < this.reservedLength; ++i) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof AuthenticationSection)) {
+      return false;
+    }
+    AuthenticationSection that = (AuthenticationSection) o;
+    return Objects.equals(this.digestAlgorithm, that.digestAlgorithm) &&
+        Arrays.equals(this.digest, that.digest) &&
+        this.blockSize == that.blockSize &&
+        this.treeOffset == that.treeOffset &&
+        Objects.equals(this.signatureAlgorithm, that.signatureAlgorithm) &&
+        Arrays.equals(this.signature, that.signature);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.digestAlgorithm, Arrays.hashCode(this.digest), this.blockSize,
+        this.treeOffset, this.signatureAlgorithm, Arrays.hashCode(this.signature));
+  }
+}
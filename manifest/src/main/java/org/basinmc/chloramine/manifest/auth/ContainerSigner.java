@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+
+/**
+ * <p>Signs containers while they are being written.</p>
+ *
+ * <p>Since the authentication section precedes the metadata and content sections, its space is
+ * reserved upfront using a placeholder ({@link #createPlaceholder()}). The content digest is
+ * computed within the same pass which writes the content (see {@link HashTreeChannel} and {@link
+ * DigestChannel}) and the placeholder is replaced with the actual section once the content has
+ * been written.</p>
+ *
+ * <p>By default, the content digest is the root of a {@link HashTree} which permits readers to
+ * verify only the blocks they actually access. When a block size of zero is specified, a flat
+ * digest of the entire contents is signed instead.</p>
+ *
+ * <p>Only algorithms which are provided by the JDK are required. Ed25519 keys are supported on
+ * runtimes which provide the algorithm while EC and RSA keys are supported on all runtimes.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ContainerSigner {
+
+  /**
+   * Defines the digest algorithm which is used by default.
+   */
+  public static final String DEFAULT_DIGEST_ALGORITHM = "SHA-256";
+
+  /**
+   * Defines the amount of additional bytes which are reserved for signatures of variable length.
+   */
+  private static final int SIGNATURE_SLACK = 16;
+
+  private final PrivateKey key;
+  private final String signatureAlgorithm;
+  private final String digestAlgorithm;
+  private final int blockSize;
+
+  /**
+   * @param key a private key.
+   * @throws IllegalArgumentException when the key type is not supported.
+   * @see #getDefaultSignatureAlgorithm(Key)
+   */
+  public ContainerSigner(@NonNull PrivateKey key) {
+    this(key, getDefaultSignatureAlgorithm(key), DEFAULT_DIGEST_ALGORITHM,
+        HashTree.DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param key a private key.
+   * @param signatureAlgorithm a signature algorithm which is compatible with the key.
+   * @param digestAlgorithm a content digest algorithm.
+   * @param blockSize a hash tree block size or zero to sign a flat digest of the contents.
+   * @throws IllegalArgumentException when the block size is negative.
+   */
+  public ContainerSigner(@NonNull PrivateKey key, @NonNull String signatureAlgorithm,
+      @NonNull String digestAlgorithm, int blockSize) {
+    if (blockSize < 0) {
+      throw new IllegalArgumentException("Block size cannot be negative: " + blockSize);
+    }
+
+    this.key = key;
+    this.signatureAlgorithm = signatureAlgorithm;
+    this.digestAlgorithm = digestAlgorithm;
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Selects a signature algorithm for the specified key. Where supported, algorithms which
+   * produce fixed length signatures are preferred.
+   *
+   * @param key a key.
+   * @return a signature algorithm.
+   * @throws IllegalArgumentException when the key type is not supported.
+   */
+  @NonNull
+  public static String getDefaultSignatureAlgorithm(@NonNull Key key) {
+    switch (key.getAlgorithm()) {
+      case "EC":
+        return "SHA256withECDSAinP1363Format";
+      case "RSA":
+        return "SHA256withRSA";
+      case "Ed25519":
+      case "EdDSA":
+        return "Ed25519";
+      case "Ed448":
+        return "Ed448";
+      default:
+        throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+    }
+  }
+
+  /**
+   * Retrieves the hash tree block size.
+   *
+   * @return a block size (in bytes) or zero if a flat digest is signed.
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Creates a new digest which is used to hash the container contents.
+   *
+   * @return a message digest.
+   * @throws GeneralSecurityException when the digest algorithm is not supported.
+   */
+  @NonNull
+  public MessageDigest newDigest() throws GeneralSecurityException {
+    return MessageDigest.getInstance(this.digestAlgorithm);
+  }
+
+  /**
+   * Creates a placeholder section which reserves sufficient space for the section which is
+   * eventually produced by {@link #sign(int, long, byte[], long, Metadata, long)}.
+   *
+   * @return a placeholder section.
+   * @throws GeneralSecurityException when the algorithms are not supported or the key is invalid.
+   */
+  @NonNull
+  public AuthenticationSection createPlaceholder() throws GeneralSecurityException {
+    // the length of signatures only depends on the key and algorithm in most cases while the
+    // additional slack covers algorithms with variable length encodings (such as DER)
+    var signature = Signature.getInstance(this.signatureAlgorithm);
+    signature.initSign(this.key);
+    signature.update(new byte[0]);
+    var signatureLength = signature.sign().length + SIGNATURE_SLACK;
+
+    var section = new AuthenticationSection(this.digestAlgorithm,
+        new byte[this.newDigest().getDigestLength()], this.blockSize, 0, this.signatureAlgorithm,
+        new byte[signatureLength], 0);
+    return new AuthenticationSection(this.digestAlgorithm, new byte[0], this.blockSize, 0,
+        this.signatureAlgorithm, new byte[0], section.getSerializedLength());
+  }
+
+  /**
+   * Signs a container.
+   *
+   * @param flags the container flags.
+   * @param contentLength the encoded content length.
+   * @param digest the digest (or hash tree root) of the encoded contents.
+   * @param treeOffset the location of the hash tree relative to the end of the content section.
+   * @param metadata the container metadata.
+   * @param reservedLength the amount of bytes which have been reserved for the section.
+   * @return an authentication section.
+   * @throws GeneralSecurityException when the algorithms are not supported or the key is invalid.
+   * @throws ManifestEncoderException when encoding the metadata fails or the resulting section
+   * exceeds the reserved length.
+   */
+  @NonNull
+  public AuthenticationSection sign(int flags, long contentLength, @NonNull byte[] digest,
+      long treeOffset, @NonNull Metadata metadata, long reservedLength)
+      throws GeneralSecurityException, ManifestEncoderException {
+    var signature = Signature.getInstance(this.signatureAlgorithm);
+    signature.initSign(this.key);
+    signature.update(AuthenticationSection.encodeSignedData(this.digestAlgorithm,
+        this.signatureAlgorithm, flags, contentLength, this.blockSize, digest, metadata));
+
+    var section = new AuthenticationSection(this.digestAlgorithm, digest, this.blockSize,
+        treeOffset, this.signatureAlgorithm, signature.sign(), reservedLength);
+    if (section.getSerializedLength() != reservedLength) {
+      throw new ManifestEncoderException(String.format(
+          "Illegal authentication section: Section exceeds reserved length (%d bytes > %d)",
+          section.getSerializedLength(), reservedLength));
+    }
+
+    return section;
+  }
+}
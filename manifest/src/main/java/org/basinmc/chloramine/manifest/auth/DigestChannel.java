@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Updates a message digest with all data which is written through this channel while passing it
+ * on to the underlying channel as is.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class DigestChannel implements WritableByteChannel {
+
+  private final WritableByteChannel channel;
+  private final MessageDigest digest;
+
+  /**
+   * @param channel a channel to which all data is passed on (will be closed along with this
+   * channel).
+   * @param digest a message digest.
+   */
+  public DigestChannel(@NonNull WritableByteChannel channel, @NonNull MessageDigest digest) {
+    this.channel = channel;
+    this.digest = digest;
+  }
+
+  /**
+   * Completes the digest computation.
+   *
+   * @return a digest of all data written so far.
+   * @see MessageDigest#digest()
+   */
+  @NonNull
+  public byte[] digest() {
+    return this.digest.digest();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) throws IOException {
+    var view = src.duplicate();
+    var written = this.channel.write(src);
+
+    // only the data which has actually been accepted by the underlying channel is hashed
+    view.limit(view.position() + written);
+    this.digest.update(view);
+    return written;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.channel.isOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
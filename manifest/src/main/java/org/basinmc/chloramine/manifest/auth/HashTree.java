@@ -0,0 +1,432 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.basinmc.chloramine.manifest.content.ContentSource;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+
+/**
+ * <p>Represents a Merkle tree which covers the encoded container contents in fixed-size blocks
+ * and permits the verification of individual blocks against the signed root of the tree.</p>
+ *
+ * <p>Each block is hashed into a leaf node while each pair of adjacent nodes is hashed into a
+ * parent node until a single root node remains. Nodes without a sibling are promoted to the next
+ * level as is. Leaf and parent nodes are prefixed with {@link #LEAF_PREFIX} and {@link
+ * #NODE_PREFIX} respectively before they are hashed in order to distinguish them from each
+ * other.</p>
+ *
+ * <p>The root is stored within the authentication section while all other levels are stored in
+ * an auxiliary region behind the content section (see {@link
+ * AuthenticationSection#getTreeOffset()}) which consists of a header of {@link #HEADER_LENGTH}
+ * bytes followed by the nodes of each level (starting with the leaves):</p>
+ *
+ * <ul>
+ * <li>magic number {@link #MAGIC_NUMBER} (32-bit integer)</li>
+ * <li>block size (32-bit integer)</li>
+ * <li>amount of blocks (32-bit integer)</li>
+ * </ul>
+ *
+ * <p>Nodes are loaded and verified on demand. Once verified, nodes are retained in memory so that
+ * the verification of subsequent blocks stops at the first node which has previously been
+ * verified. As such, the cost of verification is proportional to the amount of blocks which are
+ * actually read. Retained nodes are published without locking and thus concurrent readers of
+ * previously verified regions do not contend with each other.</p>
+ *
+ * <p>Block contents, on the other hand, are never trusted once they have left memory. Every read
+ * of a block re-hashes its contents and compares them against the (retained) leaf node. As such,
+ * contents which are modified after they have first been read are still detected.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class HashTree {
+
+  /**
+   * Defines the magic number which identifies hash trees ("BECH").
+   */
+  public static final int MAGIC_NUMBER = 0x42454348;
+
+  /**
+   * Defines the total amount of bytes present within the tree header.
+   */
+  public static final int HEADER_LENGTH = 12;
+
+  /**
+   * Defines the default block size.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Defines the prefix which is hashed along with the contents of each block.
+   */
+  public static final byte LEAF_PREFIX = 0x00;
+
+  /**
+   * Defines the prefix which is hashed along with each pair of child nodes.
+   */
+  public static final byte NODE_PREFIX = 0x01;
+
+  private final FileChannel channel;
+  private final long position;
+  private final String digestAlgorithm;
+  private final int digestLength;
+  private final int blockSize;
+  private final long contentLength;
+  private final byte[] root;
+
+  private final int[] levelSizes;
+  private final int[] levelOffsets;
+  private final AtomicReferenceArray<byte[]> nodes;
+  private final AtomicLongArray verifiedBlocks;
+
+  private HashTree(@NonNull FileChannel channel, long position, @NonNull String digestAlgorithm,
+      int digestLength, int blockSize, long contentLength, @NonNull byte[] root) {
+    this.channel = channel;
+    this.position = position;
+    this.digestAlgorithm = digestAlgorithm;
+    this.digestLength = digestLength;
+    this.blockSize = blockSize;
+    this.contentLength = contentLength;
+    this.root = root;
+
+    var blockCount = getBlockCount(blockSize, contentLength);
+    this.levelSizes = getLevelSizes(blockCount);
+    this.levelOffsets = new int[this.levelSizes.length];
+    for (var i = 1; i < this.levelSizes.length; ++i) {
+      this.levelOffsets[i] = this.levelOffsets[i - 1] + this.levelSizes[i - 1];
+    }
+
+    var top = this.levelSizes.length - 1;
+    this.nodes = new AtomicReferenceArray<>(this.levelOffsets[top]);
+    this.verifiedBlocks = new AtomicLongArray((blockCount + 63) / 64);
+  }
+
+  /**
+   * <p>Opens the hash tree which is referenced by the specified authentication section.</p>
+   *
+   * <p>Only the tree header is read by this method. Nodes are read once they are required in
+   * order to verify a block.</p>
+   *
+   * @param channel a file channel (will not be closed).
+   * @param contentEnd the absolute position of the end of the content section.
+   * @param section an authentication section which references a hash tree.
+   * @param contentLength the length of the contents which are covered by the tree.
+   * @return a hash tree.
+   * @throws IOException when reading the tree header fails or the tree is malformed.
+   * @throws GeneralSecurityException when the digest algorithm is not supported.
+   * @throws IllegalArgumentException when the section does not reference a hash tree.
+   */
+  @NonNull
+  public static HashTree open(@NonNull FileChannel channel, long contentEnd,
+      @NonNull AuthenticationSection section, long contentLength)
+      throws IOException, GeneralSecurityException {
+    if (section.getBlockSize() == 0) {
+      throw new IllegalArgumentException("Section does not reference a hash tree");
+    }
+
+    var digestLength = MessageDigest.getInstance(section.getDigestAlgorithm()).getDigestLength();
+    var root = section.getDigest();
+    if (root.length != digestLength) {
+      throw new IOException(String.format(
+          "Illegal hash tree: Root length does not match digest (%d bytes != %d)", root.length,
+          digestLength));
+    }
+
+    var position = contentEnd + section.getTreeOffset();
+    var header = ByteBuffer.allocate(HEADER_LENGTH);
+    ChannelUtil.readFully(channel, header, position);
+    header.flip();
+
+    var magicNumber = header.getInt();
+    if (magicNumber != MAGIC_NUMBER) {
+      throw new IOException(String.format(
+          "Illegal hash tree: Illegal magic number: 0x%08X", magicNumber));
+    }
+
+    var blockSize = header.getInt();
+    var blockCount = header.getInt();
+    if (blockSize != section.getBlockSize()
+        || blockCount != getBlockCount(blockSize, contentLength)) {
+      throw new IOException(String.format(
+          "Illegal hash tree: Inconsistent header (%d block(s) of %d bytes for %d bytes)",
+          blockCount, blockSize, contentLength));
+    }
+
+    return new HashTree(channel, position + HEADER_LENGTH, section.getDigestAlgorithm(),
+        digestLength, blockSize, contentLength, root);
+  }
+
+  /**
+   * Computes the amount of blocks which cover the specified contents. Empty contents are covered
+   * by a single empty block.
+   *
+   * @param blockSize a block size.
+   * @param contentLength a content length.
+   * @return an amount of blocks.
+   */
+  static int getBlockCount(int blockSize, long contentLength) {
+    var blockCount = (contentLength + blockSize - 1) / blockSize;
+    if (blockCount > Integer.MAX_VALUE / 2) {
+      throw new IllegalArgumentException(String.format(
+          "Block size is too small for the contents (%d bytes for %d bytes)", blockSize,
+          contentLength));
+    }
+    return Math.max(1, (int) blockCount);
+  }
+
+  /**
+   * Computes the amount of nodes on each level of a tree (starting with the leaves and ending
+   * with the root).
+   *
+   * @param blockCount an amount of blocks.
+   * @return an array of level sizes.
+   */
+  @NonNull
+  static int[] getLevelSizes(int blockCount) {
+    var levelCount = 1;
+    for (var n = blockCount; n > 1; n = (n + 1) / 2) {
+      ++levelCount;
+    }
+
+    var sizes = new int[levelCount];
+    sizes[0] = blockCount;
+    for (var i = 1; i < levelCount; ++i) {
+      sizes[i] = (sizes[i - 1] + 1) / 2;
+    }
+    return sizes;
+  }
+
+  /**
+   * Retrieves the block size.
+   *
+   * @return a block size (in bytes).
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Retrieves the amount of blocks.
+   *
+   * @return an amount of blocks.
+   */
+  public int getBlockCount() {
+    return this.levelSizes[0];
+  }
+
+  /**
+   * Retrieves the length of the contents which are covered by this tree.
+   *
+   * @return a length (in bytes).
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * Retrieves the set of blocks which have been verified so far.
+   *
+   * @return a set of block indices.
+   */
+  @NonNull
+  public BitSet getVerifiedBlocks() {
+    var words = new long[this.verifiedBlocks.length()];
+    for (var i = 0; i < words.length; ++i) {
+      words[i] = this.verifiedBlocks.get(i);
+    }
+    return BitSet.valueOf(words);
+  }
+
+  /**
+   * Reads and verifies the block with the specified index.
+   *
+   * @param source a source which provides the covered contents.
+   * @param index a block index.
+   * @return the verified block contents.
+   * @throws ContentIntegrityException when the block or the tree does not match the root.
+   * @throws IOException when reading the block or the tree fails.
+   */
+  @NonNull
+  byte[] readBlock(@NonNull ContentSource source, int index) throws IOException {
+    var length = (int) Math
+        .min(this.blockSize, this.contentLength - (long) index * this.blockSize);
+    var block = new byte[length];
+    source.readFully(ByteBuffer.wrap(block), (long) index * this.blockSize);
+
+    var digest = this.newDigest();
+    digest.update(LEAF_PREFIX);
+    digest.update(block);
+
+    var expected = this.getNode(0, index);
+    if (!MessageDigest.isEqual(expected, digest.digest())) {
+      throw new ContentIntegrityException(
+          String.format("Illegal content: Digest mismatch in block #%d", index));
+    }
+
+    markVerified(this.verifiedBlocks, index);
+    return block;
+  }
+
+  /**
+   * <p>Retrieves the verified value of a node.</p>
+   *
+   * <p>When the node has not been verified yet, it is read along with its sibling and verified
+   * against its parent (which is in turn verified against its own parent if necessary).</p>
+   *
+   * <p>Verified nodes are published atomically without holding a lock. Threads which race to
+   * verify the same node will perform redundant work but will always arrive at the same
+   * value.</p>
+   */
+  @NonNull
+  private byte[] getNode(int level, int index) throws IOException {
+    if (level == this.levelSizes.length - 1) {
+      return this.root;
+    }
+
+    var nodeIndex = this.levelOffsets[level] + index;
+    var node = this.nodes.get(nodeIndex);
+    if (node != null) {
+      return node;
+    }
+
+    var first = index & ~1;
+    var count = Math.min(2, this.levelSizes[level] - first);
+    var data = new byte[count * this.digestLength];
+    ChannelUtil.readFully(this.channel, ByteBuffer.wrap(data),
+        this.position + (long) (this.levelOffsets[level] + first) * this.digestLength);
+
+    byte[] parent;
+    if (count == 2) {
+      var digest = this.newDigest();
+      digest.update(NODE_PREFIX);
+      digest.update(data);
+      parent = digest.digest();
+    } else {
+      parent = data;
+    }
+
+    var expected = this.getNode(level + 1, index / 2);
+    if (!MessageDigest.isEqual(expected, parent)) {
+      throw new ContentIntegrityException(String.format(
+          "Illegal hash tree: Digest mismatch in node #%d of level %d", first / 2, level + 1));
+    }
+
+    for (var i = 0; i < count; ++i) {
+      var offset = i * this.digestLength;
+      this.nodes.compareAndSet(this.levelOffsets[level] + first + i, null,
+          Arrays.copyOfRange(data, offset, offset + this.digestLength));
+    }
+    return this.nodes.get(nodeIndex);
+  }
+
+  /**
+   * Marks the specified block as verified within a bitmap.
+   *
+   * @param bitmap a bitmap.
+   * @param index a block index.
+   */
+  private static void markVerified(@NonNull AtomicLongArray bitmap, int index) {
+    var word = index >>> 6;
+    var mask = 1L << index;
+
+    long value;
+    do {
+      value = bitmap.get(word);
+    } while ((value & mask) == 0 && !bitmap.compareAndSet(word, value, value | mask));
+  }
+
+  @NonNull
+  private MessageDigest newDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(this.digestAlgorithm);
+    } catch (GeneralSecurityException ex) {
+      // the algorithm has been resolved when the tree was opened
+      throw new IOException("Illegal hash tree: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * <p>Creates a source which verifies all blocks which are covered by a read before passing on
+   * their contents.</p>
+   *
+   * <p>Each read fetches and verifies the entire blocks it covers. The most recently verified
+   * block is retained by the returned source so that consecutive reads within the same block are
+   * served from memory rather than being read and hashed again.</p>
+   *
+   * @param source a source which provides the covered contents.
+   * @return a verifying content source.
+   */
+  @NonNull
+  public ContentSource verifying(@NonNull ContentSource source) {
+    var lastBlock = new AtomicReference<VerifiedBlock>();
+
+    return new ContentSource() {
+      @Override
+      public void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+          if (position >= HashTree.this.contentLength) {
+            throw new EOFException("Source contains insufficient data");
+          }
+
+          var index = (int) (position / HashTree.this.blockSize);
+          var blockPosition = (int) (position - (long) index * HashTree.this.blockSize);
+
+          var block = lastBlock.get();
+          if (block == null || block.index != index) {
+            block = new VerifiedBlock(index, HashTree.this.readBlock(source, index));
+            lastBlock.set(block);
+          }
+
+          var n = Math.min(buffer.remaining(), block.data.length - blockPosition);
+          buffer.put(block.data, blockPosition, n);
+          position += n;
+        }
+      }
+
+      @Override
+      public boolean isOpen() {
+        return source.isOpen() && HashTree.this.channel.isOpen();
+      }
+    };
+  }
+
+  /**
+   * Represents the verified contents of a single block.
+   */
+  private static final class VerifiedBlock {
+
+    private final int index;
+    private final byte[] data;
+
+    private VerifiedBlock(int index, @NonNull byte[] data) {
+      this.index = index;
+      this.data = data;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * <p>Computes the hash tree of arbitrary contents in a single sequential pass.</p>
+ *
+ * <p>Only the leaves are retained while the contents are being hashed. All remaining levels are
+ * computed once the tree is finished.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ * @see HashTree
+ */
+final class HashTreeBuilder {
+
+  private final MessageDigest digest;
+  private final int digestLength;
+  private final int blockSize;
+
+  private byte[] leaves;
+  private int blockCount;
+  private int blockPosition;
+  private byte[][] levels;
+
+  HashTreeBuilder(@NonNull MessageDigest digest, int blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+    }
+
+    this.digest = digest;
+    this.digestLength = digest.getDigestLength();
+    this.blockSize = blockSize;
+    this.leaves = new byte[16 * this.digestLength];
+
+    this.digest.reset();
+    this.digest.update(HashTree.LEAF_PREFIX);
+  }
+
+  /**
+   * Hashes all remaining data of the specified buffer.
+   *
+   * @param buffer a buffer.
+   * @throws IllegalStateException when the tree has already been finished.
+   */
+  void update(@NonNull ByteBuffer buffer) {
+    if (this.levels != null) {
+      throw new IllegalStateException("Tree has already been finished");
+    }
+
+    while (buffer.hasRemaining()) {
+      var n = Math.min(buffer.remaining(), this.blockSize - this.blockPosition);
+      var limit = buffer.limit();
+      buffer.limit(buffer.position() + n);
+      this.digest.update(buffer);
+      buffer.limit(limit);
+
+      this.blockPosition += n;
+      if (this.blockPosition == this.blockSize) {
+        this.completeBlock();
+      }
+    }
+  }
+
+  private void completeBlock() {
+    if ((this.blockCount + 1) * this.digestLength > this.leaves.length) {
+      this.leaves = Arrays.copyOf(this.leaves, this.leaves.length * 2);
+    }
+
+    var leaf = this.digest.digest();
+    System.arraycopy(leaf, 0, this.leaves, this.blockCount * this.digestLength,
+        this.digestLength);
+    ++this.blockCount;
+
+    this.blockPosition = 0;
+    this.digest.update(HashTree.LEAF_PREFIX);
+  }
+
+  /**
+   * Completes the final block (if any) and computes all remaining levels of the tree.
+   */
+  @NonNull
+  private byte[][] finish() {
+    if (this.levels != null) {
+      return this.levels;
+    }
+
+    // empty contents are covered by a single empty block
+    if (this.blockPosition != 0 || this.blockCount == 0) {
+      this.completeBlock();
+    }
+    this.digest.reset();
+
+    var sizes = HashTree.getLevelSizes(this.blockCount);
+    var levels = new byte[sizes.length][];
+    levels[0] = Arrays.copyOf(this.leaves, this.blockCount * this.digestLength);
+    this.leaves = null;
+
+    for (var level = 1; level < sizes.length; ++level) {
+      var children = levels[level - 1];
+      var childCount = sizes[level - 1];
+      var nodes = new byte[sizes[level] * this.digestLength];
+
+      for (var i = 0; i < sizes[level]; ++i) {
+        var left = 2 * i * this.digestLength;
+        if (2 * i + 1 < childCount) {
+          this.digest.update(HashTree.NODE_PREFIX);
+          this.digest.update(children, left, 2 * this.digestLength);
+          System.arraycopy(this.digest.digest(), 0, nodes, i * this.digestLength,
+              this.digestLength);
+        } else {
+          System.arraycopy(children, left, nodes, i * this.digestLength, this.digestLength);
+        }
+      }
+
+      levels[level] = nodes;
+    }
+
+    this.levels = levels;
+    return levels;
+  }
+
+  /**
+   * Retrieves the root of the tree. Once called, no further data may be hashed.
+   *
+   * @return a root digest.
+   */
+  @NonNull
+  byte[] getRoot() {
+    var levels = this.finish();
+    return levels[levels.length - 1].clone();
+  }
+
+  /**
+   * Retrieves the encoded length of the tree (excluding its root). Once called, no further data
+   * may be hashed.
+   *
+   * @return a length (in bytes).
+   */
+  long getSerializedLength() {
+    var levels = this.finish();
+
+    long length = HashTree.HEADER_LENGTH;
+    for (var i = 0; i < levels.length - 1; ++i) {
+      length += levels[i].length;
+    }
+    return length;
+  }
+
+  /**
+   * Writes the tree (excluding its root) to the specified channel. Once called, no further data
+   * may be hashed.
+   *
+   * @param channel an output channel.
+   * @throws IOException when writing to the channel fails.
+   */
+  void write(@NonNull WritableByteChannel channel) throws IOException {
+    var levels = this.finish();
+
+    var header = ByteBuffer.allocate(HashTree.HEADER_LENGTH);
+    header.putInt(HashTree.MAGIC_NUMBER);
+    header.putInt(this.blockSize);
+    header.putInt(this.blockCount);
+    header.flip();
+    writeFully(channel, header);
+
+    for (var i = 0; i < levels.length - 1; ++i) {
+      writeFully(channel, ByteBuffer.wrap(levels[i]));
+    }
+  }
+
+  private static void writeFully(@NonNull WritableByteChannel channel,
+      @NonNull ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
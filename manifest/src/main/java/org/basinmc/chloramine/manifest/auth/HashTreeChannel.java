@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * <p>Computes a hash tree for all data which is written through this channel while passing it
+ * on to the underlying channel as is.</p>
+ *
+ * <p>Once all contents have been written, the tree is appended to the container via {@link
+ * #writeTree(WritableByteChannel)} while its root is signed in place of a flat digest.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ * @see HashTree
+ */
+public final class HashTreeChannel implements WritableByteChannel {
+
+  private final WritableByteChannel channel;
+  private final HashTreeBuilder builder;
+
+  /**
+   * @param channel a channel to which all data is passed on (will be closed along with this
+   * channel).
+   * @param digest a message digest.
+   * @param blockSize a block size.
+   * @throws IllegalArgumentException when the block size is not positive.
+   */
+  public HashTreeChannel(@NonNull WritableByteChannel channel, @NonNull MessageDigest digest,
+      int blockSize) {
+    this.channel = channel;
+    this.builder = new HashTreeBuilder(digest, blockSize);
+  }
+
+  /**
+   * Retrieves the root of the tree. Once called, no further data may be written.
+   *
+   * @return a root digest.
+   */
+  @NonNull
+  public byte[] getRoot() {
+    return this.builder.getRoot();
+  }
+
+  /**
+   * Retrieves the encoded length of the tree. Once called, no further data may be written.
+   *
+   * @return a length (in bytes).
+   */
+  public long getTreeLength() {
+    return this.builder.getSerializedLength();
+  }
+
+  /**
+   * Writes the tree to the specified channel. Once called, no further data may be written.
+   *
+   * @param channel an output channel.
+   * @throws IOException when writing to the channel fails.
+   */
+  public void writeTree(@NonNull WritableByteChannel channel) throws IOException {
+    this.builder.write(channel);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) throws IOException {
+    var view = src.duplicate();
+    var written = this.channel.write(src);
+
+    // only the data which has actually been accepted by the underlying channel is hashed
+    view.limit(view.position() + written);
+    this.builder.update(view);
+    return written;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.channel.isOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.FileStamp;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Provides a persistent cache of successful container authentications.</p>
+ *
+ * <p>Each entry records the stamp (file key, size and modification time) of a container file,
+ * a digest of its manifest (including the authentication section), the verified content digest
+ * and a fingerprint of the key which has been used to verify the container. When a container is
+ * opened through the cache and all of these match, the contents are not hashed again. Any
+ * mismatch causes the container to be verified in its entirety and the entry to be replaced.</p>
+ *
+ * <p>Caches may be persisted via {@link #save(Path)} in order to skip verification of unchanged
+ * containers across restarts. Callers which encounter a malformed cache file may safely fall
+ * back to {@link #empty()} as all containers will be verified again.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class VerificationCache {
+
+  /**
+   * Defines the magic number which identifies verification cache files ("BECV").
+   */
+  public static final int MAGIC_NUMBER = 0x42454356;
+
+  /**
+   * Defines the cache format version which is written by this implementation.
+   */
+  public static final short FORMAT_VERSION = 0;
+
+  /**
+   * Defines the algorithm which is used to compute manifest digests and key fingerprints.
+   */
+  public static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private static final int HEADER_LENGTH = 9;
+
+  private final Object lock = new Object();
+  private final Map<Path, Entry> entries;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private VerificationCache(@NonNull Map<Path, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Creates an empty cache.
+   *
+   * @return an empty cache.
+   */
+  @NonNull
+  public static VerificationCache empty() {
+    return new VerificationCache(new HashMap<>());
+  }
+
+  /**
+   * Loads a previously saved cache. When the cache file does not exist, an empty cache is
+   * returned instead.
+   *
+   * @param file a cache file.
+   * @return a cache.
+   * @throws IOException when reading the cache fails or the cache is malformed.
+   */
+  @NonNull
+  public static VerificationCache load(@NonNull Path file) throws IOException {
+    byte[] data;
+    try {
+      data = Files.readAllBytes(file);
+    } catch (NoSuchFileException ex) {
+      return empty();
+    }
+
+    var buffer = ByteBuffer.wrap(data);
+    var entries = new HashMap<Path, Entry>();
+
+    try {
+      var magicNumber = buffer.getInt();
+      if (magicNumber != MAGIC_NUMBER) {
+        throw new IOException(String.format(
+            "Illegal verification cache: Illegal magic number: 0x%08X", magicNumber));
+      }
+
+      var version = DataUtil.readUnsignedByte(buffer);
+      if (version != FORMAT_VERSION) {
+        throw new IOException(
+            "Illegal verification cache: Unsupported format version: " + version);
+      }
+
+      var count = buffer.getInt();
+      for (var i = 0; i < count; ++i) {
+        var path = Paths.get(DataUtil.readRequiredString(buffer,
+            () -> new IOException("Illegal verification cache: Missing path")));
+        entries.put(path, Entry.read(buffer));
+      }
+    } catch (BufferUnderflowException ex) {
+      throw new IOException("Illegal verification cache: Truncated cache file", ex);
+    }
+
+    return new VerificationCache(entries);
+  }
+
+  /**
+   * Writes this cache to the specified file. The file is replaced atomically where supported by
+   * the file system.
+   *
+   * @param file a cache file.
+   * @throws IOException when writing the cache fails.
+   */
+  public void save(@NonNull Path file) throws IOException {
+    ByteBuffer buffer;
+    synchronized (this.lock) {
+      long length = HEADER_LENGTH;
+      for (var e : this.entries.entrySet()) {
+        length += DataUtil.estimateString(e.getKey().toString())
+            + e.getValue().getSerializedLength();
+      }
+
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException(String.format(
+            "Illegal verification cache: Cache exceeds maximum length (%d bytes > %d)", length,
+            Integer.MAX_VALUE));
+      }
+
+      buffer = ByteBuffer.allocate((int) length);
+      buffer.putInt(MAGIC_NUMBER);
+      DataUtil.writeUnsignedByte(buffer, FORMAT_VERSION);
+      buffer.putInt(this.entries.size());
+      for (var e : this.entries.entrySet()) {
+        DataUtil.writeString(buffer, e.getKey().toString());
+        e.getValue().serialize(buffer);
+      }
+    }
+    buffer.flip();
+
+    var target = file.toAbsolutePath();
+    var tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+
+      try {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * <p>Opens and authenticates the specified container file.</p>
+   *
+   * <p>When the container has previously been verified with the same key and neither its stamp
+   * nor its manifest have changed since, the container is opened without verifying its contents.
+   * Otherwise, the contents and signature are verified in their entirety and the result is
+   * recorded within this cache.</p>
+   *
+   * @param path a container file.
+   * @param key a public key.
+   * @return a container.
+   * @throws IOException when opening the file, reading the manifest or verifying the contents
+   * fails.
+   * @throws ContentIntegrityException when the contents do not match their digest.
+   * @throws ManifestException when the manifest is malformed or the container has not been
+   * signed by the owner of the key.
+   */
+  @NonNull
+  public Container open(@NonNull Path path, @NonNull PublicKey key)
+      throws IOException, ManifestException {
+    path = path.toAbsolutePath().normalize();
+
+    // the stamp is captured before the file is read so that modifications which occur during
+    // verification cause the container to be verified again upon the next lookup
+    var stamp = FileStamp.of(path);
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    try {
+      var manifest = Manifest.read(channel, 0);
+      var authentication = manifest.getAuthentication()
+          .orElseThrow(() -> new ManifestAuthenticationException(
+              "Illegal container: Container is not signed"));
+
+      var manifestDigest = digestManifest(channel, manifest);
+      var fingerprint = fingerprint(key);
+
+      Entry entry;
+      synchronized (this.lock) {
+        entry = this.entries.get(path);
+      }
+      if (entry != null && entry.matches(stamp, manifestDigest, fingerprint)) {
+        this.hitCount.increment();
+        return new Container(channel);
+      }
+
+      this.missCount.increment();
+      try {
+        if (!authentication.verifySignature(manifest, key)) {
+          throw new ManifestAuthenticationException("Illegal container: Signature mismatch");
+        }
+      } catch (GeneralSecurityException ex) {
+        throw new ManifestAuthenticationException(
+            "Illegal authentication section: " + ex.getMessage(), ex);
+      }
+
+      var container = new Container(channel);
+      if (!container.verifyDigest()) {
+        throw new ContentIntegrityException("Illegal content: Digest mismatch");
+      }
+
+      synchronized (this.lock) {
+        this.entries.put(path,
+            new Entry(stamp, manifestDigest, authentication.getDigest(), fingerprint));
+      }
+      return container;
+    } catch (IOException | ManifestException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Computes a digest of the manifest (including its authentication section) as it is stored
+   * within the container.
+   */
+  @NonNull
+  private static byte[] digestManifest(@NonNull FileChannel channel, @NonNull Manifest manifest)
+      throws IOException, ManifestException {
+    var data = ByteBuffer.allocate((int) manifest.getContentOffset());
+    ChannelUtil.readFully(channel, data, 0);
+    data.flip();
+
+    var digest = newDigest();
+    digest.update(data);
+    return digest.digest();
+  }
+
+  /**
+   * Computes a fingerprint of the encoded form of the specified key.
+   *
+   * @param key a public key.
+   * @return a fingerprint.
+   * @throws ManifestAuthenticationException when the key does not provide an encoded form.
+   */
+  @NonNull
+  public static byte[] fingerprint(@NonNull PublicKey key)
+      throws ManifestAuthenticationException {
+    var encoded = key.getEncoded();
+    if (encoded == null) {
+      throw new ManifestAuthenticationException(
+          "Illegal key: Key does not support encoding: " + key.getAlgorithm());
+    }
+
+    return newDigest().digest(encoded);
+  }
+
+  @NonNull
+  private static MessageDigest newDigest() throws ManifestAuthenticationException {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (GeneralSecurityException ex) {
+      throw new ManifestAuthenticationException(
+          "Illegal verification cache: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Removes the recorded verification of the specified file (if any).
+   *
+   * @param path a container file.
+   */
+  public void invalidate(@NonNull Path path) {
+    synchronized (this.lock) {
+      this.entries.remove(path.toAbsolutePath().normalize());
+    }
+  }
+
+  /**
+   * Retrieves the amount of recorded verifications.
+   *
+   * @return an amount of entries.
+   */
+  public int size() {
+    synchronized (this.lock) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * Retrieves the amount of containers which have been opened without verifying their contents.
+   *
+   * @return an amount of hits.
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * Retrieves the amount of containers which had to be verified in their entirety.
+   *
+   * @return an amount of misses.
+   */
+  public long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Represents a recorded verification.
+   */
+  private static final class Entry {
+
+    private final FileStamp stamp;
+    private final byte[] manifestDigest;
+    private final byte[] contentDigest;
+    private final byte[] keyFingerprint;
+
+    private Entry(@NonNull FileStamp stamp, @NonNull byte[] manifestDigest,
+        @NonNull byte[] contentDigest, @NonNull byte[] keyFingerprint) {
+      this.stamp = stamp;
+      this.manifestDigest = manifestDigest;
+      this.contentDigest = contentDigest;
+      this.keyFingerprint = keyFingerprint;
+    }
+
+    @NonNull
+    private static Entry read(@NonNull ByteBuffer buffer) {
+      var fileKey = DataUtil.readNullableString(buffer);
+      var stamp = new FileStamp(fileKey, buffer.getLong(), buffer.getLong());
+      var manifestDigest = DataUtil.readBytes(buffer).orElse(new byte[0]);
+      var contentDigest = DataUtil.readBytes(buffer).orElse(new byte[0]);
+      var keyFingerprint = DataUtil.readBytes(buffer).orElse(new byte[0]);
+
+      return new Entry(stamp, manifestDigest, contentDigest, keyFingerprint);
+    }
+
+    private boolean matches(@NonNull FileStamp stamp, @NonNull byte[] manifestDigest,
+        @NonNull byte[] keyFingerprint) {
+      // the content digest is part of the manifest digest and thus implicitly compared
+      return this.stamp.equals(stamp)
+          && Arrays.equals(this.manifestDigest, manifestDigest)
+          && Arrays.equals(this.keyFingerprint, keyFingerprint);
+    }
+
+    private long getSerializedLength() {
+      return DataUtil.estimateString(this.stamp.getFileKey().orElse(null))
+          + 16
+          + DataUtil.estimateBytes(this.manifestDigest)
+          + DataUtil.estimateBytes(this.contentDigest)
+          + DataUtil.estimateBytes(this.keyFingerprint);
+    }
+
+    private void serialize(@NonNull ByteBuffer buffer) {
+      DataUtil.writeString(buffer, this.stamp.getFileKey().orElse(null));
+      buffer.putLong(this.stamp.getSize());
+      buffer.putLong(this.stamp.getLastModified());
+      DataUtil.writeBytes(buffer, this.manifestDigest);
+      DataUtil.writeBytes(buffer, this.contentDigest);
+      DataUtil.writeBytes(buffer, this.keyFingerprint);
+    }
+  }
+}
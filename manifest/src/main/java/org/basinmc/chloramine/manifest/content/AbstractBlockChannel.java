@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * <p>Provides a base to read-only channels which decode their contents in fixed-size
+ * blocks.</p>
+ *
+ * <p>The most recently decoded block is retained by the channel so that sequential reads which
+ * are smaller than the block size do not decode the same block repeatedly.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+abstract class AbstractBlockChannel implements SeekableByteChannel {
+
+  private final long length;
+  private final int blockSize;
+
+  private long position;
+  private int cachedIndex = -1;
+  private byte[] cachedBlock;
+  private volatile boolean open = true;
+
+  AbstractBlockChannel(long length, int blockSize) {
+    this.length = length;
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Decodes the block with the specified index.
+   *
+   * @param index a block index.
+   * @return the decoded block contents.
+   * @throws IOException when reading or decoding the block fails.
+   */
+  @NonNull
+  protected abstract byte[] loadBlock(int index) throws IOException;
+
+  /**
+   * Evaluates whether the underlying source of this channel remains open.
+   *
+   * @return true if open, false otherwise.
+   */
+  protected abstract boolean isSourceOpen();
+
+  /**
+   * <p>Reads a range which spans more than one block into the passed buffer.</p>
+   *
+   * <p>By default, each block is decoded sequentially. Implementations may choose to decode the
+   * blocks in parallel instead.</p>
+   *
+   * @param position a position within the decoded contents.
+   * @param buffer a target buffer.
+   * @return the amount of bytes read.
+   * @throws IOException when reading or decoding a block fails.
+   */
+  protected int readBlocks(long position, @NonNull ByteBuffer buffer) throws IOException {
+    var length = (int) Math.min(buffer.remaining(), this.length - position);
+
+    var remaining = length;
+    while (remaining > 0) {
+      var index = (int) (position / this.blockSize);
+      var blockPosition = (int) (position - (long) index * this.blockSize);
+      var block = this.getBlock(index);
+
+      var n = Math.min(remaining, block.length - blockPosition);
+      buffer.put(block, blockPosition, n);
+      position += n;
+      remaining -= n;
+    }
+
+    return length;
+  }
+
+  @NonNull
+  private byte[] getBlock(int index) throws IOException {
+    if (this.cachedIndex != index) {
+      this.cachedBlock = this.loadBlock(index);
+      this.cachedIndex = index;
+    }
+
+    return this.cachedBlock;
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read(@NonNull ByteBuffer dst) throws IOException {
+    this.ensureOpen();
+
+    var remaining = this.length - this.position;
+    if (remaining <= 0) {
+      return -1;
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    var index = (int) (this.position / this.blockSize);
+    var blockPosition = (int) (this.position - (long) index * this.blockSize);
+
+    int read;
+    if (dst.remaining() <= this.blockSize - blockPosition) {
+      var block = this.getBlock(index);
+
+      read = Math.min(dst.remaining(), block.length - blockPosition);
+      dst.put(block, blockPosition, read);
+    } else {
+      read = this.readBlocks(this.position, dst);
+    }
+
+    this.position += read;
+    return read;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long position() throws IOException {
+    this.ensureOpen();
+    return this.position;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public AbstractBlockChannel position(long newPosition) throws IOException {
+    this.ensureOpen();
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position cannot be negative: " + newPosition);
+    }
+
+    this.position = newPosition;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long size() throws IOException {
+    this.ensureOpen();
+    return this.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.open && this.isSourceOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() {
+    this.open = false;
+  }
+}
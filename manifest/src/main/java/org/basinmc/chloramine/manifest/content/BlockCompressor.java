@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+
+/**
+ * <p>Encodes container contents as a sequence of independently compressed blocks.</p>
+ *
+ * <p>Contents are split into blocks of a fixed (uncompressed) size which are compressed in
+ * parallel using a fork-join pool. The compressed blocks are followed by a block index and a
+ * footer which permit readers to locate and inflate arbitrary blocks without decoding any of the
+ * preceding data (see {@link CompressedContent}).</p>
+ *
+ * <p>Compressors are stateless and may be shared between threads.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class BlockCompressor {
+
+  /**
+   * Defines the default (uncompressed) block size.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  private final int blockSize;
+  private final int level;
+  private final ForkJoinPool pool;
+
+  public BlockCompressor() {
+    this(DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param blockSize an uncompressed block size (in bytes).
+   * @param level a compression level (as accepted by {@link Deflater#setLevel(int)}).
+   * @param pool a pool which performs the compression.
+   * @throws IllegalArgumentException when the block size or level is invalid.
+   */
+  public BlockCompressor(int blockSize, int level, @NonNull ForkJoinPool pool) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+    }
+    if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+        && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Illegal compression level: " + level);
+    }
+
+    this.blockSize = blockSize;
+    this.level = level;
+    this.pool = pool;
+  }
+
+  /**
+   * Retrieves the (uncompressed) size of the blocks produced by this compressor.
+   *
+   * @return a block size (in bytes).
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * <p>Compresses all remaining data of the specified input channel into the output channel.</p>
+   *
+   * <p>Blocks are read and compressed in batches which are sized according to the parallelism of
+   * the pool. As such, the memory requirements of this method remain constant regardless of the
+   * content length.</p>
+   *
+   * @param input an input channel (will not be closed).
+   * @param output an output channel (will not be closed).
+   * @return the amount of bytes written to the output channel.
+   * @throws IOException when reading from the input or writing to the output fails.
+   */
+  public long compress(@NonNull ReadableByteChannel input, @NonNull WritableByteChannel output)
+      throws IOException {
+    var batchSize = Math.max(1, this.pool.getParallelism() * 2);
+    var tasks = new ArrayList<ForkJoinTask<byte[]>>(batchSize);
+
+    var lengths = new int[16];
+    var blockCount = 0;
+    long contentLength = 0;
+    long written = 0;
+
+    var eof = false;
+    while (!eof) {
+      tasks.clear();
+
+      while (tasks.size() < batchSize) {
+        var block = ByteBuffer.allocate(this.blockSize);
+        while (block.hasRemaining()) {
+          if (input.read(block) == -1) {
+            eof = true;
+            break;
+          }
+        }
+
+        if (block.position() == 0) {
+          break;
+        }
+
+        contentLength += block.position();
+        var data = block.array();
+        var length = block.position();
+        tasks.add(this.pool.submit(() -> this.deflate(data, length)));
+
+        if (eof) {
+          break;
+        }
+      }
+
+      for (var task : tasks) {
+        var compressed = task.join();
+
+        if (blockCount == lengths.length) {
+          lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[blockCount++] = compressed.length;
+
+        written += writeFully(output, ByteBuffer.wrap(compressed));
+      }
+    }
+
+    var trailer = ByteBuffer
+        .allocate(blockCount * 4 + CompressedContent.FOOTER_LENGTH);
+    for (var i = 0; i < blockCount; ++i) {
+      trailer.putInt(lengths[i]);
+    }
+    trailer.putInt(this.blockSize);
+    trailer.putLong(contentLength);
+    trailer.putInt(blockCount);
+    trailer.putInt(CompressedContent.MAGIC_NUMBER);
+    trailer.flip();
+
+    return written + writeFully(output, trailer);
+  }
+
+  /**
+   * Compresses a single block.
+   */
+  @NonNull
+  private byte[] deflate(@NonNull byte[] data, int length) {
+    var deflater = new Deflater(this.level);
+
+    try {
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+
+      // incompressible data grows slightly when deflated and thus some room is reserved upfront
+      var out = new byte[length + (length >> 6) + 64];
+      var position = 0;
+      while (!deflater.finished()) {
+        if (position == out.length) {
+          out = Arrays.copyOf(out, out.length * 2);
+        }
+
+        position += deflater.deflate(out, position, out.length - position);
+      }
+
+      return Arrays.copyOf(out, position);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static long writeFully(@NonNull WritableByteChannel channel, @NonNull ByteBuffer buffer)
+      throws IOException {
+    var length = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    return length;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>Computes a chunk table for all data which is written through this channel.</p>
+ *
+ * <p>Data is passed on to the underlying channel as is while the checksum of each chunk is
+ * computed along the way. As such, contents are checksummed within the same pass which writes
+ * them to their container.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ChecksumChannel implements WritableByteChannel {
+
+  private final WritableByteChannel channel;
+  private final int chunkSize;
+
+  private final CRC32C crc = new CRC32C();
+  private int[] checksums = new int[16];
+  private int chunkCount;
+  private int chunkPosition;
+  private long length;
+
+  /**
+   * @param channel a channel to which all data is passed on (will be closed along with this
+   * channel).
+   * @param chunkSize a chunk size.
+   * @throws IllegalArgumentException when the chunk size is not positive.
+   */
+  public ChecksumChannel(@NonNull WritableByteChannel channel, int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+
+    this.channel = channel;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Retrieves a chunk table which covers all data written so far.
+   *
+   * @return a chunk table.
+   */
+  @NonNull
+  public ChunkTable getChunkTable() {
+    var partial = this.chunkPosition > 0;
+    var checksums = Arrays.copyOf(this.checksums, this.chunkCount + (partial ? 1 : 0));
+    if (partial) {
+      checksums[this.chunkCount] = (int) this.crc.getValue();
+    }
+
+    return new ChunkTable(this.chunkSize, this.length, checksums);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) throws IOException {
+    var start = src.position();
+    var written = this.channel.write(src);
+
+    // only the data which has actually been accepted by the underlying channel is checksummed
+    var view = src.duplicate();
+    view.position(start);
+    view.limit(start + written);
+
+    while (view.hasRemaining()) {
+      var n = Math.min(view.remaining(), this.chunkSize - this.chunkPosition);
+      var limit = view.limit();
+      view.limit(view.position() + n);
+      this.crc.update(view);
+      view.limit(limit);
+
+      this.chunkPosition += n;
+      if (this.chunkPosition == this.chunkSize) {
+        if (this.chunkCount == this.checksums.length) {
+          this.checksums = Arrays.copyOf(this.checksums, this.checksums.length * 2);
+        }
+
+        this.checksums[this.chunkCount++] = (int) this.crc.getValue();
+        this.crc.reset();
+        this.chunkPosition = 0;
+      }
+    }
+
+    this.length += written;
+    return written;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.channel.isOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+
+/**
+ * <p>Represents a table of CRC32C checksums which cover the encoded container contents in
+ * fixed-size chunks.</p>
+ *
+ * <p>The table is stored directly after the content section and consists of a header of {@link
+ * #HEADER_LENGTH} bytes followed by one checksum (32-bit integer) per chunk:</p>
+ *
+ * <ul>
+ * <li>magic number {@link #MAGIC_NUMBER} (32-bit integer)</li>
+ * <li>chunk size (32-bit integer)</li>
+ * <li>amount of chunks (32-bit integer)</li>
+ * </ul>
+ *
+ * <p>Chunks may be verified individually. As such, readers which only access a subset of the
+ * contents only need to verify the chunks they actually read while entire containers may be
+ * verified in parallel.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ChunkTable {
+
+  /**
+   * Defines the magic number which identifies chunk tables ("BECC").
+   */
+  public static final int MAGIC_NUMBER = 0x42454343;
+
+  /**
+   * Defines the total amount of bytes present within the chunk table header.
+   */
+  public static final int HEADER_LENGTH = 12;
+
+  /**
+   * Defines the default chunk size.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private final int chunkSize;
+  private final long contentLength;
+  private final int[] checksums;
+
+  ChunkTable(int chunkSize, long contentLength, @NonNull int[] checksums) {
+    this.chunkSize = chunkSize;
+    this.contentLength = contentLength;
+    this.checksums = checksums;
+  }
+
+  /**
+   * Reads a chunk table from the specified absolute position within a file channel.
+   *
+   * @param channel a file channel.
+   * @param position the absolute position of the chunk table.
+   * @param contentLength the length of the contents which are covered by the table.
+   * @return a chunk table.
+   * @throws IOException when reading the table fails or the table is malformed.
+   */
+  @NonNull
+  public static ChunkTable read(@NonNull FileChannel channel, long position, long contentLength)
+      throws IOException {
+    var header = ByteBuffer.allocate(HEADER_LENGTH);
+    ChannelUtil.readFully(channel, header, position);
+    header.flip();
+
+    var magicNumber = header.getInt();
+    if (magicNumber != MAGIC_NUMBER) {
+      throw new IOException(String.format(
+          "Illegal chunk table: Illegal magic number: 0x%08X", magicNumber));
+    }
+
+    var chunkSize = header.getInt();
+    var chunkCount = header.getInt();
+    if (chunkSize < 1 || chunkCount < 0 || chunkCount > (Integer.MAX_VALUE - HEADER_LENGTH) / 4
+        || (contentLength + chunkSize - 1) / chunkSize != chunkCount) {
+      throw new IOException(String.format(
+          "Illegal chunk table: Inconsistent header (%d chunk(s) of %d bytes for %d bytes)",
+          chunkCount, chunkSize, contentLength));
+    }
+
+    var data = ByteBuffer.allocate(chunkCount * 4);
+    ChannelUtil.readFully(channel, data, position + HEADER_LENGTH);
+    data.flip();
+
+    var checksums = new int[chunkCount];
+    data.asIntBuffer().get(checksums);
+    return new ChunkTable(chunkSize, contentLength, checksums);
+  }
+
+  /**
+   * Retrieves the chunk size.
+   *
+   * @return a chunk size (in bytes).
+   */
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  /**
+   * Retrieves the amount of chunks.
+   *
+   * @return an amount of chunks.
+   */
+  public int getChunkCount() {
+    return this.checksums.length;
+  }
+
+  /**
+   * Retrieves the length of the contents which are covered by this table.
+   *
+   * @return a length (in bytes).
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * Retrieves the checksum of the chunk with the specified index.
+   *
+   * @param index a chunk index.
+   * @return a CRC32C checksum.
+   */
+  public int getChecksum(int index) {
+    return this.checksums[index];
+  }
+
+  /**
+   * Retrieves the encoded length of this table.
+   *
+   * @return a length (in bytes).
+   */
+  public long getSerializedLength() {
+    return HEADER_LENGTH + 4L * this.checksums.length;
+  }
+
+  /**
+   * Writes this table to the specified channel.
+   *
+   * @param channel an output channel.
+   * @throws IOException when writing to the channel fails.
+   */
+  public void write(@NonNull WritableByteChannel channel) throws IOException {
+    var buffer = ByteBuffer.allocate((int) this.getSerializedLength());
+    buffer.putInt(MAGIC_NUMBER);
+    buffer.putInt(this.chunkSize);
+    buffer.putInt(this.checksums.length);
+    buffer.asIntBuffer().put(this.checksums);
+    buffer.position(buffer.limit());
+    buffer.flip();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Reads and verifies the chunk with the specified index.
+   *
+   * @param source a source which provides the covered contents.
+   * @param index a chunk index.
+   * @return the verified chunk contents.
+   * @throws ContentIntegrityException when the chunk does not match its checksum.
+   * @throws IOException when reading the chunk fails.
+   */
+  @NonNull
+  byte[] readChunk(@NonNull ContentSource source, int index) throws IOException {
+    var length = (int) Math
+        .min(this.chunkSize, this.contentLength - (long) index * this.chunkSize);
+    var chunk = new byte[length];
+    source.readFully(ByteBuffer.wrap(chunk), (long) index * this.chunkSize);
+
+    this.verify(index, chunk);
+    return chunk;
+  }
+
+  private void verify(int index, @NonNull byte[] chunk) throws ContentIntegrityException {
+    var crc = new CRC32C();
+    crc.update(chunk, 0, chunk.length);
+
+    var checksum = (int) crc.getValue();
+    if (checksum != this.checksums[index]) {
+      throw new ContentIntegrityException(String.format(
+          "Illegal content: Checksum mismatch in chunk #%d (expected 0x%08X but got 0x%08X)",
+          index, this.checksums[index], checksum));
+    }
+  }
+
+  /**
+   * <p>Creates a source which verifies all chunks which are covered by a read before passing on
+   * their contents.</p>
+   *
+   * <p>Chunks are verified every time they are read. As such, contents which are modified after
+   * they have first been read are still detected.</p>
+   *
+   * @param source a source which provides the covered contents.
+   * @return a verifying content source.
+   */
+  @NonNull
+  public ContentSource verifying(@NonNull ContentSource source) {
+    return new ContentSource() {
+      @Override
+      public void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+          if (position >= ChunkTable.this.contentLength) {
+            throw new EOFException("Source contains insufficient data");
+          }
+
+          var index = (int) (position / ChunkTable.this.chunkSize);
+          var chunkPosition = (int) (position - (long) index * ChunkTable.this.chunkSize);
+          var chunk = ChunkTable.this.readChunk(source, index);
+
+          var n = Math.min(buffer.remaining(), chunk.length - chunkPosition);
+          buffer.put(chunk, chunkPosition, n);
+          position += n;
+        }
+      }
+
+      @Override
+      public boolean isOpen() {
+        return source.isOpen();
+      }
+    };
+  }
+
+  /**
+   * Creates a new read-only channel which verifies each chunk before its contents are read.
+   *
+   * @param source a source which provides the covered contents.
+   * @return a verifying content channel.
+   */
+  @NonNull
+  public SeekableByteChannel newChannel(@NonNull ContentSource source) {
+    return new AbstractBlockChannel(this.contentLength, this.chunkSize) {
+      @NonNull
+      @Override
+      protected byte[] loadBlock(int index) throws IOException {
+        return ChunkTable.this.readChunk(source, index);
+      }
+
+      @Override
+      protected boolean isSourceOpen() {
+        return source.isOpen();
+      }
+    };
+  }
+
+  /**
+   * <p>Verifies all chunks of the specified contents.</p>
+   *
+   * <p>The chunks are split into contiguous ranges which are verified in parallel using the
+   * specified pool.</p>
+   *
+   * @param source a source which provides the covered contents.
+   * @param pool a pool which performs the verification.
+   * @return a set of chunk indices which do not match their checksums (empty if the contents are
+   * intact).
+   * @throws IOException when reading from the source fails.
+   */
+  @NonNull
+  public BitSet verify(@NonNull ContentSource source, @NonNull ForkJoinPool pool)
+      throws IOException {
+    var chunkCount = this.checksums.length;
+    var taskCount = Math.max(1, Math.min(chunkCount, pool.getParallelism() * 4));
+    var tasks = new ArrayList<ForkJoinTask<BitSet>>(taskCount);
+
+    for (var i = 0; i < taskCount; ++i) {
+      var first = (int) ((long) chunkCount * i / taskCount);
+      var last = (int) ((long) chunkCount * (i + 1) / taskCount);
+      tasks.add(pool.submit(() -> this.verifyRange(source, first, last)));
+    }
+
+    var corrupted = new BitSet(chunkCount);
+    for (var task : tasks) {
+      try {
+        corrupted.or(task.join());
+      } catch (UncheckedIOException ex) {
+        throw ex.getCause();
+      }
+    }
+    return corrupted;
+  }
+
+  @NonNull
+  private BitSet verifyRange(@NonNull ContentSource source, int first, int last) {
+    var corrupted = new BitSet();
+
+    for (var i = first; i < last; ++i) {
+      try {
+        this.readChunk(source, i);
+      } catch (ContentIntegrityException ex) {
+        corrupted.set(i);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    return corrupted;
+  }
+}
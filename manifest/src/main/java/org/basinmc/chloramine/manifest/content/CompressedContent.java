@@ -0,0 +1,445 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>Provides random access to block compressed container contents.</p>
+ *
+ * <p>The encoded contents consist of a sequence of independently compressed blocks followed by a
+ * block index (the compressed length of each block as an unsigned 32-bit integer) and a footer
+ * of {@link #FOOTER_LENGTH} bytes:</p>
+ *
+ * <ul>
+ * <li>uncompressed block size (32-bit integer)</li>
+ * <li>uncompressed content length (64-bit integer)</li>
+ * <li>amount of blocks (32-bit integer)</li>
+ * <li>magic number {@link #MAGIC_NUMBER} (32-bit integer)</li>
+ * </ul>
+ *
+ * <p>Only the index is retained in memory. Blocks are read using positional reads and inflated
+ * on demand (in parallel using a fork-join pool when a read covers more than one block). As such,
+ * instances of this type may be accessed by any amount of threads at the same time.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ * @see BlockCompressor
+ */
+public final class CompressedContent {
+
+  /**
+   * Defines the magic number which terminates block compressed contents ("BECZ").
+   */
+  public static final int MAGIC_NUMBER = 0x4245435A;
+
+  /**
+   * Defines the total amount of bytes present within the footer.
+   */
+  public static final int FOOTER_LENGTH = 20;
+
+  /**
+   * Defines the maximum amount of inflated blocks which are retained for subsequent reads.
+   */
+  public static final int BLOCK_CACHE_SIZE = 4;
+
+  private final ContentSource source;
+  private final ForkJoinPool pool;
+
+  private final int blockSize;
+  private final long length;
+  private final long[] blockOffsets;
+  private final Map<Integer, byte[]> blockCache =
+      new LinkedHashMap<>(BLOCK_CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+          return this.size() > BLOCK_CACHE_SIZE;
+        }
+      };
+
+  private CompressedContent(@NonNull ContentSource source, @NonNull ForkJoinPool pool,
+      int blockSize, long length, @NonNull long[] blockOffsets) {
+    this.source = source;
+    this.pool = pool;
+    this.blockSize = blockSize;
+    this.length = length;
+    this.blockOffsets = blockOffsets;
+  }
+
+  /**
+   * @see #open(FileChannel, long, long, ForkJoinPool)
+   */
+  @NonNull
+  public static CompressedContent open(@NonNull FileChannel channel, long offset, long length)
+      throws IOException {
+    return open(channel, offset, length, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads the block index of the compressed contents within the specified file section.
+   *
+   * @param channel a file channel (will not be closed).
+   * @param offset the absolute position of the compressed contents.
+   * @param length the encoded length of the compressed contents.
+   * @param pool a pool which performs the decompression.
+   * @return compressed contents.
+   * @throws IOException when reading the index fails or the index is malformed.
+   */
+  @NonNull
+  public static CompressedContent open(@NonNull FileChannel channel, long offset, long length,
+      @NonNull ForkJoinPool pool) throws IOException {
+    return open(ContentSource.of(channel, offset), length, pool);
+  }
+
+  /**
+   * Reads the block index of the compressed contents within the specified source.
+   *
+   * @param source a source which provides the encoded contents.
+   * @param length the encoded length of the compressed contents.
+   * @param pool a pool which performs the decompression.
+   * @return compressed contents.
+   * @throws IOException when reading the index fails or the index is malformed.
+   */
+  @NonNull
+  public static CompressedContent open(@NonNull ContentSource source, long length,
+      @NonNull ForkJoinPool pool) throws IOException {
+    if (length < FOOTER_LENGTH) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Section is too short to contain a footer (%d bytes < %d)",
+          length, FOOTER_LENGTH));
+    }
+
+    var footer = ByteBuffer.allocate(FOOTER_LENGTH);
+    source.readFully(footer, length - FOOTER_LENGTH);
+    footer.flip();
+
+    var blockSize = footer.getInt();
+    var contentLength = footer.getLong();
+    var blockCount = footer.getInt();
+    var magicNumber = footer.getInt();
+    if (magicNumber != MAGIC_NUMBER) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Illegal magic number: 0x%08X", magicNumber));
+    }
+    if (blockSize < 1 || blockCount < 0 || contentLength < 0
+        || (contentLength + blockSize - 1) / blockSize != blockCount) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Inconsistent footer (%d block(s) of %d bytes for %d bytes)",
+          blockCount, blockSize, contentLength));
+    }
+
+    var indexLength = (long) blockCount * 4;
+    if (indexLength > length - FOOTER_LENGTH) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Index exceeds section bounds (%d bytes > %d)",
+          indexLength, length - FOOTER_LENGTH));
+    }
+
+    var index = ByteBuffer.allocate((int) indexLength);
+    var indexOffset = length - FOOTER_LENGTH - indexLength;
+    source.readFully(index, indexOffset);
+    index.flip();
+
+    var blockOffsets = new long[blockCount + 1];
+    for (var i = 0; i < blockCount; ++i) {
+      blockOffsets[i + 1] = blockOffsets[i] + Integer.toUnsignedLong(index.getInt());
+    }
+    if (blockOffsets[blockCount] != indexOffset) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Blocks do not match section bounds (%d bytes != %d)",
+          blockOffsets[blockCount], indexOffset));
+    }
+
+    return new CompressedContent(source, pool, blockSize, contentLength, blockOffsets);
+  }
+
+  /**
+   * Retrieves the uncompressed block size.
+   *
+   * @return a block size (in bytes).
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Retrieves the amount of blocks.
+   *
+   * @return an amount of blocks.
+   */
+  public int getBlockCount() {
+    return this.blockOffsets.length - 1;
+  }
+
+  /**
+   * Retrieves the uncompressed content length.
+   *
+   * @return a length (in bytes).
+   */
+  public long getLength() {
+    return this.length;
+  }
+
+  /**
+   * Evaluates whether the underlying source remains open.
+   *
+   * @return true if open, false otherwise.
+   */
+  boolean isOpen() {
+    return this.source.isOpen();
+  }
+
+  /**
+   * <p>Creates a source which exposes the uncompressed contents.</p>
+   *
+   * <p>Unlike {@link #newChannel()}, the returned source does not retain any state and may thus
+   * be shared between any amount of threads.</p>
+   *
+   * @return a content source.
+   */
+  @NonNull
+  public ContentSource asSource() {
+    return new ContentSource() {
+      @Override
+      public void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+          var n = CompressedContent.this.read(position, buffer);
+          if (n == -1) {
+            throw new EOFException("Source contains insufficient data");
+          }
+
+          position += n;
+        }
+      }
+
+      @Override
+      public boolean isOpen() {
+        return CompressedContent.this.isOpen();
+      }
+    };
+  }
+
+  /**
+   * Creates a new read-only channel which exposes the uncompressed contents.
+   *
+   * @return a content channel.
+   */
+  @NonNull
+  public SeekableByteChannel newChannel() {
+    return new CompressedContentChannel(this);
+  }
+
+  /**
+   * <p>Reads uncompressed content starting at the specified position into the passed buffer.</p>
+   *
+   * <p>Only the blocks which cover the requested range are inflated. When more than one block is
+   * covered, the blocks are inflated in parallel.</p>
+   *
+   * @param position a position within the uncompressed contents.
+   * @param buffer a target buffer.
+   * @return the amount of bytes read or -1 if the position lies beyond the end of the contents.
+   * @throws IOException when reading or inflating a block fails.
+   */
+  public int read(long position, @NonNull ByteBuffer buffer) throws IOException {
+    if (position < 0) {
+      throw new IllegalArgumentException("Position cannot be negative: " + position);
+    }
+    if (position >= this.length) {
+      return -1;
+    }
+
+    var length = (int) Math.min(buffer.remaining(), this.length - position);
+    if (length == 0) {
+      return 0;
+    }
+
+    var first = (int) (position / this.blockSize);
+    var last = (int) ((position + length - 1) / this.blockSize);
+
+    if (first == last) {
+      var block = this.getBlock(first);
+      buffer.put(block, (int) (position - (long) first * this.blockSize), length);
+      return length;
+    }
+
+    var tasks = new ArrayList<ForkJoinTask<byte[]>>(last - first + 1);
+    for (var i = first; i <= last; ++i) {
+      var index = i;
+      tasks.add(this.pool.submit(() -> this.getBlockUnchecked(index)));
+    }
+
+    var remaining = length;
+    var blockPosition = (int) (position - (long) first * this.blockSize);
+    for (var task : tasks) {
+      var block = join(task);
+      var n = Math.min(remaining, block.length - blockPosition);
+
+      buffer.put(block, blockPosition, n);
+      remaining -= n;
+      blockPosition = 0;
+    }
+
+    return length;
+  }
+
+  /**
+   * Inflates all contents into the specified channel. Blocks are inflated in batches which are
+   * sized according to the parallelism of the pool.
+   *
+   * @param output an output channel (will not be closed).
+   * @return the amount of bytes written.
+   * @throws IOException when reading or inflating a block or writing to the channel fails.
+   */
+  public long transferTo(@NonNull WritableByteChannel output) throws IOException {
+    var batchSize = Math.max(1, this.pool.getParallelism() * 2);
+    var tasks = new ArrayList<ForkJoinTask<byte[]>>(batchSize);
+    var blockCount = this.getBlockCount();
+    long written = 0;
+
+    for (var i = 0; i < blockCount; i += batchSize) {
+      tasks.clear();
+
+      for (var j = i; j < Math.min(blockCount, i + batchSize); ++j) {
+        var index = j;
+        tasks.add(this.pool.submit(() -> this.inflateUnchecked(index)));
+      }
+
+      for (var task : tasks) {
+        var buffer = ByteBuffer.wrap(join(task));
+        written += buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+          output.write(buffer);
+        }
+      }
+    }
+
+    return written;
+  }
+
+  /**
+   * <p>Retrieves the uncompressed contents of the block with the specified index.</p>
+   *
+   * <p>The most recently accessed blocks are retained so that small consecutive reads (such as
+   * those issued by streams or channels) do not inflate the same block over and over again. The
+   * returned array is shared and must not be modified.</p>
+   *
+   * @param index a block index.
+   * @return the uncompressed block contents.
+   * @throws IOException when reading the block fails or the block is malformed.
+   */
+  @NonNull
+  byte[] getBlock(int index) throws IOException {
+    synchronized (this.blockCache) {
+      var block = this.blockCache.get(index);
+      if (block != null) {
+        return block;
+      }
+    }
+
+    // blocks are inflated outside of the lock so that concurrent readers of different blocks do
+    // not wait on each other
+    var block = this.inflate(index);
+    synchronized (this.blockCache) {
+      this.blockCache.put(index, block);
+    }
+    return block;
+  }
+
+  @NonNull
+  private byte[] getBlockUnchecked(int index) {
+    try {
+      return this.getBlock(index);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Reads and inflates the block with the specified index.
+   *
+   * @param index a block index.
+   * @return the uncompressed block contents.
+   * @throws IOException when reading the block fails or the block is malformed.
+   */
+  @NonNull
+  byte[] inflate(int index) throws IOException {
+    var compressedLength = (int) (this.blockOffsets[index + 1] - this.blockOffsets[index]);
+    var compressed = ByteBuffer.allocate(compressedLength);
+    this.source.readFully(compressed, this.blockOffsets[index]);
+
+    var expected = (int) Math.min(this.blockSize, this.length - (long) index * this.blockSize);
+    var block = new byte[expected];
+
+    var inflater = new Inflater();
+    try {
+      inflater.setInput(compressed.array());
+
+      var position = 0;
+      while (position < expected && !inflater.finished()) {
+        var n = inflater.inflate(block, position, expected - position);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        position += n;
+      }
+
+      if (position != expected || !inflater.finished()) {
+        throw new IOException(String.format(
+            "Illegal compressed content: Block #%d does not match its expected length", index));
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException(String.format(
+          "Illegal compressed content: Block #%d is malformed", index), ex);
+    } finally {
+      inflater.end();
+    }
+
+    return block;
+  }
+
+  @NonNull
+  private byte[] inflateUnchecked(int index) {
+    try {
+      return this.inflate(index);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @NonNull
+  private static byte[] join(@NonNull ForkJoinTask<byte[]> task) throws IOException {
+    try {
+      return task.join();
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides a read-only channel which exposes the uncompressed form of block compressed contents.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class CompressedContentChannel extends AbstractBlockChannel {
+
+  private final CompressedContent content;
+
+  CompressedContentChannel(@NonNull CompressedContent content) {
+    super(content.getLength(), content.getBlockSize());
+    this.content = content;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  protected byte[] loadBlock(int index) throws IOException {
+    return this.content.getBlock(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isSourceOpen() {
+    return this.content.isOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected int readBlocks(long position, @NonNull ByteBuffer buffer) throws IOException {
+    // reads which span multiple blocks are delegated in order to inflate them in parallel
+    return this.content.read(position, buffer);
+  }
+}
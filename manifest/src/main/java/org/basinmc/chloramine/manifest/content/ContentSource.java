@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import org.basinmc.chloramine.manifest.util.ChannelUtil;
+
+/**
+ * <p>Provides positional access to the encoded contents of a container.</p>
+ *
+ * <p>Implementations must permit any amount of threads to read at the same time.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+@FunctionalInterface
+public interface ContentSource {
+
+  /**
+   * Creates a source which reads from the specified section of a file channel.
+   *
+   * @param channel a file channel (will not be closed).
+   * @param offset the absolute position of the contents within the file.
+   * @return a content source.
+   */
+  @NonNull
+  static ContentSource of(@NonNull FileChannel channel, long offset) {
+    return new ContentSource() {
+      @Override
+      public void readFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        ChannelUtil.readFully(channel, buffer, offset + position);
+      }
+
+      @Override
+      public boolean isOpen() {
+        return channel.isOpen();
+      }
+    };
+  }
+
+  /**
+   * Creates a source which reads from the specified buffer. Reads do not modify the position or
+   * limit of the passed buffer.
+   *
+   * @param buffer a buffer containing the contents (starting at its current position).
+   * @return a content source.
+   */
+  @NonNull
+  static ContentSource of(@NonNull ByteBuffer buffer) {
+    var contents = buffer.slice().asReadOnlyBuffer();
+
+    return (target, position) -> {
+      var length = target.remaining();
+      if (position < 0 || position > contents.capacity() - length) {
+        throw new EOFException("Source contains insufficient data");
+      }
+
+      var view = contents.duplicate();
+      view.position((int) position);
+      view.limit((int) position + length);
+      target.put(view);
+    };
+  }
+
+  /**
+   * Creates a new read-only channel which reads the contents of a source in blocks of the
+   * specified size and retains the most recently read block.
+   *
+   * @param source a content source.
+   * @param length the length of the contents.
+   * @param blockSize a block size.
+   * @return a content channel.
+   */
+  @NonNull
+  static SeekableByteChannel newChannel(@NonNull ContentSource source, long length,
+      int blockSize) {
+    return new AbstractBlockChannel(length, blockSize) {
+      @NonNull
+      @Override
+      protected byte[] loadBlock(int index) throws IOException {
+        var block = new byte[(int) Math.min(blockSize, length - (long) index * blockSize)];
+        source.readFully(ByteBuffer.wrap(block), (long) index * blockSize);
+        return block;
+      }
+
+      @Override
+      protected boolean isSourceOpen() {
+        return source.isOpen();
+      }
+    };
+  }
+
+  /**
+   * Reads from the specified position until the buffer has been filled completely.
+   *
+   * @param buffer a target buffer.
+   * @param position a position relative to the beginning of the contents.
+   * @throws IOException when reading fails or insufficient data is available.
+   */
+  void readFully(@NonNull ByteBuffer buffer, long position) throws IOException;
+
+  /**
+   * Evaluates whether this source remains readable.
+   *
+   * @return true if open, false otherwise.
+   */
+  default boolean isOpen() {
+    return true;
+  }
+}
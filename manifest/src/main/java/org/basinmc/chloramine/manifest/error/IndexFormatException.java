@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.error;
+
+import java.io.IOException;
+
+/**
+ * <p>Notifies a caller about a malformed manifest index file.</p>
+ *
+ * <p>Unlike {@link MetadataDecoderException}, this exception does not indicate an issue with any
+ * particular container. Callers may safely discard the index and rebuild it from the indexed
+ * directory instead.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class IndexFormatException extends IOException {
+
+  public IndexFormatException() {
+  }
+
+  public IndexFormatException(String message) {
+    super(message);
+  }
+
+  public IndexFormatException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public IndexFormatException(Throwable cause) {
+    super(cause);
+  }
+}
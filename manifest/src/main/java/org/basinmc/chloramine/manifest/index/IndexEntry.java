@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.index;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.IndexFormatException;
+import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
+import org.basinmc.chloramine.manifest.io.FileStamp;
+import org.basinmc.chloramine.manifest.metadata.Dependency;
+import org.basinmc.chloramine.manifest.metadata.Service;
+import org.basinmc.chloramine.manifest.metadata.v0.DependencyV0;
+import org.basinmc.chloramine.manifest.metadata.v0.ServiceV0;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Represents the indexed information about a single container file.</p>
+ *
+ * <p>Entries retain the subset of the container manifest which is required in order to resolve
+ * extensions (e.g. their identity, services and dependencies) along with the stamp of the file
+ * at the time it was indexed.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class IndexEntry {
+
+  private final Path path;
+  private final FileStamp stamp;
+  private final long contentOffset;
+  private final long contentLength;
+  private final String identifier;
+  private final String version;
+  private final List<ServiceV0> providedServices;
+  private final List<DependencyV0> extensionDependencies;
+  private final List<DependencyV0> serviceDependencies;
+
+  public IndexEntry(
+      @NonNull Path path,
+      @NonNull FileStamp stamp,
+      long contentOffset,
+      long contentLength,
+      @NonNull String identifier,
+      @NonNull String version,
+      @NonNull List<Service> providedServices,
+      @NonNull List<Dependency> extensionDependencies,
+      @NonNull List<Dependency> serviceDependencies) {
+    this.path = path;
+    this.stamp = stamp;
+    this.contentOffset = contentOffset;
+    this.contentLength = contentLength;
+    this.identifier = identifier;
+    this.version = version;
+    this.providedServices = providedServices.stream()
+        .map((s) -> new ServiceV0(s.getIdentifier(), s.getVersion()))
+        .collect(Collectors.toList());
+    this.extensionDependencies = copyDependencies(extensionDependencies);
+    this.serviceDependencies = copyDependencies(serviceDependencies);
+  }
+
+  /**
+   * Creates an index entry from a previously decoded manifest.
+   *
+   * @param path the path of the container file.
+   * @param stamp the stamp of the container file at the time the manifest was read.
+   * @param manifest the container manifest.
+   * @return an index entry.
+   */
+  @NonNull
+  public static IndexEntry of(@NonNull Path path, @NonNull FileStamp stamp,
+      @NonNull Manifest manifest) {
+    var metadata = manifest.getMetadata();
+
+    return new IndexEntry(path, stamp, manifest.getContentOffset(), manifest.getContentLength(),
+        metadata.getIdentifier(), metadata.getVersion(), metadata.getProvidedServices(),
+        metadata.getExtensionDependencies(), metadata.getServiceDependencies());
+  }
+
+  /**
+   * Decodes an index entry from the specified buffer.
+   *
+   * @param path the path of the container file.
+   * @param buffer a buffer.
+   * @return an index entry.
+   * @throws IndexFormatException when the entry is malformed.
+   * @throws BufferUnderflowException when the buffer is truncated.
+   */
+  @NonNull
+  static IndexEntry read(@NonNull Path path, @NonNull ByteBuffer buffer)
+      throws IndexFormatException {
+    var fileKey = DataUtil.readNullableString(buffer);
+    var stamp = new FileStamp(fileKey, buffer.getLong(), buffer.getLong());
+    var contentOffset = buffer.getLong();
+    var contentLength = buffer.getLong();
+    var identifier = DataUtil.readRequiredString(buffer, () -> new IndexFormatException(
+        "Illegal index: Missing value for required index field: identifier"));
+    var version = DataUtil.readRequiredString(buffer, () -> new IndexFormatException(
+        "Illegal index: Missing value for required index field: version"));
+
+    List<Service> providedServices;
+    List<Dependency> extensionDependencies;
+    List<Dependency> serviceDependencies;
+    try {
+      providedServices = DataUtil
+          .readCollection(buffer, new ArrayList<>(), ServiceV0::new);
+      extensionDependencies = DataUtil
+          .readCollection(buffer, new ArrayList<>(), DependencyV0::new);
+      serviceDependencies = DataUtil
+          .readCollection(buffer, new ArrayList<>(), DependencyV0::new);
+    } catch (MetadataDecoderException ex) {
+      // services and dependencies share their encoding with the container metadata but a
+      // malformed index does not imply a malformed container
+      throw new IndexFormatException("Illegal index: " + ex.getMessage(), ex);
+    }
+
+    return new IndexEntry(path, stamp, contentOffset, contentLength, identifier, version,
+        providedServices, extensionDependencies, serviceDependencies);
+  }
+
+  @NonNull
+  private static List<DependencyV0> copyDependencies(@NonNull List<Dependency> dependencies) {
+    return dependencies.stream()
+        .map((d) -> new DependencyV0(d.getIdentifier(), d.getVersionRange(), d.isOptional()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Retrieves the encoded length of this entry (excluding its path).
+   *
+   * @return a length (in bytes).
+   */
+  long getSerializedLength() {
+    return DataUtil.estimateString(this.stamp.getFileKey().orElse(null))
+        + 32
+        + DataUtil.estimateString(this.identifier)
+        + DataUtil.estimateString(this.version)
+        + DataUtil.estimateCollection(this.providedServices, ServiceV0::getSerializedLength)
+        + DataUtil.estimateCollection(this.extensionDependencies,
+        DependencyV0::getSerializedLength)
+        + DataUtil.estimateCollection(this.serviceDependencies, DependencyV0::getSerializedLength);
+  }
+
+  /**
+   * Encodes this entry (excluding its path) into the specified buffer.
+   *
+   * @param buffer a buffer.
+   */
+  void serialize(@NonNull ByteBuffer buffer) {
+    DataUtil.writeString(buffer, this.stamp.getFileKey().orElse(null));
+    buffer.putLong(this.stamp.getSize());
+    buffer.putLong(this.stamp.getLastModified());
+    buffer.putLong(this.contentOffset);
+    buffer.putLong(this.contentLength);
+    DataUtil.writeString(buffer, this.identifier);
+    DataUtil.writeString(buffer, this.version);
+    DataUtil.writeCollection(buffer, this.providedServices, (b, s) -> s.serialize(b));
+    DataUtil.writeCollection(buffer, this.extensionDependencies, (b, d) -> d.serialize(b));
+    DataUtil.writeCollection(buffer, this.serviceDependencies, (b, d) -> d.serialize(b));
+  }
+
+  /**
+   * Retrieves the path of the indexed container file.
+   *
+   * @return a path.
+   */
+  @NonNull
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Retrieves the stamp of the container file at the time it was indexed.
+   *
+   * @return a file stamp.
+   */
+  @NonNull
+  public FileStamp getStamp() {
+    return this.stamp;
+  }
+
+  /**
+   * @see Manifest#getContentOffset()
+   */
+  public long getContentOffset() {
+    return this.contentOffset;
+  }
+
+  /**
+   * @see Manifest#getContentLength()
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * @see org.basinmc.chloramine.manifest.metadata.Metadata#getIdentifier()
+   */
+  @NonNull
+  public String getIdentifier() {
+    return this.identifier;
+  }
+
+  /**
+   * @see org.basinmc.chloramine.manifest.metadata.Metadata#getVersion()
+   */
+  @NonNull
+  public String getVersion() {
+    return this.version;
+  }
+
+  /**
+   * @see org.basinmc.chloramine.manifest.metadata.Metadata#getProvidedServices()
+   */
+  @NonNull
+  public List<Service> getProvidedServices() {
+    return Collections.unmodifiableList(this.providedServices);
+  }
+
+  /**
+   * @see org.basinmc.chloramine.manifest.metadata.Metadata#getExtensionDependencies()
+   */
+  @NonNull
+  public List<Dependency> getExtensionDependencies() {
+    return Collections.unmodifiableList(this.extensionDependencies);
+  }
+
+  /**
+   * @see org.basinmc.chloramine.manifest.metadata.Metadata#getServiceDependencies()
+   */
+  @NonNull
+  public List<Dependency> getServiceDependencies() {
+    return Collections.unmodifiableList(this.serviceDependencies);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IndexEntry)) {
+      return false;
+    }
+    IndexEntry that = (IndexEntry) o;
+    return this.contentOffset == that.contentOffset &&
+        this.contentLength == that.contentLength &&
+        Objects.equals(this.path, that.path) &&
+        Objects.equals(this.stamp, that.stamp) &&
+        Objects.equals(this.identifier, that.identifier) &&
+        Objects.equals(this.version, that.version) &&
+        Objects.equals(this.providedServices, that.providedServices) &&
+        Objects.equals(this.extensionDependencies, that.extensionDependencies) &&
+        Objects.equals(this.serviceDependencies, that.serviceDependencies);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.path, this.stamp, this.identifier, this.version);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return this.path + " (" + this.identifier + ":" + this.version + ")";
+  }
+}
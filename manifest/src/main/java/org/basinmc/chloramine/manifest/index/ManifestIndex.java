@@ -0,0 +1,325 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.index;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.basinmc.chloramine.manifest.ManifestBatchReader;
+import org.basinmc.chloramine.manifest.error.IndexFormatException;
+import org.basinmc.chloramine.manifest.io.FileStamp;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Provides a persistent index of the container files within a directory.</p>
+ *
+ * <p>Indices are updated by comparing the stamp (file key, size and modification time) of each
+ * container file against the stamp recorded in the index. Only containers which have been added
+ * or changed since the last update are read again while all other entries are carried over as
+ * is.</p>
+ *
+ * <p>Instances of this type are immutable. Updating an index produces a new instance which may
+ * be persisted via {@link #save(Path)}.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ManifestIndex {
+
+  /**
+   * Defines the magic number which identifies index files ("BECI").
+   */
+  public static final int MAGIC_NUMBER = 0x42454349;
+
+  /**
+   * Defines the index format version which is written by this implementation.
+   */
+  public static final short FORMAT_VERSION = 0;
+
+  private static final int HEADER_LENGTH = 9;
+
+  private final Path directory;
+  private final Map<Path, IndexEntry> entries;
+  private final Map<Path, Exception> failures;
+
+  private ManifestIndex(@NonNull Path directory, @NonNull Map<Path, IndexEntry> entries,
+      @NonNull Map<Path, Exception> failures) {
+    this.directory = directory;
+    this.entries = Collections.unmodifiableMap(entries);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * Creates an empty index for the specified directory.
+   *
+   * @param directory a container directory.
+   * @return an empty index.
+   */
+  @NonNull
+  public static ManifestIndex empty(@NonNull Path directory) {
+    return new ManifestIndex(directory, new TreeMap<>(), Collections.emptyMap());
+  }
+
+  /**
+   * <p>Loads a previously saved index for the specified directory.</p>
+   *
+   * <p>When the index file does not exist, an empty index is returned instead. Callers which
+   * encounter a malformed index (as indicated by an {@link IndexFormatException}) may safely fall
+   * back to {@link #empty(Path)} as the index will be rebuilt upon the next update.</p>
+   *
+   * @param directory a container directory.
+   * @param file an index file.
+   * @return an index.
+   * @throws IndexFormatException when the index is malformed.
+   * @throws IOException when reading the index fails.
+   */
+  @NonNull
+  public static ManifestIndex load(@NonNull Path directory, @NonNull Path file)
+      throws IOException {
+    byte[] data;
+    try {
+      data = Files.readAllBytes(file);
+    } catch (NoSuchFileException ex) {
+      return empty(directory);
+    }
+
+    var buffer = ByteBuffer.wrap(data);
+    var entries = new TreeMap<Path, IndexEntry>();
+
+    try {
+      var magicNumber = buffer.getInt();
+      if (magicNumber != MAGIC_NUMBER) {
+        throw new IndexFormatException(String.format(
+            "Illegal index: Illegal magic number: 0x%08X", magicNumber));
+      }
+
+      var version = DataUtil.readUnsignedByte(buffer);
+      if (version != FORMAT_VERSION) {
+        throw new IndexFormatException(
+            "Illegal index: Unsupported format version: " + version);
+      }
+
+      var count = buffer.getInt();
+      for (var i = 0; i < count; ++i) {
+        var name = DataUtil.readRequiredString(buffer, () -> new IndexFormatException(
+            "Illegal index: Missing value for required index field: path"));
+        var path = directory.resolve(name);
+
+        entries.put(path, IndexEntry.read(path, buffer));
+      }
+    } catch (BufferUnderflowException ex) {
+      throw new IndexFormatException("Illegal index: Truncated index file", ex);
+    }
+
+    return new ManifestIndex(directory, entries, Collections.emptyMap());
+  }
+
+  /**
+   * @see #update(ManifestBatchReader)
+   */
+  @NonNull
+  public ManifestIndex update() throws IOException, InterruptedException {
+    return this.update(new ManifestBatchReader());
+  }
+
+  /**
+   * <p>Scans the indexed directory for container files and re-reads all containers which have
+   * been added or changed since this index was built.</p>
+   *
+   * <p>Containers which have been removed from the directory are dropped from the index.
+   * Containers which cannot be read are omitted from the resulting index and reported via
+   * {@link #getFailures()} instead.</p>
+   *
+   * @param reader a batch reader which is used to read the changed containers.
+   * @return an updated index.
+   * @throws IOException when listing the directory fails.
+   * @throws InterruptedException when interrupted while waiting for the changed containers to be
+   * read.
+   */
+  @NonNull
+  public ManifestIndex update(@NonNull ManifestBatchReader reader)
+      throws IOException, InterruptedException {
+    var entries = new TreeMap<Path, IndexEntry>();
+    var failures = new HashMap<Path, Exception>();
+    var changed = new ArrayList<Path>();
+    var stamps = new HashMap<Path, FileStamp>();
+
+    try (var stream = Files
+        .newDirectoryStream(this.directory, ManifestBatchReader.CONTAINER_GLOB)) {
+      for (var path : stream) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ex) {
+          failures.put(path, ex);
+          continue;
+        }
+
+        if (!attributes.isRegularFile()) {
+          continue;
+        }
+
+        // the stamp is captured before the file is read so that modifications which occur while
+        // the index is being updated are picked up by the next update
+        var stamp = FileStamp.of(attributes);
+        var existing = this.entries.get(path);
+        if (existing != null && existing.getStamp().equals(stamp)) {
+          entries.put(path, existing);
+          continue;
+        }
+
+        changed.add(path);
+        stamps.put(path, stamp);
+      }
+    }
+
+    for (var result : reader.read(changed)) {
+      var path = result.getPath();
+      var error = result.getError();
+
+      if (error.isPresent()) {
+        failures.put(path, error.get());
+        continue;
+      }
+
+      entries.put(path, IndexEntry.of(path, stamps.get(path), result.getManifest().get()));
+    }
+
+    return new ManifestIndex(this.directory, entries, failures);
+  }
+
+  /**
+   * Writes this index to the specified file. The file is replaced atomically where supported by
+   * the file system.
+   *
+   * @param file an index file.
+   * @throws IOException when writing the index fails.
+   */
+  public void save(@NonNull Path file) throws IOException {
+    var names = new ArrayList<String>(this.entries.size());
+    long length = HEADER_LENGTH;
+    for (var entry : this.entries.values()) {
+      var name = this.directory.relativize(entry.getPath()).toString();
+      names.add(name);
+
+      length += DataUtil.estimateString(name) + entry.getSerializedLength();
+    }
+
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException(String.format(
+          "Illegal index: Index exceeds maximum length (%d bytes > %d)", length,
+          Integer.MAX_VALUE));
+    }
+
+    var buffer = ByteBuffer.allocate((int) length);
+    buffer.putInt(MAGIC_NUMBER);
+    DataUtil.writeUnsignedByte(buffer, FORMAT_VERSION);
+    buffer.putInt(this.entries.size());
+
+    var it = names.iterator();
+    for (var entry : this.entries.values()) {
+      DataUtil.writeString(buffer, it.next());
+      entry.serialize(buffer);
+    }
+    buffer.flip();
+
+    var target = file.toAbsolutePath();
+    var tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+
+      try {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Retrieves the directory which is covered by this index.
+   *
+   * @return a directory.
+   */
+  @NonNull
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Retrieves the entry for the specified container file.
+   *
+   * @param path a container file.
+   * @return an entry or, if the file is not indexed, an empty optional.
+   */
+  @NonNull
+  public Optional<IndexEntry> getEntry(@NonNull Path path) {
+    return Optional.ofNullable(this.entries.get(path));
+  }
+
+  /**
+   * Retrieves all entries within this index (ordered by path).
+   *
+   * @return a collection of entries.
+   */
+  @NonNull
+  public Collection<IndexEntry> getEntries() {
+    return this.entries.values();
+  }
+
+  /**
+   * Retrieves the containers which could not be read during the update which produced this
+   * index. Failures are not persisted.
+   *
+   * @return a map of container files and their respective errors.
+   */
+  @NonNull
+  public Map<Path, Exception> getFailures() {
+    return this.failures;
+  }
+
+  /**
+   * Retrieves the amount of indexed containers.
+   *
+   * @return an amount of entries.
+   */
+  public int size() {
+    return this.entries.size();
+  }
+}
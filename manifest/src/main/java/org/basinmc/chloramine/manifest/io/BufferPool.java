@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.io;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Provides temporary buffers to the manifest encoding and decoding paths.</p>
+ *
+ * <p>The default pool is located through {@link java.util.ServiceLoader} upon first use. When no
+ * implementation has been registered, a {@link DirectBufferPool} with its default configuration
+ * is used instead.</p>
+ *
+ * <p>Implementations are expected to be thread safe.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public interface BufferPool {
+
+  /**
+   * Retrieves the process wide default buffer pool.
+   *
+   * @return a buffer pool.
+   */
+  @NonNull
+  static BufferPool getDefault() {
+    return DefaultBufferPool.INSTANCE;
+  }
+
+  /**
+   * Retrieves a buffer pool which allocates a new heap buffer for every request and discards
+   * all released buffers.
+   *
+   * @return a buffer pool.
+   */
+  @NonNull
+  static BufferPool unpooled() {
+    return UnpooledBufferPool.INSTANCE;
+  }
+
+  /**
+   * <p>Acquires a buffer with at least the specified capacity.</p>
+   *
+   * <p>The returned buffer is positioned at zero and its limit is set to the requested capacity.
+   * Its contents are undefined.</p>
+   *
+   * @param capacity a minimum capacity (in bytes).
+   * @return a buffer.
+   */
+  @NonNull
+  ByteBuffer acquire(int capacity);
+
+  /**
+   * <p>Returns a previously acquired buffer to this pool.</p>
+   *
+   * <p>Callers must not retain any references to the buffer (or views of it) once it has been
+   * released.</p>
+   *
+   * @param buffer a buffer.
+   */
+  void release(@NonNull ByteBuffer buffer);
+}
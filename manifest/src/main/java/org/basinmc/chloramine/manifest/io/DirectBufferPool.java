@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.io;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Provides a buffer pool which retains direct buffers within a fixed set of size classes.</p>
+ *
+ * <p>Each request is rounded up to the next power of two (starting at {@link
+ * #MINIMUM_BUFFER_SIZE}). Requests which exceed the configured maximum buffer size are served with
+ * regular heap buffers which are discarded upon release.</p>
+ *
+ * <p>The amount of retained buffers is limited per size class in order to bound the amount of
+ * direct memory held by idle pools.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class DirectBufferPool implements BufferPool {
+
+  /**
+   * Defines the smallest size class (in bytes).
+   */
+  public static final int MINIMUM_BUFFER_SIZE = 512;
+
+  /**
+   * Defines the default largest size class (in bytes).
+   */
+  public static final int DEFAULT_MAXIMUM_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * Defines the default amount of memory retained per size class (in bytes).
+   */
+  public static final int DEFAULT_RETAINED_BYTES = 4 * 1024 * 1024;
+
+  private static final int MINIMUM_SHIFT = Integer.numberOfTrailingZeros(MINIMUM_BUFFER_SIZE);
+
+  private final int maximumBufferSize;
+  private final SizeClass[] sizeClasses;
+
+  public DirectBufferPool() {
+    this(DEFAULT_MAXIMUM_BUFFER_SIZE, DEFAULT_RETAINED_BYTES);
+  }
+
+  /**
+   * @param maximumBufferSize the largest pooled buffer size (rounded up to the next power of
+   * two).
+   * @param retainedBytes the maximum amount of memory retained per size class (at least one
+   * buffer is retained per class).
+   * @throws IllegalArgumentException when either parameter is out of bounds.
+   */
+  public DirectBufferPool(int maximumBufferSize, int retainedBytes) {
+    if (maximumBufferSize < MINIMUM_BUFFER_SIZE || maximumBufferSize > (1 << 30)) {
+      throw new IllegalArgumentException(
+          "Maximum buffer size out of bounds: " + maximumBufferSize);
+    }
+    if (retainedBytes < 0) {
+      throw new IllegalArgumentException("Retained bytes cannot be negative: " + retainedBytes);
+    }
+
+    var classCount = sizeClassOf(maximumBufferSize) + 1;
+    this.maximumBufferSize = MINIMUM_BUFFER_SIZE << (classCount - 1);
+    this.sizeClasses = new SizeClass[classCount];
+    for (var i = 0; i < classCount; ++i) {
+      var size = MINIMUM_BUFFER_SIZE << i;
+      this.sizeClasses[i] = new SizeClass(size, Math.max(1, retainedBytes / size));
+    }
+  }
+
+  /**
+   * Evaluates the index of the smallest size class which fits the specified capacity.
+   *
+   * @param capacity a capacity.
+   * @return a size class index.
+   */
+  private static int sizeClassOf(int capacity) {
+    if (capacity <= MINIMUM_BUFFER_SIZE) {
+      return 0;
+    }
+
+    return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MINIMUM_SHIFT;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public ByteBuffer acquire(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative: " + capacity);
+    }
+    if (capacity > this.maximumBufferSize) {
+      return ByteBuffer.allocate(capacity);
+    }
+
+    var sizeClass = this.sizeClasses[sizeClassOf(capacity)];
+    var buffer = sizeClass.buffers.poll();
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(sizeClass.size);
+    } else {
+      sizeClass.retained.decrementAndGet();
+      buffer.clear();
+    }
+
+    buffer.limit(capacity);
+    return buffer;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release(@NonNull ByteBuffer buffer) {
+    var capacity = buffer.capacity();
+    if (!buffer.isDirect() || buffer.isReadOnly() || capacity > this.maximumBufferSize) {
+      return;
+    }
+
+    var sizeClass = this.sizeClasses[sizeClassOf(capacity)];
+    if (sizeClass.size != capacity) {
+      return;
+    }
+
+    if (sizeClass.retained.incrementAndGet() > sizeClass.limit) {
+      sizeClass.retained.decrementAndGet();
+      return;
+    }
+
+    sizeClass.buffers.offer(buffer);
+  }
+
+  /**
+   * Represents a single size class along with its retained buffers.
+   */
+  private static final class SizeClass {
+
+    private final int size;
+    private final int limit;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retained = new AtomicInteger();
+
+    private SizeClass(int size, int limit) {
+      this.size = size;
+      this.limit = limit;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.io;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Identifies a specific revision of a file based on its stat data.</p>
+ *
+ * <p>Two stamps are considered equal when they refer to the same file key (where supported by
+ * the file system) and report the same size and modification time. Stamps are used to decide
+ * whether previously derived information about a file (such as its decoded manifest) may still
+ * be used without reading the file again.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class FileStamp {
+
+  private final String fileKey;
+  private final long size;
+  private final long lastModified;
+
+  /**
+   * @param fileKey a string representation of the file key or null if not supported.
+   * @param size the file size (in bytes).
+   * @param lastModified the modification time (in nanoseconds since the epoch).
+   */
+  public FileStamp(@Nullable String fileKey, long size, long lastModified) {
+    this.fileKey = fileKey;
+    this.size = size;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Retrieves the stamp of the specified file.
+   *
+   * @param path an arbitrary file.
+   * @return a stamp.
+   * @throws IOException when reading the file attributes fails.
+   */
+  @NonNull
+  public static FileStamp of(@NonNull Path path) throws IOException {
+    return of(Files.readAttributes(path, BasicFileAttributes.class));
+  }
+
+  /**
+   * Creates a stamp from a set of previously read file attributes.
+   *
+   * @param attributes a set of file attributes.
+   * @return a stamp.
+   */
+  @NonNull
+  public static FileStamp of(@NonNull BasicFileAttributes attributes) {
+    var fileKey = attributes.fileKey();
+
+    return new FileStamp(
+        fileKey != null ? fileKey.toString() : null,
+        attributes.size(),
+        attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Retrieves a string representation of the file key.
+   *
+   * @return a file key or, if not supported by the file system, an empty optional.
+   */
+  @NonNull
+  public Optional<String> getFileKey() {
+    return Optional.ofNullable(this.fileKey);
+  }
+
+  /**
+   * Retrieves the file size.
+   *
+   * @return a size (in bytes).
+   */
+  public long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Retrieves the file modification time.
+   *
+   * @return a timestamp (in nanoseconds since the epoch).
+   */
+  public long getLastModified() {
+    return this.lastModified;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FileStamp)) {
+      return false;
+    }
+    FileStamp that = (FileStamp) o;
+    return this.size == that.size &&
+        this.lastModified == that.lastModified &&
+        Objects.equals(this.fileKey, that.fileKey);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.fileKey, this.size, this.lastModified);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "FileStamp{" +
+        "fileKey='" + this.fileKey + '\'' +
+        ", size=" + this.size +
+        ", lastModified=" + this.lastModified +
+        '}';
+  }
+}
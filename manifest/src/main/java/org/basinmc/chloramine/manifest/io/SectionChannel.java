@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.io;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * <p>Provides a read-only view of a fixed section within a file channel.</p>
+ *
+ * <p>All reads are performed using absolute positions on the backing channel. As such, an
+ * arbitrary amount of section channels may share a single file channel and be read from
+ * concurrently without any additional synchronization. Each view maintains its own position.</p>
+ *
+ * <p>Closing a section channel does <strong>not</strong> close its backing channel.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class SectionChannel implements SeekableByteChannel {
+
+  private final FileChannel channel;
+  private final long offset;
+  private final long length;
+
+  private long position;
+  private volatile boolean open = true;
+
+  public SectionChannel(@NonNull FileChannel channel, long offset, long length) {
+    if (offset < 0) {
+      throw new IllegalArgumentException("Offset cannot be negative: " + offset);
+    }
+    if (length < 0) {
+      throw new IllegalArgumentException("Length cannot be negative: " + length);
+    }
+
+    this.channel = channel;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read(@NonNull ByteBuffer dst) throws IOException {
+    this.ensureOpen();
+
+    var remaining = this.length - this.position;
+    if (remaining <= 0) {
+      return -1;
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    var limit = dst.limit();
+    if (dst.remaining() > remaining) {
+      dst.limit(dst.position() + (int) remaining);
+    }
+
+    try {
+      var read = this.channel.read(dst, this.offset + this.position);
+      if (read == -1) {
+        throw new EOFException(
+            "Section exceeds channel bounds: Expected " + remaining + " more byte(s)");
+      }
+
+      this.position += read;
+      return read;
+    } finally {
+      dst.limit(limit);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int write(@NonNull ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long position() throws IOException {
+    this.ensureOpen();
+    return this.position;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public SectionChannel position(long newPosition) throws IOException {
+    this.ensureOpen();
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position cannot be negative: " + newPosition);
+    }
+
+    this.position = newPosition;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long size() throws IOException {
+    this.ensureOpen();
+    return this.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isOpen() {
+    return this.open && this.channel.isOpen();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() {
+    this.open = false;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Provides a string table which retains up to a fixed amount of canonical instances.</p>
+ *
+ * <p>Canonical instances are retained strongly for the lifetime of the table. Once the table has
+ * reached its capacity, previously unknown values are returned as is.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class BoundedStringTable implements StringTable {
+
+  /**
+   * Defines the default maximum amount of canonical instances.
+   */
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  private final int capacity;
+  private final ConcurrentHashMap<String, String> table = new ConcurrentHashMap<>();
+
+  public BoundedStringTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the maximum amount of canonical instances.
+   * @throws IllegalArgumentException when the capacity is negative.
+   */
+  public BoundedStringTable(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must be positive or zero: " + capacity);
+    }
+
+    this.capacity = capacity;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public String canonicalize(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+
+    var canonical = this.table.get(value);
+    if (canonical != null) {
+      return canonical;
+    }
+
+    // the capacity may be exceeded slightly when values are added concurrently
+    if (this.table.mappingCount() >= this.capacity) {
+      return value;
+    }
+
+    canonical = this.table.putIfAbsent(value, value);
+    return canonical != null ? canonical : value;
+  }
+
+  /**
+   * Retrieves the amount of canonical instances which are currently retained.
+   *
+   * @return an amount of strings.
+   */
+  public int size() {
+    return this.table.size();
+  }
+}
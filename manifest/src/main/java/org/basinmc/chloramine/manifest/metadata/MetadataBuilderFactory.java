@@ -58,4 +58,41 @@ public interface MetadataBuilderFactory {
    */
   @NonNull
   Metadata.Builder newBuilder(short version);
+
+  /**
+   * <p>Constructs a new builder which has been pre-populated with the values of the specified
+   * metadata.</p>
+   *
+   * <p>This is typically used in order to modify a subset of the fields within an existing
+   * container without having to specify the remaining fields again.</p>
+   *
+   * @param metadata an arbitrary metadata representation of a compatible format revision.
+   * @return a pre-populated builder.
+   */
+  @NonNull
+  default Metadata.Builder newBuilder(@NonNull Metadata metadata) {
+    var builder = this.newBuilder(metadata.getFormatVersion())
+        .setProductIdentifier(metadata.getProductIdentifier())
+        .setEnvironmentType(metadata.getEnvironmentType())
+        .setFlags(metadata.getFlags())
+        .setIdentifier(metadata.getIdentifier())
+        .setVersion(metadata.getVersion());
+
+    metadata.getDistributionUrl().ifPresent(builder::setDistributionUrl);
+    metadata.getDocumentationUrl().ifPresent(builder::setDocumentationUrl);
+    metadata.getIssueReportingUrl().ifPresent(builder::setIssueReportingUrl);
+
+    metadata.getAuthors()
+        .forEach((a) -> builder.addAuthor(a.getName(), a.getAlias().orElse(null)));
+    metadata.getContributors()
+        .forEach((a) -> builder.addContributor(a.getName(), a.getAlias().orElse(null)));
+    metadata.getProvidedServices()
+        .forEach((s) -> builder.addService(s.getIdentifier(), s.getVersion()));
+    metadata.getExtensionDependencies().forEach((d) -> builder
+        .addExtensionDependency(d.getIdentifier(), d.getVersionRange(), d.isOptional()));
+    metadata.getServiceDependencies().forEach((d) -> builder
+        .addServiceDependency(d.getIdentifier(), d.getVersionRange(), d.isOptional()));
+
+    return builder;
+  }
 }
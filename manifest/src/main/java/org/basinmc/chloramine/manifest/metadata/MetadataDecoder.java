@@ -63,4 +63,23 @@ public interface MetadataDecoder {
    */
   @NonNull
   Metadata decode(short version, @NonNull ByteBuffer buffer) throws MetadataException;
+
+  /**
+   * <p>Decodes a serialized metadata representation into its POJO representation while
+   * canonicalizing frequently repeated values through the specified string table.</p>
+   *
+   * <p>Decoders which do not support canonicalization ignore the passed table.</p>
+   *
+   * @param version the format revision.
+   * @param buffer a buffer containing the serialized version.
+   * @param table a string table.
+   * @return a metadata POJO.
+   * @throws MetadataException when the decoder fails to convert the data.
+   * @see #decode(short, ByteBuffer) for decoding with the default string table.
+   */
+  @NonNull
+  default Metadata decode(short version, @NonNull ByteBuffer buffer, @NonNull StringTable table)
+      throws MetadataException {
+    return this.decode(version, buffer);
+  }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * <p>Canonicalizes frequently repeated strings (such as product, service and dependency
+ * identifiers) which are encountered while decoding metadata.</p>
+ *
+ * <p>Decoders pass the values of the respective fields through a string table before retaining
+ * them. As a result, equal values which are decoded from different containers may share a
+ * single instance and may thus be compared by identity.</p>
+ *
+ * <p>The default table is located through {@link java.util.ServiceLoader} upon first use. When
+ * no implementation has been registered, strings are not canonicalized.</p>
+ *
+ * <p>Implementations are expected to be thread safe.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public interface StringTable {
+
+  /**
+   * Retrieves the process wide default string table.
+   *
+   * @return a string table.
+   */
+  @NonNull
+  static StringTable getDefault() {
+    return DefaultStringTable.INSTANCE;
+  }
+
+  /**
+   * Retrieves a string table which returns all values as is.
+   *
+   * @return a string table.
+   */
+  @NonNull
+  static StringTable none() {
+    return IdentityStringTable.INSTANCE;
+  }
+
+  /**
+   * Retrieves the canonical instance for the specified value.
+   *
+   * @param value an arbitrary value.
+   * @return a string which is equal to the passed value (or null if the value is null).
+   */
+  @Nullable
+  String canonicalize(@Nullable String value);
+}
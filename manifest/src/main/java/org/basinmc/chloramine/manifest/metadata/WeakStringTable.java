@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Provides a string table which retains its canonical instances only for as long as they are
+ * referenced elsewhere.</p>
+ *
+ * <p>The table is split into a fixed amount of independently locked segments in order to reduce
+ * contention between concurrent decoders.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class WeakStringTable implements StringTable {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final List<Map<String, WeakReference<String>>> segments =
+      new ArrayList<>(SEGMENT_COUNT);
+
+  public WeakStringTable() {
+    for (var i = 0; i < SEGMENT_COUNT; ++i) {
+      this.segments.add(new WeakHashMap<>());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public String canonicalize(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+
+    var hash = value.hashCode();
+    var segment = this.segments.get((hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1));
+
+    synchronized (segment) {
+      var reference = segment.get(value);
+      var canonical = reference != null ? reference.get() : null;
+      if (canonical == null) {
+        segment.put(value, new WeakReference<>(value));
+        canonical = value;
+      }
+      return canonical;
+    }
+  }
+
+  /**
+   * Retrieves the amount of canonical instances which are currently retained.
+   *
+   * @return an amount of strings.
+   */
+  public int size() {
+    var size = 0;
+    for (var segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+}
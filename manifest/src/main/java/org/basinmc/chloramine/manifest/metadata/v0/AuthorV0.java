@@ -19,7 +19,7 @@ package org.basinmc.chloramine.manifest.metadata.v0;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.nio.ByteBuffer;
-import java.util.Objects;
+import java.util.Arrays;
 import java.util.Optional;
 import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
 import org.basinmc.chloramine.manifest.metadata.Author;
@@ -33,17 +33,17 @@ public class AuthorV0 implements Author {
   private final String name;
   private final String alias;
 
+  private volatile byte[] encoded;
+
   public AuthorV0(@NonNull String name, @Nullable String alias) {
     this.name = name;
     this.alias = alias;
   }
 
   public AuthorV0(@NonNull ByteBuffer buffer) throws MetadataDecoderException {
-    this.name = DataUtil.readString(buffer)
-        .orElseThrow(
-            () -> new MetadataDecoderException("Missing value for required author field: name"));
-    this.alias = DataUtil.readString(buffer)
-        .orElse(null);
+    this.name = DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException("Missing value for required author field: name"));
+    this.alias = DataUtil.readNullableString(buffer);
   }
 
   /**
@@ -69,7 +69,7 @@ public class AuthorV0 implements Author {
    */
   @Override
   public long getSerializedLength() {
-    return DataUtil.estimateString(this.name) + DataUtil.estimateString(this.alias);
+    return this.getEncoded().length;
   }
 
   /**
@@ -77,8 +77,28 @@ public class AuthorV0 implements Author {
    */
   @Override
   public void serialize(@NonNull ByteBuffer buffer) {
-    DataUtil.writeString(buffer, this.name);
-    DataUtil.writeString(buffer, this.alias);
+    buffer.put(this.getEncoded());
+  }
+
+  /**
+   * Retrieves the encoded form of this object. The encoded form is computed upon first access
+   * and shared afterwards (concurrent first accesses may encode more than once but always produce
+   * equal results).
+   *
+   * @return an encoded representation (must not be modified).
+   */
+  @NonNull
+  private byte[] getEncoded() {
+    var encoded = this.encoded;
+    if (encoded == null) {
+      var buffer = ByteBuffer.allocate(
+          (int) (DataUtil.estimateString(this.name) + DataUtil.estimateString(this.alias)));
+      DataUtil.writeString(buffer, this.name);
+      DataUtil.writeString(buffer, this.alias);
+      encoded = buffer.array();
+      this.encoded = encoded;
+    }
+    return encoded;
   }
 
   /**
@@ -105,8 +125,7 @@ public class AuthorV0 implements Author {
       return false;
     }
     AuthorV0 authorV0 = (AuthorV0) o;
-    return Objects.equals(this.name, authorV0.name) &&
-        Objects.equals(this.alias, authorV0.alias);
+    return Arrays.equals(this.getEncoded(), authorV0.getEncoded());
   }
 
   /**
@@ -114,6 +133,6 @@ public class AuthorV0 implements Author {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.name, this.alias);
+    return Arrays.hashCode(this.getEncoded());
   }
 }
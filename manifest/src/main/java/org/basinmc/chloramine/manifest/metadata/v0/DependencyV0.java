@@ -18,9 +18,10 @@ package org.basinmc.chloramine.manifest.metadata.v0;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.nio.ByteBuffer;
-import java.util.Objects;
+import java.util.Arrays;
 import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
 import org.basinmc.chloramine.manifest.metadata.Dependency;
+import org.basinmc.chloramine.manifest.metadata.StringTable;
 import org.basinmc.chloramine.manifest.util.DataUtil;
 
 /**
@@ -32,6 +33,8 @@ public class DependencyV0 implements Dependency {
   private final String versionRange;
   private final boolean optional;
 
+  private volatile byte[] encoded;
+
   public DependencyV0(@NonNull String identifier, @NonNull String versionRange) {
     this(identifier, versionRange, false);
   }
@@ -43,12 +46,17 @@ public class DependencyV0 implements Dependency {
   }
 
   public DependencyV0(@NonNull ByteBuffer buffer) throws MetadataDecoderException {
-    this.identifier = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required dependency field: identifier"));
-    this.versionRange = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required dependency field: versionRange"));
+    this(buffer, StringTable.getDefault());
+  }
+
+  public DependencyV0(@NonNull ByteBuffer buffer, @NonNull StringTable table)
+      throws MetadataDecoderException {
+    this.identifier = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException(
+            "Missing value for required dependency field: identifier")));
+    this.versionRange = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException(
+            "Missing value for required dependency field: versionRange")));
     this.optional = buffer.get() == 1;
   }
 
@@ -83,8 +91,7 @@ public class DependencyV0 implements Dependency {
    */
   @Override
   public long getSerializedLength() {
-    return DataUtil.estimateString(this.identifier) + DataUtil.estimateString(this.versionRange)
-        + 1;
+    return this.getEncoded().length;
   }
 
   /**
@@ -92,9 +99,29 @@ public class DependencyV0 implements Dependency {
    */
   @Override
   public void serialize(@NonNull ByteBuffer buffer) {
-    DataUtil.writeString(buffer, this.identifier);
-    DataUtil.writeString(buffer, this.versionRange);
-    buffer.put((byte) (this.optional ? 1 : 0));
+    buffer.put(this.getEncoded());
+  }
+
+  /**
+   * Retrieves the encoded form of this object. The encoded form is computed upon first access
+   * and shared afterwards (concurrent first accesses may encode more than once but always produce
+   * equal results).
+   *
+   * @return an encoded representation (must not be modified).
+   */
+  @NonNull
+  private byte[] getEncoded() {
+    var encoded = this.encoded;
+    if (encoded == null) {
+      var buffer = ByteBuffer.allocate((int) (DataUtil.estimateString(this.identifier)
+          + DataUtil.estimateString(this.versionRange) + 1));
+      DataUtil.writeString(buffer, this.identifier);
+      DataUtil.writeString(buffer, this.versionRange);
+      buffer.put((byte) (this.optional ? 1 : 0));
+      encoded = buffer.array();
+      this.encoded = encoded;
+    }
+    return encoded;
   }
 
   /**
@@ -125,9 +152,7 @@ public class DependencyV0 implements Dependency {
       return false;
     }
     DependencyV0 that = (DependencyV0) o;
-    return this.optional == that.optional &&
-        Objects.equals(this.identifier, that.identifier) &&
-        Objects.equals(this.versionRange, that.versionRange);
+    return Arrays.equals(this.getEncoded(), that.getEncoded());
   }
 
   /**
@@ -135,6 +160,6 @@ public class DependencyV0 implements Dependency {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.identifier, this.versionRange, this.optional);
+    return Arrays.hashCode(this.getEncoded());
   }
 }
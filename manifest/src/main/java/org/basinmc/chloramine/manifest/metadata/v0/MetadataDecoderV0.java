@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
 import org.basinmc.chloramine.manifest.metadata.Metadata;
 import org.basinmc.chloramine.manifest.metadata.MetadataDecoder;
+import org.basinmc.chloramine.manifest.metadata.StringTable;
 
 /**
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
@@ -42,6 +43,16 @@ public class MetadataDecoderV0 implements MetadataDecoder {
   @Override
   public Metadata decode(short version, @NonNull ByteBuffer buffer)
       throws MetadataDecoderException {
-    return new MetadataV0(version, buffer);
+    return this.decode(version, buffer, StringTable.getDefault());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Metadata decode(short version, @NonNull ByteBuffer buffer, @NonNull StringTable table)
+      throws MetadataDecoderException {
+    return new MetadataViewV0(version, buffer, table);
   }
 }
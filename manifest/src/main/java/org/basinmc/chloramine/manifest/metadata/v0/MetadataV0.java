@@ -21,6 +21,7 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -32,8 +33,8 @@ import org.basinmc.chloramine.manifest.metadata.Author;
 import org.basinmc.chloramine.manifest.metadata.Dependency;
 import org.basinmc.chloramine.manifest.metadata.Metadata;
 import org.basinmc.chloramine.manifest.metadata.Service;
+import org.basinmc.chloramine.manifest.metadata.StringTable;
 import org.basinmc.chloramine.manifest.util.DataUtil;
-import org.basinmc.chloramine.manifest.util.MappingUtil;
 
 /**
  * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
@@ -57,6 +58,9 @@ public class MetadataV0 extends AbstractMetadata {
   private final List<DependencyV0> extensionDependencies;
   private final List<DependencyV0> serviceDependencies;
 
+  private volatile byte[] encoded;
+  private volatile int hash;
+
   public MetadataV0(short formatVersion,
       @NonNull String productIdentifier,
       @NonNull String environmentType,
@@ -89,40 +93,46 @@ public class MetadataV0 extends AbstractMetadata {
 
   public MetadataV0(short formatVersion, @NonNull ByteBuffer buffer)
       throws MetadataDecoderException {
+    this(formatVersion, buffer, StringTable.getDefault());
+  }
+
+  public MetadataV0(short formatVersion, @NonNull ByteBuffer buffer, @NonNull StringTable table)
+      throws MetadataDecoderException {
     super(formatVersion);
 
-    this.productIdentifier = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required field: productIdentifier"));
-    this.environmentType = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required field: environmentType"));
+    this.productIdentifier = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException(
+            "Missing value for required field: productIdentifier")));
+    this.environmentType = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException(
+            "Missing value for required field: environmentType")));
     this.flags = DataUtil.readUnsignedShort(buffer);
 
-    this.identifier = DataUtil.readString(buffer)
-        .orElseThrow(
-            () -> new MetadataDecoderException("Missing value for required field: identifier"));
-    this.version = DataUtil.readString(buffer)
-        .orElseThrow(
-            () -> new MetadataDecoderException("Missing value for required field: version"));
-
-    this.distributionUrl = MappingUtil.map(DataUtil.readString(buffer), MetadataV0::decodeUri)
-        .orElse(null);
-    this.documentationUrl = MappingUtil.map(DataUtil.readString(buffer), MetadataV0::decodeUri)
-        .orElse(null);
-    this.issueReportingUrl = MappingUtil.map(DataUtil.readString(buffer), MetadataV0::decodeUri)
-        .orElse(null);
+    this.identifier = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException("Missing value for required field: identifier")));
+    this.version = DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException("Missing value for required field: version"));
+
+    this.distributionUrl = decodeUri(DataUtil.readNullableString(buffer));
+    this.documentationUrl = decodeUri(DataUtil.readNullableString(buffer));
+    this.issueReportingUrl = decodeUri(DataUtil.readNullableString(buffer));
     this.authors = DataUtil.readCollection(buffer, new ArrayList<>(), AuthorV0::new);
     this.contributors = DataUtil.readCollection(buffer, new ArrayList<>(), AuthorV0::new);
 
-    this.providedServices = DataUtil.readCollection(buffer, new ArrayList<>(), ServiceV0::new);
+    this.providedServices = DataUtil
+        .readCollection(buffer, new ArrayList<>(), (b) -> new ServiceV0(b, table));
     this.extensionDependencies = DataUtil
-        .readCollection(buffer, new ArrayList<>(), DependencyV0::new);
+        .readCollection(buffer, new ArrayList<>(), (b) -> new DependencyV0(b, table));
     this.serviceDependencies = DataUtil
-        .readCollection(buffer, new ArrayList<>(), DependencyV0::new);
+        .readCollection(buffer, new ArrayList<>(), (b) -> new DependencyV0(b, table));
   }
 
-  private static URI decodeUri(@NonNull String uri) throws MetadataDecoderException {
+  @Nullable
+  private static URI decodeUri(@Nullable String uri) throws MetadataDecoderException {
+    if (uri == null) {
+      return null;
+    }
+
     try {
       return URI.create(uri);
     } catch (IllegalArgumentException ex) {
@@ -251,19 +261,7 @@ public class MetadataV0 extends AbstractMetadata {
    */
   @Override
   public long getSerializedLength() {
-    return super.getSerializedLength() + DataUtil.estimateString(this.productIdentifier) +
-        DataUtil.estimateString(this.environmentType) +
-        2 +
-        DataUtil.estimateString(this.identifier) +
-        DataUtil.estimateString(this.version) +
-        DataUtil.estimateString(Objects.toString(this.distributionUrl, null)) +
-        DataUtil.estimateString(Objects.toString(this.documentationUrl, null)) +
-        DataUtil.estimateString(Objects.toString(this.issueReportingUrl, null)) +
-        DataUtil.estimateCollection(this.authors, AuthorV0::getSerializedLength) +
-        DataUtil.estimateCollection(this.contributors, AuthorV0::getSerializedLength) +
-        DataUtil.estimateCollection(this.providedServices, ServiceV0::getSerializedLength) +
-        DataUtil.estimateCollection(this.extensionDependencies, DependencyV0::getSerializedLength) +
-        DataUtil.estimateCollection(this.serviceDependencies, DependencyV0::getSerializedLength);
+    return this.getEncoded().length;
   }
 
   /**
@@ -271,20 +269,56 @@ public class MetadataV0 extends AbstractMetadata {
    */
   @Override
   public void serialize(@NonNull ByteBuffer buffer) throws ManifestEncoderException {
-    super.serialize(buffer);
-    DataUtil.writeString(buffer, this.productIdentifier);
-    DataUtil.writeString(buffer, this.environmentType);
-    DataUtil.writeUnsignedShort(buffer, this.flags);
-    DataUtil.writeString(buffer, this.identifier);
-    DataUtil.writeString(buffer, this.version);
-    DataUtil.writeString(buffer, Objects.toString(this.distributionUrl, null));
-    DataUtil.writeString(buffer, Objects.toString(this.documentationUrl, null));
-    DataUtil.writeString(buffer, Objects.toString(this.issueReportingUrl, null));
-    DataUtil.writeCollection(buffer, this.authors, (b, author) -> author.serialize(b));
-    DataUtil.writeCollection(buffer, this.contributors, (b, author) -> author.serialize(b));
-    DataUtil.writeCollection(buffer, this.providedServices, (b, service) -> service.serialize(b));
-    DataUtil.writeCollection(buffer, this.extensionDependencies, (b, dep) -> dep.serialize(b));
-    DataUtil.writeCollection(buffer, this.serviceDependencies, (b, dep) -> dep.serialize(b));
+    buffer.put(this.getEncoded());
+  }
+
+  /**
+   * <p>Retrieves the encoded form of this metadata (including its format version).</p>
+   *
+   * <p>The encoded form is computed upon first access and shared afterwards. Concurrent first
+   * accesses may encode the metadata more than once but will always produce equal results.</p>
+   *
+   * @return an encoded representation (must not be modified).
+   */
+  @NonNull
+  byte[] getEncoded() {
+    var encoded = this.encoded;
+    if (encoded == null) {
+      var length = super.getSerializedLength() + DataUtil.estimateString(this.productIdentifier) +
+          DataUtil.estimateString(this.environmentType) +
+          2 +
+          DataUtil.estimateString(this.identifier) +
+          DataUtil.estimateString(this.version) +
+          DataUtil.estimateString(Objects.toString(this.distributionUrl, null)) +
+          DataUtil.estimateString(Objects.toString(this.documentationUrl, null)) +
+          DataUtil.estimateString(Objects.toString(this.issueReportingUrl, null)) +
+          DataUtil.estimateCollection(this.authors, AuthorV0::getSerializedLength) +
+          DataUtil.estimateCollection(this.contributors, AuthorV0::getSerializedLength) +
+          DataUtil.estimateCollection(this.providedServices, ServiceV0::getSerializedLength) +
+          DataUtil.estimateCollection(this.extensionDependencies,
+              DependencyV0::getSerializedLength) +
+          DataUtil.estimateCollection(this.serviceDependencies, DependencyV0::getSerializedLength);
+      var buffer = ByteBuffer.allocate((int) length);
+
+      DataUtil.writeUnsignedByte(buffer, this.getFormatVersion());
+      DataUtil.writeString(buffer, this.productIdentifier);
+      DataUtil.writeString(buffer, this.environmentType);
+      DataUtil.writeUnsignedShort(buffer, this.flags);
+      DataUtil.writeString(buffer, this.identifier);
+      DataUtil.writeString(buffer, this.version);
+      DataUtil.writeString(buffer, Objects.toString(this.distributionUrl, null));
+      DataUtil.writeString(buffer, Objects.toString(this.documentationUrl, null));
+      DataUtil.writeString(buffer, Objects.toString(this.issueReportingUrl, null));
+      DataUtil.writeCollection(buffer, this.authors, (b, author) -> author.serialize(b));
+      DataUtil.writeCollection(buffer, this.contributors, (b, author) -> author.serialize(b));
+      DataUtil.writeCollection(buffer, this.providedServices, (b, service) -> service.serialize(b));
+      DataUtil.writeCollection(buffer, this.extensionDependencies, (b, dep) -> dep.serialize(b));
+      DataUtil.writeCollection(buffer, this.serviceDependencies, (b, dep) -> dep.serialize(b));
+
+      encoded = buffer.array();
+      this.encoded = encoded;
+    }
+    return encoded;
   }
 
   /**
@@ -295,26 +329,14 @@ public class MetadataV0 extends AbstractMetadata {
     if (this == o) {
       return true;
     }
-    if (!(o instanceof MetadataV0)) {
-      return false;
+    if (o instanceof MetadataViewV0) {
+      return ((MetadataViewV0) o).equalsEncoded(this.getEncoded());
     }
-    if (!super.equals(o)) {
+    if (!(o instanceof MetadataV0)) {
       return false;
     }
     MetadataV0 that = (MetadataV0) o;
-    return this.flags == that.flags &&
-        Objects.equals(this.productIdentifier, that.productIdentifier) &&
-        Objects.equals(this.environmentType, that.environmentType) &&
-        Objects.equals(this.identifier, that.identifier) &&
-        Objects.equals(this.version, that.version) &&
-        Objects.equals(this.distributionUrl, that.distributionUrl) &&
-        Objects.equals(this.documentationUrl, that.documentationUrl) &&
-        Objects.equals(this.issueReportingUrl, that.issueReportingUrl) &&
-        Objects.equals(this.authors, that.authors) &&
-        Objects.equals(this.contributors, that.contributors) &&
-        Objects.equals(this.providedServices, that.providedServices) &&
-        Objects.equals(this.extensionDependencies, that.extensionDependencies) &&
-        Objects.equals(this.serviceDependencies, that.serviceDependencies);
+    return Arrays.equals(this.getEncoded(), that.getEncoded());
   }
 
   /**
@@ -322,12 +344,13 @@ public class MetadataV0 extends AbstractMetadata {
    */
   @Override
   public int hashCode() {
-    return Objects
-        .hash(super.hashCode(), this.productIdentifier, this.environmentType, this.flags,
-            this.identifier, this.version,
-            this.distributionUrl, this.documentationUrl, this.issueReportingUrl, this.authors,
-            this.contributors,
-            this.providedServices, this.extensionDependencies, this.serviceDependencies);
+    // computed from the encoded form in order to remain compatible with MetadataViewV0
+    var hash = this.hash;
+    if (hash == 0) {
+      hash = Arrays.hashCode(this.getEncoded());
+      this.hash = hash;
+    }
+    return hash;
   }
 
   public static class Builder implements Metadata.Builder {
@@ -407,7 +430,7 @@ public class MetadataV0 extends AbstractMetadata {
      */
     @NonNull
     @Override
-    public Metadata.Builder setVersion(@NonNull String version) {
+    public Builder setVersion(@NonNull String version) {
       this.version = version;
       return this;
     }
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata.v0;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
+import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
+import org.basinmc.chloramine.manifest.metadata.AbstractMetadata;
+import org.basinmc.chloramine.manifest.metadata.Author;
+import org.basinmc.chloramine.manifest.metadata.Dependency;
+import org.basinmc.chloramine.manifest.metadata.Service;
+import org.basinmc.chloramine.manifest.metadata.StringTable;
+import org.basinmc.chloramine.manifest.util.DataUtil;
+
+/**
+ * <p>Provides a flyweight representation of a v0 metadata section.</p>
+ *
+ * <p>Views retain a copy of the raw section data along with a table of field offsets which is
+ * built in a single pass over the section. Strings, URIs and lists are only decoded upon first
+ * access and are cached afterwards.</p>
+ *
+ * <p>The structure of the section (including the presence of all required fields) is validated
+ * when the view is constructed. URIs, however, are only parsed upon first access and will cause
+ * an {@link IllegalStateException} when malformed.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MetadataViewV0 extends AbstractMetadata {
+
+  private static final int FIELD_PRODUCT_IDENTIFIER = 0;
+  private static final int FIELD_ENVIRONMENT_TYPE = 1;
+  private static final int FIELD_IDENTIFIER = 2;
+  private static final int FIELD_VERSION = 3;
+  private static final int FIELD_DISTRIBUTION_URL = 4;
+  private static final int FIELD_DOCUMENTATION_URL = 5;
+  private static final int FIELD_ISSUE_REPORTING_URL = 6;
+  private static final int FIELD_AUTHORS = 7;
+  private static final int FIELD_CONTRIBUTORS = 8;
+  private static final int FIELD_PROVIDED_SERVICES = 9;
+  private static final int FIELD_EXTENSION_DEPENDENCIES = 10;
+  private static final int FIELD_SERVICE_DEPENDENCIES = 11;
+  private static final int FIELD_COUNT = 12;
+
+  private final byte[] data;
+  private final int[] offsets = new int[FIELD_COUNT];
+  private final int flags;
+  private final StringTable table;
+
+  private volatile String productIdentifier;
+  private volatile String environmentType;
+  private volatile String identifier;
+  private volatile String version;
+
+  private volatile Optional<URI> distributionUrl;
+  private volatile Optional<URI> documentationUrl;
+  private volatile Optional<URI> issueReportingUrl;
+  private volatile List<AuthorV0> authors;
+  private volatile List<AuthorV0> contributors;
+
+  private volatile List<ServiceV0> providedServices;
+  private volatile List<DependencyV0> extensionDependencies;
+  private volatile List<DependencyV0> serviceDependencies;
+
+  private int hash;
+
+  public MetadataViewV0(short formatVersion, @NonNull ByteBuffer buffer)
+      throws MetadataDecoderException {
+    this(formatVersion, buffer, StringTable.getDefault());
+  }
+
+  public MetadataViewV0(short formatVersion, @NonNull ByteBuffer buffer,
+      @NonNull StringTable table) throws MetadataDecoderException {
+    super(formatVersion);
+    this.table = table;
+
+    var view = buffer.duplicate();
+    var start = view.position();
+
+    this.offsets[FIELD_PRODUCT_IDENTIFIER] = view.position() - start;
+    skipString(view, "Missing value for required field: productIdentifier");
+    this.offsets[FIELD_ENVIRONMENT_TYPE] = view.position() - start;
+    skipString(view, "Missing value for required field: environmentType");
+    ensureRemaining(view, 2);
+    this.flags = DataUtil.readUnsignedShort(view);
+
+    this.offsets[FIELD_IDENTIFIER] = view.position() - start;
+    skipString(view, "Missing value for required field: identifier");
+    this.offsets[FIELD_VERSION] = view.position() - start;
+    skipString(view, "Missing value for required field: version");
+
+    this.offsets[FIELD_DISTRIBUTION_URL] = view.position() - start;
+    skipString(view, null);
+    this.offsets[FIELD_DOCUMENTATION_URL] = view.position() - start;
+    skipString(view, null);
+    this.offsets[FIELD_ISSUE_REPORTING_URL] = view.position() - start;
+    skipString(view, null);
+    this.offsets[FIELD_AUTHORS] = view.position() - start;
+    skipAuthors(view);
+    this.offsets[FIELD_CONTRIBUTORS] = view.position() - start;
+    skipAuthors(view);
+
+    this.offsets[FIELD_PROVIDED_SERVICES] = view.position() - start;
+    skipServices(view);
+    this.offsets[FIELD_EXTENSION_DEPENDENCIES] = view.position() - start;
+    skipDependencies(view);
+    this.offsets[FIELD_SERVICE_DEPENDENCIES] = view.position() - start;
+    skipDependencies(view);
+
+    // any data beyond the last field is considered padding and is thus not retained
+    this.data = new byte[view.position() - start];
+    buffer.get(this.data);
+  }
+
+  private static void ensureRemaining(@NonNull ByteBuffer buffer, int length)
+      throws MetadataDecoderException {
+    if (buffer.remaining() < length) {
+      throw new MetadataDecoderException(String.format(
+          "Truncated metadata section: Expected %d more byte(s) but got %d", length,
+          buffer.remaining()));
+    }
+  }
+
+  private static void skipString(@NonNull ByteBuffer buffer, @Nullable String missingMessage)
+      throws MetadataDecoderException {
+    ensureRemaining(buffer, 2);
+    var length = DataUtil.readUnsignedShort(buffer);
+    if (length == 0 && missingMessage != null) {
+      throw new MetadataDecoderException(missingMessage);
+    }
+
+    ensureRemaining(buffer, length);
+    buffer.position(buffer.position() + length);
+  }
+
+  private static int skipCollectionLength(@NonNull ByteBuffer buffer)
+      throws MetadataDecoderException {
+    ensureRemaining(buffer, 2);
+    return DataUtil.readUnsignedShort(buffer);
+  }
+
+  private static void skipAuthors(@NonNull ByteBuffer buffer) throws MetadataDecoderException {
+    var length = skipCollectionLength(buffer);
+    for (var i = 0; i < length; ++i) {
+      skipString(buffer, "Missing value for required author field: name");
+      skipString(buffer, null);
+    }
+  }
+
+  private static void skipServices(@NonNull ByteBuffer buffer) throws MetadataDecoderException {
+    var length = skipCollectionLength(buffer);
+    for (var i = 0; i < length; ++i) {
+      skipString(buffer, "Missing value for required service field: identifier");
+      skipString(buffer, "Missing value for required service field: version");
+    }
+  }
+
+  private static void skipDependencies(@NonNull ByteBuffer buffer)
+      throws MetadataDecoderException {
+    var length = skipCollectionLength(buffer);
+    for (var i = 0; i < length; ++i) {
+      skipString(buffer, "Missing value for required dependency field: identifier");
+      skipString(buffer, "Missing value for required dependency field: versionRange");
+      ensureRemaining(buffer, 1);
+      buffer.get();
+    }
+  }
+
+  @Nullable
+  private String decodeString(int field) {
+    var offset = this.offsets[field];
+    var length = ((this.data[offset] & 0xFF) << 8) | (this.data[offset + 1] & 0xFF);
+    if (length == 0) {
+      return null;
+    }
+
+    return new String(this.data, offset + 2, length, DataUtil.DEFAULT_CHARSET);
+  }
+
+  @NonNull
+  private Optional<URI> decodeUri(int field, @NonNull String name) {
+    var value = this.decodeString(field);
+    if (value == null) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(URI.create(value));
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalStateException("Illegal field value: " + name, ex);
+    }
+  }
+
+  @NonNull
+  private <V> List<V> decodeCollection(int field,
+      @NonNull DataUtil.ValueDecoder<V, MetadataDecoderException> decoder) {
+    var buffer = ByteBuffer.wrap(this.data);
+    buffer.position(this.offsets[field]);
+
+    try {
+      return DataUtil.readCollection(buffer, new ArrayList<>(), decoder);
+    } catch (MetadataDecoderException ex) {
+      // the section structure has already been validated during construction
+      throw new IllegalStateException("Illegal metadata section", ex);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getProductIdentifier() {
+    var value = this.productIdentifier;
+    if (value == null) {
+      value = this.table.canonicalize(this.decodeString(FIELD_PRODUCT_IDENTIFIER));
+      this.productIdentifier = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getEnvironmentType() {
+    var value = this.environmentType;
+    if (value == null) {
+      value = this.table.canonicalize(this.decodeString(FIELD_ENVIRONMENT_TYPE));
+      this.environmentType = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getFlags() {
+    return this.flags;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getIdentifier() {
+    var value = this.identifier;
+    if (value == null) {
+      value = this.table.canonicalize(this.decodeString(FIELD_IDENTIFIER));
+      this.identifier = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String getVersion() {
+    var value = this.version;
+    if (value == null) {
+      value = this.decodeString(FIELD_VERSION);
+      this.version = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Optional<URI> getDistributionUrl() {
+    var value = this.distributionUrl;
+    if (value == null) {
+      value = this.decodeUri(FIELD_DISTRIBUTION_URL, "distributionUrl");
+      this.distributionUrl = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Optional<URI> getDocumentationUrl() {
+    var value = this.documentationUrl;
+    if (value == null) {
+      value = this.decodeUri(FIELD_DOCUMENTATION_URL, "documentationUrl");
+      this.documentationUrl = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Optional<URI> getIssueReportingUrl() {
+    var value = this.issueReportingUrl;
+    if (value == null) {
+      value = this.decodeUri(FIELD_ISSUE_REPORTING_URL, "issueReportingUrl");
+      this.issueReportingUrl = value;
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<Author> getAuthors() {
+    var value = this.authors;
+    if (value == null) {
+      value = this.decodeCollection(FIELD_AUTHORS, AuthorV0::new);
+      this.authors = value;
+    }
+    return Collections.unmodifiableList(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<Author> getContributors() {
+    var value = this.contributors;
+    if (value == null) {
+      value = this.decodeCollection(FIELD_CONTRIBUTORS, AuthorV0::new);
+      this.contributors = value;
+    }
+    return Collections.unmodifiableList(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<Service> getProvidedServices() {
+    var value = this.providedServices;
+    if (value == null) {
+      value = this.decodeCollection(FIELD_PROVIDED_SERVICES,
+          (b) -> new ServiceV0(b, this.table));
+      this.providedServices = value;
+    }
+    return Collections.unmodifiableList(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<Dependency> getExtensionDependencies() {
+    var value = this.extensionDependencies;
+    if (value == null) {
+      value = this.decodeCollection(FIELD_EXTENSION_DEPENDENCIES,
+          (b) -> new DependencyV0(b, this.table));
+      this.extensionDependencies = value;
+    }
+    return Collections.unmodifiableList(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<Dependency> getServiceDependencies() {
+    var value = this.serviceDependencies;
+    if (value == null) {
+      value = this.decodeCollection(FIELD_SERVICE_DEPENDENCIES,
+          (b) -> new DependencyV0(b, this.table));
+      this.serviceDependencies = value;
+    }
+    return Collections.unmodifiableList(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getSerializedLength() {
+    return super.getSerializedLength() + this.data.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void serialize(@NonNull ByteBuffer buffer) throws ManifestEncoderException {
+    super.serialize(buffer);
+    buffer.put(this.data);
+  }
+
+  /**
+   * Evaluates whether this view is equal to the specified encoded metadata.
+   *
+   * @param encoded an encoded metadata section (including its format version).
+   * @return true if equal, false otherwise.
+   */
+  boolean equalsEncoded(@NonNull byte[] encoded) {
+    return encoded.length == this.data.length + 1 &&
+        encoded[0] == (byte) this.getFormatVersion() &&
+        Arrays.equals(encoded, 1, encoded.length, this.data, 0, this.data.length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof MetadataV0) {
+      return this.equalsEncoded(((MetadataV0) o).getEncoded());
+    }
+    if (!(o instanceof MetadataViewV0)) {
+      return false;
+    }
+    if (!super.equals(o)) {
+      return false;
+    }
+    MetadataViewV0 that = (MetadataViewV0) o;
+    return Arrays.equals(this.data, that.data);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    // equivalent to Arrays.hashCode over the encoded form in order to remain compatible with
+    // MetadataV0
+    var hash = this.hash;
+    if (hash == 0) {
+      hash = 31 + (byte) this.getFormatVersion();
+      for (var b : this.data) {
+        hash = 31 * hash + b;
+      }
+      this.hash = hash;
+    }
+    return hash;
+  }
+}
@@ -18,9 +18,10 @@ package org.basinmc.chloramine.manifest.metadata.v0;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.nio.ByteBuffer;
-import java.util.Objects;
+import java.util.Arrays;
 import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
 import org.basinmc.chloramine.manifest.metadata.Service;
+import org.basinmc.chloramine.manifest.metadata.StringTable;
 import org.basinmc.chloramine.manifest.util.DataUtil;
 
 /**
@@ -31,18 +32,24 @@ public class ServiceV0 implements Service {
   private final String identifier;
   private final String version;
 
+  private volatile byte[] encoded;
+
   public ServiceV0(@NonNull String identifier, @NonNull String version) {
     this.identifier = identifier;
     this.version = version;
   }
 
   public ServiceV0(@NonNull ByteBuffer buffer) throws MetadataDecoderException {
-    this.identifier = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required service field: identifier"));
-    this.version = DataUtil.readString(buffer)
-        .orElseThrow(() -> new MetadataDecoderException(
-            "Missing value for required service field: version"));
+    this(buffer, StringTable.getDefault());
+  }
+
+  public ServiceV0(@NonNull ByteBuffer buffer, @NonNull StringTable table)
+      throws MetadataDecoderException {
+    this.identifier = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException(
+            "Missing value for required service field: identifier")));
+    this.version = table.canonicalize(DataUtil.readRequiredString(buffer,
+        () -> new MetadataDecoderException("Missing value for required service field: version")));
   }
 
   /**
@@ -68,7 +75,7 @@ public class ServiceV0 implements Service {
    */
   @Override
   public long getSerializedLength() {
-    return DataUtil.estimateString(this.identifier) + DataUtil.estimateString(this.version);
+    return this.getEncoded().length;
   }
 
   /**
@@ -76,8 +83,28 @@ public class ServiceV0 implements Service {
    */
   @Override
   public void serialize(@NonNull ByteBuffer buffer) {
-    DataUtil.writeString(buffer, this.identifier);
-    DataUtil.writeString(buffer, this.version);
+    buffer.put(this.getEncoded());
+  }
+
+  /**
+   * Retrieves the encoded form of this object. The encoded form is computed upon first access
+   * and shared afterwards (concurrent first accesses may encode more than once but always produce
+   * equal results).
+   *
+   * @return an encoded representation (must not be modified).
+   */
+  @NonNull
+  private byte[] getEncoded() {
+    var encoded = this.encoded;
+    if (encoded == null) {
+      var buffer = ByteBuffer.allocate(
+          (int) (DataUtil.estimateString(this.identifier) + DataUtil.estimateString(this.version)));
+      DataUtil.writeString(buffer, this.identifier);
+      DataUtil.writeString(buffer, this.version);
+      encoded = buffer.array();
+      this.encoded = encoded;
+    }
+    return encoded;
   }
 
   /**
@@ -100,8 +127,7 @@ public class ServiceV0 implements Service {
       return false;
     }
     ServiceV0 serviceV0 = (ServiceV0) o;
-    return Objects.equals(this.identifier, serviceV0.identifier) &&
-        Objects.equals(this.version, serviceV0.version);
+    return Arrays.equals(this.getEncoded(), serviceV0.getEncoded());
   }
 
   /**
@@ -109,6 +135,6 @@ public class ServiceV0 implements Service {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.identifier, this.version);
+    return Arrays.hashCode(this.getEncoded());
   }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class ChannelUtil {
+
+  private ChannelUtil() {
+  }
+
+  /**
+   * Reads from the specified channel until the buffer has been filled completely.
+   *
+   * @param channel an arbitrary input channel.
+   * @param buffer a target buffer.
+   * @throws EOFException when the channel reaches its end before the buffer is filled.
+   * @throws IOException when reading from the channel fails.
+   */
+  public static void readFully(@NonNull ReadableByteChannel channel, @NonNull ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) == -1) {
+        throw new EOFException("Channel contains insufficient data");
+      }
+    }
+  }
+
+  /**
+   * Reads from the specified absolute channel position until the buffer has been filled
+   * completely. The position of the channel itself remains unchanged.
+   *
+   * @param channel an arbitrary file channel.
+   * @param buffer a target buffer.
+   * @param position an absolute file position.
+   * @throws EOFException when the channel reaches its end before the buffer is filled.
+   * @throws IOException when reading from the channel fails.
+   */
+  public static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer,
+      long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      var read = channel.read(buffer, position);
+      if (read == -1) {
+        throw new EOFException("Channel contains insufficient data");
+      }
+
+      position += read;
+    }
+  }
+
+  /**
+   * Asynchronously reads from the specified absolute channel position until the buffer has been
+   * filled completely.
+   *
+   * @param channel an arbitrary asynchronous file channel.
+   * @param buffer a target buffer.
+   * @param position an absolute file position.
+   * @return a future which completes with the passed buffer once it has been filled or
+   * exceptionally with an {@link EOFException} when the channel reaches its end before.
+   */
+  @NonNull
+  public static CompletableFuture<ByteBuffer> readFully(@NonNull AsynchronousFileChannel channel,
+      @NonNull ByteBuffer buffer, long position) {
+    var future = new CompletableFuture<ByteBuffer>();
+
+    try {
+      channel.read(buffer, position, position, new CompletionHandler<Integer, Long>() {
+        @Override
+        public void completed(Integer result, Long position) {
+          if (result == -1) {
+            future.completeExceptionally(new EOFException("Channel contains insufficient data"));
+            return;
+          }
+          if (!buffer.hasRemaining()) {
+            future.complete(buffer);
+            return;
+          }
+
+          var next = position + result;
+          try {
+            channel.read(buffer, next, next, this);
+          } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+          }
+        }
+
+        @Override
+        public void failed(Throwable ex, Long position) {
+          future.completeExceptionally(ex);
+        }
+      });
+    } catch (Throwable ex) {
+      future.completeExceptionally(ex);
+    }
+
+    return future;
+  }
+}
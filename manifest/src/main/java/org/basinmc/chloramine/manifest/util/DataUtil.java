@@ -18,12 +18,20 @@ package org.basinmc.chloramine.manifest.util;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.function.ToLongFunction;
 
 /**
@@ -33,6 +41,10 @@ public final class DataUtil {
 
   public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
+  private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS = ThreadLocal
+      .withInitial(HashMap::new);
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
   private DataUtil() {
   }
 
@@ -86,11 +98,115 @@ public final class DataUtil {
   }
 
   public static long estimateString(@Nullable String value) {
-    return estimateString(value, DEFAULT_CHARSET);
+    return 2 + (value != null ? utf8Length(value) : 0);
   }
 
   public static long estimateString(@Nullable String value, @NonNull Charset encoding) {
-    return estimateBytes(value != null ? value.getBytes(encoding) : null);
+    if (StandardCharsets.UTF_8.equals(encoding)) {
+      return estimateString(value);
+    }
+    if (value == null) {
+      return 2;
+    }
+
+    var encoder = encoder(encoding);
+    if (encoder.maxBytesPerChar() == 1.0f) {
+      // single byte charsets replace unmappable characters with a single byte as well
+      return 2 + value.codePointCount(0, value.length());
+    }
+
+    return estimateBytes(value.getBytes(encoding));
+  }
+
+  /**
+   * <p>Computes the exact amount of bytes required to represent the specified value in UTF-8
+   * without encoding it.</p>
+   *
+   * <p>Unpaired surrogates are counted as a single byte as they are replaced by {@code '?'} when
+   * encoded (matching the behavior of {@link String#getBytes(Charset)}).</p>
+   *
+   * @param value an arbitrary value.
+   * @return an encoded length (in bytes).
+   */
+  public static int utf8Length(@NonNull CharSequence value) {
+    var length = value.length();
+    var encodedLength = length;
+
+    for (var i = 0; i < length; ++i) {
+      var c = value.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+
+      if (c < 0x800) {
+        encodedLength += 1;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        // four bytes for two chars
+        encodedLength += 2;
+        ++i;
+      } else if (!Character.isSurrogate(c)) {
+        encodedLength += 2;
+      }
+    }
+
+    return encodedLength;
+  }
+
+  /**
+   * Encodes the specified value as UTF-8 directly into a buffer.
+   *
+   * @param buffer a target buffer.
+   * @param value an arbitrary value.
+   * @throws java.nio.BufferOverflowException when the buffer has insufficient space remaining.
+   * @see #utf8Length(CharSequence) for the exact encoded length.
+   */
+  public static void writeUtf8(@NonNull ByteBuffer buffer, @NonNull CharSequence value) {
+    var length = value.length();
+    var i = 0;
+
+    // fast path: identifiers and versions are typically pure ASCII
+    if (buffer.hasArray()) {
+      var array = buffer.array();
+      var offset = buffer.arrayOffset() + buffer.position();
+      var limit = buffer.arrayOffset() + buffer.limit();
+
+      while (i < length && offset < limit) {
+        var c = value.charAt(i);
+        if (c >= 0x80) {
+          break;
+        }
+
+        array[offset++] = (byte) c;
+        ++i;
+      }
+
+      buffer.position(offset - buffer.arrayOffset());
+    }
+
+    for (; i < length; ++i) {
+      var c = value.charAt(i);
+
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | (c >> 6)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        var codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.put((byte) (0xF0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        buffer.put((byte) '?');
+      } else {
+        buffer.put((byte) (0xE0 | (c >> 12)));
+        buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
   }
 
   @NonNull
@@ -104,13 +220,146 @@ public final class DataUtil {
 
   @NonNull
   public static Optional<String> readString(@NonNull ByteBuffer buffer, @NonNull Charset encoding) {
-    return readBytes(buffer)
-        .map((bytes) -> new String(bytes, encoding));
+    return Optional.ofNullable(readNullableString(buffer, encoding));
+  }
+
+  @Nullable
+  public static String readNullableString(@NonNull ByteBuffer buffer) {
+    return readNullableString(buffer, DEFAULT_CHARSET);
+  }
+
+  /**
+   * <p>Reads a string from the specified buffer.</p>
+   *
+   * <p>When the buffer is backed by an accessible array, the string is decoded directly from the
+   * array. Otherwise (e.g. for direct or mapped buffers), the encoded value is copied into a
+   * thread local scratch array first. In either case, no intermediate objects are retained.</p>
+   *
+   * @param buffer a source buffer.
+   * @param encoding the string encoding.
+   * @return a string or null when the field has been left empty.
+   * @throws BufferUnderflowException when the buffer contains insufficient data.
+   */
+  @Nullable
+  public static String readNullableString(@NonNull ByteBuffer buffer, @NonNull Charset encoding) {
+    var length = readUnsignedShort(buffer);
+    if (length == 0) {
+      return null;
+    }
+    if (buffer.remaining() < length) {
+      throw new BufferUnderflowException();
+    }
+
+    if (buffer.hasArray()) {
+      var position = buffer.position();
+      var value = new String(buffer.array(), buffer.arrayOffset() + position, length, encoding);
+      buffer.position(position + length);
+      return value;
+    }
+
+    var scratch = SCRATCH.get();
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, Math.min(scratch.length * 2, 65535))];
+      SCRATCH.set(scratch);
+    }
+
+    buffer.get(scratch, 0, length);
+    return new String(scratch, 0, length, encoding);
+  }
+
+  /**
+   * Reads a string from the specified buffer and fails when the field has been left empty.
+   *
+   * @param buffer a source buffer.
+   * @param exceptionSupplier a factory for the exception to throw when the field is empty.
+   * @param <E> an exception type.
+   * @return a string.
+   * @throws E when the field has been left empty.
+   * @throws BufferUnderflowException when the buffer contains insufficient data.
+   * @see #readNullableString(ByteBuffer, Charset)
+   */
+  @NonNull
+  public static <E extends Throwable> String readRequiredString(@NonNull ByteBuffer buffer,
+      @NonNull Supplier<E> exceptionSupplier) throws E {
+    var value = readNullableString(buffer, DEFAULT_CHARSET);
+    if (value == null) {
+      throw exceptionSupplier.get();
+    }
+    return value;
   }
 
   public static void writeString(@NonNull ByteBuffer buffer, @Nullable String value,
       @NonNull Charset encoding) {
-    writeBytes(buffer, value != null ? value.getBytes(encoding) : null);
+    if (value == null) {
+      writeUnsignedShort(buffer, 0);
+      return;
+    }
+
+    if (StandardCharsets.UTF_8.equals(encoding)) {
+      // the exact length is known upfront and thus insufficient space is detected before any of
+      // the field is written
+      var length = utf8Length(value);
+      if (length >= 65536) {
+        throw new IllegalArgumentException("Value exceeds field bounds: " + length);
+      }
+      if (buffer.remaining() < 2 + length) {
+        throw new BufferOverflowException();
+      }
+
+      writeUnsignedShort(buffer, length);
+      writeUtf8(buffer, value);
+      return;
+    }
+
+    var lengthPosition = buffer.position();
+    if (buffer.remaining() < 2) {
+      throw new BufferOverflowException();
+    }
+
+    // the encoder is limited to the maximum field length so that oversized values are detected
+    // before they spill beyond the field bounds
+    var limit = buffer.limit();
+    var fieldLimit = (int) Math.min(limit, lengthPosition + 2L + 65535);
+    buffer.position(lengthPosition + 2);
+    buffer.limit(fieldLimit);
+
+    try {
+      var encoder = encoder(encoding);
+      encoder.reset();
+      var in = CharBuffer.wrap(value);
+      var result = encoder.encode(in, buffer, true);
+      if (!result.isOverflow()) {
+        result = encoder.flush(buffer);
+      }
+      if (result.isOverflow()) {
+        if (fieldLimit < limit) {
+          throw new IllegalArgumentException("Value exceeds field bounds: " + value.length()
+              + " characters");
+        }
+        throw new BufferOverflowException();
+      }
+    } catch (BufferOverflowException | IllegalArgumentException ex) {
+      buffer.limit(limit);
+      buffer.position(lengthPosition);
+      throw ex;
+    }
+
+    buffer.limit(limit);
+    buffer.putShort(lengthPosition, (short) (buffer.position() - lengthPosition - 2));
+  }
+
+  /**
+   * Retrieves a thread local encoder for the specified charset which replaces malformed and
+   * unmappable input (matching the behavior of {@link String#getBytes(Charset)}).
+   *
+   * @param encoding a charset.
+   * @return an encoder.
+   */
+  @NonNull
+  private static CharsetEncoder encoder(@NonNull Charset encoding) {
+    return ENCODERS.get().computeIfAbsent(encoding, (c) -> c.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE));
   }
 
   public static short readUnsignedByte(@NonNull ByteBuffer buffer) {
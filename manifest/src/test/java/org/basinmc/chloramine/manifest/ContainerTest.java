@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ContainerTest {
+
+  /**
+   * Evaluates whether content channels are limited to the content section.
+   */
+  @Test
+  public void testContentChannel() throws IOException, ManifestException, URISyntaxException {
+    var path = Paths.get(ContainerTest.class.getResource("/test.bec").toURI());
+
+    try (var container = Container.open(path)) {
+      assertEquals("org.basinmc.test", container.getManifest().getMetadata().getIdentifier());
+
+      try (var channel = container.newContentChannel()) {
+        assertEquals(23, channel.size());
+
+        var buffer = ByteBuffer.allocate(64);
+        assertEquals(23, channel.read(buffer));
+        assertEquals(-1, channel.read(buffer));
+        buffer.flip();
+        assertEquals("Test Container Content\n", StandardCharsets.UTF_8.decode(buffer).toString());
+
+        channel.position(5);
+        buffer.clear();
+        buffer.limit(9);
+        assertEquals(9, channel.read(buffer));
+        buffer.flip();
+        assertEquals("Container", StandardCharsets.UTF_8.decode(buffer).toString());
+
+        assertThrows(NonWritableChannelException.class,
+            () -> channel.write(ByteBuffer.allocate(1)));
+      }
+
+      // closing a view does not affect the container
+      try (var inputStream = container.newContentStream()) {
+        var data = inputStream.readAllBytes();
+        assertEquals("Test Container Content\n", new String(data, StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether views are closed along with their container.
+   */
+  @Test
+  public void testClose() throws IOException, ManifestException, URISyntaxException {
+    var path = Paths.get(ContainerTest.class.getResource("/test.bec").toURI());
+
+    var container = Container.open(path);
+    var channel = container.newContentChannel();
+    assertTrue(channel.isOpen());
+
+    container.close();
+    assertFalse(channel.isOpen());
+  }
+}
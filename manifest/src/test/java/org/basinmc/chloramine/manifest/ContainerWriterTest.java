@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ContainerWriterTest {
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static byte[] createContent(int length) {
+    var content = new byte[length];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+
+  /**
+   * Evaluates whether content of unknown length is streamed into the container and whether the
+   * content length within the header is updated accordingly.
+   */
+  @Test
+  public void testWriteStream() throws IOException, ManifestException {
+    var content = createContent(ContainerWriter.TRANSFER_BUFFER_SIZE * 3 + 17);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = createManifest().decorate(new ByteArrayInputStream(content), file);
+      assertEquals(content.length, written.getContentLength());
+      assertEquals(written.getContentOffset() + content.length, Files.size(file));
+
+      try (var container = Container.open(file)) {
+        assertEquals(written, container.getManifest());
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether file channels are transferred from their current position.
+   */
+  @Test
+  public void testWriteFileChannel() throws IOException, ManifestException {
+    var content = createContent(4096);
+    var input = Files.createTempFile("chloramine", ".jar");
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      Files.write(input, content);
+
+      try (var inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+          var outputChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        inputChannel.position(96);
+
+        var written = new ContainerWriter().write(createManifest(), inputChannel, outputChannel);
+        assertEquals(4000, written.getContentLength());
+        assertEquals(4096, inputChannel.position());
+        assertEquals(outputChannel.size(), outputChannel.position());
+      }
+
+      try (var container = Container.open(file);
+          var inputStream = Channels.newInputStream(container.newContentChannel())) {
+        var data = inputStream.readAllBytes();
+        assertEquals(4000, data.length);
+        assertEquals(content[96], data[0]);
+      }
+    } finally {
+      Files.deleteIfExists(input);
+      Files.deleteIfExists(file);
+    }
+  }
+}
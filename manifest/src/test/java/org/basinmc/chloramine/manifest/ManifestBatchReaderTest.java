@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestBatchReaderTest {
+
+  /**
+   * Evaluates whether results are returned in order and failures are collected per file.
+   */
+  @Test
+  public void testRead() throws IOException, InterruptedException, URISyntaxException {
+    var path = Paths.get(ManifestBatchReaderTest.class.getResource("/test.bec").toURI());
+    var directory = Files.createTempDirectory("chloramine");
+
+    try {
+      var missing = directory.resolve("missing.bec");
+      var malformed = Files.write(directory.resolve("malformed.bec"), new byte[64]);
+
+      var paths = new ArrayList<Path>();
+      for (var i = 0; i < 16; ++i) {
+        paths.add(path);
+      }
+      paths.add(3, missing);
+      paths.add(7, malformed);
+
+      var results = new ManifestBatchReader(2).read(paths);
+      assertEquals(paths.size(), results.size());
+
+      for (var i = 0; i < paths.size(); ++i) {
+        var result = results.get(i);
+        assertEquals(paths.get(i), result.getPath());
+
+        if (i == 3) {
+          assertFalse(result.isSuccess());
+          assertTrue(result.getError().orElseThrow() instanceof NoSuchFileException);
+        } else if (i == 7) {
+          assertFalse(result.isSuccess());
+          assertTrue(result.getError().orElseThrow() instanceof ManifestHeaderException);
+        } else {
+          assertTrue(result.isSuccess());
+          assertEquals("org.basinmc.test",
+              result.getManifest().orElseThrow().getMetadata().getIdentifier());
+        }
+      }
+
+      List<ManifestBatchReader.Result> collected = Collections.synchronizedList(new ArrayList<>());
+      new ManifestBatchReader(4).read(paths, collected::add);
+      assertEquals(paths.size(), collected.size());
+      assertEquals(2, collected.stream().filter((r) -> !r.isSuccess()).count());
+
+      var directoryResults = new ManifestBatchReader().readDirectory(directory);
+      assertEquals(1, directoryResults.size());
+      assertFalse(directoryResults.get(0).isSuccess());
+    } finally {
+      Files.deleteIfExists(directory.resolve("malformed.bec"));
+      Files.delete(directory);
+    }
+  }
+}
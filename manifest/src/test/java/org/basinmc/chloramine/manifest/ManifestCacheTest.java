@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestCacheTest {
+
+  /**
+   * Evaluates whether manifests are cached, invalidated on modification and evicted.
+   */
+  @Test
+  public void testGet() throws IOException, ManifestException, URISyntaxException {
+    var source = Paths.get(ManifestCacheTest.class.getResource("/test.bec").toURI());
+    var directory = Files.createTempDirectory("chloramine");
+    var a = Files.copy(source, directory.resolve("a.bec"));
+    var b = Files.copy(source, directory.resolve("b.bec"));
+
+    try {
+      var cache = ManifestCache.withMaximumEntries(1);
+
+      var manifest = cache.get(a);
+      assertSame(manifest, cache.get(a));
+      assertEquals(1, cache.getStatistics().getHitCount());
+      assertEquals(1, cache.getStatistics().getMissCount());
+
+      Files.setLastModifiedTime(a, FileTime.fromMillis(0));
+      assertNotSame(manifest, cache.get(a));
+      assertEquals(2, cache.getStatistics().getMissCount());
+
+      cache.get(b);
+      assertEquals(1, cache.size());
+      assertEquals(1, cache.getStatistics().getEvictionCount());
+
+      var bytes = ManifestCache.withMaximumBytes(manifest.getSerializedLength() * 2);
+      bytes.get(a);
+      bytes.get(b);
+      assertEquals(2, bytes.size());
+      assertEquals(manifest.getSerializedLength() * 2, bytes.getWeight());
+
+      bytes.invalidate(a);
+      assertEquals(manifest.getSerializedLength(), bytes.getWeight());
+    } finally {
+      Files.delete(a);
+      Files.delete(b);
+      Files.delete(directory);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestEditorTest {
+
+  private static final byte[] CONTENT = "Test Container Content\n".getBytes();
+
+  private static Manifest createContainer(Path file, long padding)
+      throws IOException, ManifestException {
+    return Manifest.builder()
+        .setPadding(padding)
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.0.0")
+            .addAuthor("Author", null))
+        .build()
+        .decorate(new ByteArrayInputStream(CONTENT), file);
+  }
+
+  private static void assertContent(Path file, Manifest expected)
+      throws IOException, ManifestException {
+    try (var container = Container.open(file)) {
+      assertEquals(expected, container.getManifest());
+
+      try (var inputStream = container.newContentStream()) {
+        assertArrayEquals(CONTENT, inputStream.readAllBytes());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether padding is reflected within the header and ignored when decoding.
+   */
+  @Test
+  public void testPadding() throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = createContainer(file, 64);
+      assertEquals(64, manifest.getPadding());
+      assertEquals(manifest.getSerializedLength(), manifest.getContentOffset());
+      assertEquals(Manifest.HEADER_LENGTH + manifest.getMetadata().getSerializedLength() + 64,
+          manifest.getContentOffset());
+
+      assertContent(file, manifest);
+      assertEquals(64, Manifest.read(file).getPadding());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether metadata which fits the existing section is rewritten in place.
+   */
+  @Test
+  public void testEditInPlace() throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var original = createContainer(file, 64);
+      var size = Files.size(file);
+
+      var result = new ManifestEditor()
+          .edit(file, (b) -> b.setVersion("1.0.1").addContributor("Contributor", null));
+      assertTrue(result.isInPlace());
+      assertEquals(original.getContentOffset(), result.getManifest().getContentOffset());
+      assertEquals(size, Files.size(file));
+
+      var metadata = Manifest.read(file).getMetadata();
+      assertEquals("1.0.1", metadata.getVersion());
+      assertEquals("Author", metadata.getAuthors().get(0).getName());
+      assertEquals("Contributor", metadata.getContributors().get(0).getName());
+
+      assertContent(file, result.getManifest());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether containers are relocated when the metadata no longer fits.
+   */
+  @Test
+  public void testEditRelocate() throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var original = createContainer(file, 0);
+
+      var result = new ManifestEditor(128)
+          .edit(file, (b) -> b.addContributor("Contributor", null));
+      assertFalse(result.isInPlace());
+      assertEquals(128, result.getManifest().getPadding());
+      assertEquals(original.getContentLength(), result.getManifest().getContentLength());
+
+      assertEquals("Contributor",
+          Manifest.read(file).getMetadata().getContributors().get(0).getName());
+      assertContent(file, result.getManifest());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether content offsets are aligned and retained when editing in place.
+   */
+  @Test
+  public void testAlignment() throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = Manifest.builder()
+          .setAlignment(Manifest.PAGE_ALIGNMENT)
+          .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+              .setEnvironmentType("java")
+              .setIdentifier("org.basinmc.test")
+              .setVersion("1.0.0"))
+          .build()
+          .decorate(new ByteArrayInputStream(CONTENT), file);
+      assertEquals(Manifest.PAGE_ALIGNMENT, manifest.getContentOffset());
+
+      try (var container = Container.open(file)) {
+        var content = container.mapContent();
+        var data = new byte[content.remaining()];
+        content.get(data);
+        assertArrayEquals(CONTENT, data);
+      }
+
+      var result = new ManifestEditor().edit(file, (b) -> b.setVersion("1.0.1"));
+      assertTrue(result.isInPlace());
+      assertEquals(Manifest.PAGE_ALIGNMENT, result.getManifest().getContentOffset());
+      assertContent(file, result.getManifest());
+
+      assertThrows(IllegalArgumentException.class, () -> Manifest.builder().setAlignment(3000));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestHeaderTest {
+
+  /**
+   * Evaluates whether the library is capable of reading the header of a known good extension
+   * container and lazily decoding its metadata.
+   */
+  @Test
+  public void testRead() throws IOException, ManifestException, URISyntaxException {
+    var path = Paths.get(ManifestHeaderTest.class.getResource("/test.bec").toURI());
+    var header = ManifestHeader.read(path);
+
+    assertEquals(0x0000, header.getFlags());
+    assertEquals(0, header.getAuthenticationLength());
+    assertEquals(70, header.getMetadataLength());
+    assertEquals(30, header.getMetadataOffset());
+    assertEquals(23, header.getContentLength());
+    assertEquals(100, header.getContentOffset());
+
+    var metadata = header.getMetadata();
+    assertEquals("org.basinmc.test", metadata.getIdentifier());
+    assertEquals("1.2.3", metadata.getVersion());
+    assertSame(metadata, header.getMetadata());
+  }
+
+  /**
+   * Evaluates whether malformed headers are rejected.
+   */
+  @Test
+  public void testMalformed() {
+    var buffer = ByteBuffer.allocate(Manifest.HEADER_LENGTH);
+    assertThrows(ManifestHeaderException.class, () -> new ManifestHeader(buffer.duplicate()));
+
+    buffer.putInt(Manifest.MAGIC_NUMBER);
+    buffer.putShort((short) 0);
+    buffer.putLong(-1);
+    buffer.flip();
+    buffer.limit(Manifest.HEADER_LENGTH);
+    assertThrows(ManifestHeaderException.class, () -> new ManifestHeader(buffer.duplicate()));
+
+    var header = ByteBuffer.allocate(Manifest.HEADER_LENGTH - 1);
+    assertThrows(ManifestHeaderException.class, () -> new ManifestHeader(header));
+  }
+
+  /**
+   * Evaluates whether headers which have not been read from a file refuse to decode metadata.
+   */
+  @Test
+  public void testDetached() throws ManifestHeaderException {
+    var buffer = ByteBuffer.allocate(Manifest.HEADER_LENGTH);
+    buffer.putInt(Manifest.MAGIC_NUMBER);
+    buffer.rewind();
+
+    var header = new ManifestHeader(buffer);
+    assertThrows(IllegalStateException.class, header::getMetadata);
+  }
+}
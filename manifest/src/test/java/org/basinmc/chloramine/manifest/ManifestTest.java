@@ -19,12 +19,15 @@ package org.basinmc.chloramine.manifest;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
 import org.basinmc.chloramine.manifest.error.ManifestEncoderException;
 import org.basinmc.chloramine.manifest.error.ManifestException;
 import org.basinmc.chloramine.manifest.util.DataUtil;
@@ -69,6 +72,24 @@ public class ManifestTest {
     }
   }
 
+  /**
+   * Evaluates whether the library is capable of asynchronously reading a known good extension
+   * container.
+   */
+  @Test
+  public void testReadAsync() throws Exception {
+    var path = Paths.get(ManifestTest.class.getResource("/test.bec").toURI());
+    var manifest = Manifest.readAsync(path).get();
+
+    assertEquals(23, manifest.getContentLength());
+    assertEquals(100, manifest.getContentOffset());
+    assertEquals("org.basinmc.test", manifest.getMetadata().getIdentifier());
+
+    var ex = assertThrows(ExecutionException.class,
+        () -> Manifest.readAsync(path.resolveSibling("missing.bec"), Runnable::run).get());
+    assertTrue(ex.getCause() instanceof IOException);
+  }
+
   @Test
   public void testBuildAndSerialize() throws ManifestEncoderException {
     var manifest = Manifest.builder()
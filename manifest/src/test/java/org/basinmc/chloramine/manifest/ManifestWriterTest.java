@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.metadata.Metadata;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestWriterTest {
+
+  private static Manifest createManifest(int authors) {
+    return Manifest.builder()
+        .setContentLength(42)
+        .setFlags(0x0001)
+        .createMetadata((short) 0, (b) -> {
+          b.setProductIdentifier("org.basinmc.faucet")
+              .setEnvironmentType("java")
+              .setIdentifier("org.basinmc.test")
+              .setVersion("1.2.3");
+
+          for (var i = 0; i < authors; ++i) {
+            b.addAuthor("Author #" + i, null);
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Evaluates whether written manifests match their serialized representation.
+   */
+  @Test
+  public void testWrite() throws IOException, ManifestException {
+    for (var authors : new int[]{0, 1000}) {
+      var manifest = createManifest(authors);
+
+      var expected = ByteBuffer.allocate((int) manifest.getSerializedLength());
+      manifest.serialize(expected);
+
+      var out = new ByteArrayOutputStream();
+      assertEquals(manifest.getSerializedLength(), new ManifestWriter().write(manifest, out));
+      assertArrayEquals(expected.array(), out.toByteArray());
+
+      var decoded = new Manifest(ByteBuffer.wrap(out.toByteArray()));
+      assertEquals(manifest, decoded);
+    }
+  }
+
+  /**
+   * Evaluates whether metadata is encoded exactly once without consulting its serialized length
+   * and whether the padding is written as requested.
+   */
+  @Test
+  public void testSinglePass() throws IOException, ManifestException {
+    var metadata = createManifest(10).getMetadata();
+    var lengthCalls = new AtomicInteger();
+    var serializeCalls = new AtomicInteger();
+    var counting = (Metadata) Proxy.newProxyInstance(Metadata.class.getClassLoader(),
+        new Class<?>[]{Metadata.class}, (proxy, method, args) -> {
+          if (method.getName().equals("getSerializedLength")) {
+            lengthCalls.incrementAndGet();
+          } else if (method.getName().equals("serialize")) {
+            serializeCalls.incrementAndGet();
+          }
+
+          try {
+            return method.invoke(metadata, args);
+          } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+          }
+        });
+
+    var contentOffset = Manifest.HEADER_LENGTH + metadata.getSerializedLength() + 100;
+    var out = new ByteArrayOutputStream();
+    assertEquals(contentOffset,
+        new ManifestWriter().write(new Manifest(0, counting, contentOffset, 42), out));
+    assertEquals(0, lengthCalls.get());
+    assertEquals(1, serializeCalls.get());
+
+    var expected = new Manifest(0, metadata, contentOffset, 42);
+    var decoded = new Manifest(ByteBuffer.wrap(out.toByteArray()));
+    assertEquals(expected, decoded);
+    assertEquals(100, decoded.getPadding());
+  }
+}
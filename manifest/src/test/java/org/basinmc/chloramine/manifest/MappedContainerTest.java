@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.ManifestHeaderException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MappedContainerTest {
+
+  /**
+   * Evaluates whether the library is capable of mapping a known good extension container.
+   */
+  @Test
+  public void testOpen() throws IOException, ManifestException, URISyntaxException {
+    var path = Paths.get(MappedContainerTest.class.getResource("/test.bec").toURI());
+    var container = MappedContainer.open(path);
+
+    var manifest = container.getManifest();
+    assertEquals(23, manifest.getContentLength());
+    assertEquals(100, manifest.getContentOffset());
+    assertEquals("org.basinmc.test", manifest.getMetadata().getIdentifier());
+
+    var content = container.getContent();
+    assertTrue(content.isReadOnly());
+    assertEquals(23, content.remaining());
+    assertThrows(ReadOnlyBufferException.class, () -> content.put((byte) 0));
+
+    var data = new byte[content.remaining()];
+    content.get(data);
+    assertEquals("Test Container Content\n", new String(data, StandardCharsets.UTF_8));
+
+    // views are independent of each other
+    assertEquals(23, container.getContent().remaining());
+  }
+
+  /**
+   * Evaluates whether truncated containers are rejected.
+   */
+  @Test
+  public void testTruncated() throws IOException, URISyntaxException {
+    var path = Paths.get(MappedContainerTest.class.getResource("/test.bec").toURI());
+    var data = Files.readAllBytes(path);
+
+    var buffer = ByteBuffer.wrap(data, 0, data.length - 1);
+    assertThrows(ManifestHeaderException.class, () -> new MappedContainer(buffer));
+  }
+}
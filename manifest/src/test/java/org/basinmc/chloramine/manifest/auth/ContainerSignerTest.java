@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.ManifestEditor;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ContainerSignerTest {
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static byte[] createContent(int length) {
+    var content = new byte[length];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+
+  private static KeyPair createKeyPair() throws GeneralSecurityException {
+    var generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(256);
+    return generator.generateKeyPair();
+  }
+
+  private static Manifest write(Path file, byte[] content, ContainerWriter writer)
+      throws IOException, ManifestException {
+    return writer.write(createManifest(),
+        Channels.newChannel(new ByteArrayInputStream(content)), file);
+  }
+
+  /**
+   * Evaluates whether signed containers are written in a single pass and verify against the
+   * signing key.
+   */
+  @Test
+  public void testSign() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var otherKeyPair = createKeyPair();
+    var content = createContent(100_000);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          new ContainerSigner(keyPair.getPrivate())));
+      assertTrue(written.getAuthentication().isPresent());
+      assertEquals(content.length, written.getContentLength());
+      assertEquals(0, written.getAuthentication().get().getTreeOffset());
+
+      try (var container = Container.open(file)) {
+        assertEquals(written, container.getManifest());
+
+        var authentication = container.getManifest().getAuthentication().get();
+        assertEquals(ContainerSigner.DEFAULT_DIGEST_ALGORITHM,
+            authentication.getDigestAlgorithm());
+        assertTrue(container.verifyDigest());
+        assertTrue(container.verifyAuthentication(keyPair.getPublic()));
+        assertFalse(container.verifyAuthentication(otherKeyPair.getPublic()));
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether signatures cover the encoded contents of compressed and checksummed
+   * containers.
+   */
+  @Test
+  public void testSignEncoded() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(300_000);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, content, new ContainerWriter(BufferPool.getDefault(), new BlockCompressor(),
+          ChunkTable.DEFAULT_CHUNK_SIZE, new ContainerSigner(keyPair.getPrivate())));
+
+      try (var container = Container.open(file)) {
+        assertTrue(container.verifyAuthentication(keyPair.getPublic()));
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether modified contents are rejected.
+   */
+  @Test
+  public void testTampered() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(4096);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          new ContainerSigner(keyPair.getPrivate())));
+
+      try (var output = new RandomAccessFile(file.toFile(), "rw")) {
+        output.seek(written.getContentOffset() + 42);
+        output.write(content[42] ^ 0xFF);
+      }
+
+      try (var container = Container.open(file)) {
+        assertFalse(container.verifyDigest());
+        assertFalse(container.verifyAuthentication(keyPair.getPublic()));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether signatures are rejected when either of the algorithm names within the
+   * authentication section is replaced.
+   */
+  @Test
+  public void testAlgorithmNames() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(4096);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          new ContainerSigner(keyPair.getPrivate())));
+      var authentication = written.getAuthentication().get();
+      assertTrue(authentication.verifySignature(written, keyPair.getPublic()));
+
+      var digestAlgorithm = new AuthenticationSection("SHA-384", authentication.getDigest(),
+          authentication.getBlockSize(), authentication.getTreeOffset(),
+          authentication.getSignatureAlgorithm(), authentication.getSignature(), 0);
+      assertFalse(digestAlgorithm.verifySignature(written, keyPair.getPublic()));
+
+      var signatureAlgorithm = new AuthenticationSection(authentication.getDigestAlgorithm(),
+          authentication.getDigest(), authentication.getBlockSize(),
+          authentication.getTreeOffset(),
+          authentication.getSignatureAlgorithm().replace("SHA256", "SHA512"),
+          authentication.getSignature(), 0);
+      assertFalse(signatureAlgorithm.verifySignature(written, keyPair.getPublic()));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether unsigned containers and edits of signed containers are rejected.
+   */
+  @Test
+  public void testUnsigned() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(4096);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, content, new ContainerWriter());
+      try (var container = Container.open(file)) {
+        assertThrows(IllegalStateException.class,
+            () -> container.verifyAuthentication(keyPair.getPublic()));
+      }
+
+      write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          new ContainerSigner(keyPair.getPrivate())));
+      assertThrows(ManifestAuthenticationException.class,
+          () -> new ManifestEditor().edit(file, (b) -> b.setVersion("1.2.4")));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.content.BlockCompressor;
+import org.basinmc.chloramine.manifest.content.ChunkTable;
+import org.basinmc.chloramine.manifest.content.ContentSource;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class HashTreeTest {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static byte[] createContent(int length) {
+    var content = new byte[length];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+
+  private static KeyPair createKeyPair() throws GeneralSecurityException {
+    var generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(256);
+    return generator.generateKeyPair();
+  }
+
+  private static ContainerSigner createSigner(PrivateKey key, int blockSize) {
+    return new ContainerSigner(key, ContainerSigner.getDefaultSignatureAlgorithm(key),
+        ContainerSigner.DEFAULT_DIGEST_ALGORITHM, blockSize);
+  }
+
+  private static Manifest write(Path file, byte[] content, ContainerWriter writer)
+      throws IOException, ManifestException {
+    return writer.write(createManifest(),
+        Channels.newChannel(new ByteArrayInputStream(content)), file);
+  }
+
+  private static void corrupt(Path file, long position) throws IOException {
+    try (var output = new RandomAccessFile(file.toFile(), "rw")) {
+      output.seek(position);
+      var value = output.read();
+      output.seek(position);
+      output.write(value ^ 0xFF);
+    }
+  }
+
+  /**
+   * Evaluates whether the level sizes of trees are computed correctly.
+   */
+  @Test
+  public void testLevelSizes() {
+    assertArrayEquals(new int[]{1}, HashTree.getLevelSizes(1));
+    assertArrayEquals(new int[]{2, 1}, HashTree.getLevelSizes(2));
+    assertArrayEquals(new int[]{5, 3, 2, 1}, HashTree.getLevelSizes(5));
+    assertArrayEquals(new int[]{8, 4, 2, 1}, HashTree.getLevelSizes(8));
+
+    assertEquals(1, HashTree.getBlockCount(BLOCK_SIZE, 0));
+    assertEquals(2, HashTree.getBlockCount(BLOCK_SIZE, BLOCK_SIZE + 1));
+  }
+
+  /**
+   * Evaluates whether only the blocks which are actually read are verified.
+   */
+  @Test
+  public void testPartialVerification()
+      throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 100 + 17);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+
+      try (var container = Container.open(file, keyPair.getPublic());
+          var channel = container.newContentChannel()) {
+        var tree = container.getHashTree();
+        assertNotNull(tree);
+        assertEquals(101, tree.getBlockCount());
+        assertTrue(tree.getVerifiedBlocks().isEmpty());
+
+        var buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        channel.position(BLOCK_SIZE * 42 + 100);
+        while (buffer.hasRemaining()) {
+          channel.read(buffer);
+        }
+        assertArrayEquals(Arrays.copyOfRange(content, BLOCK_SIZE * 42 + 100,
+            BLOCK_SIZE * 43 + 100), buffer.array());
+
+        var expected = new BitSet();
+        expected.set(42, 44);
+        assertEquals(expected, tree.getVerifiedBlocks());
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+        assertEquals(101, tree.getVerifiedBlocks().cardinality());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether verifying sources serve consecutive reads within a block from memory while
+   * re-verifying blocks which are read again later on.
+   */
+  @Test
+  public void testVerifiedBlocks() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 4);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+
+      try (var container = Container.open(file, keyPair.getPublic());
+          var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var tree = container.getHashTree();
+        assertNotNull(tree);
+
+        var requested = new AtomicLong();
+        var plain = ContentSource.of(channel, manifest.getContentOffset());
+        var source = tree.verifying((buffer, position) -> {
+          requested.addAndGet(buffer.remaining());
+          plain.readFully(buffer, position);
+        });
+
+        var data = new byte[30];
+        source.readFully(ByteBuffer.wrap(data), BLOCK_SIZE + 10);
+        assertArrayEquals(Arrays.copyOfRange(content, BLOCK_SIZE + 10, BLOCK_SIZE + 40), data);
+        assertEquals(BLOCK_SIZE, requested.get());
+
+        requested.set(0);
+        source.readFully(ByteBuffer.wrap(data), BLOCK_SIZE + 100);
+        assertArrayEquals(Arrays.copyOfRange(content, BLOCK_SIZE + 100, BLOCK_SIZE + 130), data);
+        assertEquals(0, requested.get());
+
+        // reads which span into another block verify the latter in its entirety
+        requested.set(0);
+        source.readFully(ByteBuffer.wrap(data), BLOCK_SIZE * 2 - 10);
+        assertArrayEquals(
+            Arrays.copyOfRange(content, BLOCK_SIZE * 2 - 10, BLOCK_SIZE * 2 + 20), data);
+        assertEquals(BLOCK_SIZE, requested.get());
+
+        requested.set(0);
+        source.readFully(ByteBuffer.wrap(data), BLOCK_SIZE + 10);
+        assertEquals(BLOCK_SIZE, requested.get());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether blocks which are modified after they have been verified are rejected once
+   * they are read again.
+   */
+  @Test
+  public void testModifiedAfterVerification()
+      throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 4);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+
+      try (var container = Container.open(file, keyPair.getPublic())) {
+        var source = container.getContentSource();
+        var data = new byte[30];
+        source.readFully(ByteBuffer.wrap(data), 10);
+        source.readFully(ByteBuffer.wrap(data), BLOCK_SIZE + 10);
+
+        corrupt(file, manifest.getContentOffset() + 20);
+        assertThrows(ContentIntegrityException.class,
+            () -> source.readFully(ByteBuffer.wrap(data), 10));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether blocks are verified correctly when they are read by multiple threads at
+   * once.
+   */
+  @Test
+  public void testConcurrentReads()
+      throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 64 + 5);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+
+      try (var container = Container.open(file, keyPair.getPublic());
+          var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var tree = container.getHashTree();
+        assertNotNull(tree);
+
+        var source = tree.verifying(ContentSource.of(channel, manifest.getContentOffset()));
+        IntStream.range(0, 256).parallel().forEach((i) -> {
+          var position = (long) (i * 257) % content.length;
+          var data = new byte[(int) Math.min(100, content.length - position)];
+
+          try {
+            source.readFully(ByteBuffer.wrap(data), position);
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+          assertArrayEquals(
+              Arrays.copyOfRange(content, (int) position, (int) position + data.length), data);
+        });
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether modified blocks are rejected once they are read while all other blocks
+   * remain readable.
+   */
+  @Test
+  public void testTamperedContent()
+      throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 10);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+      corrupt(file, written.getContentOffset() + BLOCK_SIZE * 7 + 3);
+
+      try (var container = Container.open(file, keyPair.getPublic());
+          var channel = container.newContentChannel()) {
+        var buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        channel.read(buffer);
+        assertArrayEquals(Arrays.copyOf(content, BLOCK_SIZE), buffer.array());
+
+        buffer.clear();
+        channel.position(BLOCK_SIZE * 7);
+        assertThrows(ContentIntegrityException.class, () -> channel.read(buffer));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether modified tree nodes are rejected.
+   */
+  @Test
+  public void testTamperedTree() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 10);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+      var section = written.getAuthentication().get();
+      var treePosition = written.getContentOffset() + written.getContentLength()
+          + section.getTreeOffset() + HashTree.HEADER_LENGTH;
+
+      // the digest of the fourth leaf
+      corrupt(file, treePosition + 3 * 32 + 5);
+
+      try (var container = Container.open(file, keyPair.getPublic());
+          var inputStream = container.newContentStream()) {
+        assertThrows(ContentIntegrityException.class, inputStream::readAllBytes);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether trees are appended behind the chunk table and cover the encoded contents.
+   */
+  @Test
+  public void testEncoded() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(300_000);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, content, new ContainerWriter(BufferPool.getDefault(), new BlockCompressor(),
+          ChunkTable.DEFAULT_CHUNK_SIZE, createSigner(keyPair.getPrivate(), BLOCK_SIZE)));
+
+      try (var container = Container.open(file, keyPair.getPublic())) {
+        assertNotNull(container.getChunkTable());
+        assertTrue(container.verifyAuthentication(keyPair.getPublic()));
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether containers which have been signed with a flat digest are verified upfront
+   * and whether containers are rejected when opened with a foreign key.
+   */
+  @Test
+  public void testAuthentication()
+      throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = createContent(BLOCK_SIZE * 10);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var written = write(file, content, new ContainerWriter(BufferPool.getDefault(), null, 0,
+          createSigner(keyPair.getPrivate(), 0)));
+      try (var container = Container.open(file, keyPair.getPublic())) {
+        assertNull(container.getHashTree());
+      }
+
+      assertThrows(ManifestAuthenticationException.class,
+          () -> Container.open(file, createKeyPair().getPublic()));
+
+      corrupt(file, written.getContentOffset() + 5);
+      assertThrows(ContentIntegrityException.class,
+          () -> Container.open(file, keyPair.getPublic()));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.auth;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestAuthenticationException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class VerificationCacheTest {
+
+  private static Manifest createManifest() {
+    return Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.2.3"))
+        .build();
+  }
+
+  private static KeyPair createKeyPair() throws GeneralSecurityException {
+    var generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(256);
+    return generator.generateKeyPair();
+  }
+
+  /**
+   * Evaluates whether unchanged containers are only verified once and whether verifications are
+   * persisted.
+   */
+  @Test
+  public void testOpen() throws GeneralSecurityException, IOException, ManifestException {
+    var keyPair = createKeyPair();
+    var content = new byte[10_000];
+    var directory = Files.createTempDirectory("chloramine");
+    var file = directory.resolve("test.bec");
+    var cacheFile = directory.resolve("verification.dat");
+
+    try {
+      var written = new ContainerWriter(BufferPool.getDefault(), null, 0,
+          new ContainerSigner(keyPair.getPrivate()))
+          .write(createManifest(), Channels.newChannel(new ByteArrayInputStream(content)), file);
+
+      var cache = VerificationCache.load(cacheFile);
+      assertEquals(0, cache.size());
+
+      try (var container = cache.open(file, keyPair.getPublic());
+          var inputStream = container.newContentStream()) {
+        assertArrayEquals(content, inputStream.readAllBytes());
+      }
+      assertEquals(1, cache.size());
+      assertEquals(1, cache.getMissCount());
+
+      cache.open(file, keyPair.getPublic()).close();
+      assertEquals(1, cache.getHitCount());
+
+      // verifications are carried over across restarts
+      cache.save(cacheFile);
+      var loaded = VerificationCache.load(cacheFile);
+      assertEquals(1, loaded.size());
+      loaded.open(file, keyPair.getPublic()).close();
+      assertEquals(1, loaded.getHitCount());
+      assertEquals(0, loaded.getMissCount());
+
+      // a different key requires the signature to be verified again
+      var otherKey = createKeyPair().getPublic();
+      assertThrows(ManifestAuthenticationException.class, () -> loaded.open(file, otherKey));
+
+      // modified containers are verified again
+      try (var output = new RandomAccessFile(file.toFile(), "rw")) {
+        output.seek(written.getContentOffset() + 5);
+        output.write(0xFF);
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+      assertThrows(ContentIntegrityException.class,
+          () -> loaded.open(file, keyPair.getPublic()));
+      assertEquals(2, loaded.getMissCount());
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(cacheFile);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Evaluates whether malformed cache files are rejected.
+   */
+  @Test
+  public void testLoadMalformed() throws IOException {
+    var file = Files.createTempFile("chloramine", ".dat");
+
+    try {
+      Files.write(file, new byte[]{0x42, 0x45, 0x43, 0x56, 0x00, 0x00, 0x00});
+      assertThrows(IOException.class, () -> VerificationCache.load(file));
+
+      Files.write(file, new byte[16]);
+      assertThrows(IOException.class, () -> VerificationCache.load(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
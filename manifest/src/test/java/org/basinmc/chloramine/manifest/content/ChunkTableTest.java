@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ContentIntegrityException;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ChunkTableTest {
+
+  private static final int CHUNK_SIZE = 512;
+
+  private static byte[] createContent(int length) {
+    var content = new byte[length];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) (i * 17);
+    }
+    return content;
+  }
+
+  private static Manifest write(Path file, byte[] content, BlockCompressor compressor)
+      throws IOException, ManifestException {
+    var manifest = Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.0.0"))
+        .build();
+
+    return new ContainerWriter(BufferPool.getDefault(), compressor, CHUNK_SIZE)
+        .write(manifest, new ByteArrayInputStream(content), file);
+  }
+
+  private static void corrupt(Path file, long position) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.allocate(1);
+      channel.read(buffer, position);
+      buffer.put(0, (byte) ~buffer.get(0));
+      buffer.rewind();
+      channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Evaluates whether chunk tables are written along with the content and verified when read.
+   */
+  @Test
+  public void testVerify() throws IOException, ManifestException {
+    var content = createContent(CHUNK_SIZE * 10 + 7);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content, null);
+      assertEquals(Manifest.FLAG_CHECKSUMS, manifest.getFlags() & Manifest.FLAG_CHECKSUMS);
+      assertEquals(content.length, manifest.getContentLength());
+
+      try (var container = Container.open(file)) {
+        var table = container.getChunkTable();
+        assertNotNull(table);
+        assertEquals(11, table.getChunkCount());
+        assertEquals(manifest.getContentOffset() + content.length + table.getSerializedLength(),
+            Files.size(file));
+
+        assertTrue(container.verify(ForkJoinPool.commonPool()).isEmpty());
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+
+      corrupt(file, manifest.getContentOffset() + CHUNK_SIZE * 3 + 5);
+      corrupt(file, manifest.getContentOffset() + CHUNK_SIZE * 10 + 1);
+
+      try (var container = Container.open(file)) {
+        var corrupted = container.verify(ForkJoinPool.commonPool());
+        assertEquals(2, corrupted.cardinality());
+        assertTrue(corrupted.get(3));
+        assertTrue(corrupted.get(10));
+
+        // chunks which are not read are not verified
+        try (var channel = container.newContentChannel()) {
+          var buffer = ByteBuffer.allocate(CHUNK_SIZE * 3);
+          assertEquals(buffer.capacity(), channel.read(buffer));
+          assertArrayEquals(Arrays.copyOf(content, CHUNK_SIZE * 3), buffer.array());
+
+          buffer.clear();
+          assertThrows(ContentIntegrityException.class, () -> channel.read(buffer));
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether verifying sources verify chunks every time they are read and thus detect
+   * modifications which occur after a chunk has first been read.
+   */
+  @Test
+  public void testReverification() throws IOException, ManifestException {
+    var content = createContent(CHUNK_SIZE * 4);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content, null);
+
+      try (var container = Container.open(file);
+          var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var table = container.getChunkTable();
+        assertNotNull(table);
+
+        var source = table.verifying(ContentSource.of(channel, manifest.getContentOffset()));
+        var data = new byte[30];
+        source.readFully(ByteBuffer.wrap(data), CHUNK_SIZE + 10);
+        assertArrayEquals(Arrays.copyOfRange(content, CHUNK_SIZE + 10, CHUNK_SIZE + 40), data);
+
+        try (var output = new RandomAccessFile(file.toFile(), "rw")) {
+          output.seek(manifest.getContentOffset() + CHUNK_SIZE + 100);
+          output.write(content[CHUNK_SIZE + 100] ^ 0xFF);
+        }
+        assertThrows(ContentIntegrityException.class,
+            () -> source.readFully(ByteBuffer.wrap(data), CHUNK_SIZE + 10));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether checksums cover the encoded form of compressed contents.
+   */
+  @Test
+  public void testCompressed() throws IOException, ManifestException {
+    var content = createContent(CHUNK_SIZE * 40);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var compressor = new BlockCompressor(4096, Deflater.BEST_SPEED, ForkJoinPool.commonPool());
+      var manifest = write(file, content, compressor);
+      assertEquals(Manifest.FLAG_COMPRESSED | Manifest.FLAG_CHECKSUMS, manifest.getFlags());
+
+      try (var container = Container.open(file)) {
+        assertTrue(container.verify(ForkJoinPool.commonPool()).isEmpty());
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+      }
+
+      corrupt(file, manifest.getContentOffset() + 1);
+
+      try (var container = Container.open(file);
+          var inputStream = container.newContentStream()) {
+        assertThrows(ContentIntegrityException.class, inputStream::readAllBytes);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
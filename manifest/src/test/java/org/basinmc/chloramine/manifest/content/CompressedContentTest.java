@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.content;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import org.basinmc.chloramine.manifest.Container;
+import org.basinmc.chloramine.manifest.ContainerWriter;
+import org.basinmc.chloramine.manifest.Manifest;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.io.BufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class CompressedContentTest {
+
+  private static final int BLOCK_SIZE = 1000;
+
+  private static byte[] createContent(int length) {
+    var content = new byte[length];
+    for (var i = 0; i < content.length; ++i) {
+      content[i] = (byte) ((i / 7) % 61);
+    }
+    return content;
+  }
+
+  private static Manifest write(Path file, byte[] content) throws IOException, ManifestException {
+    var manifest = Manifest.builder()
+        .createMetadata((short) 0, (b) -> b.setProductIdentifier("org.basinmc.faucet")
+            .setEnvironmentType("java")
+            .setIdentifier("org.basinmc.test")
+            .setVersion("1.0.0"))
+        .build();
+
+    var compressor = new BlockCompressor(BLOCK_SIZE, Deflater.BEST_SPEED,
+        ForkJoinPool.commonPool());
+    return new ContainerWriter(BufferPool.getDefault(), compressor)
+        .write(manifest, new ByteArrayInputStream(content), file);
+  }
+
+  /**
+   * Evaluates whether block compressed contents are transparently inflated.
+   */
+  @Test
+  public void testRoundTrip() throws IOException, ManifestException {
+    var content = createContent(BLOCK_SIZE * 20 + 123);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content);
+      assertEquals(Manifest.FLAG_COMPRESSED, manifest.getFlags() & Manifest.FLAG_COMPRESSED);
+      assertTrue(manifest.getContentLength() < content.length);
+
+      try (var container = Container.open(file)) {
+        var compressed = container.getCompressedContent();
+        assertNotNull(compressed);
+        assertEquals(21, compressed.getBlockCount());
+        assertEquals(content.length, compressed.getLength());
+
+        try (var inputStream = container.newContentStream()) {
+          assertArrayEquals(content, inputStream.readAllBytes());
+        }
+
+        var out = new ByteArrayOutputStream();
+        assertEquals(content.length, compressed.transferTo(Channels.newChannel(out)));
+        assertArrayEquals(content, out.toByteArray());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether consecutive small reads within a block inflate the block only once.
+   */
+  @Test
+  public void testBlockCache() throws IOException, ManifestException {
+    var content = createContent(BLOCK_SIZE * 8 + 1);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, content);
+
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var reads = new AtomicInteger();
+        var source = ContentSource.of(channel, manifest.getContentOffset());
+        ContentSource countingSource = (buffer, position) -> {
+          reads.incrementAndGet();
+          source.readFully(buffer, position);
+        };
+
+        var compressed = CompressedContent
+            .open(countingSource, manifest.getContentLength(), ForkJoinPool.commonPool());
+        reads.set(0);
+
+        var data = new byte[BLOCK_SIZE];
+        for (var i = 0; i < BLOCK_SIZE; i += 10) {
+          compressed.read(i, ByteBuffer.wrap(data, i, 10));
+        }
+        assertArrayEquals(Arrays.copyOf(content, BLOCK_SIZE), data);
+        assertEquals(1, reads.get());
+
+        // blocks beyond the cache capacity are evicted in least recently used order
+        for (var i = 0; i <= CompressedContent.BLOCK_CACHE_SIZE; ++i) {
+          compressed.read((long) (i + 1) * BLOCK_SIZE, ByteBuffer.allocate(1));
+        }
+        compressed.read(0, ByteBuffer.allocate(1));
+        assertEquals(CompressedContent.BLOCK_CACHE_SIZE + 3, reads.get());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether arbitrary ranges may be read from compressed contents.
+   */
+  @Test
+  public void testRandomAccess() throws IOException, ManifestException {
+    var content = createContent(BLOCK_SIZE * 8 + 1);
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      write(file, content);
+
+      try (var container = Container.open(file);
+          var channel = container.newContentChannel()) {
+        assertEquals(content.length, channel.size());
+
+        // within a single block
+        var buffer = ByteBuffer.allocate(100);
+        channel.position(1450);
+        assertEquals(100, channel.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(content, 1450, 1550), buffer.array());
+
+        // across multiple blocks
+        buffer = ByteBuffer.allocate(3500);
+        channel.position(2900);
+        assertEquals(3500, channel.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(content, 2900, 6400), buffer.array());
+
+        // at the end of the content
+        buffer = ByteBuffer.allocate(10);
+        channel.position(content.length - 1);
+        assertEquals(1, channel.read(buffer));
+        assertEquals(content[content.length - 1], buffer.get(0));
+        assertEquals(-1, channel.read(buffer));
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Evaluates whether malformed compressed contents are rejected.
+   */
+  @Test
+  public void testMalformed() throws IOException, ManifestException {
+    var file = Files.createTempFile("chloramine", ".bec");
+
+    try {
+      var manifest = write(file, createContent(BLOCK_SIZE * 2));
+
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        // corrupt the first block
+        channel.write(ByteBuffer.wrap(new byte[]{0x00, 0x00, 0x00}), manifest.getContentOffset());
+      }
+
+      try (var container = Container.open(file);
+          var inputStream = container.newContentStream()) {
+        assertThrows(IOException.class, inputStream::readAllBytes);
+      }
+
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        // corrupt the footer
+        channel.write(ByteBuffer.allocate(4), channel.size() - 4);
+      }
+
+      assertThrows(IOException.class, () -> Container.open(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import org.basinmc.chloramine.manifest.error.IndexFormatException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ManifestIndexTest {
+
+  /**
+   * Evaluates whether indices are persisted and only changed containers are read again.
+   */
+  @Test
+  public void testUpdate() throws IOException, InterruptedException, URISyntaxException {
+    var source = Paths.get(ManifestIndexTest.class.getResource("/test.bec").toURI());
+    var directory = Files.createTempDirectory("chloramine");
+
+    try {
+      var a = Files.copy(source, directory.resolve("a.bec"));
+      var b = Files.copy(source, directory.resolve("b.bec"));
+      var indexFile = directory.resolve("index.dat");
+
+      var index = ManifestIndex.load(directory, indexFile);
+      assertEquals(0, index.size());
+
+      index = index.update();
+      assertEquals(2, index.size());
+      assertTrue(index.getFailures().isEmpty());
+
+      var entry = index.getEntry(a).orElseThrow();
+      assertEquals("org.basinmc.test", entry.getIdentifier());
+      assertEquals(100, entry.getContentOffset());
+      assertEquals(23, entry.getContentLength());
+      assertEquals(123, entry.getStamp().getSize());
+
+      index.save(indexFile);
+      var loaded = ManifestIndex.load(directory, indexFile);
+      assertEquals(new ArrayList<>(index.getEntries()), new ArrayList<>(loaded.getEntries()));
+
+      // unchanged containers are carried over as is
+      var updated = loaded.update();
+      assertSame(loaded.getEntry(a).orElseThrow(), updated.getEntry(a).orElseThrow());
+      assertSame(loaded.getEntry(b).orElseThrow(), updated.getEntry(b).orElseThrow());
+
+      // changed containers are read again while removed containers are dropped
+      Files.setLastModifiedTime(b, FileTime.fromMillis(0));
+      Files.delete(a);
+      Files.write(directory.resolve("c.bec"), new byte[16]);
+
+      updated = updated.update();
+      assertEquals(1, updated.size());
+      assertFalse(updated.getEntry(a).isPresent());
+      assertNotSame(loaded.getEntry(b).orElseThrow(), updated.getEntry(b).orElseThrow());
+      assertTrue(updated.getFailures().containsKey(directory.resolve("c.bec")));
+
+      Files.write(indexFile, new byte[]{0x42, 0x45});
+      assertThrows(IndexFormatException.class, () -> ManifestIndex.load(directory, indexFile));
+    } finally {
+      for (var path : Files.list(directory)
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+      Files.delete(directory);
+    }
+  }
+}
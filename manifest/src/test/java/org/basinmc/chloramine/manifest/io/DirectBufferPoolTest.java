@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class DirectBufferPoolTest {
+
+  /**
+   * Evaluates whether requests are rounded up to their respective size class.
+   */
+  @Test
+  public void testSizeClasses() {
+    var pool = new DirectBufferPool(4096, 8192);
+
+    var buffer = pool.acquire(30);
+    assertTrue(buffer.isDirect());
+    assertEquals(DirectBufferPool.MINIMUM_BUFFER_SIZE, buffer.capacity());
+    assertEquals(0, buffer.position());
+    assertEquals(30, buffer.limit());
+
+    assertEquals(1024, pool.acquire(513).capacity());
+    assertEquals(1024, pool.acquire(1024).capacity());
+    assertEquals(4096, pool.acquire(4096).capacity());
+
+    var oversized = pool.acquire(4097);
+    assertFalse(oversized.isDirect());
+    assertEquals(4097, oversized.capacity());
+  }
+
+  /**
+   * Evaluates whether released buffers are handed out again and whether the amount of retained
+   * buffers is limited.
+   */
+  @Test
+  public void testReuse() {
+    var pool = new DirectBufferPool(4096, 4096);
+
+    var first = pool.acquire(4000);
+    var second = pool.acquire(4000);
+    assertNotSame(first, second);
+
+    first.position(12);
+    pool.release(first);
+    pool.release(second); // exceeds retention limit of a single buffer
+
+    var reused = pool.acquire(100);
+    assertNotSame(first, reused);
+    assertEquals(512, reused.capacity());
+
+    reused = pool.acquire(2049);
+    assertSame(first, reused);
+    assertEquals(0, reused.position());
+    assertEquals(2049, reused.limit());
+
+    assertNotSame(second, pool.acquire(4096));
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.metadata.v0.MetadataDecoderV0;
+import org.basinmc.chloramine.manifest.metadata.v0.MetadataV0;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class StringTableTest {
+
+  /**
+   * Evaluates whether equal values are mapped to a single canonical instance.
+   */
+  @Test
+  public void testCanonicalize() {
+    for (var table : new StringTable[]{new WeakStringTable(), new BoundedStringTable(1)}) {
+      var a = new String("org.basinmc.faucet");
+      var b = new String("org.basinmc.faucet");
+
+      assertNull(table.canonicalize(null));
+      assertSame(a, table.canonicalize(a));
+      assertSame(a, table.canonicalize(b));
+    }
+
+    var bounded = new BoundedStringTable(1);
+    bounded.canonicalize("java");
+    var value = new String("kotlin");
+    assertSame(value, bounded.canonicalize(value));
+    assertEquals(1, bounded.size());
+
+    var none = StringTable.none();
+    none.canonicalize("java");
+    assertNotSame("java", none.canonicalize(new String("java")));
+  }
+
+  /**
+   * Evaluates whether decoded metadata shares canonical instances.
+   */
+  @Test
+  public void testDecode() throws ManifestException {
+    var metadata = new MetadataV0.Builder()
+        .setProductIdentifier("org.basinmc.faucet")
+        .setEnvironmentType("java")
+        .setIdentifier("org.basinmc.test")
+        .setVersion("1.0.0")
+        .addService("org.basinmc.test.pineapple", "1.0.0")
+        .addExtensionDependency("org.basinmc.stuff", "[1.0.0,2.0.0)", false)
+        .build();
+
+    var buffer = ByteBuffer.allocate((int) metadata.getSerializedLength());
+    metadata.serialize(buffer);
+
+    var table = new WeakStringTable();
+    var decoder = new MetadataDecoderV0();
+    var a = decoder.decode((short) 0, buffer.duplicate().position(1), table);
+    var b = decoder.decode((short) 0, buffer.duplicate().position(1), table);
+    var c = new MetadataV0((short) 0, buffer.duplicate().position(1), table);
+
+    assertSame(a.getProductIdentifier(), b.getProductIdentifier());
+    assertSame(a.getEnvironmentType(), c.getEnvironmentType());
+    assertSame(a.getIdentifier(), c.getIdentifier());
+    assertSame(a.getProvidedServices().get(0).getIdentifier(),
+        c.getProvidedServices().get(0).getIdentifier());
+    assertSame(b.getExtensionDependencies().get(0).getIdentifier(),
+        c.getExtensionDependencies().get(0).getIdentifier());
+    assertEquals(a, c);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.chloramine.manifest.metadata.v0;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import org.basinmc.chloramine.manifest.error.ManifestException;
+import org.basinmc.chloramine.manifest.error.MetadataDecoderException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MetadataViewV0Test {
+
+  private static MetadataV0 createMetadata() {
+    return new MetadataV0.Builder()
+        .setProductIdentifier("org.basinmc.faucet")
+        .setEnvironmentType("java")
+        .setIdentifier("org.basinmc.test")
+        .setVersion("1.2.3")
+        .setDocumentationUrl(URI.create("http://example.org/documentation"))
+        .addAuthor("John Doe", "Mr Pineapple")
+        .addContributor("Jane Doe", null)
+        .addService("org.basinmc.test.pineapple", "1.0.0")
+        .addExtensionDependency("org.basinmc.stuff", "(1.0.0,2.0.0]", false)
+        .addServiceDependency("org.basinmc.croquettes", "[1.0.0,2.1.0]", true)
+        .build();
+  }
+
+  private static ByteBuffer encode(MetadataV0 metadata, int padding)
+      throws ManifestException {
+    var buffer = ByteBuffer.allocate((int) metadata.getSerializedLength() + padding);
+    metadata.serialize(buffer);
+    buffer.position(0);
+    buffer.get(); // format version is consumed by the caller
+    return buffer;
+  }
+
+  /**
+   * Evaluates whether views decode to the same values as their eager counterparts.
+   */
+  @Test
+  public void testDecode() throws ManifestException {
+    var metadata = createMetadata();
+    var buffer = encode(metadata, 16);
+
+    var view = new MetadataViewV0((short) 0, buffer);
+    assertEquals(metadata.getSerializedLength(), buffer.position());
+
+    assertEquals("org.basinmc.faucet", view.getProductIdentifier());
+    assertEquals("java", view.getEnvironmentType());
+    assertEquals("org.basinmc.test", view.getIdentifier());
+    assertEquals("1.2.3", view.getVersion());
+    assertFalse(view.getDistributionUrl().isPresent());
+    assertEquals("http://example.org/documentation",
+        view.getDocumentationUrl().get().toString());
+    assertFalse(view.getIssueReportingUrl().isPresent());
+    assertEquals(metadata.getAuthors(), view.getAuthors());
+    assertEquals(metadata.getContributors(), view.getContributors());
+    assertEquals(metadata.getProvidedServices(), view.getProvidedServices());
+    assertEquals(metadata.getExtensionDependencies(), view.getExtensionDependencies());
+    assertEquals(metadata.getServiceDependencies(), view.getServiceDependencies());
+
+    assertEquals(metadata, view);
+    assertEquals(view, metadata);
+    assertEquals(metadata.hashCode(), view.hashCode());
+    assertEquals(metadata.getSerializedLength(), view.getSerializedLength());
+
+    var serialized = ByteBuffer.allocate((int) view.getSerializedLength());
+    view.serialize(serialized);
+    serialized.flip();
+    assertEquals(encode(metadata, 0).rewind(), serialized);
+  }
+
+  /**
+   * Evaluates whether structurally invalid sections are rejected upon construction.
+   */
+  @Test
+  public void testMalformed() throws ManifestException {
+    var buffer = encode(createMetadata(), 0);
+    buffer.limit(buffer.limit() - 1);
+    assertThrows(MetadataDecoderException.class, () -> new MetadataViewV0((short) 0, buffer));
+
+    var empty = ByteBuffer.allocate(4);
+    var ex = assertThrows(MetadataDecoderException.class,
+        () -> new MetadataViewV0((short) 0, empty));
+    assertTrue(ex.getMessage().contains("productIdentifier"));
+  }
+}
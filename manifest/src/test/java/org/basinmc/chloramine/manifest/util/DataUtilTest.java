@@ -16,12 +16,19 @@
  */
 package org.basinmc.chloramine.manifest.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 
@@ -94,6 +101,90 @@ public class DataUtilTest {
     assertEquals(str, data.get());
   }
 
+  @Test
+  public void testWriteStringEncodings() {
+    var values = new String[]{"", "org.basinmc.test", "Grüße", "\u20AC 100", "\uD83D\uDE00 ok",
+        "broken \uD800 surrogate", "trailing \uDC00", "\uD800"};
+
+    for (var charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_16BE}) {
+      for (var value : values) {
+        var expected = value.getBytes(charset);
+        assertEquals(2 + expected.length, DataUtil.estimateString(value, charset));
+
+        for (var buffer : new ByteBuffer[]{ByteBuffer.allocate(expected.length + 2),
+            ByteBuffer.allocateDirect(expected.length + 2)}) {
+          DataUtil.writeString(buffer, value, charset);
+          assertFalse(buffer.hasRemaining());
+          buffer.flip();
+
+          assertEquals(expected.length, DataUtil.readUnsignedShort(buffer));
+          var actual = new byte[buffer.remaining()];
+          buffer.get(actual);
+          assertArrayEquals(expected, actual);
+        }
+      }
+    }
+
+    assertThrows(BufferOverflowException.class,
+        () -> DataUtil.writeString(ByteBuffer.allocate(4), "Grüße"));
+
+    // failed writes leave the buffer untouched
+    var chars = new char[65536];
+    Arrays.fill(chars, 'a');
+    var oversized = new String(chars);
+    for (var charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_16BE}) {
+      var buffer = ByteBuffer.allocate(200_000);
+      buffer.position(3);
+
+      assertThrows(IllegalArgumentException.class,
+          () -> DataUtil.writeString(buffer, oversized, charset));
+      assertEquals(3, buffer.position());
+      assertEquals(buffer.capacity(), buffer.limit());
+
+      var small = ByteBuffer.allocate(6);
+      small.position(1);
+      assertThrows(BufferOverflowException.class,
+          () -> DataUtil.writeString(small, "Grüße", charset));
+      assertEquals(1, small.position());
+      assertEquals(small.capacity(), small.limit());
+      if (charset == StandardCharsets.UTF_8) {
+        // the exact UTF-8 length is checked before anything is written
+        assertArrayEquals(new byte[small.capacity()], small.array());
+      }
+    }
+  }
+
+  @Test
+  public void testReadNullableString() {
+    var heap = ByteBuffer.allocate(64);
+    heap.put((byte) 42);
+    DataUtil.writeString(heap, "Grüße");
+    DataUtil.writeString(heap, null);
+    heap.flip();
+    heap.get();
+
+    var direct = ByteBuffer.allocateDirect(64);
+    direct.put(heap.duplicate());
+    direct.flip();
+
+    // slices of heap buffers expose a non-zero array offset
+    for (var buffer : new ByteBuffer[]{heap.slice(), direct}) {
+      assertEquals("Grüße", DataUtil.readNullableString(buffer));
+      assertNull(DataUtil.readNullableString(buffer));
+      assertFalse(buffer.hasRemaining());
+
+      buffer.rewind();
+      assertEquals("Grüße", DataUtil.readRequiredString(buffer, IllegalStateException::new));
+      assertThrows(IllegalStateException.class,
+          () -> DataUtil.readRequiredString(buffer, IllegalStateException::new));
+    }
+
+    var truncated = ByteBuffer.allocate(4).putShort((short) 8).flip();
+    assertThrows(BufferUnderflowException.class, () -> DataUtil.readNullableString(truncated));
+  }
+
   @Test
   public void testReadWriteUnsignedByte() {
     var buffer = ByteBuffer.allocate(1);